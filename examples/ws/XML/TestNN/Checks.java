@@ -0,0 +1,129 @@
+import java.util.Random;
+
+
+/**
+ * <p>Checks and reporting shared by the Test* applications of the
+ * MARF modules: every check is printed as passed or failed, grouped in
+ * sections, and the failed ones are counted for the exit status.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public final class Checks
+{
+	/**
+	 * Largest error allowed relative to the magnitude of the expected
+	 * value, unless a check says otherwise.
+	 */
+	public static final double TOLERANCE = 1e-9;
+
+	/**
+	 * Number of checks failed so far.
+	 */
+	private static int siFailures = 0;
+
+	/**
+	 * There shall be no instances.
+	 */
+	private Checks()
+	{
+	}
+
+	/**
+	 * Reports a check and counts it if it failed.
+	 * @param pstrCheck what was checked
+	 * @param pbPassed whether the check passed
+	 */
+	public static void check(final String pstrCheck, final boolean pbPassed)
+	{
+		System.out.println((pbPassed ? "OK:     " : "FAILED: ") + pstrCheck);
+
+		if(pbPassed == false)
+		{
+			siFailures++;
+		}
+	}
+
+	/**
+	 * Prints the title of a section of checks.
+	 * @param pstrTitle the title
+	 */
+	public static void section(final String pstrTitle)
+	{
+		System.out.println("==============================");
+		System.out.println(pstrTitle);
+		System.out.println("==============================");
+	}
+
+	/**
+	 * Prints the number of failed checks and exits with status 1
+	 * if there were any.
+	 */
+	public static void summarize()
+	{
+		section("Summary");
+
+		System.out.println("Failed checks: " + siFailures);
+
+		if(siFailures > 0)
+		{
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reports an error that stopped the checks and exits with status 1.
+	 * @param poException the error
+	 */
+	public static void error(final Exception poException)
+	{
+		System.err.println("Error: " + poException.getMessage());
+		poException.printStackTrace(System.err);
+		System.exit(1);
+	}
+
+	/**
+	 * Retrieves the number of checks failed so far.
+	 * @return the count
+	 */
+	public static int getFailures()
+	{
+		return siFailures;
+	}
+
+	/**
+	 * Computes the error of a value relative to the magnitude of the
+	 * expected one, or the absolute error for the expected values less
+	 * than 1 in magnitude.
+	 * @param pdValue the value
+	 * @param pdExpected the expected value
+	 * @return the error
+	 */
+	public static double relativeError(final double pdValue, final double pdExpected)
+	{
+		return Math.abs(pdValue - pdExpected) / Math.max(1.0, Math.abs(pdExpected));
+	}
+
+	/**
+	 * Creates a vector of normally distributed random numbers.
+	 * @param piLength length
+	 * @param poRandom source of the numbers
+	 * @return new vector
+	 */
+	public static double[] randomVector(final int piLength, Random poRandom)
+	{
+		double[] adVector = new double[piLength];
+
+		for(int i = 0; i < piLength; i++)
+		{
+			adVector[i] = poRandom.nextGaussian();
+		}
+
+		return adVector;
+	}
+}
+
+// EOF
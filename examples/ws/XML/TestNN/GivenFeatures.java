@@ -0,0 +1,52 @@
+import marf.FeatureExtraction.FeatureExtraction;
+
+
+/**
+ * <p>Feature extraction that takes the sample data as the features,
+ * for the Test* applications to train and classify given vectors
+ * without preprocessing.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public final class GivenFeatures
+extends FeatureExtraction
+{
+	/**
+	 * For serialization versioning.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs the feature extraction without preprocessing.
+	 */
+	public GivenFeatures()
+	{
+		super(null);
+	}
+
+	/**
+	 * Constructs the feature extraction with the features given.
+	 * @param padFeatures the features
+	 */
+	public GivenFeatures(final double[] padFeatures)
+	{
+		this();
+		extractFeatures(padFeatures);
+	}
+
+	/**
+	 * Takes the sample data as the features.
+	 * @see marf.FeatureExtraction.IFeatureExtraction#extractFeatures(double[])
+	 */
+	public boolean extractFeatures(double[] padSampleData)
+	{
+		this.adFeatures = padSampleData;
+		return true;
+	}
+}
+
+// EOF
@@ -0,0 +1,343 @@
+import java.io.File;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marf.MARF;
+import marf.Classification.Classification;
+import marf.Classification.ModelCache;
+import marf.Classification.Distance.Distance;
+import marf.Classification.Distance.EuclideanDistance;
+import marf.Classification.Distance.HammingDistance;
+import marf.Classification.Similarity.CosineSimilarityMeasure;
+import marf.FeatureExtraction.IFeatureExtraction;
+import marf.Storage.Result;
+import marf.Storage.ResultSet;
+import marf.Storage.StorageException;
+
+
+/**
+ * <p>Tests the batch classification of MARF: a batch classified on the
+ * calling thread and in parallel gives the same result sets as classifying
+ * the vectors one by one with classifiers of their own, for distance,
+ * cosine similarity and Hamming distance classifiers, with and without
+ * their indices and codes handed over to the copies classifying parts of
+ * the batch. The training set is restored once per batch, and the result
+ * set of the classifier itself is left as it was.</p>
+ *
+ * <p>The common fork/join pool is given a few workers even on a single
+ * processor, so that the batch is split. The training set is kept in
+ * a temporary directory.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestBatch
+{
+	/**
+	 * Number of subjects trained on.
+	 */
+	public static final int SUBJECTS = 50;
+
+	/**
+	 * Length of the vectors.
+	 */
+	public static final int DIMENSIONS = 16;
+
+	/**
+	 * Number of vectors in a batch.
+	 */
+	public static final int BATCH = 40;
+
+	/**
+	 * Number of workers of the common fork/join pool asked for.
+	 */
+	public static final int WORKERS = 4;
+
+	/**
+	 * Number of closest subjects kept when an index is searched.
+	 */
+	public static final int RESULT_LIMIT = 5;
+
+	/**
+	 * Names of the classifiers checked.
+	 */
+	private static final String[] CLASSIFIERS =
+	{
+		"Euclidean distance",
+		"Euclidean distance, VP-tree",
+		"cosine similarity",
+		"cosine similarity, HNSW",
+		"Hamming distance, lenient",
+		"Hamming distance, bitwise"
+	};
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		// Before the common pool is created
+		if(System.getProperty("java.util.concurrent.ForkJoinPool.common.parallelism") == null)
+		{
+			System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "" + WORKERS);
+		}
+
+		File oDirectory = null;
+
+		try
+		{
+			Random oRandom = new Random(0);
+
+			oDirectory = File.createTempFile("TestBatch", "");
+			oDirectory.delete();
+			oDirectory.mkdir();
+
+			MARF.setTrainingSetFilenamePrefix(oDirectory.getPath() + File.separator);
+			ModelCache.clear();
+
+			double[][] aadTrained = new double[SUBJECTS][];
+
+			for(int s = 0; s < SUBJECTS; s++)
+			{
+				aadTrained[s] = Checks.randomVector(DIMENSIONS, oRandom);
+
+				MARF.setCurrentSubject(s + 1);
+				MARF.setSampleFile("subject" + (s + 1));
+
+				new EuclideanDistance(new GivenFeatures(aadTrained[s])).train();
+			}
+
+			// Some of the vectors trained on, the rest new
+			double[][] aadBatch = new double[BATCH][];
+
+			for(int i = 0; i < BATCH; i++)
+			{
+				aadBatch[i] = i % 4 == 0 ? aadTrained[oRandom.nextInt(SUBJECTS)] : Checks.randomVector(DIMENSIONS, oRandom);
+			}
+
+			Checks.section("Setup");
+
+			Checks.check("common pool of " + ForkJoinPool.getCommonPoolParallelism() + " workers", ForkJoinPool.getCommonPoolParallelism() >= 2);
+
+			for(int c = 0; c < CLASSIFIERS.length; c++)
+			{
+				Checks.section(CLASSIFIERS[c]);
+				testBatch(c, aadBatch);
+			}
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+		finally
+		{
+			ModelCache.clear();
+
+			if(oDirectory != null)
+			{
+				File[] aoFiles = oDirectory.listFiles();
+
+				for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+				{
+					aoFiles[i].delete();
+				}
+
+				oDirectory.delete();
+			}
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Classifies a batch one by one, on the calling thread and in parallel,
+	 * and compares the result sets.
+	 * @param piClassifier index of the classifier in <code>CLASSIFIERS</code>
+	 * @param paadBatch the batch
+	 * @throws Exception if the classification failed
+	 */
+	private static void testBatch(final int piClassifier, final double[][] paadBatch)
+	throws Exception
+	{
+		ResultSet[] aoExpected = new ResultSet[paadBatch.length];
+
+		for(int i = 0; i < paadBatch.length; i++)
+		{
+			Classification oClassifier = newClassifier(piClassifier, paadBatch[i]);
+			oClassifier.classify();
+			aoExpected[i] = oClassifier.getResultSet();
+		}
+
+		for(int p = 0; p < 2; p++)
+		{
+			boolean bParallel = p == 1;
+
+			Classification oClassifier = newClassifier(piClassifier, paadBatch[0]);
+			ResultSet oOwn = oClassifier.getResultSet();
+			CountingDistance.soRestores.set(0);
+
+			ResultSet[] aoResultSets = oClassifier.classifyBatch(paadBatch, bParallel);
+
+			int iMismatches = 0;
+
+			for(int i = 0; i < paadBatch.length; i++)
+			{
+				if(same(aoResultSets[i], aoExpected[i]) == false)
+				{
+					iMismatches++;
+				}
+			}
+
+			String strMode = bParallel ? "parallel" : "serial";
+
+			Checks.check(strMode + " batch vs. one by one, mismatches " + iMismatches, iMismatches == 0);
+			Checks.check(strMode + " batch leaves the own result set", oClassifier.getResultSet() == oOwn && oOwn.size() == 0);
+
+			if(oClassifier instanceof CountingDistance)
+			{
+				Checks.check(strMode + " batch restores once, restored " + CountingDistance.soRestores.get(), CountingDistance.soRestores.get() == 1);
+			}
+		}
+	}
+
+	/**
+	 * Creates a classifier of those checked.
+	 * @param piClassifier index of the classifier in <code>CLASSIFIERS</code>
+	 * @param padFeatures features to classify
+	 * @return new classifier
+	 */
+	private static Classification newClassifier(final int piClassifier, final double[] padFeatures)
+	{
+		GivenFeatures oFeatures = new GivenFeatures(padFeatures);
+
+		switch(piClassifier)
+		{
+			case 0:
+			{
+				return new CountingDistance(oFeatures);
+			}
+
+			case 1:
+			{
+				EuclideanDistance oClassifier = new EuclideanDistance(oFeatures);
+				oClassifier.setIndexType(Distance.INDEX_VP_TREE);
+				oClassifier.setResultLimit(RESULT_LIMIT);
+				return oClassifier;
+			}
+
+			case 2:
+			{
+				return new CosineSimilarityMeasure(oFeatures);
+			}
+
+			case 3:
+			{
+				CosineSimilarityMeasure oClassifier = new CosineSimilarityMeasure(oFeatures);
+				oClassifier.setIndexType(CosineSimilarityMeasure.INDEX_HNSW);
+				oClassifier.setResultLimit(RESULT_LIMIT);
+				return oClassifier;
+			}
+
+			case 4:
+			{
+				HammingDistance oClassifier = new HammingDistance(oFeatures);
+				oClassifier.setDistanceType(HammingDistance.LENIENT_DOUBLE);
+				oClassifier.setAllowedError(0.5);
+				return oClassifier;
+			}
+
+			default:
+			{
+				HammingDistance oClassifier = new HammingDistance(oFeatures);
+				oClassifier.setDistanceType(HammingDistance.STRICT_BITWISE);
+				return oClassifier;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether two result sets hold the same results in the same order.
+	 * @param poResultSet the result set
+	 * @param poExpected the expected result set
+	 * @return <code>true</code> if they are the same
+	 */
+	private static boolean same(final ResultSet poResultSet, final ResultSet poExpected)
+	{
+		if(poResultSet == null || poResultSet.size() != poExpected.size())
+		{
+			return false;
+		}
+
+		Vector<Result> oResults = poResultSet.getResultSetVector();
+		Vector<Result> oExpected = poExpected.getResultSetVector();
+
+		for(int i = 0; i < oExpected.size(); i++)
+		{
+			Result oResult = oResults.get(i);
+			Result oExpectedResult = oExpected.get(i);
+
+			if
+			(
+				oResult.getID() != oExpectedResult.getID()
+				|| Double.compare(oResult.getOutcome(), oExpectedResult.getOutcome()) != 0
+				|| String.valueOf(oResult.getDescription()).equals(String.valueOf(oExpectedResult.getDescription())) == false
+			)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Euclidean distance counting the restores of its training set,
+	 * its copies included.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class CountingDistance
+	extends EuclideanDistance
+	{
+		/**
+		 * For serialization versioning.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Number of restores so far.
+		 */
+		static final AtomicInteger soRestores = new AtomicInteger();
+
+		/**
+		 * Constructs the classifier.
+		 * @param poFeatureExtraction FeatureExtraction module reference
+		 */
+		public CountingDistance(IFeatureExtraction poFeatureExtraction)
+		{
+			super(poFeatureExtraction);
+		}
+
+		/**
+		 * Counts the restore.
+		 * @see marf.Classification.Classification#restore()
+		 */
+		public void restore()
+		throws StorageException
+		{
+			soRestores.incrementAndGet();
+			super.restore();
+		}
+	}
+}
+
+// EOF
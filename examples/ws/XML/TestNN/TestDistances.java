@@ -0,0 +1,523 @@
+import java.io.File;
+import java.io.Serializable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+import marf.MARF;
+import marf.Classification.ModelCache;
+import marf.Classification.Distance.BinaryCodes;
+import marf.Classification.Distance.ChebyshevDistance;
+import marf.Classification.Distance.Distance;
+import marf.Classification.Distance.EuclideanDistance;
+import marf.Classification.Distance.HammingDistance;
+import marf.Classification.Distance.MinkowskiDistance;
+import marf.Storage.ModuleParams;
+import marf.Storage.Result;
+import marf.Storage.ResultSet;
+import marf.Storage.StorageManager;
+import marf.math.Algorithms;
+
+
+/**
+ * <p>Tests the early abandoning of the distance classifiers of MARF: the
+ * closest <code>k</code> subjects of a scan abandoning the distances past
+ * the running bound must be exactly the first <code>k</code> of the scan
+ * computing every distance in full, IDs, distances and the order of the
+ * ties by subject alike. The bounded kernels themselves must give the
+ * sums within the bound exactly and only abandon the ones past it.
+ * The same goes for the scans split between the workers of the common
+ * fork/join pool and merged, which is given a few workers even on a
+ * single processor.</p>
+ *
+ * <p>The subjects are drawn from a few distinct vectors of small integers,
+ * so that there are plenty of exact ties, once as they are and once scaled
+ * up so far that raising the bound to the power of the Minkowski factor
+ * rounds. The training sets are kept in a temporary directory.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestDistances
+{
+	/**
+	 * Number of subjects trained on.
+	 */
+	public static final int SUBJECTS = 300;
+
+	/**
+	 * Number of distinct vectors the subjects are drawn from.
+	 */
+	public static final int DISTINCT = 40;
+
+	/**
+	 * Length of the vectors; several times the number of elements the
+	 * bounded kernels add up between the checks against the bound.
+	 */
+	public static final int DIMENSIONS = 48;
+
+	/**
+	 * Number of vectors classified per model and distance.
+	 */
+	public static final int QUERIES = 20;
+
+	/**
+	 * Number of pairs of vectors the kernels are checked on.
+	 */
+	public static final int PAIRS = 2000;
+
+	/**
+	 * Factor of the vectors of the second model.
+	 */
+	public static final double LARGE_SCALE = 1e12;
+
+	/**
+	 * Number of workers of the common fork/join pool asked for.
+	 */
+	public static final int WORKERS = 4;
+
+	/**
+	 * Numbers of the closest subjects to look up; 0 for all.
+	 */
+	private static final int[] LIMITS = {1, 5, 50, 0};
+
+	/**
+	 * Names of the distances checked.
+	 */
+	private static final String[] DISTANCES =
+	{
+		"Euclidean",
+		"Chebyshev",
+		"Minkowski, r = 3",
+		"Minkowski, r = 2.5",
+		"Hamming, lenient",
+		"Hamming, bitwise"
+	};
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		// Before the common pool is created
+		if(System.getProperty("java.util.concurrent.ForkJoinPool.common.parallelism") == null)
+		{
+			System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "" + WORKERS);
+		}
+
+		File oDirectory = null;
+
+		try
+		{
+			Random oRandom = new Random(0);
+
+			oDirectory = File.createTempFile("TestDistances", "");
+			oDirectory.delete();
+			oDirectory.mkdir();
+
+			ModelCache.clear();
+
+			Checks.section("Setup");
+
+			Checks.check("common pool of " + ForkJoinPool.getCommonPoolParallelism() + " workers", ForkJoinPool.getCommonPoolParallelism() >= 2);
+
+			Checks.section("Bounded kernels");
+			testKernels(oRandom);
+
+			Checks.section("Hamming parameters");
+			testHammingParams();
+
+			for(int iModel = 0; iModel < 2; iModel++)
+			{
+				double dScale = iModel == 0 ? 1.0 : LARGE_SCALE;
+
+				MARF.setTrainingSetFilenamePrefix(oDirectory.getPath() + File.separator + "model" + iModel + ".");
+
+				double[][] aadDistinct = new double[DISTINCT][];
+
+				for(int i = 0; i < DISTINCT; i++)
+				{
+					aadDistinct[i] = gridVector(dScale, oRandom);
+				}
+
+				for(int s = 0; s < SUBJECTS; s++)
+				{
+					MARF.setCurrentSubject(s + 1);
+					MARF.setSampleFile("subject" + (s + 1));
+
+					new EuclideanDistance(new GivenFeatures(aadDistinct[oRandom.nextInt(DISTINCT)])).train();
+				}
+
+				// Half of the queries at the trained vectors, tied with all their duplicates
+				double[][] aadQueries = new double[QUERIES][];
+
+				for(int q = 0; q < QUERIES; q++)
+				{
+					aadQueries[q] = q % 2 == 0 ? aadDistinct[oRandom.nextInt(DISTINCT)] : gridVector(dScale, oRandom);
+				}
+
+				for(int d = 0; d < DISTANCES.length; d++)
+				{
+					Checks.section(DISTANCES[d] + (iModel == 0 ? "" : ", scaled by " + LARGE_SCALE));
+					testScan(d, aadQueries);
+				}
+			}
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+		finally
+		{
+			ModelCache.clear();
+
+			if(oDirectory != null)
+			{
+				File[] aoFiles = oDirectory.listFiles();
+
+				for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+				{
+					aoFiles[i].delete();
+				}
+
+				oDirectory.delete();
+			}
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks the bounded kernels against the unbounded ones with the
+	 * bounds at, just below and just above the exact sums, and at zero.
+	 * @param poRandom source of the vectors
+	 */
+	private static void testKernels(Random poRandom)
+	{
+		String[] astrKernels = {"squared Euclidean", "city block", "Minkowski, r = 3", "Minkowski, r = 2.5"};
+
+		for(int k = 0; k < astrKernels.length; k++)
+		{
+			int iMismatches = 0;
+
+			for(int p = 0; p < PAIRS; p++)
+			{
+				double dScale = p % 2 == 0 ? 1.0 : LARGE_SCALE;
+				double[] adA = gridVector(dScale, poRandom);
+				double[] adB = gridVector(dScale, poRandom);
+
+				double dSum = kernel(k, adA, adB, Double.POSITIVE_INFINITY);
+				double[] adBounds = {dSum, Math.nextUp(dSum), Math.nextDown(dSum), 0.0};
+
+				for(int b = 0; b < adBounds.length; b++)
+				{
+					double dBounded = kernel(k, adA, adB, adBounds[b]);
+
+					if(dSum <= adBounds[b] ? Double.compare(dBounded, dSum) != 0 : dBounded <= adBounds[b])
+					{
+						iMismatches++;
+					}
+				}
+			}
+
+			Checks.check(astrKernels[k] + ", mismatches " + iMismatches, iMismatches == 0);
+		}
+	}
+
+	/**
+	 * Checks that the Hamming distance takes its settings and
+	 * the index parameters after them from the module parameters.
+	 */
+	private static void testHammingParams()
+	{
+		GivenFeatures oFeatures = new GivenFeatures(new double[] {1.0});
+
+		HammingDistance oDefault = new HammingDistance(oFeatures);
+
+		Checks.check
+		(
+			"defaults without parameters",
+			oDefault.getDistanceType() == HammingDistance.LENIENT_DOUBLE
+			&& oDefault.getAllowedError() == HammingDistance.DEFAULT_ALLOWED_ERROR
+			&& oDefault.getThresholdType() == BinaryCodes.THRESHOLD_MEDIAN
+			&& oDefault.getIndexType() == Distance.INDEX_NONE
+		);
+
+		HammingDistance oGiven = newHamming
+		(
+			oFeatures,
+			new Serializable[]
+			{
+				Integer.valueOf(HammingDistance.STRICT_BITWISE),
+				Double.valueOf(0.5),
+				Integer.valueOf(BinaryCodes.THRESHOLD_SIGN),
+				Integer.valueOf(Distance.INDEX_NONE),
+				Integer.valueOf(3)
+			}
+		);
+
+		Checks.check("distance type", oGiven.getDistanceType() == HammingDistance.STRICT_BITWISE);
+		Checks.check("allowed error", oGiven.getAllowedError() == 0.5);
+		Checks.check("threshold type", oGiven.getThresholdType() == BinaryCodes.THRESHOLD_SIGN);
+		Checks.check("index parameters after them", oGiven.getIndexType() == Distance.INDEX_NONE && oGiven.getResultLimit() == 3);
+
+		// The distance type is not taken for an index type
+		HammingDistance oLenient = newHamming(oFeatures, new Serializable[] {Integer.valueOf(HammingDistance.LENIENT_DOUBLE)});
+
+		Checks.check
+		(
+			"distance type alone",
+			oLenient.getDistanceType() == HammingDistance.LENIENT_DOUBLE
+			&& oLenient.getIndexType() == Distance.INDEX_NONE
+			&& oLenient.getResultLimit() == 0
+		);
+	}
+
+	/**
+	 * Creates a Hamming distance with the given classification
+	 * parameters after the dump mode.
+	 * @param poFeatures features to classify
+	 * @param paoParams the parameters
+	 * @return new classifier
+	 */
+	private static HammingDistance newHamming(final GivenFeatures poFeatures, final Serializable[] paoParams)
+	{
+		ModuleParams oParams = new ModuleParams();
+		Vector<Serializable> oClassificationParams = new Vector<Serializable>();
+		oClassificationParams.add(Integer.valueOf(StorageManager.DUMP_GZIP_BINARY));
+
+		for(int i = 0; i < paoParams.length; i++)
+		{
+			oClassificationParams.add(paoParams[i]);
+		}
+
+		oParams.setClassificationParams(oClassificationParams);
+
+		ModuleParams oPrevious = MARF.getModuleParams();
+		MARF.setModuleParams(oParams);
+
+		try
+		{
+			return new HammingDistance(poFeatures);
+		}
+		finally
+		{
+			MARF.setModuleParams(oPrevious);
+		}
+	}
+
+	/**
+	 * Computes a bounded kernel of the vectors.
+	 * @param piKernel 0 for the squared Euclidean one, 1 for the city block,
+	 * 2 and 3 for the Minkowski sums of the order 3 and 2.5
+	 * @param padA first vector
+	 * @param padB second vector
+	 * @param pdBound the bound
+	 * @return the sum
+	 */
+	private static double kernel(final int piKernel, final double[] padA, final double[] padB, final double pdBound)
+	{
+		switch(piKernel)
+		{
+			case 0:
+				return Algorithms.Distances.squaredEuclidean(padA, 0, padB, padB.length, pdBound);
+
+			case 1:
+				return Algorithms.Distances.cityBlock(padA, 0, padB, padB.length, pdBound);
+
+			case 2:
+				return Algorithms.Distances.minkowskiSum(padA, 0, padB, padB.length, 3.0, pdBound);
+
+			default:
+				return Algorithms.Distances.minkowskiSum(padA, 0, padB, padB.length, 2.5, pdBound);
+		}
+	}
+
+	/**
+	 * Classifies the queries once keeping all the subjects on the calling
+	 * thread, which never abandons a distance as the bound stays infinite
+	 * until the last one, and for each of the <code>LIMITS</code> closest
+	 * once on the calling thread and once in parallel, and compares the
+	 * results.
+	 * @param piDistance index of the distance in <code>DISTANCES</code>
+	 * @param paadQueries the queries
+	 * @throws Exception if the classification failed
+	 */
+	private static void testScan(final int piDistance, final double[][] paadQueries)
+	throws Exception
+	{
+		int[][] aaiMismatches = new int[2][LIMITS.length];
+		int iTies = 0;
+
+		for(int q = 0; q < paadQueries.length; q++)
+		{
+			Distance oFull = newClassifier(piDistance, paadQueries[q]);
+			oFull.setParallelThreshold(0);
+			oFull.classify();
+
+			Vector<Result> oExpected = oFull.getResultSet().getResultSetVector();
+
+			for(int i = 1; i < oExpected.size(); i++)
+			{
+				if(oExpected.get(i).getOutcome() == oExpected.get(i - 1).getOutcome())
+				{
+					iTies++;
+				}
+			}
+
+			for(int p = 0; p < 2; p++)
+			{
+				for(int l = 0; l < LIMITS.length; l++)
+				{
+					// Every scan split between the workers if in parallel
+					Distance oBounded = newClassifier(piDistance, paadQueries[q]);
+					oBounded.setResultLimit(LIMITS[l]);
+					oBounded.setParallelThreshold(p == 0 ? 0 : 1);
+					oBounded.classify();
+
+					if(same(oBounded.getResultSet(), oExpected, LIMITS[l] == 0 ? oExpected.size() : LIMITS[l]) == false)
+					{
+						aaiMismatches[p][l]++;
+					}
+				}
+			}
+		}
+
+		Checks.check("subjects tied with the one before, " + iTies, iTies > 0);
+
+		for(int p = 0; p < 2; p++)
+		{
+			for(int l = 0; l < LIMITS.length; l++)
+			{
+				Checks.check
+				(
+					(p == 0 ? "serial" : "parallel") + ", "
+					+ (LIMITS[l] == 0 ? "all" : "closest " + LIMITS[l])
+					+ " vs. full scan, mismatches " + aaiMismatches[p][l],
+					aaiMismatches[p][l] == 0
+				);
+			}
+		}
+	}
+
+	/**
+	 * Creates a classifier of those checked.
+	 * @param piDistance index of the distance in <code>DISTANCES</code>
+	 * @param padFeatures features to classify
+	 * @return new classifier
+	 */
+	private static Distance newClassifier(final int piDistance, final double[] padFeatures)
+	{
+		GivenFeatures oFeatures = new GivenFeatures(padFeatures);
+
+		switch(piDistance)
+		{
+			case 0:
+			{
+				return new EuclideanDistance(oFeatures);
+			}
+
+			case 1:
+			{
+				return new ChebyshevDistance(oFeatures);
+			}
+
+			case 2:
+			{
+				return new MinkowskiDistance(oFeatures);
+			}
+
+			case 3:
+			{
+				// The factor is only taken from the module parameters
+				ModuleParams oParams = new ModuleParams();
+				Vector<Serializable> oClassificationParams = new Vector<Serializable>();
+				oClassificationParams.add(Integer.valueOf(StorageManager.DUMP_GZIP_BINARY));
+				oClassificationParams.add(Double.valueOf(2.5));
+				oParams.setClassificationParams(oClassificationParams);
+
+				ModuleParams oPrevious = MARF.getModuleParams();
+				MARF.setModuleParams(oParams);
+
+				try
+				{
+					return new MinkowskiDistance(oFeatures);
+				}
+				finally
+				{
+					MARF.setModuleParams(oPrevious);
+				}
+			}
+
+			case 4:
+			{
+				HammingDistance oClassifier = new HammingDistance(oFeatures);
+				oClassifier.setDistanceType(HammingDistance.LENIENT_DOUBLE);
+				return oClassifier;
+			}
+
+			default:
+			{
+				return newHamming(oFeatures, new Serializable[] {Integer.valueOf(HammingDistance.STRICT_BITWISE)});
+			}
+		}
+	}
+
+	/**
+	 * Tells whether a result set holds the first results of the
+	 * expected ones, with the same IDs and outcomes in the same order.
+	 * @param poResultSet the result set
+	 * @param poExpected the expected results
+	 * @param piCount number of the results
+	 * @return <code>true</code> if they are the same
+	 */
+	private static boolean same(final ResultSet poResultSet, final Vector<Result> poExpected, final int piCount)
+	{
+		if(poResultSet.size() != piCount)
+		{
+			return false;
+		}
+
+		Vector<Result> oResults = poResultSet.getResultSetVector();
+
+		for(int i = 0; i < piCount; i++)
+		{
+			if
+			(
+				oResults.get(i).getID() != poExpected.get(i).getID()
+				|| Double.compare(oResults.get(i).getOutcome(), poExpected.get(i).getOutcome()) != 0
+			)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Creates a random vector of integers from 0 to 3, scaled.
+	 * @param pdScale the factor
+	 * @param poRandom source of the elements
+	 * @return new vector
+	 */
+	private static double[] gridVector(final double pdScale, Random poRandom)
+	{
+		double[] adVector = new double[DIMENSIONS];
+
+		for(int i = 0; i < DIMENSIONS; i++)
+		{
+			adVector[i] = poRandom.nextInt(4) * pdScale;
+		}
+
+		return adVector;
+	}
+}
+
+// EOF
@@ -0,0 +1,462 @@
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+import marf.MARF;
+import marf.FeatureExtraction.FeatureExtraction;
+import marf.FeatureExtraction.FFT.FFT;
+import marf.FeatureExtraction.LPC.LPC;
+import marf.Storage.ModuleParams;
+import marf.math.Algorithms;
+import marf.math.ComplexMatrix;
+import marf.math.FFTPlan;
+
+
+/**
+ * <p>Tests the FFT of MARF against a naive discrete Fourier transform
+ * for the power-of-2, mixed-radix and Bluestein plans, including prime
+ * lengths, the 2D FFT in the calling thread and in a pool, and that the
+ * cached window tables are only handed out as copies. FFT and LPC feature
+ * extraction take the parallel mode from the module parameters.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestFFT
+{
+	/**
+	 * Transform lengths to check beyond 1 to 64: powers of 2,
+	 * 2-3-5-smooth ones and primes.
+	 */
+	private static final int[] LENGTHS =
+	{
+		128, 1024, 4096,
+		90, 360, 1000, 960, 3 * 3 * 5 * 5 * 7 * 2,
+		97, 101, 127, 251, 1009, 4099
+	};
+
+	/**
+	 * Matrix sizes to check the 2D FFT with, rows and columns; the
+	 * last ones are above <code>Algorithms.FFT.FFT2_PARALLEL_THRESHOLD</code>.
+	 */
+	private static final int[][] SIZES =
+	{
+		{1, 1}, {1, 8}, {8, 1}, {3, 5}, {8, 8}, {7, 13}, {16, 30},
+		{64, 65}, {97, 31}, {128, 128}
+	};
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("1D FFT vs. naive DFT");
+
+			for(int iLength = 1; iLength <= 64; iLength++)
+			{
+				testFFT(iLength, oRandom);
+			}
+
+			for(int i = 0; i < LENGTHS.length; i++)
+			{
+				testFFT(LENGTHS[i], oRandom);
+			}
+
+			Checks.section("2D FFT vs. naive DFT");
+
+			ForkJoinPool oPool = new ForkJoinPool(4);
+
+			for(int i = 0; i < SIZES.length; i++)
+			{
+				testFFT2(SIZES[i][0], SIZES[i][1], oRandom, oPool);
+			}
+
+			oPool.shutdown();
+
+			// Nothing may be forked into the common pool without a pool given
+			ComplexMatrix oMatrix = randomMatrix(128, 128, oRandom);
+			long lSteals = ForkJoinPool.commonPool().getStealCount();
+			long lQueued = ForkJoinPool.commonPool().getQueuedTaskCount();
+
+			Algorithms.FFT.doFFT2(oMatrix, oMatrix, 1, null);
+
+			Checks.check
+			(
+				"no pool keeps to the calling thread",
+				ForkJoinPool.commonPool().getStealCount() == lSteals
+				&& ForkJoinPool.commonPool().getQueuedTaskCount() == lQueued
+			);
+
+			Checks.section("Plans");
+
+			Checks.check
+			(
+				"same plan for same length and direction",
+				Algorithms.FFT.getPlan(360, 1) == Algorithms.FFT.getPlan(360, 1)
+				&& Algorithms.FFT.getPlan(360, 1) != Algorithms.FFT.getPlan(360, -1)
+			);
+
+			FFTPlan.clearCache();
+
+			Checks.check("plan after clearing the cache", Algorithms.FFT.getPlan(97, -1).getLength() == 97);
+
+			Checks.section("Window tables");
+
+			double[] adTable = Algorithms.Windows.getTable(Algorithms.Windows.HAMMING, 64);
+			double[] adExpected = adTable.clone();
+			Arrays.fill(adTable, 0.0);
+
+			Checks.check
+			(
+				"table not changed through a copy handed out",
+				Arrays.equals(Algorithms.Windows.getTable(Algorithms.Windows.HAMMING, 64), adExpected)
+			);
+
+			double[] adData = new double[64];
+			Arrays.fill(adData, 1.0);
+			Algorithms.Hamming.hamming(adData);
+
+			Checks.check("Hamming window applied", Arrays.equals(adData, adExpected));
+
+			Checks.section("Parallel feature extraction");
+			testParallel(oRandom);
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks that FFT and LPC take the parallel mode from their feature
+	 * extraction parameters and extract the same features in it as serially.
+	 * @param poRandom source of the sample
+	 * @throws Exception if the extraction failed
+	 */
+	private static void testParallel(Random poRandom)
+	throws Exception
+	{
+		double[] adSample = Checks.randomVector(64 * 1024, poRandom);
+
+		Vector<Serializable> oFFTParams = new Vector<Serializable>();
+		oFFTParams.add(Integer.valueOf(128));
+		oFFTParams.add(Boolean.TRUE);
+
+		Vector<Serializable> oLPCParams = new Vector<Serializable>();
+		oLPCParams.add(Integer.valueOf(20));
+		oLPCParams.add(Integer.valueOf(128));
+
+		for(int m = 0; m < 2; m++)
+		{
+			Vector<Serializable> oParams = m == 0 ? oFFTParams : oLPCParams;
+			FeatureExtraction[] aoModules = new FeatureExtraction[2];
+
+			ModuleParams oPrevious = MARF.getModuleParams();
+
+			try
+			{
+				for(int p = 0; p < 2; p++)
+				{
+					ModuleParams oModuleParams = new ModuleParams();
+					Vector<Serializable> oModuleVector = new Vector<Serializable>(oParams);
+					oModuleVector.add(Boolean.valueOf(p == 1));
+					oModuleParams.setFeatureExtractionParams(oModuleVector);
+					MARF.setModuleParams(oModuleParams);
+
+					aoModules[p] = m == 0 ? new FFT(null) : new LPC(null);
+					aoModules[p].setParallelThreshold(1);
+					aoModules[p].extractFeatures(adSample);
+				}
+			}
+			finally
+			{
+				MARF.setModuleParams(oPrevious);
+			}
+
+			String strModule = m == 0 ? "FFT" : "LPC";
+
+			Checks.check(strModule + ", parallel mode from the parameters", aoModules[0].isParallel() == false && aoModules[1].isParallel());
+			Checks.check(strModule + ", same features as serially", Arrays.equals(aoModules[0].getFeaturesArray(), aoModules[1].getFeaturesArray()));
+		}
+	}
+
+	/**
+	 * Checks both directions of a transform of a random vector against
+	 * the naive DFT, and that the inverse gives back the vector scaled
+	 * by the length. The transform is also done in place.
+	 * @param piLength transform length
+	 * @param poRandom source of the vector
+	 * @throws Exception if the transform failed
+	 */
+	private static void testFFT(final int piLength, Random poRandom)
+	throws Exception
+	{
+		double[] adReal = Checks.randomVector(piLength, poRandom);
+		double[] adImag = Checks.randomVector(piLength, poRandom);
+
+		double dError = 0.0;
+
+		for(int iDirection = -1; iDirection <= 1; iDirection += 2)
+		{
+			double[] adExpectedReal = new double[piLength];
+			double[] adExpectedImag = new double[piLength];
+			dft(adReal, adImag, adExpectedReal, adExpectedImag, iDirection);
+
+			double[] adOutputReal = new double[piLength];
+			double[] adOutputImag = new double[piLength];
+			Algorithms.FFT.doFFT(adReal, adImag, adOutputReal, adOutputImag, iDirection);
+
+			dError = Math.max(dError, error(adExpectedReal, adExpectedImag, adOutputReal, adOutputImag));
+
+			// In place
+			double[] adInPlaceReal = adReal.clone();
+			double[] adInPlaceImag = adImag.clone();
+			Algorithms.FFT.doFFT(adInPlaceReal, adInPlaceImag, adInPlaceReal, adInPlaceImag, iDirection);
+
+			dError = Math.max(dError, error(adExpectedReal, adExpectedImag, adInPlaceReal, adInPlaceImag));
+		}
+
+		// Round trip
+		double[] adForwardReal = new double[piLength];
+		double[] adForwardImag = new double[piLength];
+		Algorithms.FFT.doFFT(adReal, adImag, adForwardReal, adForwardImag, 1);
+
+		double[] adBackReal = new double[piLength];
+		double[] adBackImag = new double[piLength];
+		Algorithms.FFT.doFFT(adForwardReal, adForwardImag, adBackReal, adBackImag, -1);
+
+		for(int i = 0; i < piLength; i++)
+		{
+			adBackReal[i] /= piLength;
+			adBackImag[i] /= piLength;
+		}
+
+		dError = Math.max(dError, error(adReal, adImag, adBackReal, adBackImag));
+
+		Checks.check("length " + piLength + ", error " + dError, dError <= Checks.TOLERANCE);
+	}
+
+	/**
+	 * Checks the 2D FFT of a random matrix in both directions against
+	 * the naive DFT of the columns and then of the rows, in the calling
+	 * thread, in the pool, as chosen by the default, and in place.
+	 * @param piRows number of rows
+	 * @param piCols number of columns
+	 * @param poRandom source of the matrix
+	 * @param poPool pool to transform in
+	 * @throws Exception if the transform failed
+	 */
+	private static void testFFT2(final int piRows, final int piCols, Random poRandom, ForkJoinPool poPool)
+	throws Exception
+	{
+		ComplexMatrix oInput = randomMatrix(piRows, piCols, poRandom);
+
+		double[] adInputReal = oInput.getRealMatrixArray().clone();
+		double[] adInputImag = oInput.getImaginaryMatrixArray().clone();
+
+		double dError = 0.0;
+
+		for(int iDirection = -1; iDirection <= 1; iDirection += 2)
+		{
+			double[] adExpectedReal = new double[piRows * piCols];
+			double[] adExpectedImag = new double[piRows * piCols];
+			dft2(adInputReal, adInputImag, adExpectedReal, adExpectedImag, piRows, piCols, iDirection);
+
+			for(int iMode = 0; iMode < 4; iMode++)
+			{
+				ComplexMatrix oOutput = new ComplexMatrix(piRows, piCols);
+
+				switch(iMode)
+				{
+					case 0:
+					{
+						Algorithms.FFT.doFFT2(oInput, oOutput, iDirection, null);
+						break;
+					}
+
+					case 1:
+					{
+						Algorithms.FFT.doFFT2(oInput, oOutput, iDirection, poPool);
+						break;
+					}
+
+					case 2:
+					{
+						Algorithms.FFT.doFFT2(oInput, oOutput, iDirection);
+						break;
+					}
+
+					default:
+					{
+						oOutput = new ComplexMatrix(oInput);
+						Algorithms.FFT.doFFT2(oOutput, oOutput, iDirection, poPool);
+						break;
+					}
+				}
+
+				dError = Math.max
+				(
+					dError,
+					error(adExpectedReal, adExpectedImag, oOutput.getRealMatrixArray(), oOutput.getImaginaryMatrixArray())
+				);
+			}
+		}
+
+		boolean bUntouched =
+			Arrays.equals(adInputReal, oInput.getRealMatrixArray())
+			&& Arrays.equals(adInputImag, oInput.getImaginaryMatrixArray());
+
+		Checks.check(piRows + "x" + piCols + ", error " + dError, dError <= Checks.TOLERANCE && bUntouched);
+	}
+
+	/**
+	 * Creates a matrix of random complex numbers.
+	 * @param piRows number of rows
+	 * @param piCols number of columns
+	 * @param poRandom source of the numbers
+	 * @return new matrix
+	 */
+	private static ComplexMatrix randomMatrix(final int piRows, final int piCols, Random poRandom)
+	{
+		ComplexMatrix oMatrix = new ComplexMatrix(piRows, piCols);
+
+		double[] adReal = oMatrix.getRealMatrixArray();
+		double[] adImag = oMatrix.getImaginaryMatrixArray();
+
+		System.arraycopy(Checks.randomVector(adReal.length, poRandom), 0, adReal, 0, adReal.length);
+		System.arraycopy(Checks.randomVector(adImag.length, poRandom), 0, adImag, 0, adImag.length);
+
+		return oMatrix;
+	}
+
+	/**
+	 * Naive 2D DFT of a row-major matrix: the DFT of every column,
+	 * and then of every row of the result.
+	 * @param padReal real part of the input
+	 * @param padImag imaginary part of the input
+	 * @param padOutputReal real part of the output
+	 * @param padOutputImag imaginary part of the output
+	 * @param piRows number of rows
+	 * @param piCols number of columns
+	 * @param piDirection the direction, 1 or -1
+	 */
+	public static void dft2
+	(
+		final double[] padReal,
+		final double[] padImag,
+		double[] padOutputReal,
+		double[] padOutputImag,
+		final int piRows,
+		final int piCols,
+		final int piDirection
+	)
+	{
+		double[] adReal = new double[piRows];
+		double[] adImag = new double[piRows];
+		double[] adLineReal = new double[Math.max(piRows, piCols)];
+		double[] adLineImag = new double[Math.max(piRows, piCols)];
+
+		for(int j = 0; j < piCols; j++)
+		{
+			for(int i = 0; i < piRows; i++)
+			{
+				adReal[i] = padReal[i * piCols + j];
+				adImag[i] = padImag[i * piCols + j];
+			}
+
+			dft(adReal, adImag, adLineReal, adLineImag, piDirection);
+
+			for(int i = 0; i < piRows; i++)
+			{
+				padOutputReal[i * piCols + j] = adLineReal[i];
+				padOutputImag[i * piCols + j] = adLineImag[i];
+			}
+		}
+
+		adReal = new double[piCols];
+		adImag = new double[piCols];
+
+		for(int i = 0; i < piRows; i++)
+		{
+			System.arraycopy(padOutputReal, i * piCols, adReal, 0, piCols);
+			System.arraycopy(padOutputImag, i * piCols, adImag, 0, piCols);
+
+			dft(adReal, adImag, adLineReal, adLineImag, piDirection);
+
+			System.arraycopy(adLineReal, 0, padOutputReal, i * piCols, piCols);
+			System.arraycopy(adLineImag, 0, padOutputImag, i * piCols, piCols);
+		}
+	}
+
+	/**
+	 * Naive DFT, <code>X[k] = sum x[j] exp(2 pi i d j k / n)</code>.
+	 * @param padReal real part of the input
+	 * @param padImag imaginary part of the input
+	 * @param padOutputReal real part of the output
+	 * @param padOutputImag imaginary part of the output
+	 * @param piDirection the direction <code>d</code>, 1 or -1
+	 */
+	public static void dft(final double[] padReal, final double[] padImag, double[] padOutputReal, double[] padOutputImag, final int piDirection)
+	{
+		int n = padReal.length;
+
+		for(int k = 0; k < n; k++)
+		{
+			double dReal = 0.0;
+			double dImag = 0.0;
+
+			for(int j = 0; j < n; j++)
+			{
+				// Reduced first so that the angle stays small and exact
+				double dAngle = piDirection * 2.0 * Math.PI * ((long)j * k % n) / n;
+				double dCos = Math.cos(dAngle);
+				double dSin = Math.sin(dAngle);
+
+				dReal += padReal[j] * dCos - padImag[j] * dSin;
+				dImag += padReal[j] * dSin + padImag[j] * dCos;
+			}
+
+			padOutputReal[k] = dReal;
+			padOutputImag[k] = dImag;
+		}
+	}
+
+	/**
+	 * Computes the largest difference between two complex vectors
+	 * relative to the largest magnitude of the expected one.
+	 * @param padExpectedReal real part of the expected vector
+	 * @param padExpectedImag imaginary part of the expected vector
+	 * @param padReal real part of the vector
+	 * @param padImag imaginary part of the vector
+	 * @return the relative error
+	 */
+	public static double error(final double[] padExpectedReal, final double[] padExpectedImag, final double[] padReal, final double[] padImag)
+	{
+		double dMagnitude = 1.0;
+		double dError = 0.0;
+
+		for(int i = 0; i < padExpectedReal.length; i++)
+		{
+			dMagnitude = Math.max(dMagnitude, Math.hypot(padExpectedReal[i], padExpectedImag[i]));
+			dError = Math.max(dError, Math.hypot(padExpectedReal[i] - padReal[i], padExpectedImag[i] - padImag[i]));
+		}
+
+		return dError / dMagnitude;
+	}
+}
+
+// EOF
@@ -0,0 +1,430 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.Random;
+
+import marf.Classification.Distance.ChebyshevDistance;
+import marf.Classification.Distance.Distance;
+import marf.Classification.Distance.EuclideanDistance;
+import marf.Classification.Distance.MinkowskiDistance;
+import marf.Classification.Distance.VPTreeIndex;
+import marf.Classification.Similarity.HNSWIndex;
+import marf.Storage.TrainingMatrix;
+import marf.util.TopKHeap;
+
+
+/**
+ * <p>Tests the indices of the nearest subjects of MARF: the vantage-point
+ * tree of the metric distances must find exactly the subjects the linear
+ * scan does, in the same order, ties included, and the HNSW graph of
+ * the cosine similarity must find nearly all of the most similar ones
+ * for a fixed seed, also after the model changed.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestIndex
+{
+	/**
+	 * Number of subjects in the models.
+	 */
+	public static final int SUBJECTS = 5000;
+
+	/**
+	 * Number of queries per model and distance.
+	 */
+	public static final int QUERIES = 30;
+
+	/**
+	 * Numbers of the closest subjects to look up.
+	 */
+	private static final int[] LIMITS = {1, 5, 50, SUBJECTS};
+
+	/**
+	 * Number of the most similar subjects the HNSW recall is measured on.
+	 */
+	public static final int RECALL_LIMIT = 10;
+
+	/**
+	 * Least share of the most similar subjects the HNSW graph must find.
+	 */
+	public static final double MIN_RECALL = 0.95;
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("VP-tree vs. linear scan");
+
+			Distance[] aoDistances =
+			{
+				new EuclideanDistance(null),
+				new ChebyshevDistance(null),
+				new MinkowskiDistance(null)
+			};
+
+			for(int iGrid = 0; iGrid < 2; iGrid++)
+			{
+				// A small grid gives plenty of ties and duplicate subjects
+				boolean bGrid = iGrid == 0;
+
+				TrainingMatrix oModel = randomModel(SUBJECTS, bGrid ? 6 : 10, bGrid, oRandom);
+
+				for(int i = 0; i < aoDistances.length; i++)
+				{
+					testVPTree(oModel, aoDistances[i], bGrid, oRandom);
+				}
+			}
+
+			Checks.section("HNSW vs. linear scan");
+
+			testHNSW(oRandom);
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks the closest subjects found in the tree against the ones
+	 * of the linear scan, closest first and ties by row.
+	 * @param poModel the model
+	 * @param poDistance the metric distance
+	 * @param pbGrid whether the model's features are small integers
+	 * @param poRandom source of the queries
+	 */
+	private static void testVPTree(final TrainingMatrix poModel, final Distance poDistance, final boolean pbGrid, Random poRandom)
+	{
+		VPTreeIndex oIndex = VPTreeIndex.build(poModel, poDistance);
+
+		int iMismatches = 0;
+		long lVisited = 0;
+
+		for(int q = 0; q < QUERIES; q++)
+		{
+			double[] adQuery = randomVector(poModel.getDimensions(), pbGrid, poRandom);
+
+			Integer[] aoExpected = scan(poModel, poDistance, adQuery);
+
+			for(int l = 0; l < LIMITS.length; l++)
+			{
+				TopKHeap oClosest = new TopKHeap(LIMITS[l]);
+				lVisited += oIndex.search(poModel, poDistance, adQuery, oClosest);
+
+				int iCount = oClosest.sort();
+
+				boolean bSame = iCount == Math.min(LIMITS[l], poModel.getRows());
+
+				for(int i = 0; bSame && i < iCount; i++)
+				{
+					bSame = oClosest.getIndex(i) == aoExpected[i].intValue();
+				}
+
+				if(bSame == false)
+				{
+					iMismatches++;
+				}
+			}
+		}
+
+		Checks.check
+		(
+			(pbGrid ? "grid " : "gaussian ") + poDistance.getClass().getName()
+				+ ", mismatches " + iMismatches
+				+ ", distances per query " + (lVisited / (QUERIES * LIMITS.length)) + " of " + poModel.getRows(),
+			iMismatches == 0
+		);
+	}
+
+	/**
+	 * Checks the recall of the HNSW graph built over clustered subjects,
+	 * then brought in line with a model where some subjects are gone,
+	 * some changed and some new, and that a copy of the graph finds the
+	 * same subjects.
+	 * @param poRandom source of the subjects and queries
+	 */
+	private static void testHNSW(Random poRandom)
+	{
+		int iDimensions = 32;
+
+		double[][] aadCenters = new double[50][];
+
+		for(int i = 0; i < aadCenters.length; i++)
+		{
+			aadCenters[i] = Checks.randomVector(iDimensions, poRandom);
+		}
+
+		TrainingMatrix oModel = new TrainingMatrix(SUBJECTS, iDimensions);
+
+		for(int i = 0; i < SUBJECTS; i++)
+		{
+			oModel.setRow(i, i + 1, clusteredVector(aadCenters, poRandom));
+		}
+
+		HNSWIndex oIndex = new HNSWIndex(iDimensions);
+		oIndex.update(oModel);
+
+		Checks.check("graph matches its model", oIndex.matches(oModel) && oIndex.size() == SUBJECTS);
+
+		double[][] aadQueries = new double[QUERIES * 4][];
+
+		for(int i = 0; i < aadQueries.length; i++)
+		{
+			aadQueries[i] = clusteredVector(aadCenters, poRandom);
+		}
+
+		double dRecall = recall(oIndex, oModel, aadQueries);
+		Checks.check("recall " + dRecall, dRecall >= MIN_RECALL);
+
+		// The first tenth gone, the next one changed, and as many new
+		int iChanged = SUBJECTS / 10;
+		TrainingMatrix oNewModel = new TrainingMatrix(SUBJECTS, iDimensions);
+
+		for(int i = 0; i < SUBJECTS; i++)
+		{
+			int iRow = i + iChanged;
+
+			if(iRow < SUBJECTS)
+			{
+				oNewModel.setRow
+				(
+					i,
+					oModel.getSubjectID(iRow),
+					iRow < 2 * iChanged ? clusteredVector(aadCenters, poRandom) : oModel.getRow(iRow)
+				);
+			}
+			else
+			{
+				oNewModel.setRow(i, SUBJECTS + iRow, clusteredVector(aadCenters, poRandom));
+			}
+		}
+
+		Checks.check("graph no longer matches a changed model", oIndex.matches(oNewModel) == false);
+
+		oIndex.update(oNewModel);
+
+		Checks.check("graph matches the changed model", oIndex.matches(oNewModel) && oIndex.size() == SUBJECTS);
+
+		dRecall = recall(oIndex, oNewModel, aadQueries);
+		Checks.check("recall after the change " + dRecall, dRecall >= MIN_RECALL);
+
+		// A copy finds the same
+		HNSWIndex oCopy = (HNSWIndex)oIndex.clone();
+		boolean bSame = true;
+
+		for(int q = 0; q < aadQueries.length && bSame; q++)
+		{
+			TopKHeap oClosest = new TopKHeap(RECALL_LIMIT);
+			TopKHeap oCopyClosest = new TopKHeap(RECALL_LIMIT);
+
+			oIndex.search(aadQueries[q], HNSWIndex.DEFAULT_SEARCH_BREADTH, oClosest);
+			oCopy.search(aadQueries[q], HNSWIndex.DEFAULT_SEARCH_BREADTH, oCopyClosest);
+
+			int iCount = oClosest.sort();
+			bSame = iCount == oCopyClosest.sort();
+
+			for(int i = 0; i < iCount && bSame; i++)
+			{
+				bSame =
+					oIndex.getSubjectIDs()[oClosest.getIndex(i)] == oCopy.getSubjectIDs()[oCopyClosest.getIndex(i)]
+					&& oClosest.getValue(i) == oCopyClosest.getValue(i);
+			}
+		}
+
+		Checks.check("copy of the graph finds the same", bSame);
+	}
+
+	/**
+	 * Measures the share of the <code>RECALL_LIMIT</code> most similar
+	 * subjects of the linear scan the graph finds. The subjects not in
+	 * the model must never be found.
+	 * @param poIndex the graph
+	 * @param poModel the model the graph is in line with
+	 * @param paadQueries the queries
+	 * @return the recall; 0 if a subject not in the model was found
+	 */
+	private static double recall(final HNSWIndex poIndex, final TrainingMatrix poModel, final double[][] paadQueries)
+	{
+		Hashtable<Integer, Integer> oRows = new Hashtable<Integer, Integer>();
+
+		for(int i = 0; i < poModel.getRows(); i++)
+		{
+			oRows.put(poModel.getSubjectID(i), i);
+		}
+
+		int iFound = 0;
+
+		for(int q = 0; q < paadQueries.length; q++)
+		{
+			TopKHeap oExpected = new TopKHeap(RECALL_LIMIT);
+
+			for(int i = 0; i < poModel.getRows(); i++)
+			{
+				oExpected.offer(-cosine(poModel.getRow(i), paadQueries[q]), i);
+			}
+
+			TopKHeap oClosest = new TopKHeap(RECALL_LIMIT);
+			poIndex.search(paadQueries[q], HNSWIndex.DEFAULT_SEARCH_BREADTH, oClosest);
+
+			boolean[] abExpected = new boolean[poModel.getRows()];
+
+			for(int i = 0; i < oExpected.size(); i++)
+			{
+				abExpected[oExpected.getIndex(i)] = true;
+			}
+
+			for(int i = 0; i < oClosest.size(); i++)
+			{
+				Integer oRow = oRows.get(poIndex.getSubjectIDs()[oClosest.getIndex(i)]);
+
+				if(oRow == null)
+				{
+					return 0.0;
+				}
+
+				if(abExpected[oRow.intValue()])
+				{
+					iFound++;
+				}
+			}
+		}
+
+		return (double)iFound / (paadQueries.length * RECALL_LIMIT);
+	}
+
+	/**
+	 * Computes the cosine of the angle between two vectors.
+	 * @param padVector1 first vector
+	 * @param padVector2 second vector
+	 * @return the cosine
+	 */
+	private static double cosine(final double[] padVector1, final double[] padVector2)
+	{
+		double dProduct = 0.0;
+		double dLength1 = 0.0;
+		double dLength2 = 0.0;
+
+		for(int i = 0; i < padVector1.length; i++)
+		{
+			dProduct += padVector1[i] * padVector2[i];
+			dLength1 += padVector1[i] * padVector1[i];
+			dLength2 += padVector2[i] * padVector2[i];
+		}
+
+		return dProduct / Math.sqrt(dLength1 * dLength2);
+	}
+
+	/**
+	 * Creates a random vector around one of the centers.
+	 * @param paadCenters the centers
+	 * @param poRandom source of the vector
+	 * @return new vector
+	 */
+	private static double[] clusteredVector(final double[][] paadCenters, Random poRandom)
+	{
+		double[] adCenter = paadCenters[poRandom.nextInt(paadCenters.length)];
+		double[] adVector = new double[adCenter.length];
+
+		for(int i = 0; i < adVector.length; i++)
+		{
+			adVector[i] = adCenter[i] + poRandom.nextGaussian();
+		}
+
+		return adVector;
+	}
+
+	/**
+	 * Orders all the rows of the model by their distance to the
+	 * query, and the ones at the same distance by row.
+	 * @param poModel the model
+	 * @param poDistance the distance
+	 * @param padQuery the query
+	 * @return the rows, closest first
+	 */
+	private static Integer[] scan(final TrainingMatrix poModel, final Distance poDistance, final double[] padQuery)
+	{
+		final double[] adDistances = new double[poModel.getRows()];
+		Integer[] aoRows = new Integer[poModel.getRows()];
+
+		for(int i = 0; i < aoRows.length; i++)
+		{
+			adDistances[i] = poDistance.distance(poModel.getRow(i), padQuery);
+			aoRows[i] = Integer.valueOf(i);
+		}
+
+		Arrays.sort
+		(
+			aoRows,
+			new Comparator<Integer>()
+			{
+				public int compare(Integer poRow1, Integer poRow2)
+				{
+					int iOrder = Double.compare(adDistances[poRow1.intValue()], adDistances[poRow2.intValue()]);
+					return iOrder != 0 ? iOrder : poRow1.compareTo(poRow2);
+				}
+			}
+		);
+
+		return aoRows;
+	}
+
+	/**
+	 * Creates a model of random rows, one subject per row.
+	 * @param piRows number of rows
+	 * @param piDimensions length of the rows
+	 * @param pbGrid whether the features are to be small integers
+	 * @param poRandom source of the features
+	 * @return new model
+	 */
+	private static TrainingMatrix randomModel(final int piRows, final int piDimensions, final boolean pbGrid, Random poRandom)
+	{
+		TrainingMatrix oModel = new TrainingMatrix(piRows, piDimensions);
+
+		for(int i = 0; i < piRows; i++)
+		{
+			oModel.setRow(i, i + 1, randomVector(piDimensions, pbGrid, poRandom));
+		}
+
+		return oModel;
+	}
+
+	/**
+	 * Creates a random vector.
+	 * @param piDimensions length of the vector
+	 * @param pbGrid whether the elements are to be integers from 0 to 3 or Gaussian
+	 * @param poRandom source of the elements
+	 * @return new vector
+	 */
+	private static double[] randomVector(final int piDimensions, final boolean pbGrid, Random poRandom)
+	{
+		if(pbGrid == false)
+		{
+			return Checks.randomVector(piDimensions, poRandom);
+		}
+
+		double[] adVector = new double[piDimensions];
+
+		for(int i = 0; i < piDimensions; i++)
+		{
+			adVector[i] = poRandom.nextInt(4);
+		}
+
+		return adVector;
+	}
+}
+
+// EOF
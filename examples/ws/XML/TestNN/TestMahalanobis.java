@@ -0,0 +1,660 @@
+import java.io.File;
+import java.util.Random;
+
+import marf.MARF;
+import marf.Classification.ModelCache;
+import marf.Classification.Distance.CovarianceEstimate;
+import marf.Classification.Distance.MahalanobisDistance;
+import marf.math.Matrix;
+
+
+/**
+ * <p>Tests the Mahalanobis distance of MARF: the covariance learned while
+ * training against the pooled within-subject sample covariance computed
+ * directly from the vectors, full, diagonal and shrunk, and the distances
+ * against <code>(x - m)' * C^-1 * (x - m)</code> solved by Gaussian
+ * elimination, including a singular covariance made positive-definite
+ * by the ridge and the identity used before there is any. The factor is
+ * shared by the classifiers of the same training set and covariance
+ * type.</p>
+ *
+ * <p>The training sets and the covariance estimates are kept in
+ * a temporary directory, and every classifier restores the estimate
+ * stored there.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestMahalanobis
+{
+	/**
+	 * Number of subjects trained on.
+	 */
+	public static final int SUBJECTS = 5;
+
+	/**
+	 * Number of vectors of each subject.
+	 */
+	public static final int VECTORS = 6;
+
+	/**
+	 * Length of the vectors.
+	 */
+	public static final int DIMENSIONS = 4;
+
+	/**
+	 * Number of random vectors to classify for each covariance type.
+	 */
+	public static final int PROBES = 10;
+
+	/**
+	 * Relative ridge <code>MahalanobisDistance</code> adds first to the
+	 * diagonal of a covariance matrix that is not positive-definite.
+	 */
+	public static final double RIDGE = 1e-9;
+
+	/**
+	 * Value of the feature that never varies in the singular case.
+	 */
+	private static final double CONSTANT = 2.0;
+
+	/**
+	 * Covariance types to check.
+	 */
+	private static final int[] TYPES =
+	{
+		MahalanobisDistance.COVARIANCE_FULL,
+		MahalanobisDistance.COVARIANCE_DIAGONAL,
+		MahalanobisDistance.COVARIANCE_SHRINKAGE
+	};
+
+	/**
+	 * Names of the covariance types to check.
+	 */
+	private static final String[] TYPE_NAMES = {"full", "diagonal", "shrinkage"};
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		File oDirectory = null;
+
+		try
+		{
+			Random oRandom = new Random(0);
+
+			oDirectory = File.createTempFile("TestMahalanobis", "");
+			oDirectory.delete();
+			oDirectory.mkdir();
+
+			MARF.setTrainingSetFilenamePrefix(oDirectory.getPath() + File.separator);
+			ModelCache.clear();
+
+			Checks.section("Covariance estimate");
+
+			CovarianceEstimate oEstimate = new CovarianceEstimate();
+
+			Checks.check("first vector of a subject adds nothing", oEstimate.add(1, new double[] {1, 2}, new double[] {1, 2}, 1) == false);
+			Checks.check("second vector adds a degree of freedom", oEstimate.add(1, new double[] {3, 2}, new double[] {2, 2}, 2) && oEstimate.getDegreesOfFreedom() == 1);
+			Checks.check("vector not taken into the mean adds nothing", oEstimate.add(1, new double[] {5, 2}, new double[] {2, 2}, 2) == false);
+			Checks.check("vector of another length starts anew", oEstimate.add(1, new double[] {1, 2, 3}, new double[] {1, 2, 3}, 3) && oEstimate.getDimensions() == 3 && oEstimate.getDegreesOfFreedom() == 1);
+
+			// Before any subject has two vectors the identity is used
+			double[][][] aaadIdentity = trainSubjects(oRandom, DIMENSIONS - 1, 1, false);
+			double[] adProbe = Checks.randomVector(DIMENSIONS - 1, oRandom);
+
+			MahalanobisDistance oClassifier = classify(adProbe, MahalanobisDistance.COVARIANCE_FULL);
+			double dError = 0.0;
+
+			for(int s = 0; s < SUBJECTS; s++)
+			{
+				double dEuclidean = Math.sqrt(quadraticForm(identity(DIMENSIONS - 1), difference(adProbe, aaadIdentity[s][0])));
+				dError = Math.max(dError, Checks.relativeError(oClassifier.distance(adProbe, aaadIdentity[s][0]), dEuclidean));
+			}
+
+			Checks.check("one vector per subject, identity, error " + dError, oClassifier.getCovariance() == null && dError <= Checks.TOLERANCE);
+
+			double[][][] aaadVectors = trainSubjects(oRandom, DIMENSIONS, VECTORS, false);
+			double[][] aadCovariance = sampleCovariance(aaadVectors);
+
+			Checks.check("estimate stored next to the training set", countCovarianceFiles(oDirectory) == 2);
+
+			for(int t = 0; t < TYPES.length; t++)
+			{
+				Checks.section(TYPE_NAMES[t] + " covariance");
+
+				double[][] aadExpected = expectedCovariance(aadCovariance, TYPES[t]);
+				testDistances(aaadVectors, aadExpected, aadExpected, TYPES[t], oRandom);
+			}
+
+			Checks.section("Cached factor");
+
+			Matrix oCovariance = classify(aaadVectors[0][0], MahalanobisDistance.COVARIANCE_FULL).getCovariance();
+
+			Checks.check
+			(
+				"covariance matrix factored once for the classifiers",
+				oCovariance != null
+				&& classify(aaadVectors[1][0], MahalanobisDistance.COVARIANCE_FULL).getCovariance() == oCovariance
+			);
+
+			Checks.check
+			(
+				"factored anew for another covariance type",
+				classify(aaadVectors[0][0], MahalanobisDistance.COVARIANCE_DIAGONAL).getCovariance() != oCovariance
+			);
+
+			// A feature that never varies makes the sample covariance singular
+			Checks.section("Singular covariance");
+
+			double[][][] aaadSingular = trainSubjects(oRandom, DIMENSIONS + 1, VECTORS, true);
+			double[][] aadSingular = sampleCovariance(aaadSingular);
+
+			Checks.check("constant feature, zero variance", aadSingular[DIMENSIONS][DIMENSIONS] == 0.0);
+
+			for(int t = 0; t < TYPES.length; t++)
+			{
+				double[][] aadExpected = expectedCovariance(aadSingular, TYPES[t]);
+				double[][] aadRidged = copy(aadExpected);
+
+				if(TYPES[t] != MahalanobisDistance.COVARIANCE_SHRINKAGE)
+				{
+					double dRidge = RIDGE * trace(aadExpected) / aadExpected.length;
+
+					for(int i = 0; i < aadRidged.length; i++)
+					{
+						aadRidged[i][i] = TYPES[t] == MahalanobisDistance.COVARIANCE_FULL
+							? aadRidged[i][i] + dRidge
+							: Math.max(aadRidged[i][i], dRidge);
+					}
+				}
+
+				Checks.section(TYPE_NAMES[t] + " singular covariance");
+				testDistances(aaadSingular, aadExpected, aadRidged, TYPES[t], oRandom);
+			}
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+		finally
+		{
+			ModelCache.clear();
+
+			if(oDirectory != null)
+			{
+				File[] aoFiles = oDirectory.listFiles();
+
+				for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+				{
+					aoFiles[i].delete();
+				}
+
+				oDirectory.delete();
+			}
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks the covariance matrix a classifier learned and its distances
+	 * from random vectors to the subjects' means, and that the closest
+	 * subject is found.
+	 * @param paaadVectors vectors trained on by subject
+	 * @param paadExpected covariance matrix expected
+	 * @param paadRidged covariance matrix the distances are expected by, made positive-definite
+	 * @param piType covariance type
+	 * @param poRandom source of the vectors to classify
+	 * @throws Exception if the classification failed
+	 */
+	private static void testDistances
+	(
+		final double[][][] paaadVectors,
+		final double[][] paadExpected,
+		final double[][] paadRidged,
+		final int piType,
+		Random poRandom
+	)
+	throws Exception
+	{
+		int iDimensions = paadExpected.length;
+		double[][] aadMeans = new double[SUBJECTS][];
+
+		for(int s = 0; s < SUBJECTS; s++)
+		{
+			aadMeans[s] = mean(paaadVectors[s]);
+		}
+
+		double dCovarianceError = 0.0;
+		double dError = 0.0;
+		int iMisclassified = 0;
+
+		for(int p = 0; p < PROBES; p++)
+		{
+			// Around one of the subjects, with the constant feature, if any, off it every other time
+			double[] adProbe = Checks.randomVector(iDimensions, poRandom);
+
+			for(int i = 0; i < iDimensions; i++)
+			{
+				adProbe[i] += aadMeans[p % SUBJECTS][i];
+			}
+
+			if(paadExpected[iDimensions - 1][iDimensions - 1] == 0.0 && p % 2 == 0)
+			{
+				adProbe[iDimensions - 1] = CONSTANT;
+			}
+
+			MahalanobisDistance oClassifier = classify(adProbe, piType);
+			dCovarianceError = Math.max(dCovarianceError, matrixError(oClassifier.getCovariance(), paadExpected));
+
+			int iClosest = 0;
+			double dClosest = Double.POSITIVE_INFINITY;
+
+			for(int s = 0; s < SUBJECTS; s++)
+			{
+				double dExpected = Math.sqrt(quadraticForm(paadRidged, difference(adProbe, aadMeans[s])));
+				dError = Math.max(dError, Math.abs(oClassifier.distance(adProbe, aadMeans[s]) - dExpected) / Math.max(1.0, dExpected));
+
+				if(dExpected < dClosest)
+				{
+					dClosest = dExpected;
+					iClosest = s;
+				}
+			}
+
+			if(oClassifier.getResult().getID() != iClosest + 1)
+			{
+				iMisclassified++;
+			}
+		}
+
+		Checks.check("covariance vs. sample covariance, error " + dCovarianceError, dCovarianceError <= Checks.TOLERANCE);
+		Checks.check(PROBES + " vectors, distances vs. brute force, error " + dError, dError <= Checks.TOLERANCE);
+		Checks.check("closest subjects found, misclassified " + iMisclassified, iMisclassified == 0);
+	}
+
+	/**
+	 * Trains new classifiers on random vectors of every subject, spread
+	 * about the subjects' means with correlated features.
+	 * @param poRandom source of the vectors
+	 * @param piDimensions length of the vectors
+	 * @param piVectors number of vectors of each subject
+	 * @param pbConstant whether the last feature is always <code>CONSTANT</code>
+	 * @return the vectors by subject
+	 * @throws Exception if the training failed
+	 */
+	private static double[][][] trainSubjects(Random poRandom, final int piDimensions, final int piVectors, final boolean pbConstant)
+	throws Exception
+	{
+		double[][] aadMixing = new double[piDimensions][];
+
+		for(int i = 0; i < piDimensions; i++)
+		{
+			aadMixing[i] = Checks.randomVector(piDimensions, poRandom);
+		}
+
+		double[][][] aaadVectors = new double[SUBJECTS][piVectors][piDimensions];
+
+		for(int s = 0; s < SUBJECTS; s++)
+		{
+			double[] adMean = Checks.randomVector(piDimensions, poRandom);
+
+			for(int v = 0; v < piVectors; v++)
+			{
+				double[] adNoise = Checks.randomVector(piDimensions, poRandom);
+				double[] adVector = aaadVectors[s][v];
+
+				for(int i = 0; i < piDimensions; i++)
+				{
+					adVector[i] = 3.0 * adMean[i];
+
+					for(int j = 0; j < piDimensions; j++)
+					{
+						adVector[i] += aadMixing[i][j] * adNoise[j];
+					}
+				}
+
+				if(pbConstant)
+				{
+					adVector[piDimensions - 1] = CONSTANT;
+				}
+
+				MARF.setCurrentSubject(s + 1);
+				MARF.setSampleFile("subject" + (s + 1) + "-" + v + "-" + piDimensions);
+
+				new MahalanobisDistance(new GivenFeatures(adVector)).train();
+			}
+		}
+
+		return aaadVectors;
+	}
+
+	/**
+	 * Classifies a vector with a new classifier.
+	 * @param padVector the vector
+	 * @param piType covariance type
+	 * @return the classifier
+	 * @throws Exception if the classification failed
+	 */
+	private static MahalanobisDistance classify(final double[] padVector, final int piType)
+	throws Exception
+	{
+		MahalanobisDistance oClassifier = new MahalanobisDistance(new GivenFeatures(padVector));
+		oClassifier.setCovarianceType(piType);
+		oClassifier.classify();
+		return oClassifier;
+	}
+
+	/**
+	 * Computes the pooled within-subject sample covariance directly:
+	 * the products of the deviations of the vectors from the means of
+	 * their subjects, summed and divided by the number of the vectors
+	 * less the number of the subjects.
+	 * @param paaadVectors vectors by subject
+	 * @return new covariance matrix
+	 */
+	private static double[][] sampleCovariance(final double[][][] paaadVectors)
+	{
+		int iDimensions = paaadVectors[0][0].length;
+		int iDegrees = 0;
+
+		double[][] aadCovariance = new double[iDimensions][iDimensions];
+
+		for(int s = 0; s < paaadVectors.length; s++)
+		{
+			double[] adMean = mean(paaadVectors[s]);
+
+			for(int v = 0; v < paaadVectors[s].length; v++)
+			{
+				double[] adDeviation = difference(paaadVectors[s][v], adMean);
+
+				for(int i = 0; i < iDimensions; i++)
+				{
+					for(int j = 0; j < iDimensions; j++)
+					{
+						aadCovariance[i][j] += adDeviation[i] * adDeviation[j];
+					}
+				}
+			}
+
+			iDegrees += paaadVectors[s].length - 1;
+		}
+
+		for(int i = 0; i < iDimensions; i++)
+		{
+			for(int j = 0; j < iDimensions; j++)
+			{
+				aadCovariance[i][j] /= iDegrees;
+			}
+		}
+
+		return aadCovariance;
+	}
+
+	/**
+	 * Derives the covariance matrix of a type from the sample covariance:
+	 * as it is, its diagonal, or shrunk by the default intensity towards
+	 * the identity times the mean variance.
+	 * @param paadCovariance sample covariance
+	 * @param piType covariance type
+	 * @return new covariance matrix
+	 */
+	private static double[][] expectedCovariance(final double[][] paadCovariance, final int piType)
+	{
+		int n = paadCovariance.length;
+		double dMeanVariance = trace(paadCovariance) / n;
+
+		double[][] aadExpected = copy(paadCovariance);
+
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < n; j++)
+			{
+				switch(piType)
+				{
+					case MahalanobisDistance.COVARIANCE_DIAGONAL:
+					{
+						aadExpected[i][j] = i == j ? paadCovariance[i][j] : 0.0;
+						break;
+					}
+
+					case MahalanobisDistance.COVARIANCE_SHRINKAGE:
+					{
+						double dShrinkage = MahalanobisDistance.DEFAULT_SHRINKAGE;
+						aadExpected[i][j] = (1.0 - dShrinkage) * paadCovariance[i][j] + (i == j ? dShrinkage * dMeanVariance : 0.0);
+						break;
+					}
+
+					default:
+					{
+						break;
+					}
+				}
+			}
+		}
+
+		return aadExpected;
+	}
+
+	/**
+	 * Computes <code>x' * A^-1 * x</code> by solving <code>A * y = x</code>
+	 * by Gaussian elimination with partial pivoting.
+	 * @param paadMatrix the matrix <code>A</code>
+	 * @param padX the vector <code>x</code>
+	 * @return the quadratic form
+	 */
+	private static double quadraticForm(final double[][] paadMatrix, final double[] padX)
+	{
+		int n = padX.length;
+
+		double[][] aadA = copy(paadMatrix);
+		double[] adY = padX.clone();
+
+		for(int k = 0; k < n; k++)
+		{
+			int iPivot = k;
+
+			for(int i = k + 1; i < n; i++)
+			{
+				if(Math.abs(aadA[i][k]) > Math.abs(aadA[iPivot][k]))
+				{
+					iPivot = i;
+				}
+			}
+
+			double[] adRow = aadA[k];
+			aadA[k] = aadA[iPivot];
+			aadA[iPivot] = adRow;
+
+			double dY = adY[k];
+			adY[k] = adY[iPivot];
+			adY[iPivot] = dY;
+
+			for(int i = k + 1; i < n; i++)
+			{
+				double dFactor = aadA[i][k] / aadA[k][k];
+
+				for(int j = k; j < n; j++)
+				{
+					aadA[i][j] -= dFactor * aadA[k][j];
+				}
+
+				adY[i] -= dFactor * adY[k];
+			}
+		}
+
+		for(int k = n - 1; k >= 0; k--)
+		{
+			for(int j = k + 1; j < n; j++)
+			{
+				adY[k] -= aadA[k][j] * adY[j];
+			}
+
+			adY[k] /= aadA[k][k];
+		}
+
+		double dForm = 0.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			dForm += padX[i] * adY[i];
+		}
+
+		return dForm;
+	}
+
+	/**
+	 * Computes the largest difference between a matrix and the expected
+	 * one, relative to the magnitude of the expected elements.
+	 * @param poMatrix the matrix; <code>null</code> for none
+	 * @param paadExpected the expected matrix
+	 * @return the error, or infinity if there is no matrix or it is of another size
+	 */
+	private static double matrixError(final Matrix poMatrix, final double[][] paadExpected)
+	{
+		int n = paadExpected.length;
+
+		if(poMatrix == null || poMatrix.getRows() != n || poMatrix.getCols() != n)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double[] adMatrix = poMatrix.getMatrixArray();
+		double dError = 0.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < n; j++)
+			{
+				dError = Math.max(dError, Checks.relativeError(adMatrix[i * n + j], paadExpected[i][j]));
+			}
+		}
+
+		return dError;
+	}
+
+	/**
+	 * Counts the covariance estimates stored in a directory.
+	 * @param poDirectory the directory
+	 * @return the count
+	 */
+	private static int countCovarianceFiles(final File poDirectory)
+	{
+		File[] aoFiles = poDirectory.listFiles();
+		int iCount = 0;
+
+		for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+		{
+			if(aoFiles[i].getName().endsWith(".cov"))
+			{
+				iCount++;
+			}
+		}
+
+		return iCount;
+	}
+
+	/**
+	 * Computes the mean of vectors.
+	 * @param paadVectors the vectors
+	 * @return new mean vector
+	 */
+	private static double[] mean(final double[][] paadVectors)
+	{
+		double[] adMean = new double[paadVectors[0].length];
+
+		for(int v = 0; v < paadVectors.length; v++)
+		{
+			for(int i = 0; i < adMean.length; i++)
+			{
+				adMean[i] += paadVectors[v][i];
+			}
+		}
+
+		for(int i = 0; i < adMean.length; i++)
+		{
+			adMean[i] /= paadVectors.length;
+		}
+
+		return adMean;
+	}
+
+	/**
+	 * Computes the difference of two vectors.
+	 * @param padX the first vector
+	 * @param padY the second vector
+	 * @return new vector <code>x - y</code>
+	 */
+	private static double[] difference(final double[] padX, final double[] padY)
+	{
+		double[] adDifference = new double[padX.length];
+
+		for(int i = 0; i < padX.length; i++)
+		{
+			adDifference[i] = padX[i] - padY[i];
+		}
+
+		return adDifference;
+	}
+
+	/**
+	 * Computes the trace of a matrix.
+	 * @param paadMatrix the matrix
+	 * @return the sum of the diagonal
+	 */
+	private static double trace(final double[][] paadMatrix)
+	{
+		double dTrace = 0.0;
+
+		for(int i = 0; i < paadMatrix.length; i++)
+		{
+			dTrace += paadMatrix[i][i];
+		}
+
+		return dTrace;
+	}
+
+	/**
+	 * Creates the identity matrix.
+	 * @param n its size
+	 * @return new matrix
+	 */
+	private static double[][] identity(final int n)
+	{
+		double[][] aadIdentity = new double[n][n];
+
+		for(int i = 0; i < n; i++)
+		{
+			aadIdentity[i][i] = 1.0;
+		}
+
+		return aadIdentity;
+	}
+
+	/**
+	 * Copies a matrix.
+	 * @param paadMatrix the matrix
+	 * @return new matrix of the same elements
+	 */
+	private static double[][] copy(final double[][] paadMatrix)
+	{
+		double[][] aadCopy = new double[paadMatrix.length][];
+
+		for(int i = 0; i < paadMatrix.length; i++)
+		{
+			aadCopy[i] = paadMatrix[i].clone();
+		}
+
+		return aadCopy;
+	}
+}
+
+// EOF
@@ -0,0 +1,352 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import marf.math.CholeskyDecomposition;
+import marf.math.LUDecomposition;
+import marf.math.MathException;
+import marf.math.Matrix;
+
+
+/**
+ * <p>Tests the LU and Cholesky decompositions of MARF: determinants
+ * against Laplace's formula, solutions and inverses against the
+ * matrices they came from, and the singular, non-square and not
+ * positive-definite matrices.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestMatrix
+{
+	/**
+	 * Dimensions of the random matrices to check; Laplace's formula
+	 * is only used up to 7.
+	 */
+	private static final int[] DIMENSIONS = {1, 2, 3, 4, 5, 7, 12, 40, 100};
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("LU decomposition");
+
+			for(int i = 0; i < DIMENSIONS.length; i++)
+			{
+				testLU(randomMatrix(DIMENSIONS[i], oRandom), oRandom);
+			}
+
+			// Zero leading element; needs a row exchange
+			LUDecomposition oLU = new LUDecomposition(new Matrix(new double[][] {{0, 1, 2}, {1, 0, 3}, {4, -3, 8}}));
+			Checks.check("pivoting, determinant " + oLU.getDeterminant(), Math.abs(oLU.getDeterminant() + 2.0) <= Checks.TOLERANCE);
+
+			Matrix oSingular = new Matrix(new double[][] {{1, 2, 3}, {2, 4, 6}, {1, 0, 1}});
+			Checks.check("singular matrix", new LUDecomposition(oSingular).isSingular() && oSingular.inverse() == false);
+
+			try
+			{
+				new LUDecomposition(new Matrix(2, 3));
+				Checks.check("non-square matrix rejected", false);
+			}
+			catch(MathException e)
+			{
+				Checks.check("non-square matrix rejected", true);
+			}
+
+			Checks.section("Cholesky decomposition");
+
+			for(int i = 0; i < DIMENSIONS.length; i++)
+			{
+				testCholesky(randomSPDMatrix(DIMENSIONS[i], oRandom), oRandom);
+			}
+
+			try
+			{
+				new CholeskyDecomposition(new Matrix(new double[][] {{1, 2}, {2, 1}}));
+				Checks.check("indefinite matrix rejected", false);
+			}
+			catch(MathException e)
+			{
+				Checks.check("indefinite matrix rejected", true);
+			}
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks the determinant, a solution and the inverse of a matrix
+	 * as given by its LU decomposition and by <code>Matrix</code>.
+	 * @param poMatrix the matrix
+	 * @param poRandom source of the right-hand side
+	 * @throws Exception if the matrix could not be decomposed
+	 */
+	private static void testLU(final Matrix poMatrix, Random poRandom)
+	throws Exception
+	{
+		int n = poMatrix.getRows();
+		double[] adA = poMatrix.getMatrixArray().clone();
+
+		LUDecomposition oLU = new LUDecomposition(poMatrix);
+
+		// Determinant
+		double dError = 0.0;
+
+		if(n <= 7)
+		{
+			double dExpected = laplace(adA, n);
+			dError = Math.max(dError, Checks.relativeError(oLU.getDeterminant(), dExpected));
+			dError = Math.max(dError, Checks.relativeError(poMatrix.getDeterminant(), dExpected));
+		}
+
+		// Solution
+		double[] adB = Checks.randomVector(n, poRandom);
+		dError = Math.max(dError, residual(adA, oLU.solve(adB), adB, n));
+
+		// Inverse, also through Matrix
+		dError = Math.max(dError, identityError(adA, oLU.getInverse().getMatrixArray(), n));
+
+		Matrix oInverse = new Matrix(poMatrix);
+		boolean bInverted = oInverse.inverse();
+		dError = Math.max(dError, identityError(adA, oInverse.getMatrixArray(), n));
+
+		boolean bUntouched = Arrays.equals(adA, poMatrix.getMatrixArray());
+
+		Checks.check("LU " + n + "x" + n + ", error " + dError, dError <= Checks.TOLERANCE && bInverted && bUntouched);
+	}
+
+	/**
+	 * Checks the factor, the determinant, a solution, the inverse and
+	 * the inverse quadratic form of a matrix as given by its Cholesky
+	 * decomposition, against the LU decomposition where it applies.
+	 * @param poMatrix symmetric positive-definite matrix
+	 * @param poRandom source of the vectors
+	 * @throws Exception if the matrix could not be decomposed
+	 */
+	private static void testCholesky(final Matrix poMatrix, Random poRandom)
+	throws Exception
+	{
+		int n = poMatrix.getRows();
+		double[] adA = poMatrix.getMatrixArray();
+
+		CholeskyDecomposition oCholesky = new CholeskyDecomposition(poMatrix);
+		LUDecomposition oLU = new LUDecomposition(poMatrix);
+
+		double dError = 0.0;
+
+		// L * L' = A, and L is lower-triangular
+		double[] adL = oCholesky.getL().getMatrixArray();
+
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < n; j++)
+			{
+				double dSum = 0.0;
+
+				for(int k = 0; k < n; k++)
+				{
+					dSum += adL[i * n + k] * adL[j * n + k];
+				}
+
+				dError = Math.max(dError, Checks.relativeError(dSum, adA[i * n + j]));
+
+				if(j > i && adL[i * n + j] != 0.0)
+				{
+					dError = Double.POSITIVE_INFINITY;
+				}
+			}
+		}
+
+		// Determinant
+		double dDeterminant = oLU.getDeterminant();
+		dError = Math.max(dError, Math.abs(oCholesky.getDeterminant() - dDeterminant) / Math.abs(dDeterminant));
+		dError = Math.max(dError, Checks.relativeError(oCholesky.getLogDeterminant(), Math.log(dDeterminant)));
+
+		// Solution
+		double[] adB = Checks.randomVector(n, poRandom);
+		dError = Math.max(dError, residual(adA, oCholesky.solve(adB), adB, n));
+
+		// Inverse
+		dError = Math.max(dError, identityError(adA, oCholesky.getInverse().getMatrixArray(), n));
+
+		// x' * A^-1 * x
+		double[] adX = Checks.randomVector(n, poRandom);
+		double[] adSolution = oLU.solve(adX);
+		double dExpected = 0.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			dExpected += adX[i] * adSolution[i];
+		}
+
+		double dForm = oCholesky.getInverseQuadraticForm(adX, new double[n]);
+		dError = Math.max(dError, Checks.relativeError(dForm, dExpected));
+
+		Checks.check("Cholesky " + n + "x" + n + ", error " + dError, dError <= Checks.TOLERANCE);
+	}
+
+	/**
+	 * Computes a determinant with Laplace's formula along the first row.
+	 * @param padA row-major matrix
+	 * @param n dimension
+	 * @return the determinant
+	 */
+	public static double laplace(final double[] padA, final int n)
+	{
+		if(n == 1)
+		{
+			return padA[0];
+		}
+
+		double[] adMinor = new double[(n - 1) * (n - 1)];
+		double dDeterminant = 0.0;
+
+		for(int j = 0; j < n; j++)
+		{
+			for(int r = 1; r < n; r++)
+			{
+				for(int c = 0, m = 0; c < n; c++)
+				{
+					if(c != j)
+					{
+						adMinor[(r - 1) * (n - 1) + m++] = padA[r * n + c];
+					}
+				}
+			}
+
+			dDeterminant += (j % 2 == 0 ? 1 : -1) * padA[j] * laplace(adMinor, n - 1);
+		}
+
+		return dDeterminant;
+	}
+
+	/**
+	 * Computes the largest element of <code>A * x - b</code> relative
+	 * to the largest of <code>b</code>.
+	 * @param padA row-major matrix
+	 * @param padX the solution
+	 * @param padB the right-hand side
+	 * @param n dimension
+	 * @return the relative residual
+	 */
+	public static double residual(final double[] padA, final double[] padX, final double[] padB, final int n)
+	{
+		double dError = 0.0;
+		double dMagnitude = 1.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			double dSum = 0.0;
+
+			for(int j = 0; j < n; j++)
+			{
+				dSum += padA[i * n + j] * padX[j];
+			}
+
+			dError = Math.max(dError, Math.abs(dSum - padB[i]));
+			dMagnitude = Math.max(dMagnitude, Math.abs(padB[i]));
+		}
+
+		return dError / dMagnitude;
+	}
+
+	/**
+	 * Computes the largest element of <code>A * B - I</code>.
+	 * @param padA row-major matrix
+	 * @param padB row-major matrix, e.g. the inverse of <code>A</code>
+	 * @param n dimension
+	 * @return the error
+	 */
+	public static double identityError(final double[] padA, final double[] padB, final int n)
+	{
+		double dError = 0.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < n; j++)
+			{
+				double dSum = 0.0;
+
+				for(int k = 0; k < n; k++)
+				{
+					dSum += padA[i * n + k] * padB[k * n + j];
+				}
+
+				dError = Math.max(dError, Math.abs(dSum - (i == j ? 1.0 : 0.0)));
+			}
+		}
+
+		return dError;
+	}
+
+	/**
+	 * Creates a matrix of random numbers, made diagonally heavy enough
+	 * to be well-conditioned.
+	 * @param n dimension
+	 * @param poRandom source of the numbers
+	 * @return new matrix
+	 */
+	private static Matrix randomMatrix(final int n, Random poRandom)
+	{
+		Matrix oMatrix = new Matrix(n, n);
+		double[] adA = oMatrix.getMatrixArray();
+
+		System.arraycopy(Checks.randomVector(adA.length, poRandom), 0, adA, 0, adA.length);
+
+		for(int i = 0; i < n; i++)
+		{
+			adA[i * n + i] += 2.0 * Math.sqrt(n);
+		}
+
+		return oMatrix;
+	}
+
+	/**
+	 * Creates a random symmetric positive-definite matrix,
+	 * <code>B' * B + I</code> for a random <code>B</code>.
+	 * @param n dimension
+	 * @param poRandom source of the numbers
+	 * @return new matrix
+	 */
+	private static Matrix randomSPDMatrix(final int n, Random poRandom)
+	{
+		double[] adB = Checks.randomVector(n * n, poRandom);
+
+		Matrix oMatrix = new Matrix(n, n);
+		double[] adA = oMatrix.getMatrixArray();
+
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < n; j++)
+			{
+				double dSum = i == j ? 1.0 : 0.0;
+
+				for(int k = 0; k < n; k++)
+				{
+					dSum += adB[k * n + i] * adB[k * n + j];
+				}
+
+				adA[i * n + j] = dSum;
+			}
+		}
+
+		return oMatrix;
+	}
+
+}
+
+// EOF
@@ -0,0 +1,594 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import marf.MARF;
+import marf.Classification.ModelCache;
+import marf.Classification.Distance.BinaryCodes;
+import marf.Classification.Distance.Distance;
+import marf.Classification.Distance.EuclideanDistance;
+import marf.Classification.Distance.HammingDistance;
+import marf.Classification.Similarity.CosineSimilarityMeasure;
+import marf.Storage.FeatureSet;
+import marf.Storage.FloatFeatureSet;
+import marf.Storage.ModuleParams;
+import marf.Storage.TrainingMatrix;
+import marf.Storage.TrainingSet;
+
+
+/**
+ * <p>Tests the ModelCache of MARF: the training sets restored for
+ * classification are shared until they are saved again by training,
+ * changed on disk or dropped from the cache, and then restored anew, along
+ * with what was derived from them, such as the model. They are sized by
+ * the type their feature vectors are stored as. Training data kept in
+ * single precision classify the same as in double precision once dumped
+ * and restored.</p>
+ *
+ * <p>The training sets are kept in a temporary directory.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestModelCache
+{
+	/**
+	 * Interval between the checks of the files long enough for
+	 * the changes on disk to go unnoticed unless asked for, 1 hour.
+	 */
+	public static final long CHECK_INTERVAL = 3600000;
+
+	/**
+	 * Feature vectors of the subjects 1, 2 and 3.
+	 */
+	private static final double[][] FEATURES =
+	{
+		{0.0, 0.0, 0.0, 0.0},
+		{5.0, 5.0, 5.0, 5.0},
+		{-5.0, 5.0, -5.0, 5.0}
+	};
+
+	/**
+	 * Features of the subjects with a third added, not exactly
+	 * representable in single precision, to train on in the round trip.
+	 */
+	private static final double[][] INEXACT_FEATURES =
+	{
+		{1.0 / 3, 0.1, -0.7, 2.0 / 7},
+		{5.1, 4.9, 5.3, 4.7},
+		{-5.0 / 3, 5.1, -4.9, 5.0 / 7}
+	};
+
+	/**
+	 * Features to classify in the round trip.
+	 */
+	private static final double[][] QUERIES =
+	{
+		{0.3, 0.2, -0.5, 0.1},
+		{4.0, 4.5, 6.0, 5.5},
+		{-2.0, 4.0, -4.0, 1.0},
+		{2.5, 2.5, 2.5, 2.5}
+	};
+
+	/**
+	 * Largest relative difference allowed between the distances to
+	 * the training data kept in single and double precision.
+	 */
+	public static final double FLOAT_TOLERANCE = 1e-6;
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		File oDirectory = null;
+
+		try
+		{
+			oDirectory = File.createTempFile("TestModelCache", "");
+			oDirectory.delete();
+			oDirectory.mkdir();
+
+			MARF.setTrainingSetFilenamePrefix(oDirectory.getPath() + File.separator);
+
+			ModelCache.clear();
+			ModelCache.setCheckInterval(CHECK_INTERVAL);
+
+			Checks.section("Training");
+
+			train(1);
+
+			Checks.check("subject 1 classified", classify(0) == 1);
+			Checks.check("training set cached", ModelCache.getCount() == 1 && ModelCache.getSize() > 0);
+
+			File oFile = getTrainingSetFile(oDirectory);
+			byte[] atSubject1 = read(oFile);
+
+			train(2);
+
+			Checks.check("training set dropped once saved", ModelCache.getCount() == 0);
+			Checks.check("subject 2 classified after training", classify(1) == 2);
+			Checks.check("subject 1 still classified", classify(0) == 1);
+
+			Checks.section("Changes on disk");
+
+			// Written behind the back of the cache, as by another process
+			write(oFile, atSubject1);
+
+			Checks.check("change within the check interval unnoticed", classify(1) == 2);
+
+			ModelCache.setCheckInterval(0);
+
+			Checks.check("change noticed once checked", classify(1) == 1 && ModelCache.getCount() == 1);
+
+			ModelCache.setCheckInterval(CHECK_INTERVAL);
+
+			Checks.section("Invalidation");
+
+			train(3);
+			classify(2);
+
+			write(oFile, atSubject1);
+
+			Checks.check("cached training set used", classify(2) == 3);
+
+			ModelCache.invalidate(oFile.getPath());
+
+			Checks.check("invalidated training set restored", classify(2) == 1 && ModelCache.getCount() == 1);
+
+			train(3);
+			classify(2);
+
+			write(oFile, atSubject1);
+			ModelCache.clear();
+
+			Checks.check("cleared cache empty", ModelCache.getCount() == 0 && ModelCache.getSize() == 0);
+			Checks.check("training set restored after clearing", classify(2) == 1);
+
+			ModelCache.setCapacity(0);
+
+			Checks.check("nothing cached without capacity", ModelCache.getCount() == 0 && classify(0) == 1);
+
+			ModelCache.setCapacity(ModelCache.DEFAULT_CAPACITY);
+
+			Checks.section("Derived objects");
+
+			train(3);
+			classify(2);
+
+			String strFilename = getTrainingSetFile(oDirectory).getPath();
+			TrainingSet oTrainingSet = ModelCache.getTrainingSet(TrainingSet.DUMP_GZIP_BINARY, strFilename);
+			Object oModel = ModelCache.getDerived(strFilename, oTrainingSet, TrainingMatrix.class.getName());
+
+			classify(1);
+
+			Checks.check
+			(
+				"model built once for the classifiers",
+				oModel instanceof TrainingMatrix
+				&& ModelCache.getDerived(strFilename, oTrainingSet, TrainingMatrix.class.getName()) == oModel
+			);
+
+			long lSize = ModelCache.getSize();
+
+			Object oDerived = new Object();
+
+			Checks.check
+			(
+				"derived object cached with the training set",
+				ModelCache.getDerived(strFilename, oTrainingSet, "test") == null
+				&& ModelCache.putDerived(strFilename, oTrainingSet, "test", oDerived, 100) == oDerived
+				&& ModelCache.getDerived(strFilename, oTrainingSet, "test") == oDerived
+				&& ModelCache.getSize() == lSize + 100
+			);
+
+			Checks.check
+			(
+				"first derived object kept",
+				ModelCache.putDerived(strFilename, oTrainingSet, "test", new Object(), 100) == oDerived
+				&& ModelCache.getSize() == lSize + 100
+			);
+
+			Checks.check("not of another training set", ModelCache.getDerived(strFilename, new TrainingSet(), "test") == null);
+
+			ModelCache.invalidate(strFilename);
+
+			Checks.check
+			(
+				"derived object dropped with the training set",
+				ModelCache.getDerived(strFilename, oTrainingSet, "test") == null
+				&& ModelCache.getSize() == 0
+			);
+
+			Checks.section("Indices");
+
+			train(2);
+			train(3);
+
+			Checks.check("VP-tree stored", classifyIndexed(2) == 3 && countFiles(oDirectory, ".vptree") == 1);
+
+			// Neither rebuilt, which would store it again, nor restored
+			deleteFiles(oDirectory, ".vptree");
+
+			Checks.check("VP-tree cached with the training set", classifyIndexed(0) == 1 && countFiles(oDirectory, ".vptree") == 0);
+
+			Checks.check("HNSW graph stored", classifySimilar(2) == 3 && countFiles(oDirectory, ".hnsw") == 1);
+
+			deleteFiles(oDirectory, ".hnsw");
+
+			Checks.check("HNSW graph cached with the training set", classifySimilar(1) == 2 && countFiles(oDirectory, ".hnsw") == 0);
+
+			String strCodesKey = BinaryCodes.class.getName() + " " + BinaryCodes.THRESHOLD_MEDIAN;
+
+			classifyBitwise(2);
+
+			oTrainingSet = ModelCache.getTrainingSet(TrainingSet.DUMP_GZIP_BINARY, strFilename);
+			Object oCodes = ModelCache.getDerived(strFilename, oTrainingSet, strCodesKey);
+
+			Checks.check
+			(
+				"Hamming codes built once for the classifiers",
+				oCodes instanceof BinaryCodes
+				&& classifyBitwise(1) == 2
+				&& ModelCache.getDerived(strFilename, oTrainingSet, strCodesKey) == oCodes
+			);
+
+			Checks.section("Sizes");
+
+			long lDoubleSize = getCachedSize(oDirectory, TrainingSet.TRAINING_SET_FEATURE_SETS);
+			long lFloatSize = getCachedSize(oDirectory, TrainingSet.TRAINING_SET_FLOAT_FEATURE_SETS);
+
+			Checks.check
+			(
+				"float feature sets 4 bytes per element smaller, " + lDoubleSize + " vs. " + lFloatSize + " bytes",
+				lDoubleSize - lFloatSize == 4L * FEATURES.length * FEATURES[0].length
+			);
+
+			Checks.section("Round trip");
+
+			double[][] aadDouble = roundTrip(oDirectory, TrainingSet.TRAINING_SET_FEATURE_SETS);
+			double[][] aadFloat = roundTrip(oDirectory, TrainingSet.TRAINING_SET_FLOAT_FEATURE_SETS);
+
+			double dError = 0.0;
+
+			for(int q = 0; q < QUERIES.length; q++)
+			{
+				dError = Math.max(dError, Math.abs(aadFloat[1][q] - aadDouble[1][q]) / aadDouble[1][q]);
+			}
+
+			Checks.check("float feature sets, same subjects as double", Arrays.equals(aadFloat[0], aadDouble[0]));
+			Checks.check("float feature sets, distances within " + FLOAT_TOLERANCE + ", " + dError, dError <= FLOAT_TOLERANCE);
+
+			ModelCache.setCheckInterval(ModelCache.DEFAULT_CHECK_INTERVAL);
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+		finally
+		{
+			if(oDirectory != null)
+			{
+				File[] aoFiles = oDirectory.listFiles();
+
+				for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+				{
+					aoFiles[i].delete();
+				}
+
+				oDirectory.delete();
+			}
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Trains a new classifier on the features of a subject.
+	 * @param piSubject subject, 1 to 3
+	 * @throws Exception if the training failed
+	 */
+	private static void train(final int piSubject)
+	throws Exception
+	{
+		GivenFeatures oFeatures = new GivenFeatures(FEATURES[piSubject - 1]);
+
+		MARF.setCurrentSubject(piSubject);
+		MARF.setSampleFile("subject" + piSubject);
+
+		new EuclideanDistance(oFeatures).train();
+	}
+
+	/**
+	 * Classifies features with a new classifier.
+	 * @param piFeatures index of the features
+	 * @return ID of the closest subject
+	 * @throws Exception if the classification failed
+	 */
+	private static int classify(final int piFeatures)
+	throws Exception
+	{
+		GivenFeatures oFeatures = new GivenFeatures(FEATURES[piFeatures]);
+
+		EuclideanDistance oClassifier = new EuclideanDistance(oFeatures);
+		oClassifier.classify();
+
+		return oClassifier.getResult().getID();
+	}
+
+	/**
+	 * Classifies features with a new classifier looking up
+	 * the closest subject in the VP-tree.
+	 * @param piFeatures index of the features
+	 * @return ID of the closest subject
+	 * @throws Exception if the classification failed
+	 */
+	private static int classifyIndexed(final int piFeatures)
+	throws Exception
+	{
+		GivenFeatures oFeatures = new GivenFeatures(FEATURES[piFeatures]);
+
+		EuclideanDistance oClassifier = new EuclideanDistance(oFeatures);
+		oClassifier.setIndexType(Distance.INDEX_VP_TREE);
+		oClassifier.setResultLimit(1);
+		oClassifier.classify();
+
+		return oClassifier.getResult().getID();
+	}
+
+	/**
+	 * Classifies features with a new classifier looking up
+	 * the most similar subject in the HNSW graph.
+	 * @param piFeatures index of the features
+	 * @return ID of the most similar subject
+	 * @throws Exception if the classification failed
+	 */
+	private static int classifySimilar(final int piFeatures)
+	throws Exception
+	{
+		GivenFeatures oFeatures = new GivenFeatures(FEATURES[piFeatures]);
+
+		CosineSimilarityMeasure oClassifier = new CosineSimilarityMeasure(oFeatures);
+		oClassifier.setIndexType(CosineSimilarityMeasure.INDEX_HNSW);
+		oClassifier.setResultLimit(1);
+		oClassifier.classify();
+
+		return oClassifier.getResult().getID();
+	}
+
+	/**
+	 * Classifies features with a new classifier comparing
+	 * the bit-packed codes of the features.
+	 * @param piFeatures index of the features
+	 * @return ID of the closest subject
+	 * @throws Exception if the classification failed
+	 */
+	private static int classifyBitwise(final int piFeatures)
+	throws Exception
+	{
+		GivenFeatures oFeatures = new GivenFeatures(FEATURES[piFeatures]);
+
+		HammingDistance oClassifier = new HammingDistance(oFeatures);
+		oClassifier.setDistanceType(HammingDistance.STRICT_BITWISE);
+		oClassifier.classify();
+
+		return oClassifier.getResult().getID();
+	}
+
+	/**
+	 * Trains on the features of all the subjects in a training set format
+	 * of its own and restores the training set into the emptied cache.
+	 * @param poDirectory directory of the training sets
+	 * @param piFormat training set format
+	 * @return size of the cached training set
+	 * @throws Exception if the training or the classification failed
+	 */
+	private static long getCachedSize(final File poDirectory, final int piFormat)
+	throws Exception
+	{
+		MARF.setTrainingSetFilenamePrefix(poDirectory.getPath() + File.separator + "format" + piFormat + ".");
+
+		for(int i = 0; i < FEATURES.length; i++)
+		{
+			MARF.setCurrentSubject(i + 1);
+			MARF.setSampleFile("subject" + (i + 1));
+
+			EuclideanDistance oClassifier = new EuclideanDistance(new GivenFeatures(FEATURES[i]));
+			oClassifier.setTrainingSetFormat(piFormat);
+			oClassifier.train();
+		}
+
+		ModelCache.clear();
+		classify(0);
+
+		MARF.setTrainingSetFilenamePrefix(poDirectory.getPath() + File.separator);
+
+		return ModelCache.getSize();
+	}
+
+	/**
+	 * Trains on the inexact features of all the subjects in the training
+	 * set format set in the module parameters, dumps the training set,
+	 * restores it into the emptied cache and classifies the queries.
+	 * @param poDirectory directory of the training sets
+	 * @param piFormat training set format
+	 * @return IDs of the subjects the queries are classified as and their distances
+	 * @throws Exception if the training or the classification failed
+	 */
+	private static double[][] roundTrip(final File poDirectory, final int piFormat)
+	throws Exception
+	{
+		ModuleParams oParams = new ModuleParams();
+		oParams.setTrainingSetFormat(Integer.valueOf(piFormat));
+
+		ModuleParams oPrevious = MARF.getModuleParams();
+		MARF.setModuleParams(oParams);
+		MARF.setTrainingSetFilenamePrefix(poDirectory.getPath() + File.separator + "roundtrip" + piFormat + ".");
+
+		try
+		{
+			for(int i = 0; i < INEXACT_FEATURES.length; i++)
+			{
+				MARF.setCurrentSubject(i + 1);
+				MARF.setSampleFile("subject" + (i + 1));
+
+				new EuclideanDistance(new GivenFeatures(INEXACT_FEATURES[i])).train();
+			}
+
+			ModelCache.clear();
+
+			double[][] aadResults = new double[2][QUERIES.length];
+
+			for(int q = 0; q < QUERIES.length; q++)
+			{
+				EuclideanDistance oClassifier = new EuclideanDistance(new GivenFeatures(QUERIES[q]));
+				oClassifier.classify();
+
+				aadResults[0][q] = oClassifier.getResult().getID();
+				aadResults[1][q] = oClassifier.getResult().getOutcome();
+			}
+
+			File[] aoFiles = poDirectory.listFiles();
+			TrainingSet oTrainingSet = null;
+
+			for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+			{
+				if(aoFiles[i].getName().startsWith("roundtrip" + piFormat + "."))
+				{
+					oTrainingSet = ModelCache.getTrainingSet(TrainingSet.DUMP_GZIP_BINARY, aoFiles[i].getPath());
+				}
+			}
+
+			Object oSubject = oTrainingSet == null ? null : oTrainingSet.getClusters().get(0);
+
+			Checks.check
+			(
+				"format " + piFormat + " taken from the module parameters",
+				piFormat == TrainingSet.TRAINING_SET_FLOAT_FEATURE_SETS
+					? oSubject instanceof FloatFeatureSet
+					: oSubject instanceof FeatureSet
+			);
+
+			return aadResults;
+		}
+		finally
+		{
+			MARF.setModuleParams(oPrevious);
+			MARF.setTrainingSetFilenamePrefix(poDirectory.getPath() + File.separator);
+		}
+	}
+
+	/**
+	 * Finds the training set file, the only one there is.
+	 * @param poDirectory directory of the training sets
+	 * @return the file
+	 */
+	private static File getTrainingSetFile(final File poDirectory)
+	{
+		File[] aoFiles = poDirectory.listFiles();
+
+		if(aoFiles == null || aoFiles.length != 1)
+		{
+			throw new IllegalStateException("Expected one training set in " + poDirectory);
+		}
+
+		return aoFiles[0];
+	}
+
+	/**
+	 * Counts the files of a kind.
+	 * @param poDirectory directory of the training sets
+	 * @param pstrExtension extension of the files
+	 * @return the count
+	 */
+	private static int countFiles(final File poDirectory, final String pstrExtension)
+	{
+		File[] aoFiles = poDirectory.listFiles();
+		int iCount = 0;
+
+		for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+		{
+			if(aoFiles[i].getName().endsWith(pstrExtension))
+			{
+				iCount++;
+			}
+		}
+
+		return iCount;
+	}
+
+	/**
+	 * Deletes the files of a kind.
+	 * @param poDirectory directory of the training sets
+	 * @param pstrExtension extension of the files
+	 */
+	private static void deleteFiles(final File poDirectory, final String pstrExtension)
+	{
+		File[] aoFiles = poDirectory.listFiles();
+
+		for(int i = 0; aoFiles != null && i < aoFiles.length; i++)
+		{
+			if(aoFiles[i].getName().endsWith(pstrExtension))
+			{
+				aoFiles[i].delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads a file.
+	 * @param poFile the file
+	 * @return its contents
+	 * @throws Exception if it could not be read
+	 */
+	private static byte[] read(final File poFile)
+	throws Exception
+	{
+		byte[] atContents = new byte[(int)poFile.length()];
+		FileInputStream oInput = new FileInputStream(poFile);
+
+		try
+		{
+			for(int iRead = 0; iRead < atContents.length; )
+			{
+				iRead += oInput.read(atContents, iRead, atContents.length - iRead);
+			}
+		}
+		finally
+		{
+			oInput.close();
+		}
+
+		return atContents;
+	}
+
+	/**
+	 * Writes a file.
+	 * @param poFile the file
+	 * @param patContents its new contents
+	 * @throws Exception if it could not be written
+	 */
+	private static void write(final File poFile, final byte[] patContents)
+	throws Exception
+	{
+		FileOutputStream oOutput = new FileOutputStream(poFile);
+
+		try
+		{
+			oOutput.write(patContents);
+		}
+		finally
+		{
+			oOutput.close();
+		}
+	}
+}
+
+// EOF
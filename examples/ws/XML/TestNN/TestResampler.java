@@ -0,0 +1,282 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import marf.Storage.StorageException;
+import marf.Storage.Loaders.WAVLoader;
+import marf.math.PolyphaseResampler;
+
+
+/**
+ * <p>Tests the polyphase resampler of MARF: <code>upfirdn()</code> against
+ * its definition, upsampling with zeroes, filtering and downsampling done
+ * one after another, and the length and the alignment with the input of
+ * <code>resample()</code> from 44100 and 48000 Hz down to 8000 Hz, as done
+ * by the WAV loader, which only resamples once told to.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestResampler
+{
+	/**
+	 * Number of random upsampling and downsampling factors,
+	 * filters and inputs to check <code>upfirdn()</code> with.
+	 */
+	public static final int CASES = 500;
+
+	/**
+	 * Largest difference allowed between a resampled tone in the passband
+	 * and the tone sampled directly at the lower rate; a misalignment by
+	 * a single input sample makes it at least five times as much.
+	 */
+	public static final double TONE_TOLERANCE = 5e-3;
+
+	/**
+	 * Sampling rate all the audio is brought to.
+	 */
+	public static final int RATE = 8000;
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("upfirdn() vs. definition");
+
+			double dError = 0.0;
+
+			for(int c = 0; c < CASES; c++)
+			{
+				int iUp = 1 + oRandom.nextInt(7);
+				int iDown = 1 + oRandom.nextInt(7);
+
+				double[] adFilter = Checks.randomVector(1 + oRandom.nextInt(40), oRandom);
+				double[] adInput = Checks.randomVector(1 + oRandom.nextInt(60), oRandom);
+
+				dError = Math.max(dError, upfirdnError(new PolyphaseResampler(iUp, iDown, adFilter), adInput, adFilter));
+			}
+
+			Checks.check(CASES + " random factors and filters, error " + dError, dError <= Checks.TOLERANCE);
+
+			int[] aiRates = {44100, 48000};
+
+			for(int i = 0; i < aiRates.length; i++)
+			{
+				PolyphaseResampler oResampler = PolyphaseResampler.getResampler(aiRates[i], RATE);
+
+				double[] adFilter = PolyphaseResampler.designLowpass
+				(
+					oResampler.getUpRate(),
+					oResampler.getDownRate(),
+					PolyphaseResampler.DEFAULT_ZERO_CROSSINGS,
+					PolyphaseResampler.DEFAULT_PASSBAND
+				);
+
+				dError = upfirdnError(oResampler, Checks.randomVector(100, oRandom), adFilter);
+
+				Checks.check
+				(
+					aiRates[i] + " to " + RATE + " Hz, " + oResampler.getUpRate() + "/" + oResampler.getDownRate() + ", error " + dError,
+					dError <= Checks.TOLERANCE
+				);
+			}
+
+			Checks.section("resample()");
+
+			for(int i = 0; i < aiRates.length; i++)
+			{
+				testResample(aiRates[i], oRandom);
+			}
+
+			Checks.section("WAV loader");
+			testLoader();
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks that the WAV loader rejects a stream at another sampling
+	 * rate by default and resamples it once resampling is turned on.
+	 * @throws Exception if the stream cannot be made
+	 */
+	private static void testLoader()
+	throws Exception
+	{
+		int iRate = 2 * RATE;
+		int iLength = iRate / 10;
+
+		// A tenth of a second of a 16-bit mono tone at twice the rate
+		byte[] atData = new byte[2 * iLength];
+
+		for(int i = 0; i < iLength; i++)
+		{
+			short sValue = (short)(10000 * Math.sin(2 * Math.PI * 500 * i / iRate));
+			atData[2 * i] = (byte)sValue;
+			atData[2 * i + 1] = (byte)(sValue >> 8);
+		}
+
+		AudioFormat oFormat = new AudioFormat(iRate, 16, 1, true, false);
+		ByteArrayOutputStream oWAV = new ByteArrayOutputStream();
+		AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(atData), oFormat, iLength), AudioFileFormat.Type.WAVE, oWAV);
+
+		WAVLoader oLoader = new WAVLoader();
+		boolean bRejected = false;
+
+		try
+		{
+			oLoader.loadSample(new ByteArrayInputStream(oWAV.toByteArray()));
+		}
+		catch(StorageException e)
+		{
+			bRejected = true;
+		}
+
+		Checks.check(iRate + " Hz rejected by default", bRejected && oLoader.isResampling() == false);
+
+		oLoader = new WAVLoader();
+		oLoader.setResampling(true);
+
+		int iResampled = oLoader.loadSample(new ByteArrayInputStream(oWAV.toByteArray())).getSampleArray().length;
+
+		Checks.check(iRate + " Hz resampled once turned on, " + iResampled + " samples", iResampled == iLength / 2);
+	}
+
+	/**
+	 * Compares <code>upfirdn()</code> with upsampling, filtering and downsampling
+	 * done one after another. The output is as long as the definition's,
+	 * <code>ceil(((N - 1) * L + length(h)) / M)</code>, but for zeroes
+	 * the filter is padded with to a multiple of <code>L</code>.
+	 * @param poResampler the resampler
+	 * @param padInput the input
+	 * @param padFilter the resampler's filter
+	 * @return the largest difference, or infinity if the lengths do not match
+	 */
+	private static double upfirdnError(final PolyphaseResampler poResampler, final double[] padInput, final double[] padFilter)
+	{
+		int iUp = poResampler.getUpRate();
+		int iDown = poResampler.getDownRate();
+
+		// Upsampled with zeroes and filtered in full
+		double[] adUpsampled = new double[(padInput.length - 1) * iUp + 1];
+
+		for(int i = 0; i < padInput.length; i++)
+		{
+			adUpsampled[i * iUp] = padInput[i];
+		}
+
+		double[] adFiltered = new double[adUpsampled.length + padFilter.length - 1];
+
+		for(int i = 0; i < adUpsampled.length; i++)
+		{
+			if(adUpsampled[i] != 0.0)
+			{
+				for(int k = 0; k < padFilter.length; k++)
+				{
+					adFiltered[i + k] += adUpsampled[i] * padFilter[k];
+				}
+			}
+		}
+
+		// Downsampled
+		int iExpected = (adFiltered.length + iDown - 1) / iDown;
+		double[] adOutput = poResampler.upfirdn(padInput);
+
+		int iPadded = ((padFilter.length + iUp - 1) / iUp) * iUp;
+		int iMaxLength = ((padInput.length - 1) * iUp + iPadded + iDown - 1) / iDown;
+
+		if(adOutput.length < iExpected || adOutput.length > iMaxLength)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double dError = 0.0;
+
+		for(int m = 0; m < adOutput.length; m++)
+		{
+			double dExpected = m < iExpected ? adFiltered[m * iDown] : 0.0;
+			dError = Math.max(dError, Checks.relativeError(adOutput[m], dExpected));
+		}
+
+		return dError;
+	}
+
+	/**
+	 * Checks the length of the resampled random input and the alignment
+	 * of resampled tones with the same tones sampled at 8000 Hz, away
+	 * from the ends where the filter runs off the input.
+	 * @param piRate sampling rate of the input
+	 * @param poRandom source of the input and the tones
+	 * @throws Exception if there is no resampler for the rates
+	 */
+	private static void testResample(final int piRate, Random poRandom)
+	throws Exception
+	{
+		PolyphaseResampler oResampler = PolyphaseResampler.getResampler(piRate, RATE);
+
+		boolean bLengths = true;
+
+		for(int i = 0; i < 20; i++)
+		{
+			int iLength = i < 2 ? i : poRandom.nextInt(5 * piRate);
+			long lExpected = ((long)iLength * RATE + piRate - 1) / piRate;
+
+			double[] adOutput = oResampler.resample(Checks.randomVector(iLength, poRandom));
+
+			bLengths = bLengths && adOutput.length == lExpected && oResampler.getResampledLength(iLength) == lExpected;
+		}
+
+		Checks.check(piRate + " to " + RATE + " Hz, lengths ceil(N * " + RATE + " / " + piRate + ")", bLengths);
+
+		// Half the filter length, in output samples
+		int iEdge = (oResampler.getFilterLength() / 2) / oResampler.getUpRate() * RATE / piRate + 2;
+
+		double dError = 0.0;
+		double[] adFrequencies = {200, 1000, 2000, 3000};
+
+		for(int f = 0; f < adFrequencies.length; f++)
+		{
+			double dFrequency = adFrequencies[f];
+			double dPhase = 2 * Math.PI * poRandom.nextDouble();
+
+			double[] adTone = new double[piRate];
+
+			for(int i = 0; i < adTone.length; i++)
+			{
+				adTone[i] = Math.sin(2 * Math.PI * dFrequency * i / piRate + dPhase);
+			}
+
+			double[] adResampled = oResampler.resample(adTone);
+
+			for(int m = iEdge; m < adResampled.length - iEdge; m++)
+			{
+				double dExpected = Math.sin(2 * Math.PI * dFrequency * m / RATE + dPhase);
+				dError = Math.max(dError, Math.abs(adResampled[m] - dExpected));
+			}
+		}
+
+		Checks.check(piRate + " to " + RATE + " Hz, tones aligned, error " + dError, dError <= TONE_TOLERANCE);
+	}
+}
+
+// EOF
@@ -0,0 +1,307 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Vector;
+
+import marf.Storage.Result;
+import marf.Storage.ResultSet;
+import marf.util.SortComparator;
+
+
+/**
+ * <p>Tests the ResultSet of MARF against the plain semantics it has always
+ * had: the results sorted stably by outcome, ascending or descending, so
+ * that the ones of the same outcome keep the order they were added in, and
+ * the minimum, maximum, second closest and average results taken from
+ * there.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestResultSet
+{
+	/**
+	 * Number of random result sets to check.
+	 */
+	public static final int SETS = 20000;
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("ResultSet vs. stable sort");
+
+			int iMismatches = 0;
+
+			for(int s = 0; s < SETS; s++)
+			{
+				if(testResultSet(oRandom) == false)
+				{
+					iMismatches++;
+				}
+			}
+
+			Checks.check(SETS + " random result sets, mismatches " + iMismatches, iMismatches == 0);
+
+			Checks.section("Exposed Vector");
+
+			// Results added through the exposed Vector count as well
+			ResultSet oResultSet = new ResultSet();
+			oResultSet.addResult(1, 3.0);
+			oResultSet.getMininumID();
+			oResultSet.getResultSetVector().add(new Result(2, 1.0, "added"));
+
+			Checks.check
+			(
+				"results added to the Vector",
+				oResultSet.size() == 2
+				&& oResultSet.getMininumID() == 2
+				&& "added".equals(oResultSet.getMinimumResult().getDescription())
+			);
+
+			oResultSet.addResult(3, 0.5);
+
+			Checks.check
+			(
+				"results added after exposing the Vector",
+				oResultSet.size() == 3
+				&& oResultSet.getMininumID() == 3
+				&& oResultSet.getResultSetVector().size() == 3
+				&& oResultSet.getMaximumID() == 1
+			);
+
+			// Changes through the Vector held on to after the results were read
+			Vector<Result> oVector = oResultSet.getResultSetVector();
+			oResultSet.getMininumID();
+
+			// Replacing does not change the size of the Vector, but counts as well
+			oVector.set(0, new Result(4, 0.25, "replaced"));
+			Checks.check("results replaced in the Vector", oResultSet.size() == 3 && oResultSet.getMininumID() == 4);
+
+			Collections.swap(oVector, 0, 2);
+			oVector.remove(1);
+			Checks.check("results swapped and removed in the Vector", oResultSet.size() == 2 && oResultSet.getMaximumID() == 3);
+
+			// Changed in place once handed out again
+			oResultSet.getResultSetVector().get(0).setOutcome(-1.0);
+			Checks.check("results changed in place", oResultSet.getMininumID() == 3 && oResultSet.getMaximumID() == 4);
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Fills a result set with a few random results, often of the same
+	 * outcome or added in order, and compares a random series of queries
+	 * with the stable sort of the results.
+	 * @param poRandom source of the results and queries
+	 * @return <code>true</code> if all the queries agree
+	 */
+	private static boolean testResultSet(Random poRandom)
+	{
+		ResultSet oResultSet = new ResultSet();
+		Vector<Result> oExpected = new Vector<Result>();
+
+		int iSize = 1 + poRandom.nextInt(8);
+		int iOrder = poRandom.nextInt(3);
+
+		for(int i = 0; i < iSize; i++)
+		{
+			int iID = poRandom.nextInt(5);
+			double dOutcome = iOrder == 0 ? i : iOrder == 1 ? -i : poRandom.nextInt(3);
+
+			Result oResult = new Result(iID, dOutcome, "result " + i);
+			oExpected.add(oResult);
+
+			if(poRandom.nextBoolean())
+			{
+				oResultSet.addResult(iID, dOutcome, oResult.getDescription());
+			}
+			else
+			{
+				oResultSet.addResult(oResult);
+			}
+		}
+
+		Result[] aoAscending = sort(oExpected, SortComparator.ASCENDING);
+		Result[] aoDescending = sort(oExpected, SortComparator.DESCENDING);
+
+		int iLastMode = ResultSet.UNSORTED;
+
+		for(int q = 0; q < 6; q++)
+		{
+			boolean bSame;
+
+			switch(poRandom.nextInt(8))
+			{
+				case 0:
+				{
+					bSame = same(oResultSet.getMinimumResult(), aoAscending[0]) && oResultSet.getMininumID() == aoAscending[0].getID();
+					iLastMode = SortComparator.ASCENDING;
+					break;
+				}
+
+				case 1:
+				{
+					bSame = same(oResultSet.getMaximumResult(), aoDescending[0]) && oResultSet.getMaximumID() == aoDescending[0].getID();
+					iLastMode = SortComparator.DESCENDING;
+					break;
+				}
+
+				case 2:
+				{
+					bSame = iSize < 2 || same(oResultSet.getSecondMinimumResult(), aoAscending[1]);
+					iLastMode = iSize < 2 ? iLastMode : SortComparator.ASCENDING;
+					break;
+				}
+
+				case 3:
+				{
+					bSame = iSize < 2 || same(oResultSet.getSecondMaximumResult(), aoDescending[1]);
+					iLastMode = iSize < 2 ? iLastMode : SortComparator.DESCENDING;
+					break;
+				}
+
+				case 4:
+				{
+					bSame = same(oResultSet.getAverageResult(), aoAscending[iSize / 2]);
+					iLastMode = SortComparator.ASCENDING;
+					break;
+				}
+
+				case 5:
+				{
+					// Follows the last sort
+					if(iSize < 2 || iLastMode == ResultSet.UNSORTED)
+					{
+						bSame = true;
+					}
+					else
+					{
+						Result oExpectedResult = iLastMode == SortComparator.ASCENDING ? aoAscending[1] : aoDescending[1];
+						bSame = oResultSet.getSecondClosestID() == oExpectedResult.getID();
+					}
+
+					break;
+				}
+
+				case 6:
+				{
+					int iCount = 1 + poRandom.nextInt(iSize + 1);
+
+					bSame =
+						same(oResultSet.getMinimumResults(iCount), aoAscending, Math.min(iCount, iSize))
+						&& same(oResultSet.getMaximumResults(iCount), aoDescending, Math.min(iCount, iSize));
+
+					break;
+				}
+
+				default:
+				{
+					int iMode = poRandom.nextBoolean() ? SortComparator.ASCENDING : SortComparator.DESCENDING;
+
+					oResultSet.sort(iMode);
+					iLastMode = iMode;
+
+					bSame =
+						oResultSet.getSortMode() == iMode
+						&& same(oResultSet.getResultSetSorted(), iMode == SortComparator.ASCENDING ? aoAscending : aoDescending, iSize)
+						&& oResultSet.size() == iSize;
+
+					break;
+				}
+			}
+
+			if(bSame == false)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sorts the results stably by outcome.
+	 * @param poResults the results in the order they were added
+	 * @param piMode <code>SortComparator.ASCENDING</code> or <code>SortComparator.DESCENDING</code>
+	 * @return new sorted array
+	 */
+	private static Result[] sort(final Vector<Result> poResults, final int piMode)
+	{
+		Result[] aoResults = poResults.toArray(new Result[0]);
+
+		Arrays.sort
+		(
+			aoResults,
+			new Comparator<Result>()
+			{
+				public int compare(Result poResult1, Result poResult2)
+				{
+					int iOrder = Double.compare(poResult1.getOutcome(), poResult2.getOutcome());
+					return piMode == SortComparator.ASCENDING ? iOrder : -iOrder;
+				}
+			}
+		);
+
+		return aoResults;
+	}
+
+	/**
+	 * Tells whether two results are of the same subject, outcome and description.
+	 * @param poResult the result
+	 * @param poExpected the expected result
+	 * @return <code>true</code> if they are the same
+	 */
+	private static boolean same(final Result poResult, final Result poExpected)
+	{
+		return
+			poResult != null
+			&& poResult.getID() == poExpected.getID()
+			&& poResult.getOutcome() == poExpected.getOutcome()
+			&& poExpected.getDescription().equals(poResult.getDescription());
+	}
+
+	/**
+	 * Tells whether the results are the first ones expected.
+	 * @param paoResults the results
+	 * @param paoExpected the expected results
+	 * @param piCount how many there must be
+	 * @return <code>true</code> if they are the same
+	 */
+	private static boolean same(final Result[] paoResults, final Result[] paoExpected, final int piCount)
+	{
+		if(paoResults == null || paoResults.length != piCount)
+		{
+			return false;
+		}
+
+		for(int i = 0; i < piCount; i++)
+		{
+			if(same(paoResults[i], paoExpected[i]) == false)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
+
+// EOF
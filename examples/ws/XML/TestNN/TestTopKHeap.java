@@ -0,0 +1,271 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import marf.util.TopKHeap;
+
+
+/**
+ * <p>Tests the bounded heap the closest subjects of MARF are selected
+ * with: the <code>k</code> values it keeps and their order once sorted
+ * must be those of the stable sort of all the values offered, equal
+ * values ordered by index, also when merging heaps and when there are
+ * fewer values than <code>k</code>, and the bound a candidate has to beat
+ * must be infinite until the heap is full and the largest kept value
+ * after.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestTopKHeap
+{
+	/**
+	 * Number of random series of values to check.
+	 */
+	public static final int SERIES = 20000;
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("Ties");
+
+			// Offered out of index order, all but one of the same value
+			TopKHeap oHeap = new TopKHeap(4);
+			int[] aiIndices = {7, 3, 9, 1, 5, 0, 8};
+
+			for(int i = 0; i < aiIndices.length; i++)
+			{
+				oHeap.offer(aiIndices[i] == 8 ? 0.5 : 1.0, aiIndices[i]);
+			}
+
+			Checks.check("equal value of a later index not kept once full", oHeap.offer(1.0, 6) == false);
+			Checks.check("equal value of an earlier index kept", oHeap.offer(1.0, 2));
+
+			oHeap.sort();
+
+			Checks.check("ties ordered by index", same(oHeap, new double[] {0.5, 1.0, 1.0, 1.0}, new int[] {8, 0, 1, 2}));
+
+			Checks.section("Bound");
+
+			oHeap = new TopKHeap(3);
+			boolean bInfinite = oHeap.getBound() == Double.POSITIVE_INFINITY;
+
+			oHeap.offer(2.0, 0);
+			oHeap.offer(5.0, 1);
+			bInfinite = bInfinite && oHeap.getBound() == Double.POSITIVE_INFINITY;
+
+			Checks.check("infinite until full", bInfinite);
+
+			oHeap.offer(3.0, 2);
+			Checks.check("largest kept value once full", oHeap.getBound() == 5.0);
+
+			oHeap.offer(1.0, 3);
+			Checks.check("next largest after a closer value", oHeap.getBound() == 3.0);
+
+			oHeap.offer(4.0, 4);
+			Checks.check("unchanged by a farther value", oHeap.getBound() == 3.0 && oHeap.size() == 3);
+
+			oHeap.clear();
+			Checks.check("infinite again when cleared", oHeap.getBound() == Double.POSITIVE_INFINITY && oHeap.size() == 0);
+
+			Checks.section("Fewer values than k");
+
+			oHeap = new TopKHeap(10);
+			oHeap.offer(3.0, 0);
+			oHeap.offer(1.0, 1);
+			oHeap.offer(3.0, 2);
+
+			Checks.check("all kept", oHeap.size() == 3 && oHeap.getCapacity() == 10);
+			Checks.check("all sorted", oHeap.sort() == 3 && same(oHeap, new double[] {1.0, 3.0, 3.0}, new int[] {1, 0, 2}));
+
+			Checks.section("TopKHeap vs. stable sort");
+
+			int iMismatches = 0;
+			int iMergeMismatches = 0;
+
+			for(int s = 0; s < SERIES; s++)
+			{
+				int iCount = 1 + oRandom.nextInt(40);
+				int iCapacity = 1 + oRandom.nextInt(iCount + 5);
+
+				// Few distinct values for plenty of ties
+				double[] adValues = new double[iCount];
+
+				for(int i = 0; i < iCount; i++)
+				{
+					adValues[i] = oRandom.nextInt(1 + oRandom.nextInt(6));
+				}
+
+				Integer[] aoExpected = sort(adValues);
+
+				// The indices offered in a random order
+				int[] aiOrder = shuffle(iCount, oRandom);
+
+				oHeap = new TopKHeap(iCapacity);
+
+				for(int i = 0; i < iCount; i++)
+				{
+					oHeap.offer(adValues[aiOrder[i]], aiOrder[i]);
+				}
+
+				oHeap.sort();
+
+				if(same(oHeap, adValues, aoExpected, Math.min(iCapacity, iCount)) == false)
+				{
+					iMismatches++;
+				}
+
+				// Split between two heaps, one of them sorted, and merged
+				int iSplit = oRandom.nextInt(iCount + 1);
+
+				TopKHeap oLeft = new TopKHeap(iCapacity);
+				TopKHeap oRight = new TopKHeap(iCapacity);
+
+				for(int i = 0; i < iCount; i++)
+				{
+					(i < iSplit ? oLeft : oRight).offer(adValues[aiOrder[i]], aiOrder[i]);
+				}
+
+				if(oRandom.nextBoolean())
+				{
+					oLeft.sort();
+				}
+
+				TopKHeap oMerged = new TopKHeap(iCapacity);
+				oMerged.offerAll(oLeft);
+				oMerged.offerAll(oRight);
+				oMerged.sort();
+
+				if(same(oMerged, adValues, aoExpected, Math.min(iCapacity, iCount)) == false)
+				{
+					iMergeMismatches++;
+				}
+			}
+
+			Checks.check(SERIES + " random series, mismatches " + iMismatches, iMismatches == 0);
+			Checks.check(SERIES + " random series merged from two heaps, mismatches " + iMergeMismatches, iMergeMismatches == 0);
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Orders the indices of the values stably by value.
+	 * @param padValues the values
+	 * @return the indices, smallest value first
+	 */
+	private static Integer[] sort(final double[] padValues)
+	{
+		Integer[] aoIndices = new Integer[padValues.length];
+
+		for(int i = 0; i < aoIndices.length; i++)
+		{
+			aoIndices[i] = Integer.valueOf(i);
+		}
+
+		Arrays.sort
+		(
+			aoIndices,
+			new Comparator<Integer>()
+			{
+				public int compare(Integer poIndex1, Integer poIndex2)
+				{
+					return Double.compare(padValues[poIndex1.intValue()], padValues[poIndex2.intValue()]);
+				}
+			}
+		);
+
+		return aoIndices;
+	}
+
+	/**
+	 * Creates a random permutation of the indices.
+	 * @param piCount number of indices
+	 * @param poRandom source of the permutation
+	 * @return the indices from 0 to <code>piCount - 1</code> in a random order
+	 */
+	private static int[] shuffle(final int piCount, Random poRandom)
+	{
+		int[] aiOrder = new int[piCount];
+
+		for(int i = 0; i < piCount; i++)
+		{
+			int j = poRandom.nextInt(i + 1);
+			aiOrder[i] = aiOrder[j];
+			aiOrder[j] = i;
+		}
+
+		return aiOrder;
+	}
+
+	/**
+	 * Tells whether a sorted heap holds the given values and indices.
+	 * @param poHeap the heap
+	 * @param padValues the expected values
+	 * @param paiIndices the expected indices
+	 * @return <code>true</code> if they are the same
+	 */
+	private static boolean same(final TopKHeap poHeap, final double[] padValues, final int[] paiIndices)
+	{
+		if(poHeap.size() != paiIndices.length)
+		{
+			return false;
+		}
+
+		for(int i = 0; i < paiIndices.length; i++)
+		{
+			if(poHeap.getValue(i) != padValues[i] || poHeap.getIndex(i) != paiIndices[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Tells whether a sorted heap holds the first values in the expected order.
+	 * @param poHeap the heap
+	 * @param padValues the values by index
+	 * @param paoExpected the indices of the values in the expected order
+	 * @param piCount how many there must be
+	 * @return <code>true</code> if they are the same
+	 */
+	private static boolean same(final TopKHeap poHeap, final double[] padValues, final Integer[] paoExpected, final int piCount)
+	{
+		if(poHeap.size() != piCount)
+		{
+			return false;
+		}
+
+		for(int i = 0; i < piCount; i++)
+		{
+			int iIndex = paoExpected[i].intValue();
+
+			if(poHeap.getIndex(i) != iIndex || poHeap.getValue(i) != padValues[iIndex])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
+
+// EOF
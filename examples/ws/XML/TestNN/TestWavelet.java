@@ -0,0 +1,199 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import marf.math.Algorithms;
+
+
+/**
+ * <p>Tests the lifting DWT of MARF: the coefficients of every level
+ * against the Farras analysis filter bank with periodic extension,
+ * computed directly from the filter taps, and the reconstruction of
+ * the signal by the inverse, for dyadic and odd lengths.</p>
+ *
+ * <p>Exits with status 1 if any of the checks fails.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TestWavelet
+{
+	/**
+	 * Signal lengths to check: dyadic ones, and ones that leave an odd
+	 * number of samples at some level.
+	 */
+	private static final int[] LENGTHS = {2, 4, 8, 16, 64, 256, 1024, 3, 5, 6, 7, 9, 15, 17, 100, 255, 1000, 1001};
+
+	/**
+	 * Numbers of levels to check; the transform stops at the last level
+	 * with two samples.
+	 */
+	private static final int[] LEVELS = {1, 2, 3, 12};
+
+	/**
+	 * Main body.
+	 * @param argv command-line arguments; none
+	 */
+	public static void main(String[] argv)
+	{
+		try
+		{
+			Random oRandom = new Random(0);
+
+			Checks.section("Lifting DWT vs. Farras filter bank");
+
+			for(int i = 0; i < LENGTHS.length; i++)
+			{
+				for(int j = 0; j < LEVELS.length; j++)
+				{
+					testDWT(Checks.randomVector(LENGTHS[i], oRandom), LEVELS[j]);
+				}
+			}
+
+			Checks.section("Thresholding");
+
+			// Thresholding the details of a constant signal changes nothing
+			double[] adConstant = new double[64];
+			Arrays.fill(adConstant, 3.0);
+
+			double[] adData = adConstant.clone();
+
+			Algorithms.Wavelet.liftingDWT(adData, adData.length, 3);
+			Algorithms.Wavelet.softThreshold(adData, adData.length, 3, 1.0);
+			Algorithms.Wavelet.liftingIDWT(adData, adData.length, 3);
+
+			Checks.check("constant signal, error " + maxError(adData, adConstant), maxError(adData, adConstant) <= Checks.TOLERANCE);
+		}
+		catch(Exception e)
+		{
+			Checks.error(e);
+		}
+
+		Checks.summarize();
+	}
+
+	/**
+	 * Checks the forward transform of a signal against the filter bank
+	 * and the inverse against the signal.
+	 * @param padSignal the signal
+	 * @param piLevels number of levels
+	 */
+	private static void testDWT(final double[] padSignal, final int piLevels)
+	{
+		int n = padSignal.length;
+
+		double[] adExpected = farrasDWT(padSignal, piLevels);
+		double[] adData = padSignal.clone();
+
+		Algorithms.Wavelet.liftingDWT(adData, n, piLevels);
+
+		double dError = maxError(adData, adExpected);
+
+		Algorithms.Wavelet.liftingIDWT(adData, n, piLevels);
+
+		double dReconstruction = maxError(adData, padSignal);
+
+		Checks.check
+		(
+			"length " + n + ", " + piLevels + " level(s), error " + dError + ", reconstruction error " + dReconstruction,
+			dError <= Checks.TOLERANCE && dReconstruction <= Checks.TOLERANCE
+		);
+	}
+
+	/**
+	 * Multi-level DWT laid out the way <code>liftingDWT()</code> does:
+	 * at every level the approximation samples at a stride of
+	 * <code>2^level</code> go through the analysis filter bank, the
+	 * lowpass output replacing the even ones of them and the highpass
+	 * output the odd ones, an odd last sample left as it is.
+	 * @param padSignal the signal
+	 * @param piLevels number of levels
+	 * @return new array of the coefficients
+	 */
+	public static double[] farrasDWT(final double[] padSignal, final int piLevels)
+	{
+		double[] adData = padSignal.clone();
+		int iCount = adData.length;
+
+		for(int j = 0, iStride = 1; j < piLevels && iCount >= 2; j++, iStride *= 2)
+		{
+			int iPairs = iCount / 2;
+			double[] adApproximation = new double[2 * iPairs];
+
+			for(int i = 0; i < adApproximation.length; i++)
+			{
+				adApproximation[i] = adData[i * iStride];
+			}
+
+			double[][] aadBands = farrasAnalysis(adApproximation);
+
+			for(int k = 0; k < iPairs; k++)
+			{
+				adData[2 * k * iStride] = aadBands[0][k];
+				adData[(2 * k + 1) * iStride] = aadBands[1][k];
+			}
+
+			iCount = (iCount + 1) / 2;
+		}
+
+		return adData;
+	}
+
+	/**
+	 * One level of the Farras analysis filter bank with periodic extension,
+	 * as afb.m of the Farras filters computes it: the signal is advanced
+	 * by half the filter length, filtered and downsampled by 2,
+	 * <code>lo[k] = sum(af[0][m] * x[(2k + 5 - m) mod N])</code>.
+	 * @param padSignal the signal, of even length
+	 * @return the lowpass and highpass outputs, half the length each
+	 */
+	public static double[][] farrasAnalysis(final double[] padSignal)
+	{
+		int n = padSignal.length;
+		int iHalfLength = Algorithms.Wavelet.af[0].length / 2;
+
+		double[][] aadBands = new double[2][n / 2];
+
+		for(int b = 0; b < 2; b++)
+		{
+			double[] adFilter = Algorithms.Wavelet.af[b];
+
+			for(int k = 0; k < n / 2; k++)
+			{
+				double dSum = 0.0;
+
+				for(int m = 0; m < adFilter.length; m++)
+				{
+					int i = ((2 * k + iHalfLength - m) % n + n) % n;
+					dSum += adFilter[m] * padSignal[i];
+				}
+
+				aadBands[b][k] = dSum;
+			}
+		}
+
+		return aadBands;
+	}
+
+	/**
+	 * Computes the largest difference between two arrays.
+	 * @param padValues the values
+	 * @param padExpected the expected values
+	 * @return the error
+	 */
+	private static double maxError(final double[] padValues, final double[] padExpected)
+	{
+		double dError = 0.0;
+
+		for(int i = 0; i < padExpected.length; i++)
+		{
+			dError = Math.max(dError, Math.abs(padValues[i] - padExpected[i]));
+		}
+
+		return dError;
+	}
+}
+
+// EOF
@@ -1,14 +1,24 @@
 package marf.Classification;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import marf.MARF;
 import marf.FeatureExtraction.IFeatureExtraction;
+import marf.Storage.ITrainingSample;
 import marf.Storage.ResultSet;
 import marf.Storage.StorageException;
 import marf.Storage.StorageManager;
+import marf.Storage.TrainingMatrix;
 import marf.Storage.TrainingSet;
+import marf.util.SortComparator;
+import marf.util.TopKHeap;
 
 
 /**
@@ -57,6 +67,76 @@ implements IClassification
 	 */
 	protected ResultSet oResultSet = new ResultSet();
 
+	/**
+	 * Format of the per-subject training data of new subjects
+	 * in the training set. Default is
+	 * <code>TrainingSet.TRAINING_SET_CLUSTERS</code>, unless set
+	 * in the module parameters.
+	 * @since 0.3.0.6
+	 * @see TrainingSet#setTrainingSetFormat(int)
+	 * @see marf.Storage.ModuleParams#setTrainingSetFormat(Integer)
+	 */
+	protected int iTrainingSetFormat = TrainingSet.TRAINING_SET_CLUSTERS;
+
+	/**
+	 * Mean vectors of the training set laid out for scanning;
+	 * built on first use.
+	 * @since 0.3.0.6
+	 * @see #getModel()
+	 */
+	protected transient TrainingMatrix oModel = null;
+
+	/**
+	 * Training set the model was built from.
+	 * @since 0.3.0.6
+	 */
+	protected transient TrainingSet oModelSource = null;
+
+	/**
+	 * Maximum number of the closest subjects reported per classification
+	 * by the classifiers scanning the model; 0 means all of them.
+	 * @since 0.3.0.6
+	 */
+	protected int iResultLimit = 0;
+
+	/**
+	 * Number of subjects from which on the model is scanned in parallel.
+	 * @since 0.3.0.6
+	 * @see ModelScan#DEFAULT_PARALLEL_THRESHOLD
+	 */
+	protected int iParallelThreshold = ModelScan.DEFAULT_PARALLEL_THRESHOLD;
+
+	/**
+	 * Heap selecting the closest subjects; reused between classifications.
+	 */
+	private transient TopKHeap oClosest = null;
+
+	/**
+	 * Whether a batch is being classified, for which the model was
+	 * restored up front.
+	 * @see #restoreModel()
+	 */
+	private transient boolean bBatch = false;
+
+	/**
+	 * Whether the training set was taken from the <code>ModelCache</code>
+	 * and is shared, so that it must not be altered.
+	 * @see #restore()
+	 */
+	private transient boolean bSharedTrainingSet = false;
+
+	/**
+	 * Name of the file the shared training set was taken from.
+	 * @see #getDerived(String)
+	 */
+	private transient String strSharedFilename = null;
+
+	/**
+	 * Key the model is cached under along with the training set.
+	 * @see #getModel()
+	 */
+	private static final String MODEL_KEY = TrainingMatrix.class.getName();
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -64,7 +144,7 @@ implements IClassification
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.5
 	 */
-	private static final long serialVersionUID = 7933249658173204609L;
+	private static final long serialVersionUID = -468098065363878047L;
 
 	/* Constructors */
 
@@ -86,9 +166,90 @@ implements IClassification
 			{
 				this.iCurrentDumpMode = ((Integer)oParams.elementAt(0)).intValue();
 			}
+
+			if(MARF.getModuleParams().getTrainingSetFormat() != null)
+			{
+				this.iTrainingSetFormat = MARF.getModuleParams().getTrainingSetFormat().intValue();
+			}
 		}
 	}
 
+	/**
+	 * Looks up a request for an index in the classification parameters:
+	 * the first integer parameter after the dump mode is the index type
+	 * if it is one of the given ones, and the integers right after it,
+	 * if any, are the settings of the index, e.g. the number of subjects
+	 * to report.
+	 * @param paiIndexTypes index types the classifier knows of
+	 * @return the index type followed by its settings; <code>null</code> if none is requested
+	 * @since 0.3.0.6
+	 */
+	protected static int[] getIndexParams(final int[] paiIndexTypes)
+	{
+		return getIndexParams(1, paiIndexTypes);
+	}
+
+	/**
+	 * Looks up a request for an index in the classification parameters
+	 * from the given one on, for the classifiers whose own parameters come
+	 * first: the first integer parameter there is the index type if it is
+	 * one of the given ones, and the integers right after it, if any, are
+	 * the settings of the index.
+	 * @param piFrom position of the first parameter to look at; 1 is right after the dump mode
+	 * @param paiIndexTypes index types the classifier knows of
+	 * @return the index type followed by its settings; <code>null</code> if none is requested
+	 * @since 0.3.0.6
+	 * @see #getIndexParams(int[])
+	 */
+	protected static int[] getIndexParams(final int piFrom, final int[] paiIndexTypes)
+	{
+		if(MARF.getModuleParams() == null)
+		{
+			return null;
+		}
+
+		Vector<Serializable> oParams = MARF.getModuleParams().getClassificationParams();
+
+		if(oParams == null)
+		{
+			return null;
+		}
+
+		for(int i = piFrom; i < oParams.size(); i++)
+		{
+			if(oParams.elementAt(i) instanceof Integer)
+			{
+				int iIndexType = ((Integer)oParams.elementAt(i)).intValue();
+
+				for(int j = 0; j < paiIndexTypes.length; j++)
+				{
+					if(paiIndexTypes[j] == iIndexType)
+					{
+						int iLast = i + 1;
+
+						while(iLast < oParams.size() && oParams.elementAt(iLast) instanceof Integer)
+						{
+							iLast++;
+						}
+
+						int[] aiIndexParams = new int[iLast - i];
+
+						for(int k = 0; k < aiIndexParams.length; k++)
+						{
+							aiIndexParams[k] = ((Integer)oParams.elementAt(i + k)).intValue();
+						}
+
+						return aiIndexParams;
+					}
+				}
+
+				break;
+			}
+		}
+
+		return null;
+	}
+
 	/* Classification API */
 
 	/**
@@ -140,8 +301,14 @@ implements IClassification
 		{
 			if(this.oTrainingSet != null)
 			{
+				// The shared one is left alone, and a copy of our own loaded
+				if(this.bSharedTrainingSet)
+				{
+					this.oTrainingSet = null;
+				}
+
 				// Wrong global cluster loaded, reload the correct one.
-				if
+				else if
 				(
 					(this.oTrainingSet.getPreprocessingMethod() != MARF.getPreprocessingMethod())
 					||
@@ -156,7 +323,10 @@ implements IClassification
 			}
 
 			strPhase = "[restoring training set]";
-			loadTrainingSet();
+			loadTrainingSet(false);
+
+			strPhase = "[checking training set]";
+			checkTrainingSet();
 
 			// Add the new feature vector.
 			strPhase = "[adding feature vector]";
@@ -173,6 +343,8 @@ implements IClassification
 			// No point of doing I/O if we didn't add anything.
 			if(bVectorAdded == true)
 			{
+				invalidateModel();
+
 				strPhase = "[dumping updated training set]";
 				saveTrainingSet();
 			}
@@ -213,6 +385,224 @@ implements IClassification
 		return classify(this.oFeatureExtraction.getFeaturesArray());
 	}
 
+	/**
+	 * Classifies a batch of feature vectors on the calling thread.
+	 * @see #classifyBatch(double[][], boolean)
+	 * @see marf.Classification.IClassification#classifyBatch(double[][])
+	 * @since 0.3.0.6
+	 */
+	public ResultSet[] classifyBatch(double[][] padFeatureVectors)
+	throws ClassificationException
+	{
+		return classifyBatch(padFeatureVectors, false);
+	}
+
+	/**
+	 * Classifies a batch of feature vectors restoring the model from the
+	 * disk only once, which is what dominates classifying one at a time
+	 * for the classifiers that reload it every time. Each vector gets
+	 * a result set of its own; the classifier's own result set is left
+	 * as it was.
+	 *
+	 * <p>In parallel, the first vector is classified on the calling thread,
+	 * which builds and stores whatever the classifier derives from the model,
+	 * and the rest are split between copies of the classifier sharing its
+	 * training set and model, one per worker of the common fork/join pool.
+	 * This is only done if <code>isCloneReentrant()</code>.</p>
+	 *
+	 * @param padFeatureVectors vectors of features to compare with the stored ones
+	 * @param pbParallel whether to classify the vectors in parallel if the classifier allows
+	 * @return result set of each vector, by vector
+	 * @throws ClassificationException if there was an error while classifying any of the vectors
+	 * @since 0.3.0.6
+	 * @see #restoreModel()
+	 */
+	public ResultSet[] classifyBatch(final double[][] padFeatureVectors, boolean pbParallel)
+	throws ClassificationException
+	{
+		final ResultSet[] aoResultSets = new ResultSet[padFeatureVectors.length];
+
+		if(padFeatureVectors.length == 0)
+		{
+			return aoResultSets;
+		}
+
+		ResultSet oResultSet = this.oResultSet;
+
+		try
+		{
+			restore();
+
+			this.bBatch = true;
+
+			int iWorkers = 1;
+
+			if(pbParallel && isCloneReentrant())
+			{
+				iWorkers = Math.min(ForkJoinPool.getCommonPoolParallelism(), padFeatureVectors.length - 1);
+			}
+
+			if(iWorkers < 2)
+			{
+				classifyBatch(padFeatureVectors, aoResultSets, 0, padFeatureVectors.length);
+				return aoResultSets;
+			}
+
+			classifyBatch(padFeatureVectors, aoResultSets, 0, 1);
+
+			int iChunk = (padFeatureVectors.length - 1 + iWorkers - 1) / iWorkers;
+			List<Callable<Object>> oTasks = new ArrayList<Callable<Object>>(iWorkers);
+
+			for(int iFrom = 1; iFrom < padFeatureVectors.length; iFrom += iChunk)
+			{
+				final Classification oWorker = newBatchWorker();
+				final int iStart = iFrom;
+				final int iEnd = Math.min(iFrom + iChunk, padFeatureVectors.length);
+
+				oTasks.add
+				(
+					new Callable<Object>()
+					{
+						public Object call()
+						throws ClassificationException
+						{
+							oWorker.classifyBatch(padFeatureVectors, aoResultSets, iStart, iEnd);
+							return null;
+						}
+					}
+				);
+			}
+
+			for(Future<Object> oTask: ForkJoinPool.commonPool().invokeAll(oTasks))
+			{
+				oTask.get();
+			}
+
+			return aoResultSets;
+		}
+		catch(StorageException e)
+		{
+			throw new ClassificationException(e);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof ClassificationException)
+			{
+				throw (ClassificationException)e.getCause();
+			}
+
+			if(e.getCause() instanceof Error)
+			{
+				throw (Error)e.getCause();
+			}
+
+			throw new ClassificationException((Exception)e.getCause());
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ClassificationException(e);
+		}
+		finally
+		{
+			this.bBatch = false;
+			this.oResultSet = oResultSet;
+		}
+	}
+
+	/**
+	 * Classifies a range of a batch into fresh result sets.
+	 * @param padFeatureVectors the batch
+	 * @param paoResultSets result set of each vector, filled in
+	 * @param piFrom first vector of the range
+	 * @param piTo one past the last vector of the range
+	 * @throws ClassificationException if there was an error while classifying
+	 */
+	private void classifyBatch(double[][] padFeatureVectors, ResultSet[] paoResultSets, int piFrom, int piTo)
+	throws ClassificationException
+	{
+		for(int i = piFrom; i < piTo; i++)
+		{
+			this.oResultSet = new ResultSet();
+			classify(padFeatureVectors[i]);
+			paoResultSets[i] = this.oResultSet;
+		}
+	}
+
+	/**
+	 * Makes a copy of this classifier to classify a part of a batch,
+	 * sharing the training set and the model instead of copying them.
+	 * @return the copy
+	 */
+	private Classification newBatchWorker()
+	{
+		TrainingSet oTrainingSet = this.oTrainingSet;
+		Classification oWorker;
+
+		this.oTrainingSet = null;
+
+		try
+		{
+			oWorker = (Classification)clone();
+		}
+		finally
+		{
+			this.oTrainingSet = oTrainingSet;
+		}
+
+		oWorker.oTrainingSet = oTrainingSet;
+		oWorker.oModel = this.oModel;
+		oWorker.oModelSource = this.oModelSource;
+
+		prepareBatchWorker(oWorker);
+
+		return oWorker;
+	}
+
+	/**
+	 * Hands over to a copy made for a part of a batch what this classifier
+	 * derived from the model while classifying the first vector, such as an
+	 * index, so that the copy does not load or build it again. Nothing by
+	 * default.
+	 * @param poWorker the copy, already sharing the training set and the model
+	 * @since 0.3.0.6
+	 * @see #classifyBatch(double[][], boolean)
+	 */
+	protected void prepareBatchWorker(Classification poWorker)
+	{
+	}
+
+	/**
+	 * Restores the model from the disk for a classification, unless a batch
+	 * is being classified, for which it was restored once up front. The
+	 * derivatives should call it instead of <code>restore()</code> in
+	 * <code>classify()</code> if classifying does not alter their model.
+	 * @throws StorageException if there is a problem loading the model from disk
+	 * @since 0.3.0.6
+	 * @see #classifyBatch(double[][], boolean)
+	 */
+	protected void restoreModel()
+	throws StorageException
+	{
+		if(this.bBatch == false)
+		{
+			restore();
+		}
+	}
+
+	/**
+	 * Tells whether copies of this classifier made by <code>clone()</code>
+	 * and sharing its restored training set and model may classify at the
+	 * same time, so a batch may be split between them. Not by default.
+	 * @return <code>true</code> if they may
+	 * @since 0.3.0.6
+	 * @see #classifyBatch(double[][], boolean)
+	 */
+	protected boolean isCloneReentrant()
+	{
+		return false;
+	}
+
 	/* From Storage Manager */
 
 	/**
@@ -237,6 +627,8 @@ implements IClassification
 
 	/**
 	 * Generic implementation of restore() for TrainingSet.
+	 * The training set is taken from the <code>ModelCache</code>,
+	 * which only reads the file if it was not read before or changed.
 	 * @since 0.2.0
 	 * @throws StorageException if there is a problem loading the training set from disk
 	 */
@@ -247,7 +639,7 @@ implements IClassification
 		{
 			case DUMP_GZIP_BINARY:
 			case DUMP_BINARY:
-				loadTrainingSet();
+				loadTrainingSet(true);
 				break;
 
 			default:
@@ -273,6 +665,8 @@ implements IClassification
 				this.oTrainingSet.setDumpMode(this.iCurrentDumpMode);
 				this.oTrainingSet.setFilename(getTrainingSetFilename());
 				this.oTrainingSet.dump();
+
+				ModelCache.invalidate(getTrainingSetFilename());
 			}
 
 			// TODO: if TrainingSet is null
@@ -296,18 +690,33 @@ implements IClassification
 
 	/**
 	 * Loads TrainingSet from a file. Called by <code>restore()</code>.
+	 * @param pbShared whether to take the training set shared through the
+	 * <code>ModelCache</code>, or to load a copy that may be altered; the
+	 * training set format is only applied to the copy, as it only matters
+	 * to adding vectors and the shared one must not be altered
 	 * @since 0.2.0
 	 * @throws StorageException if there is a problem loading the training set from disk
 	 * @see #restore()
 	 */
-	private final void loadTrainingSet()
+	private final void loadTrainingSet(boolean pbShared)
 	throws StorageException
 	{
 		try
 		{
 			if(this.oTrainingSet == null)
 			{
-				this.oTrainingSet = loadTrainingSet(this.iCurrentDumpMode, getTrainingSetFilename());
+				if(pbShared)
+				{
+					this.strSharedFilename = getTrainingSetFilename();
+					this.oTrainingSet = ModelCache.getTrainingSet(this.iCurrentDumpMode, this.strSharedFilename);
+				}
+				else
+				{
+					this.oTrainingSet = loadTrainingSet(this.iCurrentDumpMode, getTrainingSetFilename());
+					this.oTrainingSet.setTrainingSetFormat(this.iTrainingSetFormat);
+				}
+
+				this.bSharedTrainingSet = pbShared;
 			}
 
 			//TODO: if TrainingSet is not null
@@ -369,6 +778,334 @@ implements IClassification
 		}
 	}
 
+	/**
+	 * Retrieves the format of the training data of new subjects.
+	 * @return one of the <code>TrainingSet.TRAINING_SET_*</code> formats
+	 * @since 0.3.0.6
+	 */
+	public int getTrainingSetFormat()
+	{
+		return this.iTrainingSetFormat;
+	}
+
+	/**
+	 * Sets the format of the training data of new subjects, e.g.
+	 * <code>TrainingSet.TRAINING_SET_FLOAT_FEATURE_SETS</code> to keep
+	 * all the feature vectors in single precision. Subjects already
+	 * in a stored training set keep the format they were trained with.
+	 * A training set shared through the <code>ModelCache</code> is left
+	 * alone; the format is applied to the copy training loads.
+	 * @param piTrainingSetFormat one of the <code>TrainingSet.TRAINING_SET_*</code> formats
+	 * @since 0.3.0.6
+	 */
+	public void setTrainingSetFormat(int piTrainingSetFormat)
+	{
+		this.iTrainingSetFormat = piTrainingSetFormat;
+
+		if(this.oTrainingSet != null && this.bSharedTrainingSet == false)
+		{
+			this.oTrainingSet.setTrainingSetFormat(piTrainingSetFormat);
+		}
+	}
+
+	/**
+	 * Retrieves an object derived from the training set, such as an index,
+	 * cached along with it if the training set is shared through the
+	 * <code>ModelCache</code>.
+	 * @param pstrKey what the object is, e.g. its class and the parameters it was built with
+	 * @return the object; <code>null</code> if there is none or the training set is not shared
+	 * @since 0.3.0.6
+	 * @see ModelCache#getDerived(String, TrainingSet, String)
+	 */
+	protected Object getDerived(String pstrKey)
+	{
+		if(this.bSharedTrainingSet == false)
+		{
+			return null;
+		}
+
+		return ModelCache.getDerived(this.strSharedFilename, this.oTrainingSet, pstrKey);
+	}
+
+	/**
+	 * Caches an object derived from the training set along with it, if the
+	 * training set is shared through the <code>ModelCache</code>, for the
+	 * classifiers created later to use instead of building it again.
+	 * It must not be altered from then on.
+	 * @param pstrKey what the object is, e.g. its class and the parameters it was built with
+	 * @param poDerived the object
+	 * @param plSize rough size of the object, in bytes
+	 * @return the object to use: the given one, or the one another
+	 * classifier cached meanwhile
+	 * @since 0.3.0.6
+	 * @see ModelCache#putDerived(String, TrainingSet, String, Object, long)
+	 */
+	protected Object putDerived(String pstrKey, Object poDerived, long plSize)
+	{
+		if(this.bSharedTrainingSet == false)
+		{
+			return poDerived;
+		}
+
+		return ModelCache.putDerived(this.strSharedFilename, this.oTrainingSet, pstrKey, poDerived, plSize);
+	}
+
+	/**
+	 * Retrieves the model of the current training set,
+	 * (re)building it if it is missing or stale. The model of a training
+	 * set shared through the <code>ModelCache</code> is cached along with
+	 * it, so it is only built once for all the classifiers.
+	 * @return the model; shared, so it must not be altered
+	 * @throws ClassificationException if a mean vector is missing or
+	 * the mean vectors are of different lengths
+	 * @since 0.3.0.6
+	 */
+	protected TrainingMatrix getModel()
+	throws ClassificationException
+	{
+		if(this.oModel == null || this.oModelSource != this.oTrainingSet)
+		{
+			TrainingMatrix oModel = (TrainingMatrix)getDerived(MODEL_KEY);
+
+			if(oModel == null)
+			{
+				oModel = buildModel();
+
+				// The data, the subject IDs and the lengths
+				oModel = (TrainingMatrix)putDerived(MODEL_KEY, oModel, 8L * oModel.getRows() * (oModel.getDimensions() + 2));
+			}
+
+			this.oModel = oModel;
+			this.oModelSource = this.oTrainingSet;
+		}
+
+		return this.oModel;
+	}
+
+	/**
+	 * Lays out the mean vectors of the current training set as a matrix,
+	 * the same for all the classifiers, which share it.
+	 * @return new model
+	 * @throws ClassificationException if a mean vector is missing or
+	 * the mean vectors are of different lengths
+	 * @since 0.3.0.6
+	 */
+	protected TrainingMatrix buildModel()
+	throws ClassificationException
+	{
+		// Features in the training set
+		Vector<ITrainingSample> oTrainingSamples = this.oTrainingSet.getClusters();
+
+		TrainingMatrix oModel = null;
+
+		for(int i = 0; i < oTrainingSamples.size(); i++)
+		{
+			ITrainingSample oTrainingSample = oTrainingSamples.get(i);
+
+			// XXX: can also be median or plain feature vectors; need to make more flexible
+			double[] adMeanVector = oTrainingSample.getMeanVector();
+
+			// Sanity check: stored mean vector must never be null
+			if(adMeanVector == null)
+			{
+				throw new ClassificationException
+				(
+					"Classification.buildModel() - Stored mean vector is null for subject (" + oTrainingSample.getSubjectID() +
+					", preprocessing method: " + this.oTrainingSet.getPreprocessingMethod() +
+					", feature extraction methods: "  + this.oTrainingSet.getFeatureExtractionMethod()
+				);
+			}
+
+			if(oModel == null)
+			{
+				oModel = new TrainingMatrix(oTrainingSamples.size(), adMeanVector.length);
+			}
+
+			// Sanity check: vectors must be of the same length
+			if(adMeanVector.length != oModel.getDimensions())
+			{
+				throw new ClassificationException
+				(
+					"Classification.buildModel() - Mean vector length (" + adMeanVector.length +
+					") of subject " + oTrainingSample.getSubjectID() +
+					" is not same as of the other subjects (" + oModel.getDimensions() + ")"
+				);
+			}
+
+			oModel.setRow(i, oTrainingSample.getSubjectID(), adMeanVector);
+		}
+
+		return oModel == null ? new TrainingMatrix(0, 0) : oModel;
+	}
+
+	/**
+	 * Scans the model for the closest <code>getResultLimit()</code> subjects
+	 * (all by default).
+	 * @param poModel the model; not empty
+	 * @param poMeasure measure of the rows against the incoming vector, smaller being closer
+	 * @param padVector incoming feature vector
+	 * @param pbParallel whether the measure may be called from several threads at once
+	 * @return heap of the closest rows; valid until the next scan
+	 * @since 0.3.0.6
+	 * @see #addResults(TrainingMatrix, TopKHeap, int)
+	 */
+	protected TopKHeap scanModel(TrainingMatrix poModel, IRowMeasure poMeasure, double[] padVector, boolean pbParallel)
+	{
+		TopKHeap oClosest = getClosest(poModel.getRows());
+
+		ModelScan.scan
+		(
+			poModel,
+			poMeasure,
+			padVector,
+			oClosest,
+			pbParallel ? ModelScan.getPool(poModel.getRows(), this.iParallelThreshold) : null
+		);
+
+		return oClosest;
+	}
+
+	/**
+	 * Retrieves an empty heap for the closest <code>getResultLimit()</code>
+	 * subjects (all by default) out of the given number.
+	 * @param piRows number of subjects; at least 1
+	 * @return the heap; reused between classifications
+	 * @since 0.3.0.6
+	 */
+	protected TopKHeap getClosest(int piRows)
+	{
+		int iLimit = this.iResultLimit > 0 && this.iResultLimit < piRows ? this.iResultLimit : piRows;
+
+		if(this.oClosest == null || this.oClosest.getCapacity() != iLimit)
+		{
+			this.oClosest = new TopKHeap(iLimit);
+		}
+
+		this.oClosest.clear();
+
+		return this.oClosest;
+	}
+
+	/**
+	 * Adds the closest subjects of a scan to the result set, closest first.
+	 * If the result set was empty, it is marked as sorted right away.
+	 * @param poModel the scanned model
+	 * @param poClosest heap of the closest rows
+	 * @param piSortMode <code>SortComparator.ASCENDING</code> if the measure was the outcome
+	 * (e.g. a distance), or <code>SortComparator.DESCENDING</code> if it was the negated outcome
+	 * (e.g. a similarity)
+	 * @since 0.3.0.6
+	 */
+	protected void addResults(TrainingMatrix poModel, TopKHeap poClosest, int piSortMode)
+	{
+		addResults(poModel.getSubjectIDs(), poClosest, piSortMode);
+	}
+
+	/**
+	 * Adds the closest subjects of a search to the result set, closest first.
+	 * If the result set was empty, it is marked as sorted right away.
+	 * @param paiSubjectIDs subject IDs by the indices kept in the heap
+	 * @param poClosest heap of the closest subjects
+	 * @param piSortMode <code>SortComparator.ASCENDING</code> if the measure was the outcome
+	 * or <code>SortComparator.DESCENDING</code> if it was the negated outcome
+	 * @since 0.3.0.6
+	 * @see #addResults(TrainingMatrix, TopKHeap, int)
+	 */
+	protected void addResults(int[] paiSubjectIDs, TopKHeap poClosest, int piSortMode)
+	{
+		int iCount = poClosest.sort();
+
+		boolean bFirst = this.oResultSet.size() == 0;
+
+		for(int i = 0; i < iCount; i++)
+		{
+			this.oResultSet.addResult
+			(
+				paiSubjectIDs[poClosest.getIndex(i)],
+				piSortMode == SortComparator.DESCENDING ? -poClosest.getValue(i) : poClosest.getValue(i)
+			);
+		}
+
+		// Added in order, so sorting them is a copy
+		if(bFirst)
+		{
+			this.oResultSet.setSortMode(piSortMode);
+		}
+	}
+
+	/**
+	 * Called by <code>train()</code> once the training set is loaded and
+	 * before the feature vector is added to it, for the classifiers keeping
+	 * state of their own derived from the training set to check that state
+	 * against it. Does nothing by default.
+	 * @throws ClassificationException if the state could not be checked
+	 * @since 0.3.0.6
+	 */
+	protected void checkTrainingSet()
+	throws ClassificationException
+	{
+	}
+
+	/**
+	 * Drops the model built from the training set, e.g. if the
+	 * training set was altered directly; it is rebuilt on the next
+	 * classification, unless the training set is shared through the
+	 * <code>ModelCache</code>, which keeps the model until it drops
+	 * the training set.
+	 * @since 0.3.0.6
+	 */
+	public void invalidateModel()
+	{
+		this.oModel = null;
+		this.oModelSource = null;
+	}
+
+	/**
+	 * Retrieves how many of the closest subjects a classification reports.
+	 * @return the limit; 0 for all
+	 * @since 0.3.0.6
+	 */
+	public int getResultLimit()
+	{
+		return this.iResultLimit;
+	}
+
+	/**
+	 * Limits the number of the closest subjects a classification reports,
+	 * which saves creating and sorting a result for each of a large number
+	 * of subjects when only the best few are of interest. Applies to the
+	 * classifiers that scan the model, such as the distance classifiers.
+	 * @param piResultLimit the limit; 0 (the default) for all
+	 * @since 0.3.0.6
+	 */
+	public void setResultLimit(int piResultLimit)
+	{
+		this.iResultLimit = piResultLimit;
+	}
+
+	/**
+	 * Retrieves the number of subjects from which on the model is scanned in parallel.
+	 * @return the threshold; 0 or less if never
+	 * @since 0.3.0.6
+	 */
+	public int getParallelThreshold()
+	{
+		return this.iParallelThreshold;
+	}
+
+	/**
+	 * Sets the number of subjects from which on the model is scanned
+	 * in parallel on the common fork/join pool if there is more than
+	 * one core. Smaller training sets are scanned on the calling thread.
+	 * @param piParallelThreshold the threshold; 0 or less for never
+	 * @since 0.3.0.6
+	 * @see ModelScan#DEFAULT_PARALLEL_THRESHOLD
+	 */
+	public void setParallelThreshold(int piParallelThreshold)
+	{
+		this.iParallelThreshold = piParallelThreshold;
+	}
+
 	/**
 	 * Retrieves the enclosed result set.
 	 * @return the enclosed ResultSet object
@@ -506,8 +1243,15 @@ implements IClassification
 	{
 		Classification oClone = (Classification)super.clone();
 		oClone.oResultSet = (ResultSet)this.oResultSet.clone();
-		oClone.oTrainingSet = (TrainingSet)this.oTrainingSet.clone();
+
+		if(this.oTrainingSet != null)
+		{
+			oClone.oTrainingSet = (TrainingSet)this.oTrainingSet.clone();
+		}
+
 		oClone.oFeatureExtraction = this.oFeatureExtraction;
+		oClone.invalidateModel();
+		oClone.oClosest = null;
 		return oClone;
 	}
 
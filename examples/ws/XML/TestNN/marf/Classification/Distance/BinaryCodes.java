@@ -0,0 +1,204 @@
+package marf.Classification.Distance;
+
+import java.util.Arrays;
+
+import marf.Storage.TrainingMatrix;
+
+
+/**
+ * <p>Binarised rows of a <code>TrainingMatrix</code>, one bit per feature
+ * packed 64 to a <code>long</code>, for the bitwise Hamming distance.</p>
+ *
+ * <p>A feature's bit is set when it is above the feature's threshold:
+ * zero (its sign) or the median of the feature over the rows, which
+ * splits the subjects in halves on every bit. Incoming vectors are
+ * binarised with the same thresholds, after which comparing against a
+ * subject is a few XORs and popcounts over a code 64 times smaller than
+ * its mean vector.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see HammingDistance#STRICT_BITWISE
+ */
+public class BinaryCodes
+{
+	/**
+	 * Indicates features are binarised by their sign.
+	 */
+	public static final int THRESHOLD_SIGN = 0;
+
+	/**
+	 * Indicates features are binarised by their medians over the rows.
+	 */
+	public static final int THRESHOLD_MEDIAN = 1;
+
+	/**
+	 * Threshold of each feature.
+	 */
+	protected double[] adThresholds;
+
+	/**
+	 * Words per code.
+	 */
+	protected int iWords;
+
+	/**
+	 * Codes of the rows one after another.
+	 */
+	protected long[] alCodes;
+
+	/**
+	 * Constructs codes of no rows.
+	 * @param padThresholds threshold of each feature; not copied
+	 * @param piRows number of rows
+	 */
+	public BinaryCodes(final double[] padThresholds, final int piRows)
+	{
+		this.adThresholds = padThresholds;
+		this.iWords = getWords(padThresholds.length);
+		this.alCodes = new long[piRows * this.iWords];
+	}
+
+	/**
+	 * Binarises all the rows of the model.
+	 * @param poModel the model
+	 * @param piThresholdType <code>THRESHOLD_SIGN</code> or <code>THRESHOLD_MEDIAN</code>
+	 * @return new codes, by row
+	 */
+	public static BinaryCodes build(final TrainingMatrix poModel, final int piThresholdType)
+	{
+		int iRows = poModel.getRows();
+		int iDimensions = poModel.getDimensions();
+		double[] adData = poModel.getData();
+
+		double[] adThresholds = new double[iDimensions];
+
+		if(piThresholdType == THRESHOLD_MEDIAN && iRows > 0)
+		{
+			double[] adColumn = new double[iRows];
+
+			for(int j = 0; j < iDimensions; j++)
+			{
+				for(int i = 0; i < iRows; i++)
+				{
+					adColumn[i] = adData[poModel.getOffset(i) + j];
+				}
+
+				Arrays.sort(adColumn);
+
+				adThresholds[j] = (adColumn[(iRows - 1) >>> 1] + adColumn[iRows >>> 1]) / 2;
+			}
+		}
+
+		BinaryCodes oCodes = new BinaryCodes(adThresholds, iRows);
+
+		for(int i = 0; i < iRows; i++)
+		{
+			oCodes.pack(adData, poModel.getOffset(i), oCodes.alCodes, i * oCodes.iWords);
+		}
+
+		return oCodes;
+	}
+
+	/**
+	 * Binarises a vector.
+	 * @param padVector the vector, as long as the rows
+	 * @return new code
+	 */
+	public long[] pack(final double[] padVector)
+	{
+		long[] alCode = new long[this.iWords];
+		pack(padVector, 0, alCode, 0);
+		return alCode;
+	}
+
+	/**
+	 * Binarises a vector stored within a larger array into a code
+	 * stored within a larger array.
+	 * @param padData array holding the vector
+	 * @param piOffset index of the vector's first element
+	 * @param palCodes array to hold the code
+	 * @param piCodeOffset index of the code's first word
+	 */
+	public void pack(final double[] padData, final int piOffset, long[] palCodes, final int piCodeOffset)
+	{
+		for(int w = 0; w < this.iWords; w++)
+		{
+			long lWord = 0L;
+			int iFirst = w << 6;
+			int iLast = Math.min(iFirst + 64, this.adThresholds.length);
+
+			for(int j = iFirst; j < iLast; j++)
+			{
+				if(padData[piOffset + j] > this.adThresholds[j])
+				{
+					lWord |= 1L << (j - iFirst);
+				}
+			}
+
+			palCodes[piCodeOffset + w] = lWord;
+		}
+	}
+
+	/**
+	 * Retrieves the codes of the rows. Row <code>i</code>
+	 * starts at <code>getOffset(i)</code>.
+	 * @return the code array; not a copy
+	 */
+	public final long[] getCodes()
+	{
+		return this.alCodes;
+	}
+
+	/**
+	 * Retrieves the index of the first word of a row's code.
+	 * @param piRow the row
+	 * @return the offset
+	 */
+	public final int getOffset(final int piRow)
+	{
+		return piRow * this.iWords;
+	}
+
+	/**
+	 * Retrieves the number of words per code.
+	 * @return the count
+	 */
+	public final int getWords()
+	{
+		return this.iWords;
+	}
+
+	/**
+	 * Retrieves the threshold of each feature.
+	 * @return the thresholds; not a copy
+	 */
+	public final double[] getThresholds()
+	{
+		return this.adThresholds;
+	}
+
+	/**
+	 * Computes the number of words to hold a bit per feature.
+	 * @param piBits number of features
+	 * @return the count
+	 */
+	public static int getWords(final int piBits)
+	{
+		return (piBits + 63) >>> 6;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -1,6 +1,7 @@
 package marf.Classification.Distance;
 
 import marf.FeatureExtraction.IFeatureExtraction;
+import marf.math.Algorithms;
 
 
 /**
@@ -42,14 +43,47 @@ extends Distance
 	 */
 	public final double distance(final double[] padVector1, final double[] padVector2)
 	{
-		double dDistance = 0;
+		return Algorithms.Distances.cityBlock(padVector1, padVector2, padVector1.length);
+	}
+
+	/**
+	 * Chebyshev distance against a mean vector within the model.
+	 * @see Distance#distance(double[], int, double[])
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector)
+	{
+		return Algorithms.Distances.cityBlock(padModel, piOffset, padVector, padVector.length);
+	}
+
+	/**
+	 * Chebyshev distance against a mean vector within the model,
+	 * abandoned once past the bound.
+	 * @see Distance#distance(double[], int, double[], double)
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector, final double pdBound)
+	{
+		return Algorithms.Distances.cityBlock(padModel, piOffset, padVector, padVector.length, pdBound);
+	}
 
-		for(int f = 0; f < padVector1.length; f++)
-		{
-			dDistance += Math.abs(padVector1[f] - padVector2[f]);
-		}
+	/**
+	 * @see Distance#isReentrant()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isReentrant()
+	{
+		return true;
+	}
 
-		return dDistance;
+	/**
+	 * The city block distance is a metric.
+	 * @see Distance#isMetric()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isMetric()
+	{
+		return true;
 	}
 
 	/**
@@ -0,0 +1,239 @@
+package marf.Classification.Distance;
+
+import java.util.Hashtable;
+
+import marf.Storage.StorageManager;
+import marf.math.Matrix;
+
+
+/**
+ * <p>Running estimate of the pooled within-subject covariance of the
+ * feature vectors trained on, for the Mahalanobis distance.</p>
+ *
+ * <p>The training set only keeps the mean vector of each subject, so
+ * the scatter of the vectors about their subjects' means is accumulated
+ * as they come in: adding the <code>n</code>-th vector <code>x</code> of
+ * a subject whose mean becomes <code>m</code> adds
+ * <code>n / (n - 1) * (x - m) * (x - m)'</code> to the scatter and one
+ * degree of freedom (Welford's update). The covariance is the scatter
+ * over the degrees of freedom, optionally reduced to its diagonal or
+ * shrunk towards a multiple of the identity.</p>
+ *
+ * <p>The estimate is stored in a file of its own next to the training set,
+ * with the fingerprint of the model of the training set it was accumulated
+ * for, so that it is not taken for the estimate of another training set
+ * stored under the same name later.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see MahalanobisDistance
+ */
+public class CovarianceEstimate
+extends StorageManager
+{
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = -2465917360728519044L;
+
+	/**
+	 * Length of the vectors.
+	 */
+	protected int iDimensions = 0;
+
+	/**
+	 * Number of vectors added beyond the first of each subject.
+	 */
+	protected int iDegrees = 0;
+
+	/**
+	 * Lower triangle of the scatter matrix, row-major over the full square.
+	 */
+	protected double[] adScatter = new double[0];
+
+	/**
+	 * Number of vectors of each subject the scatter has seen.
+	 */
+	protected Hashtable<Integer, Integer> oCounts = new Hashtable<Integer, Integer>();
+
+	/**
+	 * Fingerprint of the model of the training set the estimate was
+	 * last brought in line with.
+	 * @see marf.Storage.TrainingMatrix#getFingerprint()
+	 */
+	protected long lFingerprint = 0;
+
+	/**
+	 * Constructs an empty estimate stored in the binary GZIP form.
+	 */
+	public CovarianceEstimate()
+	{
+		this.iCurrentDumpMode = DUMP_GZIP_BINARY;
+		this.oObjectToSerialize = this;
+		this.bDumpOnNotFound = false;
+	}
+
+	/**
+	 * Adds a vector just trained on. Nothing is added if the subject's
+	 * count is the same as the last time, i.e. the vector was not taken
+	 * into the mean. A vector of a different length than the ones before
+	 * starts the estimate anew.
+	 * @param piSubjectID subject of the vector
+	 * @param padVector the vector
+	 * @param padMean mean vector of the subject including the vector
+	 * @param piCount number of vectors in the mean
+	 * @return <code>true</code> if the estimate changed
+	 */
+	public synchronized boolean add(final int piSubjectID, final double[] padVector, final double[] padMean, final int piCount)
+	{
+		if(padVector.length != this.iDimensions)
+		{
+			this.iDimensions = padVector.length;
+			this.iDegrees = 0;
+			this.adScatter = new double[this.iDimensions * this.iDimensions];
+			this.oCounts.clear();
+		}
+
+		Integer oCount = this.oCounts.put(piSubjectID, piCount);
+
+		if((oCount != null && oCount.intValue() == piCount) || piCount < 2)
+		{
+			return false;
+		}
+
+		double dScale = piCount / (piCount - 1.0);
+
+		for(int i = 0; i < this.iDimensions; i++)
+		{
+			double dDeviation = dScale * (padVector[i] - padMean[i]);
+			int iRow = i * this.iDimensions;
+
+			for(int j = 0; j <= i; j++)
+			{
+				this.adScatter[iRow + j] += dDeviation * (padVector[j] - padMean[j]);
+			}
+		}
+
+		this.iDegrees++;
+
+		return true;
+	}
+
+	/**
+	 * Computes the covariance matrix <code>(1 - s) * C + s * t * I</code>,
+	 * where <code>C</code> is the sample covariance (or its diagonal),
+	 * <code>s</code> the shrinkage intensity and <code>t</code> the mean
+	 * of the diagonal of <code>C</code>.
+	 * @param pbDiagonal whether to leave out the off-diagonal elements
+	 * @param pdShrinkage shrinkage intensity between 0 and 1
+	 * @return new symmetric matrix; <code>null</code> if there are no degrees of freedom yet
+	 */
+	public synchronized Matrix getCovariance(final boolean pbDiagonal, final double pdShrinkage)
+	{
+		if(this.iDegrees == 0)
+		{
+			return null;
+		}
+
+		int n = this.iDimensions;
+		double dTrace = 0.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			dTrace += this.adScatter[i * n + i];
+		}
+
+		double dTarget = pdShrinkage * dTrace / (n * this.iDegrees);
+		double dWeight = (1.0 - pdShrinkage) / this.iDegrees;
+
+		Matrix oCovariance = new Matrix(n, n);
+		double[] adCovariance = oCovariance.getMatrixArray();
+
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < (pbDiagonal ? 0 : i); j++)
+			{
+				adCovariance[i * n + j] = adCovariance[j * n + i] = dWeight * this.adScatter[i * n + j];
+			}
+
+			adCovariance[i * n + i] = dWeight * this.adScatter[i * n + i] + dTarget;
+		}
+
+		return oCovariance;
+	}
+
+	/**
+	 * Retrieves the number of degrees of freedom of the estimate,
+	 * the vectors added beyond the first of each subject.
+	 * @return the count
+	 */
+	public synchronized int getDegreesOfFreedom()
+	{
+		return this.iDegrees;
+	}
+
+	/**
+	 * Retrieves the fingerprint of the model of the training set
+	 * the estimate was last brought in line with.
+	 * @return the fingerprint; 0 if never set
+	 */
+	public synchronized long getFingerprint()
+	{
+		return this.lFingerprint;
+	}
+
+	/**
+	 * Records the fingerprint of the model of the training
+	 * set the estimate has been brought in line with.
+	 * @param plFingerprint the fingerprint
+	 * @return <code>true</code> if it is different from the one before
+	 */
+	public synchronized boolean setFingerprint(final long plFingerprint)
+	{
+		boolean bChanged = this.lFingerprint != plFingerprint;
+		this.lFingerprint = plFingerprint;
+		return bChanged;
+	}
+
+	/**
+	 * Retrieves the length of the vectors.
+	 * @return the length; 0 if nothing was added
+	 */
+	public synchronized int getDimensions()
+	{
+		return this.iDimensions;
+	}
+
+	/**
+	 * @see marf.Storage.StorageManager#backSynchronizeObject()
+	 */
+	public synchronized void backSynchronizeObject()
+	{
+		CovarianceEstimate oNewThis = (CovarianceEstimate)this.oObjectToSerialize;
+
+		this.iDimensions = oNewThis.iDimensions;
+		this.iDegrees = oNewThis.iDegrees;
+		this.adScatter = oNewThis.adScatter;
+		this.oCounts = oNewThis.oCounts;
+		this.lFingerprint = oNewThis.lFingerprint;
+
+		this.oObjectToSerialize = this;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -54,44 +54,58 @@ extends Distance
 	{
 		double dDistance = 0;
 
-		int i = 0;
-		int j = 0;
-		
-		while(i != padVector1.length - 1 || j != padVector2.length - 1)
+		// Element pairs are walked in lock step until both reach their
+		// last element, with the shorter vector's index pinned to its end.
+		final int iLast1 = padVector1.length - 1;
+		final int iLast2 = padVector2.length - 1;
+		final int iSteps = Math.max(iLast1, iLast2);
+		final int iCommon = Math.min(iSteps, Math.min(iLast1, iLast2) + 1);
+
+		int k = 0;
+
+		// No pinning needed while both vectors have elements left
+		for(; k < iCommon; k++)
 		{
-			//Debug.debug("DiffDistance (1): i = " + i + ", j = " + j + ", v[i] = " + adVector1[i] + ", u[j] = " + adVector2[j]);
+			double dDiff = Math.abs(padVector1[k] - padVector2[k]);
 
-			if(Math.abs(padVector1[i] - padVector2[j]) > DEFAULT_ALLOWED_ERROR)
+			if(dDiff > DEFAULT_ALLOWED_ERROR)
 			{
 				// Penalty
-				dDistance +=
-					(Math.abs(padVector1[i] - padVector2[j])) + DISTANCE_FACTOR;
+				dDistance += dDiff + DISTANCE_FACTOR;
 			}
 			else
 			{
 				// Bonus
 				dDistance -= DEFAULT_ALLOWED_ERROR;
 			}
+		}
 
-			i++;
-			j++;
+		for(; k < iSteps; k++)
+		{
+			double dDiff = Math.abs(padVector1[Math.min(k, iLast1)] - padVector2[Math.min(k, iLast2)]);
 
-			if(i > padVector1.length - 1)
+			if(dDiff > DEFAULT_ALLOWED_ERROR)
 			{
-				i = padVector1.length - 1;
+				dDistance += dDiff + DISTANCE_FACTOR;
 			}
-			
-			if(j > padVector2.length - 1)
+			else
 			{
-				j = padVector2.length - 1;
+				dDistance -= DEFAULT_ALLOWED_ERROR;
 			}
-
-			//Debug.debug("DiffDistance (2): i = " + i + ", j = " + j + ", v[i] = " + adVector1[i] + ", u[j] = " + adVector2[j] + ", distance = " + dDistance);
 		}
 
 		return dDistance;
 	}
 
+	/**
+	 * @see Distance#isReentrant()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isReentrant()
+	{
+		return true;
+	}
+
 	/**
 	 * Retrieves class' revision.
 	 * @return revision string
@@ -1,13 +1,17 @@
 package marf.Classification.Distance;
 
-import java.util.Vector;
+import java.io.File;
 
 import marf.Classification.Classification;
 import marf.Classification.ClassificationException;
+import marf.Classification.IRowMeasure;
 import marf.FeatureExtraction.IFeatureExtraction;
-import marf.Storage.ITrainingSample;
 import marf.Storage.Result;
+import marf.Storage.StorageException;
+import marf.Storage.TrainingMatrix;
 import marf.util.Debug;
+import marf.util.SortComparator;
+import marf.util.TopKHeap;
 
 
 /**
@@ -27,7 +31,44 @@ extends Classification
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.5
 	 */
-	private static final long serialVersionUID = -6142163714569438592L;
+	private static final long serialVersionUID = -6703495038677063156L;
+
+	/**
+	 * Indicates the subjects are always scanned linearly. This is the default.
+	 * @since 0.3.0.6
+	 */
+	public static final int INDEX_NONE = 0;
+
+	/**
+	 * Indicates the nearest subjects are looked up in a vantage-point tree
+	 * when the distance is a metric and the number of reported subjects
+	 * is limited.
+	 * @since 0.3.0.6
+	 * @see VPTreeIndex
+	 * @see #setResultLimit(int)
+	 */
+	public static final int INDEX_VP_TREE = 1;
+
+	/**
+	 * Index of the subjects to use.
+	 * @since 0.3.0.6
+	 */
+	protected int iIndexType = INDEX_NONE;
+
+	/**
+	 * The index of the current model, if loaded or built.
+	 */
+	private transient VPTreeIndex oIndex = null;
+
+	/**
+	 * The model the index was checked against.
+	 */
+	private transient TrainingMatrix oIndexModel = null;
+
+	/**
+	 * Row buffers of the threads using the default <code>distance()</code> on the model.
+	 */
+	private transient ThreadLocal<double[]> oRowScratch = null;
 
 	/**
 	 * Distance Constructor.
@@ -36,6 +77,33 @@ extends Classification
 	public Distance(IFeatureExtraction poFeatureExtraction)
 	{
 		super(poFeatureExtraction);
+		setIndexParams(1);
+	}
+
+	/**
+	 * Takes the index and the number of subjects to report
+	 * from the classification parameters, if requested.
+	 * @param piFrom position of the first parameter to look at; 1 is right after
+	 * the dump mode, and later for the distances whose own parameters come first
+	 * @since 0.3.0.6
+	 * @see Classification#getIndexParams(int, int[])
+	 */
+	protected void setIndexParams(final int piFrom)
+	{
+		int[] aiIndexParams = getIndexParams(piFrom, new int[] {INDEX_NONE, INDEX_VP_TREE});
+
+		if(aiIndexParams == null)
+		{
+			this.iIndexType = INDEX_NONE;
+			return;
+		}
+
+		this.iIndexType = aiIndexParams[0];
+
+		if(aiIndexParams.length > 1)
+		{
+			this.iResultLimit = aiIndexParams[1];
+		}
 	}
 
 	/**
@@ -45,6 +113,13 @@ extends Classification
 	 * <code>classify()</code> was refactored into the
 	 * <code>Classification</code>.
 	 *
+	 * The incoming vector is compared against the rows of the model,
+	 * in parallel for large models if the distance is reentrant, and only
+	 * the closest <code>getResultLimit()</code> subjects (all by default)
+	 * make it into the result set. They are added in the ascending order
+	 * of distance, so if the result set was empty it is marked as sorted
+	 * right away.
+	 *
 	 * @return <code>true</code> if classification successful whatever that means
 	 *
 	 * @throws ClassificationException if sanity checks fail. The checks include
@@ -52,6 +127,8 @@ extends Classification
 	 * feature vector or encapsulation of StorageException when dumping/restoring.
 	 *
 	 * @see #distance(double[], double[])
+	 * @see #distance(double[], int, double[])
+	 * @see #isReentrant()
 	 * @see Classification#classify()
 	 * @since 0.3.0.6
 	 */
@@ -64,73 +141,63 @@ extends Classification
 			double[] adIncomingFeatures = padFeatureVector;
 
 			// Restore training model from the disk
-			restore();
+			restoreModel();
 
-			// Features in the training set
-			Vector<ITrainingSample> oTrainingSamples = this.oTrainingSet.getClusters();
+			// Mean vectors of the training set
+			TrainingMatrix oModel = getModel();
 
-			// Our minimum distance.
-			double dMinDistance = Double.MAX_VALUE;
+			if(oModel.getRows() == 0)
+			{
+				return true;
+			}
 
-			/*
-			 * Run through the stored training samples set (mean vectors)
-			 * and determine the two closest subjects to the incoming features sample
-			 */
-			for(int i = 0; i < oTrainingSamples.size(); i++)
+			// Sanity check: vectors must be of the same length
+			if(oModel.getDimensions() != adIncomingFeatures.length)
 			{
-				ITrainingSample oTrainingSample = oTrainingSamples.get(i);
+				throw new ClassificationException
+				(
+					"Distance.classify() - Mean vector length (" + oModel.getDimensions() +
+					") is not same as of incoming feature vector (" + adIncomingFeatures.length + ")"
+				);
+			}
 
-				// XXX: can also be median or plain feature vectors; need to make more flexible
-				double[] adMeanVector = oTrainingSample.getMeanVector();
+			final boolean bDebug = Debug.isDebugOn();
 
-				// Sanity check: stored mean vector must never be null
-				if(adMeanVector == null)
-				{
-					throw new ClassificationException
-					(
-						"Distance.classify() - Stored mean vector is null for subject (" + oTrainingSample.getSubjectID() +
-						", preprocessing method: " + this.oTrainingSet.getPreprocessingMethod() +
-						", feature extraction methods: "  + this.oTrainingSet.getFeatureExtractionMethod()
-					);
-				}
+			// Look up in the index if it can leave out a part of the subjects
+			if
+			(
+				this.iIndexType == INDEX_VP_TREE && isMetric()
+				&& this.iResultLimit > 0 && this.iResultLimit < oModel.getRows()
+			)
+			{
+				TopKHeap oClosest = getClosest(oModel.getRows());
+				int iVisited = getIndex(oModel).search(oModel, this, adIncomingFeatures, oClosest);
 
-				// Sanity check: vectors must be of the same length
-				if(adMeanVector.length != adIncomingFeatures.length)
+				if(bDebug)
 				{
-					throw new ClassificationException
-					(
-						"Distance.classify() - Mean vector length (" + adMeanVector.length +
-						") is not same as of incoming feature vector (" + adIncomingFeatures.length + ")"
-					);
+					Debug.debug("Distance.classify() - VP-tree computed " + iVisited + " of " + oModel.getRows() + " distances");
 				}
 
-				/*
-				 * We have a mean vector of the samples for this iCurrentSubjectID
-				 * Compare using whatever distance classifier it is...
-				 */
-				double dCurrentDistance = distance(adMeanVector, adIncomingFeatures);
+				addResults(oModel, oClosest, SortComparator.ASCENDING);
 
-				Debug.debug("Distance for subject " + oTrainingSample.getSubjectID() + " = " + dCurrentDistance);
-
-				// XXX: What should we do in this (very rare and subtle) case?
-				if(dCurrentDistance == dMinDistance)
-				{
-					Debug.debug("This distance had happened before!");
-				}
+				return true;
+			}
 
-				if(dCurrentDistance < dMinDistance)
-				{
-					dMinDistance = dCurrentDistance;
-				}
+			/*
+			 * Run through the stored mean vectors and keep
+			 * the closest subjects to the incoming features sample
+			 */
+			TopKHeap oClosest = scanModel
+			(
+				oModel,
+				getMeasure(oModel, adIncomingFeatures),
+				adIncomingFeatures,
+				isReentrant()
+			);
 
-				// Collect for stats
-				// XXX: Move to StatsCollector
-				this.oResultSet.addResult
-				(
-					oTrainingSample.getSubjectID(),
-					dCurrentDistance
-				);
-			}
+			// Collect for stats
+			// XXX: Move to StatsCollector
+			addResults(oModel, oClosest, SortComparator.ASCENDING);
 
 			return true;
 		}
@@ -146,6 +213,268 @@ extends Classification
 		}
 	}
 
+	/**
+	 * Creates the measure the model is scanned with for an incoming vector,
+	 * which calls the bounded <code>distance()</code> on every row, so that
+	 * the distances to the subjects that cannot make it into the closest
+	 * <code>getResultLimit()</code> are abandoned early. Derivatives may
+	 * override this to prepare the incoming vector once per scan, e.g. to
+	 * compare it in another representation.
+	 * @param poModel the model to be scanned
+	 * @param padVector incoming feature vector
+	 * @return the measure
+	 * @throws ClassificationException if the incoming vector cannot be prepared
+	 * @since 0.3.0.6
+	 */
+	protected IRowMeasure getMeasure(TrainingMatrix poModel, double[] padVector)
+	throws ClassificationException
+	{
+		final boolean bDebug = Debug.isDebugOn();
+
+		return new IRowMeasure()
+		{
+			public double measure(TrainingMatrix poModel, int piRow, double[] padVector, double pdBound)
+			{
+				double dCurrentDistance = distance(poModel.getData(), poModel.getOffset(piRow), padVector, pdBound);
+
+				if(bDebug)
+				{
+					Debug.debug("Distance for subject " + poModel.getSubjectID(piRow) + " = " + dCurrentDistance);
+				}
+
+				return dCurrentDistance;
+			}
+		};
+	}
+
+	/**
+	 * Distance from a mean vector stored in the model to the incoming one.
+	 * Copies the mean vector out and calls <code>distance(double[], double[])</code>;
+	 * to be overridden with a version reading the model in place.
+	 * @param padModel the model's data
+	 * @param piOffset index of the mean vector's first element in <code>padModel</code>
+	 * @param padVector incoming feature vector, as long as the mean vector
+	 * @return distance between the two vectors
+	 * @since 0.3.0.6
+	 * @see TrainingMatrix#getData()
+	 */
+	protected double distance(final double[] padModel, final int piOffset, final double[] padVector)
+	{
+		ThreadLocal<double[]> oRowScratch = this.oRowScratch;
+
+		if(oRowScratch == null)
+		{
+			synchronized(this)
+			{
+				if(this.oRowScratch == null)
+				{
+					this.oRowScratch = new ThreadLocal<double[]>();
+				}
+
+				oRowScratch = this.oRowScratch;
+			}
+		}
+
+		double[] adRow = oRowScratch.get();
+
+		if(adRow == null || adRow.length != padVector.length)
+		{
+			adRow = new double[padVector.length];
+			oRowScratch.set(adRow);
+		}
+
+		System.arraycopy(padModel, piOffset, adRow, 0, padVector.length);
+
+		return distance(adRow, padVector);
+	}
+
+	/**
+	 * Distance from a mean vector stored in the model to the incoming one
+	 * that may stop once it is known to be greater than the bound. Computes
+	 * the whole distance by default; to be overridden by the distances
+	 * that are sums of per-feature terms.
+	 * @param padModel the model's data
+	 * @param piOffset index of the mean vector's first element in <code>padModel</code>
+	 * @param padVector incoming feature vector, as long as the mean vector
+	 * @param pdBound distance the mean vector has to be at most to be of interest
+	 * @return the distance if it is not greater than the bound, exactly as
+	 * <code>distance(double[], int, double[])</code> computes it; otherwise
+	 * the distance or any value greater than the bound
+	 * @since 0.3.0.6
+	 */
+	protected double distance(final double[] padModel, final int piOffset, final double[] padVector, final double pdBound)
+	{
+		return distance(padModel, piOffset, padVector);
+	}
+
+	/**
+	 * Tells whether <code>distance()</code> may be called from several
+	 * threads at once, which allows scanning large models in parallel.
+	 * The distances that only read the vectors and settings not changed
+	 * while classifying, and keep any buffers of theirs per thread, should
+	 * override this to return <code>true</code>.
+	 * @return <code>false</code> by default
+	 * @since 0.3.0.6
+	 * @see Classification#setParallelThreshold(int)
+	 */
+	protected boolean isReentrant()
+	{
+		return false;
+	}
+
+	/**
+	 * Copies of a distance classifier keep their own scratch space and
+	 * heap, and only read the shared training set and model.
+	 * @return <code>true</code>
+	 * @since 0.3.0.6
+	 * @see Classification#classifyBatch(double[][], boolean)
+	 */
+	protected boolean isCloneReentrant()
+	{
+		return true;
+	}
+
+	/**
+	 * Tells whether the distance is a metric, possibly after
+	 * <code>toMetric()</code>, so that it may be indexed.
+	 * @return <code>false</code> by default
+	 * @since 0.3.0.6
+	 * @see #INDEX_VP_TREE
+	 */
+	protected boolean isMetric()
+	{
+		return false;
+	}
+
+	/**
+	 * Maps a distance onto the metric it is a monotone function of.
+	 * @param pdDistance distance as computed by <code>distance()</code>
+	 * @return the metric distance; the same by default
+	 * @since 0.3.0.6
+	 */
+	protected double toMetric(double pdDistance)
+	{
+		return pdDistance;
+	}
+
+	/**
+	 * Identifies the metric along with any of its parameters,
+	 * so that an index built for another one is not used.
+	 * @return the class name by default
+	 * @since 0.3.0.6
+	 */
+	protected String getMetricSignature()
+	{
+		return getClass().getName();
+	}
+
+	/**
+	 * Retrieves the index of the model: the one already at hand, the one
+	 * cached along with a training set shared through the <code>ModelCache</code>,
+	 * the one stored next to the training set if it matches the model, or
+	 * a newly built one, which is then stored. An index loaded or built for
+	 * a shared training set is cached along with it, so it is only loaded,
+	 * checked against the model or built once for all the classifiers.
+	 * @param poModel the model
+	 * @return the index
+	 * @throws ClassificationException if the index could not be stored
+	 * @since 0.3.0.6
+	 */
+	protected VPTreeIndex getIndex(TrainingMatrix poModel)
+	throws ClassificationException
+	{
+		if(this.oIndex != null && this.oIndexModel == poModel)
+		{
+			return this.oIndex;
+		}
+
+		String strKey = VPTreeIndex.class.getName() + " " + getMetricSignature();
+		VPTreeIndex oIndex = (VPTreeIndex)getDerived(strKey);
+
+		if(oIndex == null)
+		{
+			try
+			{
+				boolean bPersistent = this.iCurrentDumpMode == DUMP_GZIP_BINARY || this.iCurrentDumpMode == DUMP_BINARY;
+
+				oIndex = new VPTreeIndex();
+				oIndex.setDumpMode(this.iCurrentDumpMode);
+				oIndex.setFilename(getIndexFilename());
+
+				if(bPersistent && new File(oIndex.getFilename()).isFile())
+				{
+					oIndex.restore();
+				}
+
+				if(oIndex.matches(poModel, getMetricSignature()) == false)
+				{
+					Debug.debug("Distance.getIndex() - building VP-tree of " + poModel.getRows() + " subjects");
+
+					String strFilename = oIndex.getFilename();
+
+					oIndex = VPTreeIndex.build(poModel, this);
+					oIndex.setDumpMode(this.iCurrentDumpMode);
+					oIndex.setFilename(strFilename);
+
+					if(bPersistent)
+					{
+						oIndex.dump();
+					}
+				}
+			}
+			catch(StorageException e)
+			{
+				throw new ClassificationException(e);
+			}
+
+			// The rows and the thresholds
+			oIndex = (VPTreeIndex)putDerived(strKey, oIndex, 12L * oIndex.size());
+		}
+
+		this.oIndex = oIndex;
+		this.oIndexModel = poModel;
+
+		return oIndex;
+	}
+
+	/**
+	 * Retrieves the name of the file the index is stored in, which
+	 * is that of the training set followed by the classifier's name.
+	 * @return the filename
+	 * @since 0.3.0.6
+	 */
+	protected String getIndexFilename()
+	{
+		return new StringBuffer()
+			.append(getTrainingSetFilename()).append(".")
+			.append(getClass().getName()).append(".vptree")
+			.toString();
+	}
+
+	/**
+	 * Retrieves the index in use.
+	 * @return <code>INDEX_NONE</code> or <code>INDEX_VP_TREE</code>
+	 * @since 0.3.0.6
+	 */
+	public int getIndexType()
+	{
+		return this.iIndexType;
+	}
+
+	/**
+	 * Selects the index to look up the nearest subjects in. The index
+	 * is only used by the metric distances with a result limit set, and
+	 * is built, and stored next to the training set, on the first
+	 * classification after the training set changed.
+	 * @param piIndexType <code>INDEX_NONE</code> or <code>INDEX_VP_TREE</code>
+	 * @since 0.3.0.6
+	 * @see #setResultLimit(int)
+	 */
+	public void setIndexType(int piIndexType)
+	{
+		this.iIndexType = piIndexType;
+	}
+
 	/**
 	 * Generic distance routine. To be overridden.
 	 * @param padVector1 first vector for distance calculation
@@ -165,6 +494,33 @@ extends Classification
 		return this.oResultSet.getMinimumResult();
 	}
 
+	/**
+	 * Shares the VP-tree with the copy, as searching it keeps no state.
+	 * @see marf.Classification.Classification#prepareBatchWorker(marf.Classification.Classification)
+	 * @since 0.3.0.6
+	 */
+	protected void prepareBatchWorker(Classification poWorker)
+	{
+		Distance oWorker = (Distance)poWorker;
+		oWorker.oIndex = this.oIndex;
+		oWorker.oIndexModel = this.oIndexModel;
+	}
+
+	/**
+	 * Implements Cloneable interface for the Distance object.
+	 * The clone gets its own scratch space.
+	 * @see marf.Classification.Classification#clone()
+	 * @since 0.3.0.6
+	 */
+	public Object clone()
+	{
+		Distance oClone = (Distance)super.clone();
+		oClone.oRowScratch = null;
+		oClone.oIndex = null;
+		oClone.oIndexModel = null;
+		return oClone;
+	}
+
 	/**
 	 * Retrieves class' revision.
 	 * @return revision string
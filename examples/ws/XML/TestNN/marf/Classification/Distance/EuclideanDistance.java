@@ -1,6 +1,7 @@
 package marf.Classification.Distance;
 
 import marf.FeatureExtraction.IFeatureExtraction;
+import marf.math.Algorithms;
 
 
 /**
@@ -42,14 +43,57 @@ extends Distance
 	 */
 	public final double distance(final double[] paVector1, final double[] paVector2)
 	{
-		double dDistance = 0;
+		return Algorithms.Distances.squaredEuclidean(paVector1, paVector2, paVector1.length);
+	}
+
+	/**
+	 * EuclideanDistance against a mean vector within the model.
+	 * @see Distance#distance(double[], int, double[])
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector)
+	{
+		return Algorithms.Distances.squaredEuclidean(padModel, piOffset, padVector, padVector.length);
+	}
 
-		for(int f = 0; f < paVector1.length; f++)
-		{
-			dDistance += (paVector1[f] - paVector2[f]) * (paVector1[f] - paVector2[f]);
-		}
+	/**
+	 * EuclideanDistance against a mean vector within the model,
+	 * abandoned once past the bound.
+	 * @see Distance#distance(double[], int, double[], double)
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector, final double pdBound)
+	{
+		return Algorithms.Distances.squaredEuclidean(padModel, piOffset, padVector, padVector.length, pdBound);
+	}
 
-		return dDistance;
+	/**
+	 * @see Distance#isReentrant()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isReentrant()
+	{
+		return true;
+	}
+
+	/**
+	 * The square root of the computed (squared) distance is a metric.
+	 * @see Distance#isMetric()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isMetric()
+	{
+		return true;
+	}
+
+	/**
+	 * Takes the square root of the squared distance.
+	 * @see Distance#toMetric(double)
+	 * @since 0.3.0.6
+	 */
+	protected double toMetric(double pdDistance)
+	{
+		return Math.sqrt(pdDistance);
 	}
 
 	/**
@@ -1,7 +1,16 @@
 package marf.Classification.Distance;
 
+import java.io.Serializable;
+import java.util.Vector;
+
+import marf.MARF;
+import marf.Classification.Classification;
+import marf.Classification.ClassificationException;
+import marf.Classification.IRowMeasure;
 import marf.FeatureExtraction.IFeatureExtraction;
-import marf.util.NotImplementedException;
+import marf.Storage.TrainingMatrix;
+import marf.math.Algorithms;
+import marf.util.Debug;
 
 
 /**
@@ -17,7 +26,7 @@ extends Distance
 	/**
 	 * For serialization versioning.
 	 */
-	private static final long serialVersionUID = -5941853501910208073L;
+	private static final long serialVersionUID = -7971704754246245487L;
 
 	/**
 	 * Default allowed difference between two features of 0.01. 
@@ -40,6 +49,9 @@ extends Distance
 	/**
 	 * Indicates to compare double array for hamming
 	 * distance in true bitwise expansion (i.e. bitwise comparison).
+	 * As of 0.3.0.6 the features are binarised to a bit each and
+	 * the bit-packed codes are compared.
+	 * @see BinaryCodes
 	 */
 	public static final int STRICT_BITWISE = 2;
 
@@ -47,6 +59,22 @@ extends Distance
 	protected int iDistanceType = LENIENT_DOUBLE;//STRICT_DOUBLE; 
 	protected double dAllowedError = DEFAULT_ALLOWED_ERROR; 
 
+	/**
+	 * How the features are binarised for <code>STRICT_BITWISE</code>.
+	 * @since 0.3.0.6
+	 */
+	protected int iThresholdType = BinaryCodes.THRESHOLD_MEDIAN;
+
+	/**
+	 * Binary codes of the current model, if built.
+	 */
+	private transient BinaryCodes oCodes = null;
+
+	/**
+	 * The model the codes were built from.
+	 */
+	private transient TrainingMatrix oCodesModel = null;
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -58,63 +86,284 @@ extends Distance
 	
 	/**
 	 * Hamming Distance Constructor.
+	 * The classification parameters after the dump mode, if any, are the
+	 * distance type (<code>Integer</code>), the allowed error (<code>Double</code>),
+	 * the threshold type (<code>Integer</code>), and then the index
+	 * parameters of <code>Distance</code>.
 	 * @param poFeatureExtraction FeatureExtraction module reference
+	 * @throws ClassCastException if the parameters are not of those types
 	 */
 	public HammingDistance(IFeatureExtraction poFeatureExtraction)
 	{
 		super(poFeatureExtraction);
+
+		// See if there is a request for another distance type, allowed error or threshold type
+		if(MARF.getModuleParams() != null)
+		{
+			Vector<Serializable> oParams = MARF.getModuleParams().getClassificationParams();
+
+			if(oParams != null && oParams.size() > 1)
+			{
+				this.iDistanceType = ((Integer)oParams.elementAt(1)).intValue();
+
+				if(oParams.size() > 2)
+				{
+					this.dAllowedError = ((Double)oParams.elementAt(2)).doubleValue();
+				}
+
+				if(oParams.size() > 3)
+				{
+					this.iThresholdType = ((Integer)oParams.elementAt(3)).intValue();
+				}
+
+				// The index parameters come after ours
+				setIndexParams(4);
+			}
+		}
 	}
 
 	/**
 	 * Hamming Distance implementation.
+	 * In the bitwise mode the vectors are binarised with the thresholds
+	 * of the current model's codes, or by sign if there are none.
 	 * @param padVector1 first vector to compare
 	 * @param padVector2 second vector to compare
 	 * @return diff-distance between two feature vectors
 	 */
 	public final double distance(final double[] padVector1, final double[] padVector2)
 	{
-		double dDistance = 0;
-
-		for(int i = 0; i < padVector1.length; i++)
+		// The mode is the same for all the elements; pick the loop once
+		switch(this.iDistanceType)
 		{
-			switch(this.iDistanceType)
+			case STRICT_DOUBLE:
 			{
-				case STRICT_DOUBLE:
-				{
-					if(padVector1[i] != padVector2[i])
-					{
-						dDistance += 1;
-					}
-
-					break;
-				}
+				return Algorithms.Distances.countUnequal(padVector1, padVector2, padVector1.length);
+			}
 
-				case LENIENT_DOUBLE:
-				{
-					if(Math.abs(padVector1[i] - padVector2[i]) > this.dAllowedError)
-					{
-						dDistance += 1;
-					}
+			case LENIENT_DOUBLE:
+			{
+				return Algorithms.Distances.countDifferent(padVector1, padVector2, padVector1.length, this.dAllowedError);
+			}
 
-					break;
-				}
+			case STRICT_BITWISE:
+			{
+				BinaryCodes oCodes = this.oCodes;
 
-				case STRICT_BITWISE:
+				if(oCodes == null || oCodes.getThresholds().length != padVector1.length)
 				{
-					// XOR bitwise each element and count how many 1's left;
-					// accumulate that count in dDistance
-					throw new NotImplementedException();
-//					break;
+					oCodes = new BinaryCodes(new double[padVector1.length], 0);
 				}
-				
-				default:
+
+				return Algorithms.Distances.countDifferentBits(oCodes.pack(padVector1), oCodes.pack(padVector2), oCodes.getWords());
+			}
+
+			default:
+			{
+				assert false : "Mode " + this.iDistanceType + " unsupported.";
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Hamming distance against a mean vector within the model.
+	 * @see Distance#distance(double[], int, double[])
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector)
+	{
+		switch(this.iDistanceType)
+		{
+			case STRICT_DOUBLE:
+			{
+				return Algorithms.Distances.countUnequal(padModel, piOffset, padVector, padVector.length);
+			}
+
+			case LENIENT_DOUBLE:
+			{
+				return Algorithms.Distances.countDifferent(padModel, piOffset, padVector, padVector.length, this.dAllowedError);
+			}
+
+			default:
+			{
+				return super.distance(padModel, piOffset, padVector);
+			}
+		}
+	}
+
+	/**
+	 * In the bitwise mode binarises the incoming vector once and
+	 * compares it against the codes of the model.
+	 * @see Distance#getMeasure(TrainingMatrix, double[])
+	 * @since 0.3.0.6
+	 */
+	protected IRowMeasure getMeasure(TrainingMatrix poModel, double[] padVector)
+	throws ClassificationException
+	{
+		if(this.iDistanceType != STRICT_BITWISE)
+		{
+			return super.getMeasure(poModel, padVector);
+		}
+
+		final BinaryCodes oCodes = getCodes(poModel);
+		final long[] alCodes = oCodes.getCodes();
+		final long[] alIncomingCode = oCodes.pack(padVector);
+		final int iWords = oCodes.getWords();
+		final boolean bDebug = Debug.isDebugOn();
+
+		return new IRowMeasure()
+		{
+			public double measure(TrainingMatrix poModel, int piRow, double[] padVector, double pdBound)
+			{
+				double dCurrentDistance = Algorithms.Distances.countDifferentBits(alCodes, oCodes.getOffset(piRow), alIncomingCode, iWords);
+
+				if(bDebug)
 				{
-					assert false : "Mode " + this.iDistanceType + " unsupported.";
+					Debug.debug("Distance for subject " + poModel.getSubjectID(piRow) + " = " + dCurrentDistance);
 				}
+
+				return dCurrentDistance;
+			}
+		};
+	}
+
+	/**
+	 * Retrieves the binary codes of the model, building them if
+	 * the ones at hand are of another model. The codes of a training set
+	 * shared through the <code>ModelCache</code> are cached along with it
+	 * by threshold type, so they are only built once for all the classifiers.
+	 * @param poModel the model
+	 * @return the codes
+	 * @since 0.3.0.6
+	 */
+	protected synchronized BinaryCodes getCodes(TrainingMatrix poModel)
+	{
+		if(this.oCodes == null || this.oCodesModel != poModel)
+		{
+			String strKey = BinaryCodes.class.getName() + " " + this.iThresholdType;
+			BinaryCodes oCodes = (BinaryCodes)getDerived(strKey);
+
+			if(oCodes == null)
+			{
+				oCodes = BinaryCodes.build(poModel, this.iThresholdType);
+
+				// The codes and the thresholds
+				oCodes = (BinaryCodes)putDerived(strKey, oCodes, 8L * (oCodes.getCodes().length + poModel.getDimensions()));
 			}
+
+			this.oCodes = oCodes;
+			this.oCodesModel = poModel;
 		}
 
-		return dDistance;
+		return this.oCodes;
+	}
+
+	/**
+	 * Retrieves how the vectors are compared.
+	 * @return one of <code>STRICT_DOUBLE</code>, <code>LENIENT_DOUBLE</code>, <code>STRICT_BITWISE</code>
+	 * @since 0.3.0.6
+	 */
+	public int getDistanceType()
+	{
+		return this.iDistanceType;
+	}
+
+	/**
+	 * Sets how the vectors are compared.
+	 * @param piDistanceType one of <code>STRICT_DOUBLE</code>, <code>LENIENT_DOUBLE</code>, <code>STRICT_BITWISE</code>
+	 * @since 0.3.0.6
+	 */
+	public void setDistanceType(int piDistanceType)
+	{
+		this.iDistanceType = piDistanceType;
+	}
+
+	/**
+	 * Retrieves the largest difference of two features still considered equal.
+	 * @return the allowed error
+	 * @since 0.3.0.6
+	 */
+	public double getAllowedError()
+	{
+		return this.dAllowedError;
+	}
+
+	/**
+	 * Sets the largest difference of two features still considered
+	 * equal in the <code>LENIENT_DOUBLE</code> mode.
+	 * @param pdAllowedError the allowed error
+	 * @since 0.3.0.6
+	 */
+	public void setAllowedError(double pdAllowedError)
+	{
+		this.dAllowedError = pdAllowedError;
+	}
+
+	/**
+	 * Retrieves how the features are binarised in the bitwise mode.
+	 * @return <code>BinaryCodes.THRESHOLD_SIGN</code> or <code>BinaryCodes.THRESHOLD_MEDIAN</code>
+	 * @since 0.3.0.6
+	 */
+	public int getThresholdType()
+	{
+		return this.iThresholdType;
+	}
+
+	/**
+	 * Sets how the features are binarised in the bitwise mode:
+	 * by sign, or by the median over the subjects (the default),
+	 * which suits features that are never negative.
+	 * @param piThresholdType <code>BinaryCodes.THRESHOLD_SIGN</code> or <code>BinaryCodes.THRESHOLD_MEDIAN</code>
+	 * @since 0.3.0.6
+	 */
+	public synchronized void setThresholdType(int piThresholdType)
+	{
+		this.iThresholdType = piThresholdType;
+		this.oCodes = null;
+		this.oCodesModel = null;
+	}
+
+	/**
+	 * In the bitwise mode the codes of the model are built once under the
+	 * lock of <code>getCodes()</code>, and the incoming vector is binarised
+	 * once, before the scan, which then only reads them. The other modes
+	 * only read the vectors and the allowed error.
+	 * @see Distance#isReentrant()
+	 * @see #getCodes(TrainingMatrix)
+	 * @since 0.3.0.6
+	 */
+	protected boolean isReentrant()
+	{
+		return true;
+	}
+
+	/**
+	 * Also shares the bit-packed codes of the model, which are only read.
+	 * @see Distance#prepareBatchWorker(marf.Classification.Classification)
+	 * @since 0.3.0.6
+	 */
+	protected void prepareBatchWorker(Classification poWorker)
+	{
+		super.prepareBatchWorker(poWorker);
+
+		HammingDistance oWorker = (HammingDistance)poWorker;
+		oWorker.oCodes = this.oCodes;
+		oWorker.oCodesModel = this.oCodesModel;
+	}
+
+	/**
+	 * Implements Cloneable interface for the HammingDistance object.
+	 * The clone builds its own codes.
+	 * @see Distance#clone()
+	 * @since 0.3.0.6
+	 */
+	public Object clone()
+	{
+		HammingDistance oClone = (HammingDistance)super.clone();
+		oClone.oCodes = null;
+		oClone.oCodesModel = null;
+		return oClone;
 	}
 
 	/**
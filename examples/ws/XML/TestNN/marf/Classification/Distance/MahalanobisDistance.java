@@ -1,6 +1,18 @@
 package marf.Classification.Distance;
 
+import java.io.File;
+import java.util.Vector;
+
+import marf.MARF;
+import marf.Classification.Classification;
+import marf.Classification.ClassificationException;
+import marf.Classification.ModelCache;
 import marf.FeatureExtraction.IFeatureExtraction;
+import marf.Storage.ITrainingSample;
+import marf.Storage.StorageException;
+import marf.Storage.TrainingMatrix;
+import marf.math.CholeskyDecomposition;
+import marf.math.MathException;
 import marf.math.Matrix;
 import marf.util.Debug;
 
@@ -11,6 +23,14 @@ import marf.util.Debug;
  * <p><b>NOTE</b>: Implemented as equivalent to Euclidean Distance in 0.2.0, i.e.
  * the Covariance matrix is always an Indentity one.</p>
  *
+ * <p>As of 0.3.0.6 the covariance matrix is learned: the pooled
+ * within-subject covariance of the feature vectors is estimated while
+ * training (see <code>CovarianceEstimate</code>), full, diagonal, or shrunk
+ * towards a multiple of the identity, and is factored once per model
+ * by the Cholesky decomposition, so that a distance is a single triangular
+ * solve. Until there is at least one subject with two vectors the
+ * identity is used, as before.</p>
+ *
  * $Id: MahalanobisDistance.java,v 1.23 2006/12/11 22:56:34 mokhov Exp $
  *
  * @author Serguei Mokhov
@@ -20,11 +40,80 @@ import marf.util.Debug;
 public class MahalanobisDistance
 extends Distance
 {
+	/**
+	 * Indicates the full sample covariance matrix is used.
+	 * @since 0.3.0.6
+	 */
+	public static final int COVARIANCE_FULL = 0;
+
+	/**
+	 * Indicates only the variances of the features are used,
+	 * i.e. the features are assumed uncorrelated.
+	 * @since 0.3.0.6
+	 */
+	public static final int COVARIANCE_DIAGONAL = 1;
+
+	/**
+	 * Indicates the sample covariance matrix is shrunk towards a multiple
+	 * of the identity, which keeps it well-conditioned when there are
+	 * few vectors per feature. This is the default.
+	 * @since 0.3.0.6
+	 * @see #setShrinkage(double)
+	 */
+	public static final int COVARIANCE_SHRINKAGE = 2;
+
+	/**
+	 * Default shrinkage intensity of 0.1.
+	 * @since 0.3.0.6
+	 */
+	public static final double DEFAULT_SHRINKAGE = 0.1;
+
+	/**
+	 * Relative amount added to the diagonal of a covariance
+	 * matrix that is not positive-definite, e.g. because a feature
+	 * never varies, at each attempt to factor it.
+	 */
+	private static final double RIDGE = 1e-9;
+
 	/**
 	 * Covariance Matrix.
 	 */
 	private Matrix oC = null;
 
+	/**
+	 * How the covariance matrix is estimated.
+	 * @since 0.3.0.6
+	 */
+	protected int iCovarianceType = COVARIANCE_SHRINKAGE;
+
+	/**
+	 * Shrinkage intensity for <code>COVARIANCE_SHRINKAGE</code>.
+	 * @since 0.3.0.6
+	 */
+	protected double dShrinkage = DEFAULT_SHRINKAGE;
+
+	/**
+	 * Scatter of the vectors trained on, if loaded.
+	 */
+	private transient CovarianceEstimate oEstimate = null;
+
+	/**
+	 * Whitening by the covariance matrix in use, replaced as a whole so
+	 * that the threads computing distances read it without locking;
+	 * <code>null</code> or of neither kind for the identity.
+	 */
+	private transient volatile Whitening oWhitening = null;
+
+	/**
+	 * The model the covariance matrix was factored for.
+	 */
+	private transient TrainingMatrix oWhiteningModel = null;
+
+	/**
+	 * Difference vector buffers of the threads computing distances.
+	 */
+	private transient ThreadLocal<double[]> oDifferenceScratch = null;
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -32,7 +121,7 @@ extends Distance
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.4
 	 */
-	private static final long serialVersionUID = -6720267386878796592L;
+	private static final long serialVersionUID = 5620197060588373033L;
 
 	/**
 	 * MahalanobisDistance Constructor.
@@ -41,47 +130,568 @@ extends Distance
 	public MahalanobisDistance(IFeatureExtraction poFeatureExtraction)
 	{
 		super(poFeatureExtraction);
+	}
 
-		int iD = this.oFeatureExtraction.getFeaturesArray().length;
+	/**
+	 * Trains on the feature vector and adds it to the covariance estimate,
+	 * which is then stored next to the training set.
+	 * @see marf.Classification.Classification#train(double[])
+	 * @since 0.3.0.6
+	 */
+	public boolean train(double[] padFeatureVector)
+	throws ClassificationException
+	{
+		boolean bTrained = super.train(padFeatureVector);
 
-		this.oC = new Matrix(iD, iD);
+		if(bTrained == false)
+		{
+			return false;
+		}
 
-		/*
-		 * Make the default an identity matrix rendering it at least
-		 * equivalent to the Euclidean distance. Will be fixed in 0.3.*.
-		 */
-		this.oC.makeIdentity();
+		CovarianceEstimate oEstimate = getEstimate();
+		boolean bChanged = false;
+
+		// The subject's mean vector now including the new one
+		Vector<ITrainingSample> oTrainingSamples = this.oTrainingSet.getClusters();
+
+		for(int i = 0; i < oTrainingSamples.size(); i++)
+		{
+			ITrainingSample oTrainingSample = oTrainingSamples.get(i);
+
+			if(oTrainingSample.getSubjectID() == MARF.getCurrentSubject())
+			{
+				bChanged = oEstimate.add
+				(
+					oTrainingSample.getSubjectID(),
+					padFeatureVector,
+					oTrainingSample.getMeanVector(),
+					oTrainingSample.getMeanCount()
+				);
+
+				break;
+			}
+		}
+
+		if(bChanged)
+		{
+			setCovariance(null);
+			this.oWhiteningModel = null;
+		}
+
+		// Hashed in place, as the model is only laid out and factored when classifying
+		if(oEstimate.setFingerprint(TrainingMatrix.getFingerprint(oTrainingSamples)) || bChanged)
+		{
+			if(isPersistent())
+			{
+				try
+				{
+					oEstimate.dump();
+
+					// The factor cached along with the training set may have been of the old one
+					ModelCache.invalidate(getTrainingSetFilename());
+				}
+				catch(StorageException e)
+				{
+					throw new ClassificationException(e);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Retrieves the model and factors the covariance matrix estimated
+	 * so far for the distances against it, once per model. The factor of
+	 * a training set shared through the <code>ModelCache</code> is cached
+	 * along with it by covariance type and shrinkage, so the estimate is only
+	 * read and factored once for all the classifiers.
+	 * @see marf.Classification.Classification#getModel()
+	 * @since 0.3.0.6
+	 */
+	protected TrainingMatrix getModel()
+	throws ClassificationException
+	{
+		TrainingMatrix oModel = super.getModel();
+
+		if(this.oWhiteningModel != oModel)
+		{
+			String strKey = Whitening.class.getName() + " " + getClass().getName() + " " + this.iCovarianceType + " " + getEffectiveShrinkage();
+			Whitening oWhitening = (Whitening)getDerived(strKey);
+
+			if(oWhitening == null)
+			{
+				CovarianceEstimate oEstimate = checkEstimate(oModel.getFingerprint());
+
+				if(oEstimate.getDimensions() == oModel.getDimensions())
+				{
+					oWhitening = whiten(oEstimate.getCovariance(this.iCovarianceType == COVARIANCE_DIAGONAL, getEffectiveShrinkage()));
+				}
+				else
+				{
+					oWhitening = whiten(null);
+				}
+
+				// The covariance matrix and its factor
+				oWhitening = (Whitening)putDerived(strKey, oWhitening, 16L * oModel.getDimensions() * oModel.getDimensions());
+			}
+
+			setWhitening(oWhitening);
+			this.oWhiteningModel = oModel;
+		}
+
+		return oModel;
+	}
+
+	/**
+	 * Drops the model and the factored covariance matrix, e.g. once the
+	 * covariance type or the shrinkage changed; they are rebuilt on the
+	 * next classification.
+	 * @see marf.Classification.Classification#invalidateModel()
+	 * @since 0.3.0.6
+	 */
+	public void invalidateModel()
+	{
+		super.invalidateModel();
+		this.oWhiteningModel = null;
+	}
+
+	/**
+	 * Checks the covariance estimate stored next to the training set
+	 * against the training set before the vector is added to it.
+	 * @see marf.Classification.Classification#checkTrainingSet()
+	 * @since 0.3.0.6
+	 */
+	protected void checkTrainingSet()
+	throws ClassificationException
+	{
+		// The one at hand has been checked already
+		if(this.oEstimate == null)
+		{
+			checkEstimate(TrainingMatrix.getFingerprint(this.oTrainingSet.getClusters()));
+		}
+	}
+
+	/**
+	 * Retrieves the covariance estimate and drops it if it is not
+	 * of the training set at hand, but left from another one stored
+	 * under the same name before.
+	 * @param plFingerprint fingerprint of the model of the training set
+	 * @return the estimate; a new one if it was dropped
+	 * @throws ClassificationException if the stored estimate could not be read
+	 * @see TrainingMatrix#getFingerprint()
+	 */
+	private CovarianceEstimate checkEstimate(final long plFingerprint)
+	throws ClassificationException
+	{
+		CovarianceEstimate oEstimate = getEstimate();
+
+		if(oEstimate.getFingerprint() != plFingerprint)
+		{
+			Debug.debug("MahalanobisDistance.checkEstimate() - covariance estimate is not of this training set; dropping it.");
+
+			oEstimate = newEstimate();
+			oEstimate.setFingerprint(plFingerprint);
+			this.oEstimate = oEstimate;
+		}
+
+		return oEstimate;
+	}
+
+	/**
+	 * Retrieves the covariance estimate: the one already at hand,
+	 * the one stored next to the training set, or a new one.
+	 * @return the estimate
+	 * @throws ClassificationException if the stored estimate could not be read
+	 * @since 0.3.0.6
+	 */
+	protected CovarianceEstimate getEstimate()
+	throws ClassificationException
+	{
+		if(this.oEstimate == null)
+		{
+			CovarianceEstimate oEstimate = newEstimate();
+
+			if(isPersistent() && new File(oEstimate.getFilename()).isFile())
+			{
+				try
+				{
+					oEstimate.restore();
+				}
+				catch(StorageException e)
+				{
+					throw new ClassificationException(e);
+				}
+			}
+
+			this.oEstimate = oEstimate;
+		}
+
+		return this.oEstimate;
+	}
+
+	/**
+	 * Creates an empty covariance estimate stored next to the training set.
+	 * @return the estimate
+	 */
+	private CovarianceEstimate newEstimate()
+	{
+		CovarianceEstimate oEstimate = new CovarianceEstimate();
+		oEstimate.setDumpMode(this.iCurrentDumpMode);
+		oEstimate.setFilename(getCovarianceFilename());
+		return oEstimate;
+	}
+
+	/**
+	 * Sets the covariance matrix and factors it. The matrix is made
+	 * positive-definite by adding to its diagonal if needed. If it is
+	 * <code>null</code> or cannot be factored, the identity is used.
+	 * @param poCovariance symmetric covariance matrix or <code>null</code>
+	 * @since 0.3.0.6
+	 */
+	protected void setCovariance(Matrix poCovariance)
+	{
+		setWhitening(whiten(poCovariance));
+	}
+
+	/**
+	 * Puts a whitening in use.
+	 * @param poWhitening the whitening
+	 */
+	private synchronized void setWhitening(Whitening poWhitening)
+	{
+		this.oC = poWhitening.oCovariance;
+
+		// Published as a whole, so readers see the old or the new one
+		this.oWhitening = poWhitening;
 	}
 
 	/**
-	 * Partial MahalanobisDistance implementation.
+	 * Factors a covariance matrix of the current covariance type. The
+	 * matrix is made positive-definite by adding to its diagonal if needed.
+	 * @param poCovariance symmetric covariance matrix or <code>null</code>
+	 * @return the whitening; of the identity if the matrix is
+	 * <code>null</code> or cannot be factored
+	 */
+	private Whitening whiten(Matrix poCovariance)
+	{
+		if(poCovariance == null)
+		{
+			return new Whitening(null, null, null);
+		}
+
+		int n = poCovariance.getRows();
+		double[] adC = poCovariance.getMatrixArray();
+		double dTrace = 0.0;
+
+		for(int i = 0; i < n; i++)
+		{
+			dTrace += adC[i * n + i];
+		}
+
+		double dRidge = RIDGE * (dTrace > 0 ? dTrace / n : 1.0);
+
+		if(this.iCovarianceType == COVARIANCE_DIAGONAL)
+		{
+			double[] adInverseDeviations = new double[n];
+
+			for(int i = 0; i < n; i++)
+			{
+				adInverseDeviations[i] = 1.0 / Math.sqrt(Math.max(adC[i * n + i], dRidge));
+			}
+
+			return new Whitening(poCovariance, null, adInverseDeviations);
+		}
+
+		Matrix oC = new Matrix(poCovariance);
+
+		// A few tries with a growing ridge for a singular matrix
+		for(int iTry = 0; iTry < 8; iTry++)
+		{
+			try
+			{
+				return new Whitening(poCovariance, new CholeskyDecomposition(oC), null);
+			}
+			catch(MathException e)
+			{
+				Debug.debug("MahalanobisDistance.whiten() - " + e.getMessage() + " Adding " + dRidge + " to the diagonal.");
+
+				for(int i = 0; i < n; i++)
+				{
+					oC.getMatrixArray()[i * n + i] += dRidge;
+				}
+
+				dRidge *= 10;
+			}
+		}
+
+		Debug.debug("MahalanobisDistance.whiten() - WARNING: covariance matrix could not be factored; using identity.");
+
+		return new Whitening(poCovariance, null, null);
+	}
+
+	/**
+	 * Retrieves the covariance matrix in use.
+	 * @return the matrix; <code>null</code> if it is the identity
+	 * @since 0.3.0.6
+	 */
+	public Matrix getCovariance()
+	{
+		return this.oC;
+	}
+
+	/**
+	 * MahalanobisDistance implementation.
 	 * @param paVector1 first vector to compare
 	 * @param paVector2 second vector to compare
 	 * @return Mahalanobis distance between two feature vectors
 	 */
 	public final double distance(final double[] paVector1, final double[] paVector2)
 	{
-		Debug.debug
-		(
-			"MahalanobisDistance.distance() - WARNING:  Mahalanobis distance is equivalent " +
-			"to Euclidean as there is no learning of the co-variance matrix."
-		);
+		return distance(paVector1, 0, paVector2);
+	}
+
+	/**
+	 * Mahalanobis distance against a mean vector within the model: the
+	 * difference is whitened by one triangular solve against the Cholesky
+	 * factor in a per-thread buffer, so nothing is allocated.
+	 * @see Distance#distance(double[], int, double[])
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector)
+	{
+		Whitening oWhitening = this.oWhitening;
+		CholeskyDecomposition oFactor = oWhitening == null ? null : oWhitening.oFactor;
+		double[] adInverseDeviations = oWhitening == null ? null : oWhitening.adInverseDeviations;
 
 		double dDistance = 0.0;
 
-		Matrix oVector1 = new Matrix(paVector1);
-		Matrix oVector2 = new Matrix(paVector2);
+		if(oFactor != null && oFactor.getDimension() == padVector.length)
+		{
+			double[] adDifference = getDifferenceScratch(padVector.length);
+
+			for(int i = 0; i < padVector.length; i++)
+			{
+				adDifference[i] = padModel[piOffset + i] - padVector[i];
+			}
+
+			dDistance = oFactor.getInverseQuadraticForm(adDifference, adDifference);
+		}
+		else if(adInverseDeviations != null && adInverseDeviations.length == padVector.length)
+		{
+			for(int i = 0; i < padVector.length; i++)
+			{
+				double dDifference = (padModel[piOffset + i] - padVector[i]) * adInverseDeviations[i];
+				dDistance += dDifference * dDifference;
+			}
+		}
+		else
+		{
+			Debug.debug
+			(
+				"MahalanobisDistance.distance() - WARNING:  Mahalanobis distance is equivalent " +
+				"to Euclidean as there is no learned co-variance matrix."
+			);
+
+			for(int i = 0; i < padVector.length; i++)
+			{
+				double dDifference = padModel[piOffset + i] - padVector[i];
+				dDistance += dDifference * dDifference;
+			}
+		}
+
+		return Math.sqrt(dDistance);
+	}
+
+	/**
+	 * Retrieves the calling thread's difference vector buffer.
+	 * @param piLength length needed
+	 * @return the buffer
+	 */
+	private double[] getDifferenceScratch(final int piLength)
+	{
+		ThreadLocal<double[]> oScratch = this.oDifferenceScratch;
+
+		if(oScratch == null)
+		{
+			synchronized(this)
+			{
+				if(this.oDifferenceScratch == null)
+				{
+					this.oDifferenceScratch = new ThreadLocal<double[]>();
+				}
+
+				oScratch = this.oDifferenceScratch;
+			}
+		}
+
+		double[] adScratch = oScratch.get();
+
+		if(adScratch == null || adScratch.length != piLength)
+		{
+			adScratch = new double[piLength];
+			oScratch.set(adScratch);
+		}
+
+		return adScratch;
+	}
+
+	/**
+	 * MahalanobisDistance only reads the factored covariance matrix while
+	 * computing and keeps its buffers per thread.
+	 * @see Distance#isReentrant()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isReentrant()
+	{
+		return true;
+	}
+
+	/**
+	 * Retrieves the name of the file the covariance estimate is stored
+	 * in, which is that of the training set followed by the classifier's name.
+	 * @return the filename
+	 * @since 0.3.0.6
+	 */
+	protected String getCovarianceFilename()
+	{
+		return new StringBuffer()
+			.append(getTrainingSetFilename()).append(".")
+			.append(getClass().getName()).append(".cov")
+			.toString();
+	}
+
+	/**
+	 * Tells whether the covariance estimate is stored, which
+	 * it is with the binary dump modes of the training set.
+	 * @return <code>true</code> if stored
+	 */
+	private boolean isPersistent()
+	{
+		return this.iCurrentDumpMode == DUMP_GZIP_BINARY || this.iCurrentDumpMode == DUMP_BINARY;
+	}
+
+	/**
+	 * Shrinkage intensity for the current covariance type.
+	 * @return the intensity; 0 unless the type is <code>COVARIANCE_SHRINKAGE</code>
+	 */
+	private double getEffectiveShrinkage()
+	{
+		return this.iCovarianceType == COVARIANCE_SHRINKAGE ? this.dShrinkage : 0.0;
+	}
+
+	/**
+	 * Retrieves how the covariance matrix is estimated.
+	 * @return one of COVARIANCE_*
+	 * @since 0.3.0.6
+	 */
+	public int getCovarianceType()
+	{
+		return this.iCovarianceType;
+	}
+
+	/**
+	 * Sets how the covariance matrix is estimated; takes
+	 * effect with the next model.
+	 * @param piCovarianceType one of COVARIANCE_*
+	 * @since 0.3.0.6
+	 * @see #invalidateModel()
+	 */
+	public void setCovarianceType(int piCovarianceType)
+	{
+		this.iCovarianceType = piCovarianceType;
+	}
+
+	/**
+	 * Retrieves the shrinkage intensity.
+	 * @return the intensity
+	 * @since 0.3.0.6
+	 */
+	public double getShrinkage()
+	{
+		return this.dShrinkage;
+	}
+
+	/**
+	 * Sets the shrinkage intensity for <code>COVARIANCE_SHRINKAGE</code>, from
+	 * 0 (the sample covariance) to 1 (a multiple of the identity, i.e. the
+	 * Euclidean distance scaled); takes effect with the next model.
+	 * @param pdShrinkage the intensity
+	 * @since 0.3.0.6
+	 * @see #invalidateModel()
+	 */
+	public void setShrinkage(double pdShrinkage)
+	{
+		this.dShrinkage = pdShrinkage;
+	}
 
-		Matrix oDifferenceVector = oVector1.minus(oVector2);
+	/**
+	 * Shares the factored covariance matrix with the copy as well.
+	 * @see Distance#prepareBatchWorker(marf.Classification.Classification)
+	 * @since 0.3.0.6
+	 */
+	protected void prepareBatchWorker(Classification poWorker)
+	{
+		super.prepareBatchWorker(poWorker);
 
-		Matrix oTransposedVector = (Matrix)oDifferenceVector.clone();
-		oTransposedVector.transpose();
+		MahalanobisDistance oWorker = (MahalanobisDistance)poWorker;
+		oWorker.oC = this.oC;
+		oWorker.oWhitening = this.oWhitening;
+		oWorker.oWhiteningModel = this.oWhiteningModel;
+	}
 
-		this.oC.inverse();
+	/**
+	 * Implements Cloneable interface for the MahalanobisDistance object.
+	 * The clone gets its own buffers and shares the immutable factor.
+	 * @see Distance#clone()
+	 * @since 0.3.0.6
+	 */
+	public Object clone()
+	{
+		MahalanobisDistance oClone = (MahalanobisDistance)super.clone();
+		oClone.oEstimate = null;
+		oClone.oDifferenceScratch = null;
+		return oClone;
+	}
+
+	/**
+	 * Cholesky factor or inverse standard deviations of a covariance matrix;
+	 * neither for the identity. Immutable, so it is shared between the
+	 * classifiers of a training set.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class Whitening
+	{
+		/**
+		 * The covariance matrix; <code>null</code> if there is none.
+		 */
+		final Matrix oCovariance;
+
+		/**
+		 * Cholesky factor of the covariance matrix; <code>null</code> if it is diagonal.
+		 */
+		final CholeskyDecomposition oFactor;
 
-		dDistance = Math.sqrt(oDifferenceVector.multiply(this.oC).multiply(oTransposedVector).getElement(0, 0));
+		/**
+		 * Inverse standard deviations of the features for the diagonal
+		 * covariance matrix; <code>null</code> otherwise.
+		 */
+		final double[] adInverseDeviations;
 
-		return dDistance;
+		/**
+		 * Constructs the whitening of either kind.
+		 * @param poCovariance the covariance matrix or <code>null</code>
+		 * @param poFactor Cholesky factor or <code>null</code>
+		 * @param padInverseDeviations inverse standard deviations or <code>null</code>
+		 */
+		Whitening(final Matrix poCovariance, final CholeskyDecomposition poFactor, final double[] padInverseDeviations)
+		{
+			this.oCovariance = poCovariance;
+			this.oFactor = poFactor;
+			this.adInverseDeviations = padInverseDeviations;
+		}
 	}
 
 	/**
@@ -5,6 +5,7 @@ import java.util.Vector;
 
 import marf.MARF;
 import marf.FeatureExtraction.IFeatureExtraction;
+import marf.math.Algorithms;
 
 
 /**
@@ -60,16 +61,80 @@ extends Distance
 	 */
 	public final double distance(final double[] paVector1, final double[] paVector2)
 	{
-		double dDistance = 0;
+		double dDistance = Algorithms.Distances.minkowskiSum(paVector1, paVector2, paVector1.length, this.r);
+		return Math.pow(dDistance, 1 / this.r);
+	}
+
+	/**
+	 * Minkowski distance against a mean vector within the model.
+	 * @see Distance#distance(double[], int, double[])
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector)
+	{
+		double dDistance = Algorithms.Distances.minkowskiSum(padModel, piOffset, padVector, padVector.length, this.r);
+		return Math.pow(dDistance, 1 / this.r);
+	}
 
-		for(int f = 0; f < paVector1.length; f++)
+	/**
+	 * Minkowski distance against a mean vector within the model, abandoned
+	 * once the sum is past the bound raised to the power of <code>r</code>.
+	 * The raised bound is widened a little so that rounding in the powers
+	 * never abandons a distance that is within the bound.
+	 * @see Distance#distance(double[], int, double[], double)
+	 * @since 0.3.0.6
+	 */
+	protected final double distance(final double[] padModel, final int piOffset, final double[] padVector, final double pdBound)
+	{
+		if(this.r <= 0)
 		{
-			dDistance += Math.pow(Math.abs(paVector1[f] - paVector2[f]), this.r);
+			return distance(padModel, piOffset, padVector);
 		}
 
+		double dDistance = Algorithms.Distances.minkowskiSum
+		(
+			padModel,
+			piOffset,
+			padVector,
+			padVector.length,
+			this.r,
+			Math.pow(pdBound, this.r) * (1 + 1e-9)
+		);
+
 		return Math.pow(dDistance, 1 / this.r);
 	}
 
+	/**
+	 * The order <code>r</code> is only set when constructing, so computing
+	 * the distance reads nothing that may change in the meantime.
+	 * @see Distance#isReentrant()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isReentrant()
+	{
+		return true;
+	}
+
+	/**
+	 * The Minkowski distance is a metric for <code>r &gt;= 1</code>.
+	 * @see Distance#isMetric()
+	 * @since 0.3.0.6
+	 */
+	protected boolean isMetric()
+	{
+		return this.r >= 1;
+	}
+
+	/**
+	 * Adds the Minkowski factor to the class name.
+	 * @see Distance#getMetricSignature()
+	 * @since 0.3.0.6
+	 */
+	protected String getMetricSignature()
+	{
+		return getClass().getName() + ":r=" + this.r;
+	}
+
 	/**
 	 * Retrieves class' revision.
 	 * @return revision string
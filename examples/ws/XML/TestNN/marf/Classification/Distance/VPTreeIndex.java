@@ -0,0 +1,356 @@
+package marf.Classification.Distance;
+
+import java.util.Random;
+
+import marf.Storage.StorageManager;
+import marf.Storage.TrainingMatrix;
+import marf.util.TopKHeap;
+
+
+/**
+ * <p>Vantage-point tree over the rows of a <code>TrainingMatrix</code>
+ * for exact k-nearest subject queries under a distance that is a
+ * metric (possibly after a monotone transformation, like the squared
+ * Euclidean distance).</p>
+ *
+ * <p>Every node picks a row as its vantage point and splits the other
+ * rows of the node at their median distance from it: the closer half
+ * goes into the inner subtree and the farther half into the outer one.
+ * By the triangle inequality a whole subtree can be skipped once its
+ * rows cannot be closer than the <code>k</code>-th closest subject found so
+ * far, so a query usually computes far fewer distances than there are
+ * subjects. The outcome is the same as of the linear scan, including
+ * the order of subjects at the same distance.</p>
+ *
+ * <p>The tree is laid out in two arrays: a permutation of the rows and
+ * the median distance of each node stored at its vantage point's position.
+ * It is stored in a file of its own next to the training set, along with
+ * a fingerprint of the model and the metric it was built for, so that
+ * a stale tree is never used.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see Distance#INDEX_VP_TREE
+ */
+public class VPTreeIndex
+extends StorageManager
+{
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = -4412877031659271095L;
+
+	/**
+	 * Nodes of at most this many rows are scanned as they are.
+	 */
+	public static final int LEAF_SIZE = 8;
+
+	/**
+	 * Relative allowance for rounding in the triangle inequality bounds,
+	 * so that subjects at (nearly) the same distance are never skipped.
+	 */
+	private static final double BOUND_TOLERANCE = 1e-12;
+
+	/**
+	 * Rows in the tree order: a node over positions <code>[lo, hi)</code>
+	 * has its vantage point at <code>lo</code>, the inner subtree at
+	 * <code>[lo + 1, mid)</code> and the outer one at <code>[mid, hi)</code>,
+	 * with <code>mid = (lo + 1 + hi) / 2</code>.
+	 */
+	protected int[] aiRows = new int[0];
+
+	/**
+	 * Median metric distance from the vantage point of each
+	 * node, at the vantage point's position.
+	 */
+	protected double[] adThresholds = new double[0];
+
+	/**
+	 * Fingerprint of the model the tree was built from.
+	 * @see TrainingMatrix#getFingerprint()
+	 */
+	protected long lFingerprint = 0;
+
+	/**
+	 * Metric the tree was built for.
+	 * @see Distance#getMetricSignature()
+	 */
+	protected String strMetric = "";
+
+	/**
+	 * Constructs an empty tree stored in the binary GZIP form.
+	 */
+	public VPTreeIndex()
+	{
+		this.iCurrentDumpMode = DUMP_GZIP_BINARY;
+		this.oObjectToSerialize = this;
+		this.bDumpOnNotFound = false;
+	}
+
+	/**
+	 * Builds the tree over all the rows of the model.
+	 * @param poModel the model
+	 * @param poDistance the metric distance classifier
+	 * @return new tree
+	 */
+	public static VPTreeIndex build(final TrainingMatrix poModel, final Distance poDistance)
+	{
+		VPTreeIndex oIndex = new VPTreeIndex();
+
+		int iRows = poModel.getRows();
+
+		oIndex.aiRows = new int[iRows];
+		oIndex.adThresholds = new double[iRows];
+		oIndex.lFingerprint = poModel.getFingerprint();
+		oIndex.strMetric = poDistance.getMetricSignature();
+
+		for(int i = 0; i < iRows; i++)
+		{
+			oIndex.aiRows[i] = i;
+		}
+
+		// Fixed seed: the same model always gives the same tree
+		oIndex.build(poModel, poDistance, 0, iRows, new double[iRows], new double[poModel.getDimensions()], new Random(0));
+
+		return oIndex;
+	}
+
+	/**
+	 * Builds the node over the positions <code>[piFrom, piTo)</code>.
+	 * @param poModel the model
+	 * @param poDistance the metric distance classifier
+	 * @param piFrom first position of the node
+	 * @param piTo one past the last position of the node
+	 * @param padDistances scratch for the distances, by position
+	 * @param padVantagePoint scratch for the vantage point's row
+	 * @param poRandom source of the vantage point choices
+	 */
+	private void build(final TrainingMatrix poModel, final Distance poDistance, int piFrom, int piTo, double[] padDistances, double[] padVantagePoint, Random poRandom)
+	{
+		if(piTo - piFrom <= LEAF_SIZE)
+		{
+			return;
+		}
+
+		// A random vantage point keeps the tree balanced on average whatever the row order
+		swap(piFrom, piFrom + poRandom.nextInt(piTo - piFrom), padDistances);
+
+		System.arraycopy(poModel.getData(), poModel.getOffset(this.aiRows[piFrom]), padVantagePoint, 0, padVantagePoint.length);
+
+		for(int i = piFrom + 1; i < piTo; i++)
+		{
+			padDistances[i] = poDistance.toMetric
+			(
+				poDistance.distance(poModel.getData(), poModel.getOffset(this.aiRows[i]), padVantagePoint)
+			);
+		}
+
+		int iMiddle = (piFrom + 1 + piTo) >>> 1;
+
+		select(piFrom + 1, piTo, iMiddle, padDistances);
+
+		this.adThresholds[piFrom] = padDistances[iMiddle];
+
+		build(poModel, poDistance, piFrom + 1, iMiddle, padDistances, padVantagePoint, poRandom);
+		build(poModel, poDistance, iMiddle, piTo, padDistances, padVantagePoint, poRandom);
+	}
+
+	/**
+	 * Rearranges the positions <code>[piFrom, piTo)</code> so that the one at
+	 * <code>piNth</code> holds the distance it would hold if they were sorted,
+	 * with none greater before it and none smaller after it.
+	 * @param piFrom first position
+	 * @param piTo one past the last position
+	 * @param piNth position to put in place
+	 * @param padDistances the distances, by position; rearranged along with the rows
+	 */
+	private void select(int piFrom, int piTo, final int piNth, double[] padDistances)
+	{
+		int iLeft = piFrom;
+		int iRight = piTo - 1;
+
+		while(iLeft < iRight)
+		{
+			double dPivot = padDistances[(iLeft + iRight) >>> 1];
+
+			int i = iLeft;
+			int j = iRight;
+
+			while(i <= j)
+			{
+				while(padDistances[i] < dPivot)
+				{
+					i++;
+				}
+
+				while(padDistances[j] > dPivot)
+				{
+					j--;
+				}
+
+				if(i <= j)
+				{
+					swap(i++, j--, padDistances);
+				}
+			}
+
+			if(piNth <= j)
+			{
+				iRight = j;
+			}
+			else if(piNth >= i)
+			{
+				iLeft = i;
+			}
+			else
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Swaps two positions of the rows and of the distances.
+	 * @param piA first position
+	 * @param piB second position
+	 * @param padDistances the distances, by position
+	 */
+	private void swap(final int piA, final int piB, double[] padDistances)
+	{
+		int iRow = this.aiRows[piA];
+		this.aiRows[piA] = this.aiRows[piB];
+		this.aiRows[piB] = iRow;
+
+		double dDistance = padDistances[piA];
+		padDistances[piA] = padDistances[piB];
+		padDistances[piB] = dDistance;
+	}
+
+	/**
+	 * Finds the closest rows to the incoming vector.
+	 * @param poModel the model the tree was built from
+	 * @param poDistance the metric distance classifier the tree was built for
+	 * @param padVector incoming feature vector
+	 * @param poClosest empty heap to keep the closest rows in, by the classifier's distance
+	 * @return number of distances computed
+	 */
+	public int search(final TrainingMatrix poModel, final Distance poDistance, final double[] padVector, TopKHeap poClosest)
+	{
+		return search(poModel, poDistance, padVector, poClosest, 0, this.aiRows.length);
+	}
+
+	/**
+	 * Searches the node over the positions <code>[piFrom, piTo)</code>.
+	 * @param poModel the model the tree was built from
+	 * @param poDistance the metric distance classifier the tree was built for
+	 * @param padVector incoming feature vector
+	 * @param poClosest heap of the closest rows so far
+	 * @param piFrom first position of the node
+	 * @param piTo one past the last position of the node
+	 * @return number of distances computed
+	 */
+	private int search(final TrainingMatrix poModel, final Distance poDistance, final double[] padVector, TopKHeap poClosest, int piFrom, int piTo)
+	{
+		double[] adModel = poModel.getData();
+
+		if(piTo - piFrom <= LEAF_SIZE)
+		{
+			for(int i = piFrom; i < piTo; i++)
+			{
+				int iRow = this.aiRows[i];
+				poClosest.offer(poDistance.distance(adModel, poModel.getOffset(iRow), padVector), iRow);
+			}
+
+			return piTo - piFrom;
+		}
+
+		int iRow = this.aiRows[piFrom];
+		double dDistance = poDistance.distance(adModel, poModel.getOffset(iRow), padVector);
+
+		poClosest.offer(dDistance, iRow);
+
+		double dMetric = poDistance.toMetric(dDistance);
+		double dThreshold = this.adThresholds[piFrom];
+		double dTolerance = BOUND_TOLERANCE * (dMetric + dThreshold);
+
+		int iMiddle = (piFrom + 1 + piTo) >>> 1;
+		int iCount = 1;
+
+		// The side the vector falls into first; it likely tightens the bound the most
+		if(dMetric < dThreshold)
+		{
+			iCount += search(poModel, poDistance, padVector, poClosest, piFrom + 1, iMiddle);
+
+			if(dThreshold - dMetric - dTolerance <= poDistance.toMetric(poClosest.getBound()))
+			{
+				iCount += search(poModel, poDistance, padVector, poClosest, iMiddle, piTo);
+			}
+		}
+		else
+		{
+			iCount += search(poModel, poDistance, padVector, poClosest, iMiddle, piTo);
+
+			if(dMetric - dThreshold - dTolerance <= poDistance.toMetric(poClosest.getBound()))
+			{
+				iCount += search(poModel, poDistance, padVector, poClosest, piFrom + 1, iMiddle);
+			}
+		}
+
+		return iCount;
+	}
+
+	/**
+	 * Tells whether the tree was built from the model for the metric.
+	 * @param poModel the model
+	 * @param pstrMetric signature of the metric
+	 * @return <code>true</code> if the tree may be used
+	 */
+	public boolean matches(final TrainingMatrix poModel, final String pstrMetric)
+	{
+		return
+			this.aiRows.length == poModel.getRows()
+			&& this.lFingerprint == poModel.getFingerprint()
+			&& this.strMetric.equals(pstrMetric);
+	}
+
+	/**
+	 * Retrieves the number of rows in the tree.
+	 * @return the count
+	 */
+	public int size()
+	{
+		return this.aiRows.length;
+	}
+
+	/**
+	 * @see marf.Storage.StorageManager#backSynchronizeObject()
+	 */
+	public synchronized void backSynchronizeObject()
+	{
+		VPTreeIndex oNewThis = (VPTreeIndex)this.oObjectToSerialize;
+
+		this.aiRows = oNewThis.aiRows;
+		this.adThresholds = oNewThis.adThresholds;
+		this.lFingerprint = oNewThis.lFingerprint;
+		this.strMetric = oNewThis.strMetric;
+
+		this.oObjectToSerialize = this;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -55,6 +55,17 @@ public interface IClassification
 	boolean classify(double[] padFeatureVector)
 	throws ClassificationException;
 
+	/**
+	 * Classifies a batch of feature vectors loading the model once.
+	 *
+	 * @param padFeatureVectors vectors of features to compare with the stored ones
+	 * @return result set of each vector, by vector
+	 * @throws ClassificationException if there was an error while classifying
+	 * @since 0.3.0.6
+	 */
+	ResultSet[] classifyBatch(double[][] padFeatureVectors)
+	throws ClassificationException;
+
 	/**
 	 * Generic training routine for building/updating
 	 * mean vectors in the training set.
@@ -0,0 +1,45 @@
+package marf.Classification;
+
+import marf.Storage.TrainingMatrix;
+
+
+/**
+ * <p>Measure of an incoming feature vector against one row of a
+ * <code>TrainingMatrix</code>, smaller being closer, as used by
+ * <code>ModelScan</code>.</p>
+ *
+ * <p>Implementations called for a parallel scan are called from
+ * several threads at once.</p>
+ *
+ * <p>A scan for the closest few rows passes the measure the current
+ * row has to beat, so that a measure summing up per-feature terms can
+ * stop as soon as its partial sum is past it (early abandoning).</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see ModelScan
+ */
+public interface IRowMeasure
+{
+	/**
+	 * Interface source code revision.
+	 */
+	String MARF_INTERFACE_CODE_REVISION = "$Revision$";
+
+	/**
+	 * Measures a row of the model against the incoming vector.
+	 * @param poModel the model
+	 * @param piRow the row
+	 * @param padVector incoming feature vector, as long as the rows
+	 * @param pdBound measure a row has to be at most to be kept;
+	 * <code>Double.POSITIVE_INFINITY</code> if any row is kept
+	 * @return the measure, e.g. a distance, if it is not greater than the
+	 * bound; otherwise the exact measure or any value greater than the bound
+	 */
+	double measure(TrainingMatrix poModel, int piRow, double[] padVector, double pdBound);
+}
+
+// EOF
@@ -0,0 +1,465 @@
+package marf.Classification;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import marf.Storage.FeatureSet;
+import marf.Storage.FloatFeatureSet;
+import marf.Storage.ITrainingSample;
+import marf.Storage.StorageException;
+import marf.Storage.TrainingSet;
+import marf.util.Debug;
+
+
+/**
+ * <p>Process-wide cache of the training sets restored for classification,
+ * by file name, so that the classifiers created for every recognition
+ * do not deserialize the same training set over and over.</p>
+ *
+ * <p>The cached training sets are shared between the classifiers and
+ * threads and must not be altered; training loads a copy of its own.
+ * An entry is reloaded if the file's modification time or length has
+ * changed since it was loaded, which is checked at most once every
+ * <code>getCheckInterval()</code> milliseconds, or if the training set
+ * was saved by this process since. The least recently used entries are
+ * evicted once the rough total size of the cached training sets exceeds
+ * <code>getCapacity()</code> bytes.</p>
+ *
+ * <p>What the classifiers derive from a cached training set, such as its
+ * model, an index of it or a factored covariance matrix, is cached in the
+ * same entry under a key of their choosing, e.g. the metric it was built
+ * for, and dropped along with the training set. It is shared just the same
+ * and must not be altered.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see Classification#restore()
+ */
+public final class ModelCache
+{
+	/**
+	 * Default capacity, a quarter of the maximum heap size.
+	 */
+	public static final long DEFAULT_CAPACITY = Runtime.getRuntime().maxMemory() / 4;
+
+	/**
+	 * Default interval between checks of a file for changes, 1000 ms.
+	 */
+	public static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+	/**
+	 * Rough size of an object apart from its arrays, in bytes.
+	 */
+	private static final int OBJECT_SIZE = 64;
+
+	/**
+	 * Entries by file name, least recently used first.
+	 */
+	private static final LinkedHashMap<String, Entry> soEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/**
+	 * Total size of the cached training sets and the objects derived from them, in bytes.
+	 */
+	private static long slSize = 0;
+
+	/**
+	 * Most bytes to cache.
+	 */
+	private static long slCapacity = DEFAULT_CAPACITY;
+
+	/**
+	 * Milliseconds between checks of a file for changes.
+	 */
+	private static long slCheckInterval = DEFAULT_CHECK_INTERVAL;
+
+	/**
+	 * Number of invalidations so far, so that a training set loaded
+	 * while its file was being saved is not cached.
+	 */
+	private static long slInvalidations = 0;
+
+	/**
+	 * There shall no be instances.
+	 */
+	private ModelCache()
+	{
+	}
+
+	/**
+	 * Retrieves the training set stored in a file, restoring it if
+	 * it is not cached or the file changed. The training set is shared
+	 * and must not be altered.
+	 * @param piDumpMode dump mode of the file
+	 * @param pstrFilename name of the file
+	 * @return the training set
+	 * @throws StorageException if there is a problem loading the training set from disk
+	 */
+	public static TrainingSet getTrainingSet(final int piDumpMode, final String pstrFilename)
+	throws StorageException
+	{
+		File oFile = new File(pstrFilename);
+		long lGeneration;
+
+		synchronized(ModelCache.class)
+		{
+			lGeneration = slInvalidations;
+
+			Entry oEntry = soEntries.get(pstrFilename);
+
+			if(oEntry != null && oEntry.iDumpMode == piDumpMode)
+			{
+				long lNow = System.currentTimeMillis();
+
+				if(lNow - oEntry.lChecked < slCheckInterval)
+				{
+					return oEntry.oTrainingSet;
+				}
+
+				if(oFile.lastModified() == oEntry.lModified && oFile.length() == oEntry.lLength)
+				{
+					oEntry.lChecked = lNow;
+					return oEntry.oTrainingSet;
+				}
+			}
+		}
+
+		// Taken before loading, so that a change while loading shows next time
+		Entry oEntry = new Entry();
+		oEntry.iDumpMode = piDumpMode;
+		oEntry.lChecked = System.currentTimeMillis();
+		oEntry.lModified = oFile.lastModified();
+		oEntry.lLength = oFile.length();
+
+		Debug.debug("ModelCache.getTrainingSet() - loading " + pstrFilename);
+
+		oEntry.oTrainingSet = Classification.loadTrainingSet(piDumpMode, pstrFilename);
+		oEntry.lSize = prepare(oEntry.oTrainingSet);
+
+		put(pstrFilename, oEntry, lGeneration);
+
+		return oEntry.oTrainingSet;
+	}
+
+	/**
+	 * Retrieves an object derived from a cached training set.
+	 * @param pstrFilename name of the file of the training set
+	 * @param poTrainingSet the training set as retrieved by <code>getTrainingSet()</code>
+	 * @param pstrKey what the object is, e.g. its class and the parameters it was built with
+	 * @return the object; <code>null</code> if there is none, or the training set is no longer cached
+	 * @see #putDerived(String, TrainingSet, String, Object, long)
+	 */
+	public static synchronized Object getDerived(final String pstrFilename, final TrainingSet poTrainingSet, final String pstrKey)
+	{
+		Entry oEntry = soEntries.get(pstrFilename);
+
+		if(oEntry == null || oEntry.oTrainingSet != poTrainingSet)
+		{
+			return null;
+		}
+
+		return oEntry.oDerived.get(pstrKey);
+	}
+
+	/**
+	 * Caches an object derived from a cached training set along with it,
+	 * unless one was cached under the same key meanwhile, e.g. by another
+	 * thread, and evicts the least recently used entries beyond the capacity.
+	 * @param pstrFilename name of the file of the training set
+	 * @param poTrainingSet the training set as retrieved by <code>getTrainingSet()</code>
+	 * @param pstrKey what the object is, e.g. its class and the parameters it was built with
+	 * @param poDerived the object; shared from now on
+	 * @param plSize rough size of the object, in bytes
+	 * @return the object cached under the key; the given one if there was none,
+	 * or the training set is no longer cached
+	 * @see #getDerived(String, TrainingSet, String)
+	 */
+	public static synchronized Object putDerived(final String pstrFilename, final TrainingSet poTrainingSet, final String pstrKey, final Object poDerived, final long plSize)
+	{
+		Entry oEntry = soEntries.get(pstrFilename);
+
+		if(oEntry == null || oEntry.oTrainingSet != poTrainingSet)
+		{
+			return poDerived;
+		}
+
+		Object oCached = oEntry.oDerived.get(pstrKey);
+
+		if(oCached != null)
+		{
+			return oCached;
+		}
+
+		oEntry.oDerived.put(pstrKey, poDerived);
+		oEntry.lSize += plSize;
+		slSize += plSize;
+
+		evict();
+
+		return poDerived;
+	}
+
+	/**
+	 * Computes the mean vectors of a training set up front, as feature sets
+	 * compute theirs in place on request, so that it may be read from several
+	 * threads at once, and estimates its size along the way.
+	 * @param poTrainingSet the training set
+	 * @return rough size of the training set, in bytes
+	 */
+	private static long prepare(TrainingSet poTrainingSet)
+	{
+		Vector<ITrainingSample> oTrainingSamples = poTrainingSet.getClusters();
+		long lTrainingSetSize = OBJECT_SIZE;
+
+		for(int i = 0; i < oTrainingSamples.size(); i++)
+		{
+			ITrainingSample oTrainingSample = oTrainingSamples.get(i);
+
+			// Before the mean, as retrieving the vectors invalidates it
+			lTrainingSetSize += OBJECT_SIZE + getFeatureVectorsSize(oTrainingSample);
+
+			double[] adMeanVector = oTrainingSample.getMeanVector();
+
+			if(adMeanVector != null)
+			{
+				lTrainingSetSize += OBJECT_SIZE + 8L * adMeanVector.length;
+			}
+		}
+
+		return lTrainingSetSize;
+	}
+
+	/**
+	 * Estimates the size of the feature vectors a training sample keeps
+	 * besides its mean vector, by the type they are stored as: doubles
+	 * in a <code>FeatureSet</code>, floats in a <code>FloatFeatureSet</code>,
+	 * and none in a cluster or a plain training sample.
+	 * @param poTrainingSample the training sample
+	 * @return rough size of the vectors, in bytes
+	 */
+	private static long getFeatureVectorsSize(ITrainingSample poTrainingSample)
+	{
+		long lSize = 0;
+
+		if(poTrainingSample instanceof FeatureSet)
+		{
+			Vector<double[]> oFeatureVectors = ((FeatureSet)poTrainingSample).getFeatureVectors();
+
+			for(int i = 0; i < oFeatureVectors.size(); i++)
+			{
+				lSize += OBJECT_SIZE + 8L * oFeatureVectors.get(i).length;
+			}
+		}
+		else if(poTrainingSample instanceof FloatFeatureSet)
+		{
+			Vector<float[]> oFeatureVectors = ((FloatFeatureSet)poTrainingSample).getFeatureVectors();
+
+			for(int i = 0; i < oFeatureVectors.size(); i++)
+			{
+				lSize += OBJECT_SIZE + 4L * oFeatureVectors.get(i).length;
+			}
+		}
+
+		return lSize;
+	}
+
+	/**
+	 * Caches an entry and evicts the least recently used ones beyond
+	 * the capacity. An entry larger than the capacity, or loaded before
+	 * an invalidation, is not cached.
+	 * @param pstrFilename name of the file
+	 * @param poEntry the entry
+	 * @param plGeneration number of invalidations before the entry was loaded
+	 */
+	private static synchronized void put(final String pstrFilename, final Entry poEntry, final long plGeneration)
+	{
+		remove(pstrFilename);
+
+		if(poEntry.lSize > slCapacity || plGeneration != slInvalidations)
+		{
+			return;
+		}
+
+		soEntries.put(pstrFilename, poEntry);
+		slSize += poEntry.lSize;
+
+		evict();
+	}
+
+	/**
+	 * Evicts the least recently used entries until the cache is within its capacity.
+	 */
+	private static synchronized void evict()
+	{
+		Iterator<Map.Entry<String, Entry>> oIterator = soEntries.entrySet().iterator();
+
+		while(slSize > slCapacity && oIterator.hasNext())
+		{
+			Map.Entry<String, Entry> oEldest = oIterator.next();
+
+			Debug.debug("ModelCache.evict() - evicting " + oEldest.getKey());
+
+			slSize -= oEldest.getValue().lSize;
+			oIterator.remove();
+		}
+	}
+
+	/**
+	 * Drops an entry.
+	 * @param pstrFilename name of the file
+	 */
+	private static synchronized void remove(final String pstrFilename)
+	{
+		Entry oEntry = soEntries.remove(pstrFilename);
+
+		if(oEntry != null)
+		{
+			slSize -= oEntry.lSize;
+		}
+	}
+
+	/**
+	 * Drops the training set of a file, e.g. once it was saved,
+	 * and what was derived from it, so that it is restored anew next time.
+	 * @param pstrFilename name of the file
+	 */
+	public static synchronized void invalidate(final String pstrFilename)
+	{
+		slInvalidations++;
+		remove(pstrFilename);
+	}
+
+	/**
+	 * Drops all the training sets and what was derived from them.
+	 */
+	public static synchronized void clear()
+	{
+		slInvalidations++;
+		soEntries.clear();
+		slSize = 0;
+	}
+
+	/**
+	 * Retrieves the rough total size of the cached training sets
+	 * and the objects derived from them.
+	 * @return the size in bytes
+	 */
+	public static synchronized long getSize()
+	{
+		return slSize;
+	}
+
+	/**
+	 * Retrieves the number of the cached training sets.
+	 * @return the count
+	 */
+	public static synchronized int getCount()
+	{
+		return soEntries.size();
+	}
+
+	/**
+	 * Retrieves the most bytes to cache.
+	 * @return the capacity
+	 */
+	public static synchronized long getCapacity()
+	{
+		return slCapacity;
+	}
+
+	/**
+	 * Sets the most bytes to cache, evicting the least recently used
+	 * training sets beyond it.
+	 * @param plCapacity the capacity; 0 to cache nothing
+	 * @see #DEFAULT_CAPACITY
+	 */
+	public static synchronized void setCapacity(final long plCapacity)
+	{
+		slCapacity = plCapacity;
+		evict();
+	}
+
+	/**
+	 * Retrieves the number of milliseconds between checks of a file for changes.
+	 * @return the interval
+	 */
+	public static synchronized long getCheckInterval()
+	{
+		return slCheckInterval;
+	}
+
+	/**
+	 * Sets the number of milliseconds between checks of a file for changes.
+	 * Changes made by other processes within the interval since the last check
+	 * go unnoticed until the next one; the ones made through this process are
+	 * noticed right away.
+	 * @param plCheckInterval the interval; 0 to check every time
+	 * @see #DEFAULT_CHECK_INTERVAL
+	 */
+	public static synchronized void setCheckInterval(final long plCheckInterval)
+	{
+		slCheckInterval = plCheckInterval;
+	}
+
+	/**
+	 * Cached training set, what was derived from it, and the state
+	 * of its file when loaded.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class Entry
+	{
+		/**
+		 * The training set.
+		 */
+		TrainingSet oTrainingSet;
+
+		/**
+		 * Objects derived from the training set by key.
+		 */
+		final HashMap<String, Object> oDerived = new HashMap<String, Object>();
+
+		/**
+		 * Dump mode the training set was loaded in.
+		 */
+		int iDumpMode;
+
+		/**
+		 * Modification time of the file; 0 if there was none.
+		 */
+		long lModified;
+
+		/**
+		 * Length of the file.
+		 */
+		long lLength;
+
+		/**
+		 * When the file was last checked for changes.
+		 */
+		long lChecked;
+
+		/**
+		 * Rough size of the training set and the objects derived from it, in bytes.
+		 */
+		long lSize;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -0,0 +1,211 @@
+package marf.Classification;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import marf.Storage.TrainingMatrix;
+import marf.util.TopKHeap;
+
+
+/**
+ * <p>Linear scan of a <code>TrainingMatrix</code> for the rows closest
+ * to an incoming feature vector.</p>
+ *
+ * <p>With a pool, the rows are split into about as many contiguous
+ * partitions as the pool has workers; every partition keeps its own
+ * top-<code>k</code> and the partitions are merged pairwise at the end.
+ * Ties are broken by row either way, so the outcome is the same as of
+ * the scan on the calling thread.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see IRowMeasure
+ * @see TopKHeap
+ */
+public final class ModelScan
+{
+	/**
+	 * Default number of rows from which on a scan is done in parallel
+	 * if the machine has more than one core, 4096.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+	/**
+	 * There shall no be instances.
+	 */
+	private ModelScan()
+	{
+	}
+
+	/**
+	 * Picks the pool for a scan.
+	 * @param piRows number of rows to scan
+	 * @param piThreshold number of rows from which on to scan in parallel; 0 or less for never
+	 * @return the common fork/join pool, or <code>null</code> to scan on the calling thread
+	 */
+	public static ForkJoinPool getPool(final int piRows, final int piThreshold)
+	{
+		if(piThreshold > 0 && piRows >= piThreshold && ForkJoinPool.getCommonPoolParallelism() > 1)
+		{
+			return ForkJoinPool.commonPool();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Scans all the rows of the model and keeps the
+	 * closest ones in the heap.
+	 * @param poModel the model
+	 * @param poMeasure measure of the rows against the incoming vector
+	 * @param padVector incoming feature vector
+	 * @param poClosest heap to keep the closest rows in; cleared first, not sorted
+	 * @param poPool pool to use, or <code>null</code> for the calling thread
+	 */
+	public static void scan(final TrainingMatrix poModel, final IRowMeasure poMeasure, final double[] padVector, TopKHeap poClosest, ForkJoinPool poPool)
+	{
+		poClosest.clear();
+
+		int iRows = poModel.getRows();
+
+		if(poPool == null || iRows < 2)
+		{
+			for(int i = 0; i < iRows; i++)
+			{
+				poClosest.offer(poMeasure.measure(poModel, i, padVector, poClosest.getBound()), i);
+			}
+
+			return;
+		}
+
+		int iPartitions = poPool.getParallelism();
+		int iChunk = (iRows + iPartitions - 1) / iPartitions;
+
+		ScanTask oTask = new ScanTask(poModel, poMeasure, padVector, poClosest.getCapacity(), iChunk, 0, iRows);
+		poPool.invoke(oTask);
+
+		poClosest.offerAll(oTask.oClosest);
+	}
+
+	/**
+	 * Scans a range of rows, splitting it in halves while it is
+	 * longer than a chunk.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class ScanTask
+	extends RecursiveAction
+	{
+		/**
+		 * For serialization versioning.
+		 */
+		private static final long serialVersionUID = -3302151468212418877L;
+
+		/**
+		 * The model.
+		 */
+		private final TrainingMatrix oModel;
+
+		/**
+		 * Measure of the rows.
+		 */
+		private final IRowMeasure oMeasure;
+
+		/**
+		 * Incoming feature vector.
+		 */
+		private final double[] adVector;
+
+		/**
+		 * Number of closest rows to keep.
+		 */
+		private final int iLimit;
+
+		/**
+		 * Longest range scanned without splitting.
+		 */
+		private final int iChunk;
+
+		/**
+		 * First row of the range.
+		 */
+		private final int iFrom;
+
+		/**
+		 * One past the last row of the range.
+		 */
+		private final int iTo;
+
+		/**
+		 * Closest rows of the range once computed.
+		 */
+		TopKHeap oClosest = null;
+
+		/**
+		 * Constructs the task for the given rows.
+		 * @param poModel the model
+		 * @param poMeasure measure of the rows
+		 * @param padVector incoming feature vector
+		 * @param piLimit number of closest rows to keep
+		 * @param piChunk longest range scanned without splitting
+		 * @param piFrom first row of the range
+		 * @param piTo one past the last row of the range
+		 */
+		ScanTask(final TrainingMatrix poModel, final IRowMeasure poMeasure, final double[] padVector, int piLimit, int piChunk, int piFrom, int piTo)
+		{
+			this.oModel = poModel;
+			this.oMeasure = poMeasure;
+			this.adVector = padVector;
+			this.iLimit = piLimit;
+			this.iChunk = piChunk;
+			this.iFrom = piFrom;
+			this.iTo = piTo;
+		}
+
+		/**
+		 * Scans the rows directly or forks two halves and merges them.
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute()
+		{
+			if(this.iTo - this.iFrom > this.iChunk)
+			{
+				int iMiddle = (this.iFrom + this.iTo) >>> 1;
+
+				ScanTask oLeft = new ScanTask(this.oModel, this.oMeasure, this.adVector, this.iLimit, this.iChunk, this.iFrom, iMiddle);
+				ScanTask oRight = new ScanTask(this.oModel, this.oMeasure, this.adVector, this.iLimit, this.iChunk, iMiddle, this.iTo);
+
+				invokeAll(oLeft, oRight);
+
+				// The halves may each keep fewer rows than the whole range has to
+				this.oClosest = new TopKHeap(Math.min(this.iLimit, this.iTo - this.iFrom));
+				this.oClosest.offerAll(oLeft.oClosest);
+				this.oClosest.offerAll(oRight.oClosest);
+			}
+			else
+			{
+				this.oClosest = new TopKHeap(Math.min(this.iLimit, this.iTo - this.iFrom));
+
+				for(int i = this.iFrom; i < this.iTo; i++)
+				{
+					this.oClosest.offer(this.oMeasure.measure(this.oModel, i, this.adVector, this.oClosest.getBound()), i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
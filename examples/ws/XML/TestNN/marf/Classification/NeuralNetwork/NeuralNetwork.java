@@ -366,7 +366,7 @@ extends Classification
 			double[] adFeatures = padFeatureVector;
 
 			// Reload trained net
-			restore();
+			restoreModel();
 
 			if(adFeatures.length != this.oInputs.size())
 			{
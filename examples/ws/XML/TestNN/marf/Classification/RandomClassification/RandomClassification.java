@@ -77,14 +77,13 @@ extends Classification
 			int iFirstID = 0;
 			int iSecondID = 0;
 
-			restore();
+			restoreModel();
 
 			if(this.oIDs.size() == 0)
 			{
 				Debug.debug("RandomClassification.classify() --- ID set is of 0 length.");
 
-				this.oIDs.add(iFirstID);
-
+				// The IDs are left alone, as a batch does not restore them again
 				this.oResultSet.addResult
 				(
 					iFirstID,
@@ -1,15 +1,19 @@
 package marf.Classification.Similarity;
 
-import java.util.List;
+import java.io.File;
 
 import marf.Classification.Classification;
 import marf.Classification.ClassificationException;
+import marf.Classification.IRowMeasure;
 import marf.FeatureExtraction.IFeatureExtraction;
-import marf.Storage.ITrainingSample;
 import marf.Storage.Result;
 import marf.Storage.StorageException;
+import marf.Storage.TrainingMatrix;
+import marf.math.Algorithms;
 import marf.math.Vector;
 import marf.util.Debug;
+import marf.util.SortComparator;
+import marf.util.TopKHeap;
 
 
 /**
@@ -28,7 +32,56 @@ extends Classification
 	 * changes regenerate this number with the
 	 * <code>serialver</code> tool that comes with JDK.
 	 */
-	private static final long serialVersionUID = -6012156624213951005L;
+	private static final long serialVersionUID = 1829823272065665488L;
+
+	/**
+	 * Indicates the subjects are always scanned linearly. This is the default.
+	 * @since 0.3.0.6
+	 */
+	public static final int INDEX_NONE = 0;
+
+	/**
+	 * Indicates the most similar subjects are looked up approximately in
+	 * a hierarchical navigable small world graph when the number of
+	 * reported subjects is limited.
+	 * @since 0.3.0.6
+	 * @see HNSWIndex
+	 * @see #setResultLimit(int)
+	 */
+	public static final int INDEX_HNSW = 1;
+
+	/**
+	 * Index of the subjects to use.
+	 * @since 0.3.0.6
+	 */
+	protected int iIndexType = INDEX_NONE;
+
+	/**
+	 * Breadth of the index queries; the larger, the better the recall.
+	 * @since 0.3.0.6
+	 */
+	protected int iSearchBreadth = HNSWIndex.DEFAULT_SEARCH_BREADTH;
+
+	/**
+	 * The index of the current model, if loaded or built.
+	 */
+	private transient HNSWIndex oIndex = null;
+
+	/**
+	 * The model the index was brought in line with.
+	 */
+	private transient TrainingMatrix oIndexModel = null;
+
+	/**
+	 * Whether the index is cached along with the training set,
+	 * so that it must not be altered.
+	 */
+	private transient boolean bSharedIndex = false;
+
+	/**
+	 * Whether <code>similarity()</code> is overridden, once known.
+	 */
+	private transient Boolean oSimilarityOverridden = null;
 
 	/**
 	 * Distance Constructor.
@@ -37,12 +90,44 @@ extends Classification
 	public CosineSimilarityMeasure(IFeatureExtraction poFeatureExtraction)
 	{
 		super(poFeatureExtraction);
+
+		/*
+		 * See if there is a request for an index, the number of subjects
+		 * to report and the breadth of the index queries
+		 */
+		int[] aiIndexParams = getIndexParams(new int[] {INDEX_NONE, INDEX_HNSW});
+
+		if(aiIndexParams != null)
+		{
+			this.iIndexType = aiIndexParams[0];
+
+			if(aiIndexParams.length > 1)
+			{
+				this.iResultLimit = aiIndexParams[1];
+			}
+
+			if(aiIndexParams.length > 2)
+			{
+				this.iSearchBreadth = aiIndexParams[2];
+			}
+		}
 	}
 
 	/**
 	 * Classify the feature vector based on whatever
 	 * <code>similarity()</code> derivatives implement.
 	 *
+	 * The incoming vector is compared against the rows of the model.
+	 * Only the most similar <code>getResultLimit()</code> subjects (all by
+	 * default) make it into the result set, most similar first.
+	 *
+	 * Unless <code>similarity()</code> is overridden, the rows are compared
+	 * in place, in parallel for large models, with the lengths of the mean
+	 * vectors computed once per model, and with the HNSW index selected and
+	 * a result limit set, the subjects are looked up in the index instead,
+	 * which is approximate. Otherwise every row is copied out and passed
+	 * to <code>similarity()</code> in turn.
+	 *
 	 * @return <code>true</code> if classification successful whatever that means
 	 *
 	 * @throws ClassificationException if sanity checks fail. The checks include
@@ -61,75 +146,103 @@ extends Classification
 			double[] adIncomingFeatures = padFeatureVector;
 
 			// Restore training model from the disk
-			restore();
+			restoreModel();
 
-			// Features in the training set
-			//Vector oTrainingSamples = this.oTrainingSet.getClusters();
-			List<ITrainingSample> oTrainingSamples = this.oTrainingSet.getClusters();
+			// Mean vectors of the training set
+			TrainingMatrix oModel = getModel();
 
-			// Our maximum similarity measure.
-			double dMaxSimilarity = Double.MIN_VALUE;
+			if(oModel.getRows() == 0)
+			{
+				return true;
+			}
 
-			/*
-			 * Run through the stored training samples set (mean vectors)
-			 * and determine the two closest subjects to the incoming features sample
-			 */
-			for(int i = 0; i < oTrainingSamples.size(); i++)
+			// Sanity check: vectors must be of the same length
+			if(oModel.getDimensions() != adIncomingFeatures.length)
 			{
-				//Cluster oTrainingSample = (Cluster)oTrainingSamples.get(i);
-				ITrainingSample oTrainingSample = oTrainingSamples.get(i);
+				throw new ClassificationException
+				(
+					"similarity() - Mean vector length (" + oModel.getDimensions() +
+					") is not same as of incoming feature vector (" + adIncomingFeatures.length + ")"
+				);
+			}
 
-				double[] adMeanVector = oTrainingSample.getMeanVector();
-//				double[] adMeanVector = oTrainingSample.getMedianVector();
+			final boolean bDebug = Debug.isDebugOn();
 
-				// Sanity check: stored mean vector must never be null
-				if(adMeanVector == null)
-				{
-					throw new ClassificationException
-					(
-						"similarity() - Stored mean vector is null for subject (" + oTrainingSample.getSubjectID() +
-						", preprocessing method: " + this.oTrainingSet.getPreprocessingMethod() +
-						", feature extraction methods: "  + this.oTrainingSet.getFeatureExtractionMethod()
-					);
-				}
+			if(isSimilarityOverridden())
+			{
+				addResults(oModel, scanSimilarities(oModel, adIncomingFeatures), SortComparator.DESCENDING);
+				return true;
+			}
+
+			// Look up in the index if it can leave out a part of the subjects
+			if(this.iIndexType == INDEX_HNSW && this.iResultLimit > 0 && this.iResultLimit < oModel.getRows())
+			{
+				HNSWIndex oIndex = getIndex(oModel);
+				TopKHeap oClosest = getClosest(oModel.getRows());
+				int iVisited = oIndex.search(adIncomingFeatures, this.iSearchBreadth, oClosest);
 
-				// Sanity check: vectors must be of the same length
-				if(adMeanVector.length != adIncomingFeatures.length)
+				if(bDebug)
 				{
-					throw new ClassificationException
-					(
-						"similarity() - Mean vector length (" + adMeanVector.length +
-						") is not same as of incoming feature vector (" + adIncomingFeatures.length + ")"
-					);
+					Debug.debug("similarity() - HNSW computed " + iVisited + " of " + oModel.getRows() + " similarities");
 				}
 
-				/*
-				 * We have a mean vector of the samples for this iCurrentSubjectID
-				 * Compare using whatever distance classifier it is...
-				 */
-				double dCurrentSimilarity = similarity(adMeanVector, adIncomingFeatures);
+				addResults(oIndex.getSubjectIDs(), oClosest, SortComparator.DESCENDING);
 
-				Debug.debug("Similarity for subject " + oTrainingSample.getSubjectID() + " = " + dCurrentSimilarity);
+				return true;
+			}
 
-				// XXX: What should we do in this (very rare and subtle) case?
-				if(dCurrentSimilarity == dMaxSimilarity)
-				{
-					Debug.debug("This similarity had happened before!");
-				}
+			final double[] adMeanLengths = oModel.getLengths();
+			final double dIncomingLength = Math.sqrt
+			(
+				Algorithms.Distances.dotProduct(adIncomingFeatures, 0, adIncomingFeatures, adIncomingFeatures.length)
+			);
 
-				if(dCurrentSimilarity > dMaxSimilarity)
+			/*
+			 * Run through the stored mean vectors and keep the most
+			 * similar subjects to the incoming features sample; the heap
+			 * keeps the smallest values, so the similarities go in negated
+			 */
+			TopKHeap oClosest = scanModel
+			(
+				oModel,
+				new IRowMeasure()
 				{
-					dMaxSimilarity = dCurrentSimilarity;
-				}
+					public double measure(TrainingMatrix poModel, int piRow, double[] padVector, double pdBound)
+					{
+						double dCurrentSimilarity = 0;
+						double dDenominator = adMeanLengths[piRow] * dIncomingLength;
 
-				// Collect for stats
-				// XXX: Move to StatsCollector
-				this.oResultSet.addResult
-				(
-					oTrainingSample.getSubjectID(),
-					dCurrentSimilarity
-				);
-			}
+						if(dDenominator != 0)
+						{
+							dCurrentSimilarity = Algorithms.Distances.dotProduct
+							(
+								poModel.getData(),
+								poModel.getOffset(piRow),
+								padVector,
+								padVector.length
+							) / dDenominator;
+						}
+						else
+						{
+							// Kept 0; as it is unlikely to be similar
+							Debug.debug("WARNING: denominator is 0 while computing similarity measure.");
+						}
+
+						if(bDebug)
+						{
+							Debug.debug("Similarity for subject " + poModel.getSubjectID(piRow) + " = " + dCurrentSimilarity);
+						}
+
+						return -dCurrentSimilarity;
+					}
+				},
+				adIncomingFeatures,
+				true
+			);
+
+			// Collect for stats
+			// XXX: Move to StatsCollector
+			addResults(oModel, oClosest, SortComparator.DESCENDING);
 
 			return true;
 		}
@@ -140,7 +253,102 @@ extends Classification
 	}
 
 	/**
-	 * Generic similarity routine. May be overridden.
+	 * Runs through the stored mean vectors one by one and keeps the most
+	 * similar subjects as given by <code>similarity()</code>; the heap
+	 * keeps the smallest values, so the similarities go in negated.
+	 * @param poModel the model
+	 * @param padVector incoming feature vector, as long as the mean vectors
+	 * @return the most similar subjects
+	 * @throws ClassificationException if <code>similarity()</code> fails
+	 * @since 0.3.0.6
+	 */
+	private TopKHeap scanSimilarities(TrainingMatrix poModel, double[] padVector)
+	throws ClassificationException
+	{
+		final boolean bDebug = Debug.isDebugOn();
+		final double[] adRow = new double[padVector.length];
+		final ClassificationException[] aoFailure = new ClassificationException[1];
+
+		TopKHeap oClosest = scanModel
+		(
+			poModel,
+			new IRowMeasure()
+			{
+				public double measure(TrainingMatrix poModel, int piRow, double[] padVector, double pdBound)
+				{
+					if(aoFailure[0] != null)
+					{
+						return Double.POSITIVE_INFINITY;
+					}
+
+					System.arraycopy(poModel.getData(), poModel.getOffset(piRow), adRow, 0, adRow.length);
+
+					try
+					{
+						double dCurrentSimilarity = similarity(adRow, padVector);
+
+						if(bDebug)
+						{
+							Debug.debug("Similarity for subject " + poModel.getSubjectID(piRow) + " = " + dCurrentSimilarity);
+						}
+
+						return -dCurrentSimilarity;
+					}
+					catch(ClassificationException e)
+					{
+						aoFailure[0] = e;
+						return Double.POSITIVE_INFINITY;
+					}
+				}
+			},
+			padVector,
+			false
+		);
+
+		if(aoFailure[0] != null)
+		{
+			throw aoFailure[0];
+		}
+
+		return oClosest;
+	}
+
+	/**
+	 * Tells whether a derivative overrides <code>similarity()</code>, in
+	 * which case the classification has to call it for every subject.
+	 * @return <code>true</code> if <code>similarity(double[], double[])</code>
+	 * is not the one of this class
+	 * @since 0.3.0.6
+	 */
+	protected boolean isSimilarityOverridden()
+	{
+		Boolean oOverridden = this.oSimilarityOverridden;
+
+		if(oOverridden == null)
+		{
+			try
+			{
+				oOverridden = Boolean.valueOf
+				(
+					getClass().getMethod("similarity", double[].class, double[].class).getDeclaringClass()
+					!= CosineSimilarityMeasure.class
+				);
+			}
+			catch(NoSuchMethodException e)
+			{
+				// Cannot be, the method is public
+				oOverridden = Boolean.TRUE;
+			}
+
+			this.oSimilarityOverridden = oOverridden;
+		}
+
+		return oOverridden.booleanValue();
+	}
+
+	/**
+	 * Generic similarity routine. May be overridden, in which case
+	 * <code>classify()</code> calls it for every subject.
 	 * @param padVector1 first vector for similarity calculation
 	 * @param padVector2 second vector for similarity calculation
 	 * @return similarity between the two vectors
@@ -179,6 +387,191 @@ extends Classification
 		return this.oResultSet.getMaximumResult();
 	}
 
+	/**
+	 * Copies of the classifier only read the shared training set and
+	 * model, and each takes the index of its own. An overridden
+	 * <code>similarity()</code> is not known to allow that; derivatives
+	 * whose one does should override this as well.
+	 * @return <code>true</code> unless <code>similarity()</code> is overridden
+	 * @since 0.3.0.6
+	 * @see Classification#classifyBatch(double[][], boolean)
+	 */
+	protected boolean isCloneReentrant()
+	{
+		return isSimilarityOverridden() == false;
+	}
+
+	/**
+	 * Retrieves the index of the model: the one already at hand, the one
+	 * cached along with a training set shared through the <code>ModelCache</code>,
+	 * or the one at hand or stored next to the training set, brought in
+	 * line with the model, or a new one. If it had to change, it is stored.
+	 * An index loaded or brought in line for a shared training set is cached
+	 * along with it, so it is only loaded once for all the classifiers, which
+	 * then search it one at a time.
+	 * @param poModel the model
+	 * @return the index
+	 * @throws ClassificationException if the index could not be stored
+	 * @since 0.3.0.6
+	 */
+	protected HNSWIndex getIndex(TrainingMatrix poModel)
+	throws ClassificationException
+	{
+		if(this.oIndex != null && this.oIndexModel == poModel)
+		{
+			return this.oIndex;
+		}
+
+		String strKey = HNSWIndex.class.getName() + " " + getClass().getName();
+		HNSWIndex oIndex = (HNSWIndex)getDerived(strKey);
+
+		if(oIndex == null)
+		{
+			try
+			{
+				boolean bPersistent = this.iCurrentDumpMode == DUMP_GZIP_BINARY || this.iCurrentDumpMode == DUMP_BINARY;
+
+				oIndex = this.oIndex;
+
+				// The one cached along with a training set is not altered
+				if(oIndex != null && this.bSharedIndex)
+				{
+					oIndex = (HNSWIndex)oIndex.clone();
+				}
+
+				if(oIndex == null)
+				{
+					oIndex = new HNSWIndex(poModel.getDimensions());
+					oIndex.setDumpMode(this.iCurrentDumpMode);
+					oIndex.setFilename(getIndexFilename());
+
+					if(bPersistent && new File(oIndex.getFilename()).isFile())
+					{
+						oIndex.restore();
+					}
+				}
+
+				if(oIndex.matches(poModel) == false)
+				{
+					Debug.debug("CosineSimilarityMeasure.getIndex() - updating HNSW graph of " + poModel.getRows() + " subjects");
+
+					oIndex.update(poModel);
+
+					if(bPersistent)
+					{
+						oIndex.dump();
+					}
+				}
+			}
+			catch(StorageException e)
+			{
+				throw new ClassificationException(e);
+			}
+
+			// The vectors and the links of the bottom layer
+			oIndex = (HNSWIndex)putDerived(strKey, oIndex, 8L * oIndex.size() * (poModel.getDimensions() + HNSWIndex.DEFAULT_LINKS));
+		}
+
+		this.oIndex = oIndex;
+		this.oIndexModel = poModel;
+		this.bSharedIndex = getDerived(strKey) == oIndex;
+
+		return oIndex;
+	}
+
+	/**
+	 * Retrieves the name of the file the index is stored in, which
+	 * is that of the training set followed by the classifier's name.
+	 * @return the filename
+	 * @since 0.3.0.6
+	 */
+	protected String getIndexFilename()
+	{
+		return new StringBuffer()
+			.append(getTrainingSetFilename()).append(".")
+			.append(getClass().getName()).append(".hnsw")
+			.toString();
+	}
+
+	/**
+	 * Retrieves the index in use.
+	 * @return <code>INDEX_NONE</code> or <code>INDEX_HNSW</code>
+	 * @since 0.3.0.6
+	 */
+	public int getIndexType()
+	{
+		return this.iIndexType;
+	}
+
+	/**
+	 * Selects the index to look up the most similar subjects in. The
+	 * index is only used with a result limit set, and is brought in line
+	 * with the model, and stored next to the training set, on the first
+	 * classification after the training set changed.
+	 * @param piIndexType <code>INDEX_NONE</code> or <code>INDEX_HNSW</code>
+	 * @since 0.3.0.6
+	 * @see #setResultLimit(int)
+	 */
+	public void setIndexType(int piIndexType)
+	{
+		this.iIndexType = piIndexType;
+	}
+
+	/**
+	 * Retrieves the breadth of the index queries.
+	 * @return the breadth
+	 * @since 0.3.0.6
+	 */
+	public int getSearchBreadth()
+	{
+		return this.iSearchBreadth;
+	}
+
+	/**
+	 * Sets the breadth of the index queries, the number of the most
+	 * similar subjects kept while exploring the graph; the larger it is,
+	 * the more of the true most similar subjects are found and the slower
+	 * the query. It is never less than the result limit.
+	 * @param piSearchBreadth the breadth
+	 * @since 0.3.0.6
+	 */
+	public void setSearchBreadth(int piSearchBreadth)
+	{
+		this.iSearchBreadth = piSearchBreadth;
+	}
+
+	/**
+	 * Gives the copy an in-memory copy of the graph already built, as
+	 * searching the graph marks the nodes visited in it.
+	 * @see marf.Classification.Classification#prepareBatchWorker(marf.Classification.Classification)
+	 * @since 0.3.0.6
+	 */
+	protected void prepareBatchWorker(Classification poWorker)
+	{
+		if(this.oIndex != null)
+		{
+			CosineSimilarityMeasure oWorker = (CosineSimilarityMeasure)poWorker;
+			oWorker.oIndex = (HNSWIndex)this.oIndex.clone();
+			oWorker.oIndexModel = this.oIndexModel;
+			oWorker.bSharedIndex = false;
+		}
+	}
+
+	/**
+	 * Implements Cloneable interface for the CosineSimilarityMeasure object.
+	 * The clone loads its own index.
+	 * @see marf.Classification.Classification#clone()
+	 * @since 0.3.0.6
+	 */
+	public Object clone()
+	{
+		CosineSimilarityMeasure oClone = (CosineSimilarityMeasure)super.clone();
+		oClone.oIndex = null;
+		oClone.oIndexModel = null;
+		oClone.bSharedIndex = false;
+		return oClone;
+	}
+
 	/**
 	 * Retrieves class' revision.
 	 * @return revision string
@@ -0,0 +1,979 @@
+package marf.Classification.Similarity;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Random;
+
+import marf.Storage.StorageManager;
+import marf.Storage.TrainingMatrix;
+import marf.util.TopKHeap;
+
+
+/**
+ * <p>Hierarchical navigable small world (HNSW) graph for approximate
+ * nearest subject queries by cosine similarity.</p>
+ *
+ * <p>The mean vector of every subject is kept L2-normalised, so the
+ * cosine similarity is a plain dot product, and is a node of a layered
+ * proximity graph: every node is on layer 0 and, with geometrically
+ * decreasing probability, on the layers above. A query descends greedily
+ * from the single node of the top layer and then explores layer 0 best
+ * first, keeping the <code>ef</code> most similar nodes seen; the larger
+ * <code>ef</code>, the higher the recall and the slower the query. The cost
+ * grows about logarithmically with the number of subjects.</p>
+ *
+ * <p>Subjects are inserted one at a time, e.g. as they are trained on.
+ * A subject whose mean vector changes is marked deleted and inserted anew;
+ * deleted nodes still route queries but are never reported, and the graph
+ * is rebuilt once they outnumber the live ones. The graph is stored in a
+ * file of its own next to the training set along with a fingerprint of the
+ * model it reflects.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see CosineSimilarityMeasure#INDEX_HNSW
+ */
+public class HNSWIndex
+extends StorageManager
+{
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = 3198560476043186247L;
+
+	/**
+	 * Default number of links per node above layer 0, <code>M</code>, 16;
+	 * layer 0 allows twice as many.
+	 */
+	public static final int DEFAULT_LINKS = 16;
+
+	/**
+	 * Default breadth of the search for the neighbours of an
+	 * inserted node, <code>efConstruction</code>, 200.
+	 */
+	public static final int DEFAULT_BUILD_BREADTH = 200;
+
+	/**
+	 * Default breadth of a query, <code>ef</code>, 64.
+	 */
+	public static final int DEFAULT_SEARCH_BREADTH = 64;
+
+	/**
+	 * Length of the vectors.
+	 */
+	protected int iDimensions;
+
+	/**
+	 * Links per node above layer 0.
+	 */
+	protected int iLinks;
+
+	/**
+	 * Breadth of the search for the neighbours of an inserted node.
+	 */
+	protected int iBuildBreadth;
+
+	/**
+	 * Number of nodes, deleted ones included.
+	 */
+	protected int iCount = 0;
+
+	/**
+	 * Number of deleted nodes.
+	 */
+	protected int iDeleted = 0;
+
+	/**
+	 * Node the queries start at, on the top layer; -1 if the graph is empty.
+	 */
+	protected int iEntryPoint = -1;
+
+	/**
+	 * Top layer.
+	 */
+	protected int iTopLayer = -1;
+
+	/**
+	 * Normalised vectors of the nodes, one after another.
+	 */
+	protected double[] adVectors = new double[0];
+
+	/**
+	 * Subject of each node.
+	 */
+	protected int[] aiSubjectIDs = new int[0];
+
+	/**
+	 * Whether each node is deleted.
+	 */
+	protected boolean[] abDeleted = new boolean[0];
+
+	/**
+	 * Links of each node on each of its layers: the count
+	 * followed by the linked nodes.
+	 */
+	protected int[][][] aaaiLinks = new int[0][][];
+
+	/**
+	 * Live node of each subject.
+	 */
+	protected Hashtable<Integer, Integer> oNodes = new Hashtable<Integer, Integer>();
+
+	/**
+	 * Source of the node layers; kept so that the same inserts give the same graph.
+	 */
+	protected Random oRandom = new Random(0);
+
+	/**
+	 * Fingerprint of the model the graph reflects.
+	 * @see TrainingMatrix#getFingerprint()
+	 */
+	protected long lFingerprint = 0;
+
+	/**
+	 * Visit marks of the nodes for the current search.
+	 */
+	private transient int[] aiVisited = null;
+
+	/**
+	 * Mark of the current search.
+	 */
+	private transient int iVisitMark = 0;
+
+	/**
+	 * Number of similarities computed by the current search.
+	 */
+	private transient int iComputed = 0;
+
+	/**
+	 * Constructs an empty graph with the default parameters,
+	 * stored in the binary GZIP form.
+	 * @param piDimensions length of the vectors
+	 */
+	public HNSWIndex(final int piDimensions)
+	{
+		this(piDimensions, DEFAULT_LINKS, DEFAULT_BUILD_BREADTH);
+	}
+
+	/**
+	 * Constructs an empty graph stored in the binary GZIP form.
+	 * @param piDimensions length of the vectors
+	 * @param piLinks links per node above layer 0, at least 2
+	 * @param piBuildBreadth breadth of the search for the neighbours of an inserted node
+	 * @throws IllegalArgumentException if there are fewer than two links
+	 */
+	public HNSWIndex(final int piDimensions, final int piLinks, final int piBuildBreadth)
+	{
+		if(piLinks < 2)
+		{
+			throw new IllegalArgumentException("Number of links (" + piLinks + ") must be at least 2.");
+		}
+
+		this.iDimensions = piDimensions;
+		this.iLinks = piLinks;
+		this.iBuildBreadth = Math.max(piBuildBreadth, piLinks);
+
+		this.iCurrentDumpMode = DUMP_GZIP_BINARY;
+		this.oObjectToSerialize = this;
+		this.bDumpOnNotFound = false;
+	}
+
+	/**
+	 * Brings the graph in line with the model: inserts the new subjects,
+	 * reinserts the ones whose mean vectors changed, and deletes the ones
+	 * no longer there.
+	 * @param poModel the model
+	 */
+	public synchronized void update(final TrainingMatrix poModel)
+	{
+		if(poModel.getDimensions() != this.iDimensions)
+		{
+			clear(poModel.getDimensions());
+		}
+
+		double[] adRow = new double[this.iDimensions];
+		Hashtable<Integer, Integer> oCurrent = new Hashtable<Integer, Integer>();
+
+		for(int i = 0; i < poModel.getRows(); i++)
+		{
+			int iSubjectID = poModel.getSubjectID(i);
+			oCurrent.put(iSubjectID, i);
+
+			System.arraycopy(poModel.getData(), poModel.getOffset(i), adRow, 0, this.iDimensions);
+			normalize(adRow);
+
+			Integer oNode = this.oNodes.get(iSubjectID);
+
+			if(oNode == null || isSame(oNode.intValue(), adRow) == false)
+			{
+				insertNormalized(iSubjectID, adRow);
+			}
+		}
+
+		// Subjects gone from the training set
+		Enumeration<Integer> oSubjects = this.oNodes.keys();
+
+		while(oSubjects.hasMoreElements())
+		{
+			Integer oSubjectID = oSubjects.nextElement();
+
+			if(oCurrent.containsKey(oSubjectID) == false)
+			{
+				remove(oSubjectID.intValue());
+			}
+		}
+
+		if(this.iDeleted > size())
+		{
+			rebuild();
+		}
+
+		this.lFingerprint = poModel.getFingerprint();
+	}
+
+	/**
+	 * Inserts a subject, replacing its previous vector if any.
+	 * @param piSubjectID the subject
+	 * @param padVector its mean vector; not kept
+	 */
+	public synchronized void insert(final int piSubjectID, final double[] padVector)
+	{
+		double[] adVector = padVector.clone();
+		normalize(adVector);
+		insertNormalized(piSubjectID, adVector);
+	}
+
+	/**
+	 * Deletes a subject.
+	 * @param piSubjectID the subject
+	 */
+	public synchronized void remove(final int piSubjectID)
+	{
+		Integer oNode = this.oNodes.remove(piSubjectID);
+
+		if(oNode != null)
+		{
+			this.abDeleted[oNode.intValue()] = true;
+			this.iDeleted++;
+		}
+	}
+
+	/**
+	 * Finds the approximately most similar subjects to the incoming vector.
+	 * @param padVector incoming feature vector
+	 * @param piSearchBreadth <code>ef</code>; raised to the heap's capacity if smaller
+	 * @param poClosest empty heap to keep the most similar nodes in, by negated similarity
+	 * @return number of similarities computed
+	 * @see #getSubjectIDs()
+	 */
+	public synchronized int search(final double[] padVector, final int piSearchBreadth, TopKHeap poClosest)
+	{
+		this.iComputed = 0;
+
+		if(size() == 0)
+		{
+			return 0;
+		}
+
+		double[] adQuery = padVector.clone();
+		normalize(adQuery);
+
+		int iEntry = this.iEntryPoint;
+
+		for(int iLayer = this.iTopLayer; iLayer > 0; iLayer--)
+		{
+			iEntry = descend(adQuery, iEntry, iLayer);
+		}
+
+		TopKHeap oFound = searchLayer
+		(
+			adQuery,
+			new int[] {iEntry},
+			1,
+			Math.max(piSearchBreadth, poClosest.getCapacity()),
+			0,
+			true
+		);
+
+		poClosest.offerAll(oFound);
+
+		return this.iComputed;
+	}
+
+	/**
+	 * Tells whether the graph reflects the model.
+	 * @param poModel the model
+	 * @return <code>true</code> if the graph may be used as it is
+	 */
+	public synchronized boolean matches(final TrainingMatrix poModel)
+	{
+		return
+			this.iDimensions == poModel.getDimensions()
+			&& size() == poModel.getRows()
+			&& this.lFingerprint == poModel.getFingerprint();
+	}
+
+	/**
+	 * Retrieves the subject of every node.
+	 * @return subject IDs by node; not a copy
+	 */
+	public synchronized int[] getSubjectIDs()
+	{
+		return this.aiSubjectIDs;
+	}
+
+	/**
+	 * Retrieves the number of live subjects.
+	 * @return the count
+	 */
+	public synchronized int size()
+	{
+		return this.iCount - this.iDeleted;
+	}
+
+	/**
+	 * Inserts a normalised vector as a new node.
+	 * @param piSubjectID the subject
+	 * @param padVector the normalised vector
+	 */
+	private void insertNormalized(final int piSubjectID, final double[] padVector)
+	{
+		remove(piSubjectID);
+
+		int iNode = this.iCount;
+		ensureCapacity(iNode + 1);
+		this.iCount++;
+
+		System.arraycopy(padVector, 0, this.adVectors, iNode * this.iDimensions, this.iDimensions);
+		this.aiSubjectIDs[iNode] = piSubjectID;
+		this.abDeleted[iNode] = false;
+		this.oNodes.put(piSubjectID, iNode);
+
+		// Layer drawn from the exponential distribution with the scale of 1 / ln(M)
+		int iLayer = (int)(-Math.log(1.0 - this.oRandom.nextDouble()) / Math.log(this.iLinks));
+
+		this.aaaiLinks[iNode] = new int[iLayer + 1][];
+
+		for(int l = 0; l <= iLayer; l++)
+		{
+			this.aaaiLinks[iNode][l] = new int[getMaxLinks(l) + 1];
+		}
+
+		if(this.iEntryPoint < 0)
+		{
+			this.iEntryPoint = iNode;
+			this.iTopLayer = iLayer;
+			return;
+		}
+
+		int iEntry = this.iEntryPoint;
+
+		for(int l = this.iTopLayer; l > iLayer; l--)
+		{
+			iEntry = descend(padVector, iEntry, l);
+		}
+
+		int[] aiEntries = new int[] {iEntry};
+		int iEntries = 1;
+
+		for(int l = Math.min(iLayer, this.iTopLayer); l >= 0; l--)
+		{
+			TopKHeap oFound = searchLayer(padVector, aiEntries, iEntries, this.iBuildBreadth, l, false);
+			int iFound = oFound.sort();
+
+			int[] aiNeighbours = selectNeighbours(oFound, iFound, this.iLinks);
+			int[] aiLinks = this.aaaiLinks[iNode][l];
+
+			for(int j = 0; j < aiNeighbours.length; j++)
+			{
+				aiLinks[++aiLinks[0]] = aiNeighbours[j];
+				link(aiNeighbours[j], iNode, l);
+			}
+
+			// The nodes found are where the next layer down starts
+			aiEntries = new int[iFound];
+
+			for(int j = 0; j < iFound; j++)
+			{
+				aiEntries[j] = oFound.getIndex(j);
+			}
+
+			iEntries = iFound;
+		}
+
+		if(iLayer > this.iTopLayer)
+		{
+			this.iTopLayer = iLayer;
+			this.iEntryPoint = iNode;
+		}
+	}
+
+	/**
+	 * Adds a link from one node to another, dropping the
+	 * least useful link of the node if it has too many.
+	 * @param piFrom the node to link
+	 * @param piTo the node to link to
+	 * @param piLayer the layer
+	 */
+	private void link(final int piFrom, final int piTo, final int piLayer)
+	{
+		int[] aiLinks = this.aaaiLinks[piFrom][piLayer];
+		int iMaxLinks = aiLinks.length - 1;
+
+		if(aiLinks[0] < iMaxLinks)
+		{
+			aiLinks[++aiLinks[0]] = piTo;
+			return;
+		}
+
+		// Choose again among the current links and the new one
+		TopKHeap oCandidates = new TopKHeap(iMaxLinks + 1);
+
+		for(int j = 1; j <= aiLinks[0]; j++)
+		{
+			oCandidates.offer(getDistance(piFrom, aiLinks[j]), aiLinks[j]);
+		}
+
+		oCandidates.offer(getDistance(piFrom, piTo), piTo);
+
+		int[] aiNeighbours = selectNeighbours(oCandidates, oCandidates.sort(), iMaxLinks);
+
+		aiLinks[0] = aiNeighbours.length;
+		System.arraycopy(aiNeighbours, 0, aiLinks, 1, aiNeighbours.length);
+	}
+
+	/**
+	 * Picks the neighbours of a node among the candidates, most similar
+	 * first, skipping a candidate that is more similar to an already picked
+	 * neighbour than to the node, which keeps links in all the directions.
+	 * @param poCandidates candidates sorted by distance from the node
+	 * @param piCandidates number of candidates
+	 * @param piMaxLinks maximum number of neighbours
+	 * @return the neighbours
+	 */
+	private int[] selectNeighbours(final TopKHeap poCandidates, final int piCandidates, final int piMaxLinks)
+	{
+		int[] aiSelected = new int[Math.min(piCandidates, piMaxLinks)];
+		int iSelected = 0;
+
+		for(int i = 0; i < piCandidates && iSelected < aiSelected.length; i++)
+		{
+			int iCandidate = poCandidates.getIndex(i);
+			double dDistance = poCandidates.getValue(i);
+
+			boolean bKeep = true;
+
+			for(int j = 0; j < iSelected; j++)
+			{
+				if(getDistance(iCandidate, aiSelected[j]) < dDistance)
+				{
+					bKeep = false;
+					break;
+				}
+			}
+
+			if(bKeep)
+			{
+				aiSelected[iSelected++] = iCandidate;
+			}
+		}
+
+		if(iSelected < aiSelected.length)
+		{
+			int[] aiShorter = new int[iSelected];
+			System.arraycopy(aiSelected, 0, aiShorter, 0, iSelected);
+			aiSelected = aiShorter;
+		}
+
+		return aiSelected;
+	}
+
+	/**
+	 * Moves greedily to the most similar node on a layer.
+	 * @param padQuery normalised query vector
+	 * @param piEntry node to start at
+	 * @param piLayer the layer
+	 * @return the node no neighbour of which is more similar
+	 */
+	private int descend(final double[] padQuery, final int piEntry, final int piLayer)
+	{
+		int iCurrent = piEntry;
+		double dCurrent = getDistance(iCurrent, padQuery);
+
+		boolean bMoved = true;
+
+		while(bMoved)
+		{
+			bMoved = false;
+
+			int[] aiLinks = this.aaaiLinks[iCurrent][piLayer];
+
+			for(int j = 1; j <= aiLinks[0]; j++)
+			{
+				double dDistance = getDistance(aiLinks[j], padQuery);
+
+				if(dDistance < dCurrent)
+				{
+					dCurrent = dDistance;
+					iCurrent = aiLinks[j];
+					bMoved = true;
+				}
+			}
+		}
+
+		return iCurrent;
+	}
+
+	/**
+	 * Best-first search of a layer.
+	 * @param padQuery normalised query vector
+	 * @param paiEntries nodes to start at
+	 * @param piEntries number of the nodes to start at
+	 * @param piBreadth number of the most similar nodes to keep
+	 * @param piLayer the layer
+	 * @param pbLiveOnly whether to leave the deleted nodes out of the result
+	 * @return the most similar nodes found, by distance
+	 */
+	private TopKHeap searchLayer(final double[] padQuery, final int[] paiEntries, final int piEntries, final int piBreadth, final int piLayer, final boolean pbLiveOnly)
+	{
+		if(this.aiVisited == null || this.aiVisited.length < this.iCount)
+		{
+			this.aiVisited = new int[this.adVectors.length / Math.max(1, this.iDimensions) + 1];
+			this.iVisitMark = 0;
+		}
+
+		if(++this.iVisitMark == 0)
+		{
+			java.util.Arrays.fill(this.aiVisited, 0);
+			this.iVisitMark = 1;
+		}
+
+		TopKHeap oFound = new TopKHeap(piBreadth);
+		CandidateQueue oCandidates = new CandidateQueue();
+
+		for(int i = 0; i < piEntries; i++)
+		{
+			int iEntry = paiEntries[i];
+			double dDistance = getDistance(iEntry, padQuery);
+
+			this.aiVisited[iEntry] = this.iVisitMark;
+			oCandidates.push(dDistance, iEntry);
+
+			if(pbLiveOnly == false || this.abDeleted[iEntry] == false)
+			{
+				oFound.offer(dDistance, iEntry);
+			}
+		}
+
+		while(oCandidates.size() > 0)
+		{
+			if(oCandidates.peekDistance() > oFound.getBound())
+			{
+				break;
+			}
+
+			int iCandidate = oCandidates.pop();
+			int[] aiLinks = this.aaaiLinks[iCandidate][piLayer];
+
+			for(int j = 1; j <= aiLinks[0]; j++)
+			{
+				int iNeighbour = aiLinks[j];
+
+				if(this.aiVisited[iNeighbour] == this.iVisitMark)
+				{
+					continue;
+				}
+
+				this.aiVisited[iNeighbour] = this.iVisitMark;
+
+				double dDistance = getDistance(iNeighbour, padQuery);
+
+				if(dDistance < oFound.getBound())
+				{
+					oCandidates.push(dDistance, iNeighbour);
+
+					if(pbLiveOnly == false || this.abDeleted[iNeighbour] == false)
+					{
+						oFound.offer(dDistance, iNeighbour);
+					}
+				}
+			}
+		}
+
+		return oFound;
+	}
+
+	/**
+	 * Distance of a node from a normalised vector: the negated dot product.
+	 * @param piNode the node
+	 * @param padVector the vector
+	 * @return negated cosine similarity
+	 */
+	private double getDistance(final int piNode, final double[] padVector)
+	{
+		this.iComputed++;
+
+		int iOffset = piNode * this.iDimensions;
+		double dDot = 0.0;
+
+		for(int i = 0; i < this.iDimensions; i++)
+		{
+			dDot += this.adVectors[iOffset + i] * padVector[i];
+		}
+
+		return -dDot;
+	}
+
+	/**
+	 * Distance between two nodes: their negated dot product.
+	 * @param piNode1 first node
+	 * @param piNode2 second node
+	 * @return negated cosine similarity
+	 */
+	private double getDistance(final int piNode1, final int piNode2)
+	{
+		int iOffset1 = piNode1 * this.iDimensions;
+		int iOffset2 = piNode2 * this.iDimensions;
+		double dDot = 0.0;
+
+		for(int i = 0; i < this.iDimensions; i++)
+		{
+			dDot += this.adVectors[iOffset1 + i] * this.adVectors[iOffset2 + i];
+		}
+
+		return -dDot;
+	}
+
+	/**
+	 * Tells whether a node holds the normalised vector.
+	 * @param piNode the node
+	 * @param padVector the vector
+	 * @return <code>true</code> if all the elements are equal
+	 */
+	private boolean isSame(final int piNode, final double[] padVector)
+	{
+		int iOffset = piNode * this.iDimensions;
+
+		for(int i = 0; i < this.iDimensions; i++)
+		{
+			if(this.adVectors[iOffset + i] != padVector[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Inserts the live subjects into an empty graph, which drops the deleted nodes.
+	 */
+	private void rebuild()
+	{
+		int iDimensions = this.iDimensions;
+		double[] adVectors = this.adVectors;
+		int[] aiSubjectIDs = this.aiSubjectIDs;
+		boolean[] abDeleted = this.abDeleted;
+		int iCount = this.iCount;
+
+		clear(iDimensions);
+
+		double[] adVector = new double[iDimensions];
+
+		for(int i = 0; i < iCount; i++)
+		{
+			if(abDeleted[i] == false)
+			{
+				System.arraycopy(adVectors, i * iDimensions, adVector, 0, iDimensions);
+				insertNormalized(aiSubjectIDs[i], adVector);
+			}
+		}
+	}
+
+	/**
+	 * Empties the graph.
+	 * @param piDimensions length of the vectors from now on
+	 */
+	private void clear(final int piDimensions)
+	{
+		this.iDimensions = piDimensions;
+		this.iCount = 0;
+		this.iDeleted = 0;
+		this.iEntryPoint = -1;
+		this.iTopLayer = -1;
+		this.adVectors = new double[0];
+		this.aiSubjectIDs = new int[0];
+		this.abDeleted = new boolean[0];
+		this.aaaiLinks = new int[0][][];
+		this.oNodes.clear();
+		this.oRandom = new Random(0);
+	}
+
+	/**
+	 * Grows the node arrays to hold at least the given number of nodes.
+	 * @param piNodes number of nodes
+	 */
+	private void ensureCapacity(final int piNodes)
+	{
+		if(piNodes <= this.aiSubjectIDs.length)
+		{
+			return;
+		}
+
+		int iCapacity = Math.max(piNodes, 2 * this.aiSubjectIDs.length);
+
+		double[] adVectors = new double[iCapacity * this.iDimensions];
+		System.arraycopy(this.adVectors, 0, adVectors, 0, this.iCount * this.iDimensions);
+		this.adVectors = adVectors;
+
+		int[] aiSubjectIDs = new int[iCapacity];
+		System.arraycopy(this.aiSubjectIDs, 0, aiSubjectIDs, 0, this.iCount);
+		this.aiSubjectIDs = aiSubjectIDs;
+
+		boolean[] abDeleted = new boolean[iCapacity];
+		System.arraycopy(this.abDeleted, 0, abDeleted, 0, this.iCount);
+		this.abDeleted = abDeleted;
+
+		int[][][] aaaiLinks = new int[iCapacity][][];
+		System.arraycopy(this.aaaiLinks, 0, aaaiLinks, 0, this.iCount);
+		this.aaaiLinks = aaaiLinks;
+	}
+
+	/**
+	 * Maximum number of links of a node on a layer.
+	 * @param piLayer the layer
+	 * @return <code>2M</code> on layer 0, <code>M</code> above
+	 */
+	private int getMaxLinks(final int piLayer)
+	{
+		return piLayer == 0 ? 2 * this.iLinks : this.iLinks;
+	}
+
+	/**
+	 * Normalises a vector to the unit length in place;
+	 * a zero vector is left as it is.
+	 * @param padVector the vector
+	 */
+	private static void normalize(double[] padVector)
+	{
+		double dSqSum = 0.0;
+
+		for(int i = 0; i < padVector.length; i++)
+		{
+			dSqSum += padVector[i] * padVector[i];
+		}
+
+		if(dSqSum > 0)
+		{
+			double dLength = Math.sqrt(dSqSum);
+
+			for(int i = 0; i < padVector.length; i++)
+			{
+				padVector[i] /= dLength;
+			}
+		}
+	}
+
+	/**
+	 * @see marf.Storage.StorageManager#backSynchronizeObject()
+	 */
+	public synchronized void backSynchronizeObject()
+	{
+		HNSWIndex oNewThis = (HNSWIndex)this.oObjectToSerialize;
+
+		this.iDimensions = oNewThis.iDimensions;
+		this.iLinks = oNewThis.iLinks;
+		this.iBuildBreadth = oNewThis.iBuildBreadth;
+		this.iCount = oNewThis.iCount;
+		this.iDeleted = oNewThis.iDeleted;
+		this.iEntryPoint = oNewThis.iEntryPoint;
+		this.iTopLayer = oNewThis.iTopLayer;
+		this.adVectors = oNewThis.adVectors;
+		this.aiSubjectIDs = oNewThis.aiSubjectIDs;
+		this.abDeleted = oNewThis.abDeleted;
+		this.aaaiLinks = oNewThis.aaaiLinks;
+		this.oNodes = oNewThis.oNodes;
+		this.oRandom = oNewThis.oRandom;
+		this.lFingerprint = oNewThis.lFingerprint;
+
+		this.oObjectToSerialize = this;
+	}
+
+	/**
+	 * Copies the graph in memory, so that the copy may be searched
+	 * or altered independently of this one.
+	 * @see marf.Storage.StorageManager#clone()
+	 */
+	public synchronized Object clone()
+	{
+		HNSWIndex oClone = (HNSWIndex)super.clone();
+
+		oClone.adVectors = this.adVectors.clone();
+		oClone.aiSubjectIDs = this.aiSubjectIDs.clone();
+		oClone.abDeleted = this.abDeleted.clone();
+		oClone.aaaiLinks = new int[this.aaaiLinks.length][][];
+
+		for(int i = 0; i < this.iCount; i++)
+		{
+			int[][] aaiLayers = this.aaaiLinks[i];
+
+			if(aaiLayers == null)
+			{
+				continue;
+			}
+
+			oClone.aaaiLinks[i] = new int[aaiLayers.length][];
+
+			for(int l = 0; l < aaiLayers.length; l++)
+			{
+				oClone.aaaiLinks[i][l] = aaiLayers[l].clone();
+			}
+		}
+
+		oClone.oNodes = new Hashtable<Integer, Integer>(this.oNodes);
+
+		// Levels of the copy's insertions are drawn independently
+		oClone.oRandom = new Random(this.iCount);
+
+		oClone.aiVisited = null;
+		oClone.iVisitMark = 0;
+		oClone.oObjectToSerialize = oClone;
+
+		return oClone;
+	}
+
+	/**
+	 * Unbounded queue of candidate nodes, closest first.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class CandidateQueue
+	{
+		/**
+		 * Distances; a binary min-heap.
+		 */
+		private double[] adDistances = new double[64];
+
+		/**
+		 * Nodes.
+		 */
+		private int[] aiNodes = new int[64];
+
+		/**
+		 * Number of queued nodes.
+		 */
+		private int iSize = 0;
+
+		/**
+		 * Queues a node.
+		 * @param pdDistance its distance
+		 * @param piNode the node
+		 */
+		void push(final double pdDistance, final int piNode)
+		{
+			if(this.iSize == this.aiNodes.length)
+			{
+				this.adDistances = java.util.Arrays.copyOf(this.adDistances, 2 * this.iSize);
+				this.aiNodes = java.util.Arrays.copyOf(this.aiNodes, 2 * this.iSize);
+			}
+
+			int i = this.iSize++;
+
+			while(i > 0)
+			{
+				int iParent = (i - 1) >>> 1;
+
+				if(this.adDistances[iParent] <= pdDistance)
+				{
+					break;
+				}
+
+				this.adDistances[i] = this.adDistances[iParent];
+				this.aiNodes[i] = this.aiNodes[iParent];
+				i = iParent;
+			}
+
+			this.adDistances[i] = pdDistance;
+			this.aiNodes[i] = piNode;
+		}
+
+		/**
+		 * Retrieves the distance of the closest node.
+		 * @return the distance
+		 */
+		double peekDistance()
+		{
+			return this.adDistances[0];
+		}
+
+		/**
+		 * Removes the closest node.
+		 * @return the node
+		 */
+		int pop()
+		{
+			int iNode = this.aiNodes[0];
+
+			double dDistance = this.adDistances[--this.iSize];
+			int iLast = this.aiNodes[this.iSize];
+
+			int i = 0;
+
+			while(true)
+			{
+				int iChild = 2 * i + 1;
+
+				if(iChild >= this.iSize)
+				{
+					break;
+				}
+
+				if(iChild + 1 < this.iSize && this.adDistances[iChild + 1] < this.adDistances[iChild])
+				{
+					iChild++;
+				}
+
+				if(this.adDistances[iChild] >= dDistance)
+				{
+					break;
+				}
+
+				this.adDistances[i] = this.adDistances[iChild];
+				this.aiNodes[i] = this.aiNodes[iChild];
+				i = iChild;
+			}
+
+			this.adDistances[i] = dDistance;
+			this.aiNodes[i] = iLast;
+
+			return iNode;
+		}
+
+		/**
+		 * Retrieves the number of queued nodes.
+		 * @return the count
+		 */
+		int size()
+		{
+			return this.iSize;
+		}
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -12,7 +12,6 @@ import marf.Storage.Sample;
 import marf.Storage.SampleLoader;
 import marf.gui.Spectrogram;
 import marf.gui.WaveGrapher;
-import marf.math.Algorithms;
 import marf.util.Arrays;
 import marf.util.Debug;
 
@@ -39,11 +38,28 @@ extends FeatureExtraction
 
 	/**
 	 * FFT chunk size.
-	 * Must be a power of 2.
+	 * Powers of 2 and sizes with no prime factors other than 2, 3, and 5
+	 * are the fastest, but any size will do.
 	 * @since 0.3.0.4
 	 */
 	protected int iChunkSize = DEFAULT_CHUNK_SIZE;
 
+	/**
+	 * Whether the windows are truly half-overlapping. By default they
+	 * follow the chunks of the sample the way they always have, for the
+	 * features to match the training sets already stored.
+	 * @since 0.3.0.6
+	 * @see #setHalfOverlap(boolean)
+	 */
+	protected boolean bHalfOverlap = false;
+
+	/**
+	 * Short-time Fourier transform engine reused across extractions
+	 * as long as the chunk size stays the same.
+	 * @since 0.3.0.6
+	 */
+	protected transient STFT oSTFT = null;
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -51,23 +67,23 @@ extends FeatureExtraction
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.4
 	 */
-	private static final long serialVersionUID = 4400274959804693096L;
+	private static final long serialVersionUID = 8017087254577685729L;
 
 	/**
 	 * FFT Constructor.
 	 * @param poPreprocessing Preprocessing module reference
-	 * @throws ClassCastException if a feature extraction module parameter
-	 * supplied and is not of type Integer
+	 * @throws ClassCastException if the first feature extraction module parameter
+	 * supplied is not of type Integer or the second or third one is not of type Boolean
 	 * @throws IllegalArgumentException if the chunk size parameter is
-	 * less than 1 or not a power of 2
+	 * less than 1
 	 */
 	public FFT(IPreprocessing poPreprocessing)
 	{
 		super(poPreprocessing);
 
 		/*
-		 * Allow getting a non-default chunk size
-		 * from an application via the core pipeline.
+		 * Allow getting a non-default chunk size, the overlap and
+		 * the parallel mode from an application via the core pipeline.
 		 */
 		ModuleParams oModuleParams = MARF.getModuleParams();
 
@@ -78,6 +94,16 @@ extends FeatureExtraction
 			if(oFFTParams != null && oFFTParams.size() > 0)
 			{
 				setChunkSize(((Integer)oFFTParams.firstElement()).intValue());
+
+				if(oFFTParams.size() > 1)
+				{
+					setHalfOverlap(((Boolean)oFFTParams.elementAt(1)).booleanValue());
+				}
+
+				if(oFFTParams.size() > 2)
+				{
+					setParallel(((Boolean)oFFTParams.elementAt(2)).booleanValue());
+				}
 			}
 		}
 	}
@@ -122,96 +148,35 @@ extends FeatureExtraction
 		{
 			Debug.debug("FFT.extractFeatures() has begun...");
 
-			int iHalfChunkSize = this.iChunkSize / 2;
-
-			double[] adSampleChunk = new double[this.iChunkSize];
-			double[] adSampleArray = null;
-
-			int iNbrDataRecv = 0;
-			int iWindowPos = 0;
-			int iCount = 0;
-
-			int i;
-
-			Spectrogram oSpectrogram = null;
+			/*
+			 * Hamming windows, all frames in one buffer: half-overlapping ones
+			 * over the whole sample, or back to back over the legacy chunks
+			 */
+			int iHopSize = this.bHalfOverlap ? Math.max(this.iChunkSize / 2, 1) : this.iChunkSize;
 
-			this.adFeatures = new double[iHalfChunkSize];
-
-			double[] adMagnitude  = new double[iHalfChunkSize];
-			double[] adPhaseAngle = new double[iHalfChunkSize];
-
-			// For the case when we want intermediate spectrogram
-			if(MARF.getDumpSpectrogram() == true)
+			if(this.oSTFT == null || this.oSTFT.getWindowSize() != this.iChunkSize || this.oSTFT.getHopSize() != iHopSize)
 			{
-				oSpectrogram = new Spectrogram("fft");
+				this.oSTFT = new STFT(this.iChunkSize, iHopSize);
 			}
 
-			iWindowPos = 0;
-			iNbrDataRecv = poSample.getNextChunk(adSampleChunk);
+			double[] adSignal = this.bHalfOverlap ? poSample.getSampleArray() : getLegacyChunks(poSample);
 
-			while(iNbrDataRecv > 0)
+			if(adSignal == null)
 			{
-				// Fill SampleArray with new window
-				for(i = 0; i < this.iChunkSize; i++)
-				{
-					if(iWindowPos >= this.iChunkSize)
-					{
-						iNbrDataRecv = poSample.getNextChunk(adSampleChunk);
-						iWindowPos = 0;
-
-						// Padding to ^2 for the last chunk
-						if(iNbrDataRecv < this.iChunkSize && iNbrDataRecv > 0)
-						{
-							Arrays.fill(adSampleChunk, iNbrDataRecv, this.iChunkSize - 1, 0);
-							iNbrDataRecv = 0;
-						}
-					}
-
-					//adSampleArray[i] = adSampleChunk[iWindowPos++] * hamming(i, iChunkSize);
-					iWindowPos++;
-				}
-
-				//XXX: hamming(adSampleChunk);
-				adSampleArray = (double[])adSampleChunk.clone();
-				Algorithms.Hamming.hamming(adSampleArray);
-
-				// overlap windows
-				iWindowPos = (iWindowPos - iHalfChunkSize) % this.iChunkSize;
-
-				if(iWindowPos < 0)
-				{
-					iWindowPos += this.iChunkSize;
-				}
-
-				//XXX: normalFFT(adSampleChunk, adMagnitude, adPhaseAngle);
-				Algorithms.FFT.normalFFT(adSampleArray, adMagnitude, adPhaseAngle);
+				adSignal = new double[0];
+			}
 
-				iCount++;
+			int iFrames = this.oSTFT.getFrameCount(adSignal.length);
 
-				if(MARF.getDumpSpectrogram() == true)
-				{
-					oSpectrogram.addFFT(adMagnitude);
-				}
+			this.oSTFT.transform(adSignal, useParallel(iFrames) ? getForkJoinPool() : null);
 
-				for(i = 0; i < iHalfChunkSize; i++)
-				{
-		    		this.adFeatures[i] += adMagnitude[i];
-				}
-
-				iNbrDataRecv = poSample.getNextChunk(adSampleChunk);
-			}
-
-			if(iCount > 1)
-			{
-				for(i = 0; i < iHalfChunkSize; i++)
-				{
-					this.adFeatures[i] /= iCount;
-				}
-			}
+			this.adFeatures = this.oSTFT.getMeanSpectrum(new double[this.oSTFT.getBins()]);
 
 			// For the case when we want intermediate spectrogram
 			if(MARF.getDumpSpectrogram() == true)
 			{
+				Spectrogram oSpectrogram = new Spectrogram("fft");
+				oSpectrogram.addFFT(this.oSTFT.getMagnitudes(), this.oSTFT.getFrames(), this.oSTFT.getBins());
 				oSpectrogram.dump();
 			}
 
@@ -238,23 +203,111 @@ extends FeatureExtraction
 		}
 	}
 
+	/**
+	 * Reads the sample chunk by chunk from its marker, and lays the chunks
+	 * that make it into a window back to back. Though meant to overlap by
+	 * half, every third chunk of even size is skipped, a short last chunk is
+	 * padded with zeros but for its last element, and a window past the
+	 * end takes the previous chunk again.
+	 * @param poSample the sample; its marker ends up past the end
+	 * @return the windows' contents, a multiple of the chunk size long
+	 * @since 0.3.0.6
+	 */
+	private double[] getLegacyChunks(Sample poSample)
+	{
+		int iHalfChunkSize = this.iChunkSize / 2;
+
+		double[] adSampleChunk = new double[this.iChunkSize];
+		double[] adChunks = new double[this.iChunkSize];
+
+		int iChunks = 0;
+		int iWindowPos = 0;
+		int iNbrDataRecv = poSample.getNextChunk(adSampleChunk);
+
+		while(iNbrDataRecv > 0)
+		{
+			// Fill the window, reading a new chunk whenever the position wraps
+			for(int i = 0; i < this.iChunkSize; i++)
+			{
+				if(iWindowPos >= this.iChunkSize)
+				{
+					iNbrDataRecv = poSample.getNextChunk(adSampleChunk);
+					iWindowPos = 0;
+
+					if(iNbrDataRecv < this.iChunkSize && iNbrDataRecv > 0)
+					{
+						Arrays.fill(adSampleChunk, iNbrDataRecv, this.iChunkSize - 1, 0);
+						iNbrDataRecv = 0;
+					}
+				}
+
+				iWindowPos++;
+			}
+
+			if(adChunks.length < (iChunks + 1) * this.iChunkSize)
+			{
+				double[] adGrown = new double[adChunks.length * 2];
+				System.arraycopy(adChunks, 0, adGrown, 0, adChunks.length);
+				adChunks = adGrown;
+			}
+
+			System.arraycopy(adSampleChunk, 0, adChunks, iChunks * this.iChunkSize, this.iChunkSize);
+			iChunks++;
+
+			iWindowPos = (iWindowPos - iHalfChunkSize) % this.iChunkSize;
+
+			if(iWindowPos < 0)
+			{
+				iWindowPos += this.iChunkSize;
+			}
+
+			iNbrDataRecv = poSample.getNextChunk(adSampleChunk);
+		}
+
+		double[] adWindows = new double[iChunks * this.iChunkSize];
+		System.arraycopy(adChunks, 0, adWindows, 0, adWindows.length);
+
+		return adWindows;
+	}
+
+	/**
+	 * Selects between truly half-overlapping windows over the whole sample
+	 * and the chunks read by default. The features change with it, so the training
+	 * sets have to be trained with the same setting they are used with.
+	 * @param pbHalfOverlap <code>true</code> for half-overlapping windows
+	 * @since 0.3.0.6
+	 */
+	public synchronized void setHalfOverlap(boolean pbHalfOverlap)
+	{
+		this.bHalfOverlap = pbHalfOverlap;
+	}
+
+	/**
+	 * Tells whether the windows are truly half-overlapping.
+	 * @return <code>false</code> by default
+	 * @since 0.3.0.6
+	 */
+	public synchronized boolean isHalfOverlap()
+	{
+		return this.bHalfOverlap;
+	}
+
 	/**
 	 * Allows setting a non-default chunk size.
-	 * Must be a power of 2.
+	 * Need not be a power of 2 anymore, e.g. 48000 is fine.
 	 * @param piChunkSize new chunk size
 	 * @return the old value of the chunk size (in case some callers are interested in backing it up)
 	 * @throws IllegalArgumentException if the chunk size parameter is
-	 * less than 1 or not a power of 2
+	 * less than 1
 	 * @since 0.3.0.4
 	 */
 	public synchronized int setChunkSize(int piChunkSize)
 	{
-		if((piChunkSize < 1) | ((piChunkSize & (piChunkSize - 1)) != 0))
+		if(piChunkSize < 1)
 		{
 			throw new IllegalArgumentException
 			(
-				"Chunk size (" + piChunkSize +
-				") is not a power of 2 or less than 1."
+				"Chunk size (" + piChunkSize + ") is less than 1."
 			);
 		}
 
@@ -0,0 +1,459 @@
+package marf.FeatureExtraction.FFT;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import marf.Storage.Sample;
+import marf.math.Algorithms;
+import marf.math.MathException;
+import marf.math.RealFFTPlan;
+
+
+/**
+ * <p>Short-time Fourier transform (STFT) engine.</p>
+ *
+ * <p>Slides a window of a given size over the whole sample with a given hop,
+ * and writes the magnitude spectra of all the frames into a single contiguous
+ * row-major buffer of <code>frames * bins</code> doubles, where
+ * <code>bins = windowSize / 2</code>. The frame buffer, the window and the
+ * spectrum buffers are allocated once and reused for every frame and, as long
+ * as the sample does not get longer, for every subsequent transform. This way
+ * a signal is transformed once, and FFT features, the spectrogram, and
+ * any other spectral consumers share the same output.</p>
+ *
+ * <p>The last frame is zero-padded if the sample does not end on a frame boundary.
+ * Frames are independent of each other, so they may be also transformed in
+ * parallel on a fork/join pool, in which case every task gets its own scratch
+ * buffers; the output is identical to the serial one. An instance itself is
+ * not thread-safe; use one per thread.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class STFT
+{
+	/**
+	 * Number of frames below which a parallel task stops splitting its range.
+	 */
+	public static final int MIN_FRAMES_PER_TASK = 16;
+
+	/**
+	 * Window (FFT) size.
+	 */
+	protected int iWindowSize;
+
+	/**
+	 * Distance between the starts of consecutive frames.
+	 */
+	protected int iHopSize;
+
+	/**
+	 * Window coefficients; <code>null</code> means a rectangular window.
+	 * Only read, so may be a shared table from <code>Algorithms.Windows</code>.
+	 */
+	protected double[] adWindow = null;
+
+	/**
+	 * All the frame magnitudes, row-major; may be longer than needed.
+	 */
+	protected double[] adMagnitudes = new double[0];
+
+	/**
+	 * Number of frames produced by the last transform.
+	 */
+	protected int iFrames = 0;
+
+	/**
+	 * Windowed frame being transformed.
+	 */
+	private double[] adFrame;
+
+	/**
+	 * Real part of the frame's spectrum.
+	 */
+	private double[] adSpectrumReal;
+
+	/**
+	 * Imaginary part of the frame's spectrum.
+	 */
+	private double[] adSpectrumImag;
+
+	/**
+	 * Constructs an STFT with a Hamming window.
+	 * @param piWindowSize window size, at least 1
+	 * @param piHopSize hop size, at least 1
+	 * @throws IllegalArgumentException if either size is less than 1
+	 */
+	public STFT(int piWindowSize, int piHopSize)
+	{
+		this(piWindowSize, piHopSize, Algorithms.Windows.getTable(Algorithms.Windows.HAMMING, Math.max(piWindowSize, 0)));
+	}
+
+	/**
+	 * Constructs an STFT with the given window.
+	 * @param piWindowSize window size, at least 1
+	 * @param piHopSize hop size, at least 1
+	 * @param padWindow window coefficients of the window size length, or <code>null</code> for a rectangular window
+	 * @throws IllegalArgumentException if either size is less than 1 or the window's length does not match
+	 */
+	public STFT(int piWindowSize, int piHopSize, double[] padWindow)
+	{
+		if(piWindowSize < 1 || piHopSize < 1)
+		{
+			throw new IllegalArgumentException
+			(
+				"Window size (" + piWindowSize + ") and hop size (" + piHopSize + ") must be at least 1."
+			);
+		}
+
+		if(padWindow != null && padWindow.length != piWindowSize)
+		{
+			throw new IllegalArgumentException
+			(
+				"Window length (" + padWindow.length + ") does not match window size (" + piWindowSize + ")."
+			);
+		}
+
+		this.iWindowSize = piWindowSize;
+		this.iHopSize = piHopSize;
+		this.adWindow = padWindow;
+
+		this.adFrame = new double[piWindowSize];
+		this.adSpectrumReal = new double[piWindowSize / 2 + 1];
+		this.adSpectrumImag = new double[piWindowSize / 2 + 1];
+	}
+
+	/**
+	 * Computes the number of frames needed to cover a signal of the given length.
+	 * @param piSignalLength signal length
+	 * @return number of frames; 0 for an empty signal
+	 */
+	public int getFrameCount(int piSignalLength)
+	{
+		if(piSignalLength <= 0)
+		{
+			return 0;
+		}
+
+		if(piSignalLength <= this.iWindowSize)
+		{
+			return 1;
+		}
+
+		return 1 + (piSignalLength - this.iWindowSize + this.iHopSize - 1) / this.iHopSize;
+	}
+
+	/**
+	 * Transforms the whole sample's data; the sample's chunk marker is not affected.
+	 * @param poSample sample to transform
+	 * @return the magnitude buffer; see <code>getMagnitudes()</code>
+	 * @throws MathException should there be a problem with the underlying FFT
+	 */
+	public double[] transform(Sample poSample)
+	throws MathException
+	{
+		return transform(poSample, null);
+	}
+
+	/**
+	 * Transforms the whole sample's data, possibly in parallel;
+	 * the sample's chunk marker is not affected.
+	 * @param poSample sample to transform
+	 * @param poPool pool to transform the frames on; <code>null</code> to do it serially
+	 * @return the magnitude buffer; see <code>getMagnitudes()</code>
+	 * @throws MathException should there be a problem with the underlying FFT
+	 */
+	public double[] transform(Sample poSample, ForkJoinPool poPool)
+	throws MathException
+	{
+		double[] adSignal = poSample.getSampleArray();
+		return transform(adSignal == null ? new double[0] : adSignal, poPool);
+	}
+
+	/**
+	 * Transforms the whole signal.
+	 * @param padSignal signal to transform
+	 * @return the magnitude buffer; see <code>getMagnitudes()</code>
+	 * @throws MathException should there be a problem with the underlying FFT
+	 */
+	public double[] transform(final double[] padSignal)
+	throws MathException
+	{
+		return transform(padSignal, null);
+	}
+
+	/**
+	 * Transforms the whole signal, possibly in parallel.
+	 * @param padSignal signal to transform
+	 * @param poPool pool to transform the frames on; <code>null</code> to do it serially
+	 * @return the magnitude buffer; see <code>getMagnitudes()</code>
+	 * @throws MathException should there be a problem with the underlying FFT
+	 */
+	public double[] transform(final double[] padSignal, ForkJoinPool poPool)
+	throws MathException
+	{
+		int iBins = getBins();
+
+		this.iFrames = getFrameCount(padSignal.length);
+
+		if(this.adMagnitudes.length < this.iFrames * iBins)
+		{
+			this.adMagnitudes = new double[this.iFrames * iBins];
+		}
+
+		RealFFTPlan oPlan = RealFFTPlan.getPlan(this.iWindowSize);
+
+		if(poPool != null && this.iFrames > MIN_FRAMES_PER_TASK)
+		{
+			poPool.invoke(new FrameTask(oPlan, padSignal, 0, this.iFrames));
+		}
+		else
+		{
+			for(int f = 0; f < this.iFrames; f++)
+			{
+				transformFrame(oPlan, padSignal, f, this.adMagnitudes, f * iBins);
+			}
+		}
+
+		return this.adMagnitudes;
+	}
+
+	/**
+	 * Windows and transforms a single frame using this STFT's own buffers.
+	 * @param poPlan real FFT plan for the window size
+	 * @param padSignal whole signal
+	 * @param piFrame frame index
+	 * @param padOutput where the frame's magnitudes go
+	 * @param piOffset offset of the frame within the output
+	 */
+	protected void transformFrame(RealFFTPlan poPlan, final double[] padSignal, int piFrame, double[] padOutput, int piOffset)
+	{
+		transformFrame(poPlan, padSignal, piFrame, padOutput, piOffset, this.adFrame, this.adSpectrumReal, this.adSpectrumImag);
+	}
+
+	/**
+	 * Windows and transforms a single frame with caller-supplied scratch buffers.
+	 * @param poPlan real FFT plan for the window size
+	 * @param padSignal whole signal
+	 * @param piFrame frame index
+	 * @param padOutput where the frame's magnitudes go
+	 * @param piOffset offset of the frame within the output
+	 * @param padFrame scratch of the window size
+	 * @param padSpectrumReal scratch of <code>windowSize / 2 + 1</code>
+	 * @param padSpectrumImag scratch of <code>windowSize / 2 + 1</code>
+	 */
+	protected void transformFrame
+	(
+		RealFFTPlan poPlan,
+		final double[] padSignal,
+		int piFrame,
+		double[] padOutput,
+		int piOffset,
+		double[] padFrame,
+		double[] padSpectrumReal,
+		double[] padSpectrumImag
+	)
+	{
+		int iStart = piFrame * this.iHopSize;
+		int iAvailable = Math.min(this.iWindowSize, padSignal.length - iStart);
+
+		System.arraycopy(padSignal, iStart, padFrame, 0, iAvailable);
+
+		// Zero-pad the last frame
+		for(int i = iAvailable; i < this.iWindowSize; i++)
+		{
+			padFrame[i] = 0;
+		}
+
+		if(this.adWindow != null)
+		{
+			for(int i = 0; i < iAvailable; i++)
+			{
+				padFrame[i] *= this.adWindow[i];
+			}
+		}
+
+		poPlan.forward(padFrame, padSpectrumReal, padSpectrumImag);
+
+		int iBins = getBins();
+
+		for(int k = 0; k < iBins; k++)
+		{
+			padOutput[piOffset + k] = Math.sqrt(padSpectrumReal[k] * padSpectrumReal[k] + padSpectrumImag[k] * padSpectrumImag[k]);
+		}
+	}
+
+	/**
+	 * Averages the magnitudes of all the frames of the last transform.
+	 * @param padMean where to put the mean spectrum, at least <code>getBins()</code> long
+	 * @return the same array as the parameter, all zeros if there were no frames
+	 */
+	public double[] getMeanSpectrum(double[] padMean)
+	{
+		int iBins = getBins();
+
+		java.util.Arrays.fill(padMean, 0, iBins, 0.0);
+
+		for(int f = 0; f < this.iFrames; f++)
+		{
+			int iOffset = f * iBins;
+
+			for(int k = 0; k < iBins; k++)
+			{
+				padMean[k] += this.adMagnitudes[iOffset + k];
+			}
+		}
+
+		if(this.iFrames > 1)
+		{
+			for(int k = 0; k < iBins; k++)
+			{
+				padMean[k] /= this.iFrames;
+			}
+		}
+
+		return padMean;
+	}
+
+	/**
+	 * Retrieves the magnitude buffer of the last transform. Frame <code>f</code>
+	 * occupies <code>[f * getBins(), (f + 1) * getBins())</code>; the buffer may
+	 * be longer than <code>getFrames() * getBins()</code> and is reused by the
+	 * next transform.
+	 * @return the flat magnitude buffer
+	 */
+	public double[] getMagnitudes()
+	{
+		return this.adMagnitudes;
+	}
+
+	/**
+	 * Retrieves the number of frames produced by the last transform.
+	 * @return the number of frames
+	 */
+	public int getFrames()
+	{
+		return this.iFrames;
+	}
+
+	/**
+	 * Retrieves the number of magnitude bins per frame, <code>windowSize / 2</code>.
+	 * @return the number of bins
+	 */
+	public int getBins()
+	{
+		return this.iWindowSize / 2;
+	}
+
+	/**
+	 * Retrieves the window size.
+	 * @return the window size
+	 */
+	public int getWindowSize()
+	{
+		return this.iWindowSize;
+	}
+
+	/**
+	 * Retrieves the hop size.
+	 * @return the hop size
+	 */
+	public int getHopSize()
+	{
+		return this.iHopSize;
+	}
+
+	/**
+	 * Transforms a range of frames, splitting it in halves until it is small enough.
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private class FrameTask
+	extends RecursiveAction
+	{
+		/**
+		 * For serialization versioning.
+		 */
+		private static final long serialVersionUID = -2916012457893546104L;
+
+		/**
+		 * Real FFT plan for the window size.
+		 */
+		private final RealFFTPlan oPlan;
+
+		/**
+		 * Whole signal.
+		 */
+		private final double[] adSignal;
+
+		/**
+		 * First frame of the range.
+		 */
+		private final int iFrom;
+
+		/**
+		 * One past the last frame of the range.
+		 */
+		private final int iTo;
+
+		/**
+		 * Constructs the task.
+		 * @param poPlan real FFT plan for the window size
+		 * @param padSignal whole signal
+		 * @param piFrom first frame of the range
+		 * @param piTo one past the last frame of the range
+		 */
+		FrameTask(RealFFTPlan poPlan, final double[] padSignal, int piFrom, int piTo)
+		{
+			this.oPlan = poPlan;
+			this.adSignal = padSignal;
+			this.iFrom = piFrom;
+			this.iTo = piTo;
+		}
+
+		/**
+		 * Transforms the range or forks its halves.
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute()
+		{
+			if(this.iTo - this.iFrom <= MIN_FRAMES_PER_TASK)
+			{
+				double[] adFrame = new double[iWindowSize];
+				double[] adReal = new double[iWindowSize / 2 + 1];
+				double[] adImag = new double[iWindowSize / 2 + 1];
+
+				int iBins = getBins();
+
+				for(int f = this.iFrom; f < this.iTo; f++)
+				{
+					transformFrame(this.oPlan, this.adSignal, f, adMagnitudes, f * iBins, adFrame, adReal, adImag);
+				}
+			}
+			else
+			{
+				int iMiddle = (this.iFrom + this.iTo) >>> 1;
+
+				invokeAll
+				(
+					new FrameTask(this.oPlan, this.adSignal, this.iFrom, iMiddle),
+					new FrameTask(this.oPlan, this.adSignal, iMiddle, this.iTo)
+				);
+			}
+		}
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
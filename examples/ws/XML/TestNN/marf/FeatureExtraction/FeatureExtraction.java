@@ -1,5 +1,7 @@
 package marf.FeatureExtraction;
 
+import java.util.concurrent.ForkJoinPool;
+
 import marf.Preprocessing.IPreprocessing;
 import marf.Storage.FeatureSet;
 import marf.Storage.StorageManager;
@@ -39,6 +41,27 @@ implements IFeatureExtraction
 	 */
 	protected FeatureSet oFeatureSet = new FeatureSet();
 	
+	/**
+	 * Default minimum number of windows (128) for a sample to be processed
+	 * in parallel when the parallel mode is on.
+	 * @since 0.3.0.6
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 128;
+
+	/**
+	 * Whether the windows of long samples are processed in parallel.
+	 * Modules that support it reduce the per-window results in the
+	 * window order, so the features are the same either way.
+	 * @since 0.3.0.6
+	 */
+	protected boolean bParallel = false;
+
+	/**
+	 * Minimum number of windows for the parallel processing to kick in.
+	 * @since 0.3.0.6
+	 */
+	protected int iParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -46,7 +69,7 @@ implements IFeatureExtraction
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.5
 	 */
-	private static final long serialVersionUID = 7608607169147548576L;
+	private static final long serialVersionUID = -156585310886183209L;
 
 	/**
 	 * Main FeatureExtraction constructor.
@@ -102,6 +125,70 @@ implements IFeatureExtraction
 		this.oPreprocessing = poPreprocessing;
 	}
 
+	/**
+	 * Tells whether the parallel window processing is on.
+	 * @return <code>true</code> if on
+	 * @since 0.3.0.6
+	 */
+	public boolean isParallel()
+	{
+		return this.bParallel;
+	}
+
+	/**
+	 * Turns the parallel window processing on or off for the
+	 * modules that support it (FFT and LPC). Those also take it
+	 * from their third feature extraction parameter.
+	 * @param pbParallel <code>true</code> to turn it on
+	 * @since 0.3.0.6
+	 */
+	public void setParallel(boolean pbParallel)
+	{
+		this.bParallel = pbParallel;
+	}
+
+	/**
+	 * Retrieves the minimum number of windows for the parallel processing.
+	 * @return the threshold
+	 * @since 0.3.0.6
+	 */
+	public int getParallelThreshold()
+	{
+		return this.iParallelThreshold;
+	}
+
+	/**
+	 * Allows setting the minimum number of windows for the parallel processing;
+	 * samples with fewer windows are always processed serially.
+	 * @param piParallelThreshold the threshold
+	 * @since 0.3.0.6
+	 */
+	public void setParallelThreshold(int piParallelThreshold)
+	{
+		this.iParallelThreshold = piParallelThreshold;
+	}
+
+	/**
+	 * Tells whether the given number of windows should be processed in parallel.
+	 * @param piWindows number of windows
+	 * @return <code>true</code> if in parallel
+	 * @since 0.3.0.6
+	 */
+	protected boolean useParallel(int piWindows)
+	{
+		return this.bParallel && piWindows >= this.iParallelThreshold && getForkJoinPool().getParallelism() > 1;
+	}
+
+	/**
+	 * Retrieves the pool for the parallel window processing.
+	 * @return the JVM's common fork/join pool
+	 * @since 0.3.0.6
+	 */
+	protected static ForkJoinPool getForkJoinPool()
+	{
+		return ForkJoinPool.commonPool();
+	}
+
 	/**
 	 * Implementation of back-synchronization of loaded object.
 	 * @since 0.3.0.3
@@ -2,6 +2,7 @@ package marf.FeatureExtraction.LPC;
 
 import java.io.Serializable;
 import java.util.Vector;
+import java.util.concurrent.RecursiveAction;
 
 import marf.MARF;
 import marf.FeatureExtraction.FeatureExtraction;
@@ -10,7 +11,9 @@ import marf.Preprocessing.IPreprocessing;
 import marf.Storage.ModuleParams;
 import marf.gui.Spectrogram;
 import marf.math.Algorithms;
+import marf.math.MathException;
 import marf.util.Debug;
+import marf.util.MARFRuntimeException;
 
 
 /**
@@ -60,6 +63,9 @@ extends FeatureExtraction
 
 	/**
 	 * LPC Constructor.
+	 * The feature extraction parameters, if any, are the number of poles
+	 * and the window length (<code>Integer</code>s), and optionally
+	 * the parallel mode (<code>Boolean</code>).
 	 * @param poPreprocessing Preprocessing module reference
 	 */
 	public LPC(IPreprocessing poPreprocessing)
@@ -78,6 +84,11 @@ extends FeatureExtraction
 			{
 				this.iPoles = ((Integer)oParams.elementAt(0)).intValue();
 				this.iWindowLen = ((Integer)oParams.elementAt(1)).intValue();
+
+				if(oParams.size() > 2)
+				{
+					setParallel(((Boolean)oParams.elementAt(2)).booleanValue());
+				}
 			}
 		}
 	}
@@ -128,38 +139,62 @@ extends FeatureExtraction
 			double[] adWindowed  = new double[this.iWindowLen];
 			double[] adLPCCoeffs = new double[this.iPoles];
 			double[] adLPCError  = new double[this.iPoles];
+			double[][] aadScratch = new double[3][this.iPoles];
+			double[] adWindow = Algorithms.Windows.getTable(Algorithms.Windows.HAMMING, this.iWindowLen);
 
 			// Number of windows
 			int iWindowsNum = 1;
 
 			int iHalfWindow = this.iWindowLen / 2;
 
-			for(int iCount = iHalfWindow; (iCount + iHalfWindow) <= adSample.length; iCount += iHalfWindow)
+			int iWindows = iHalfWindow > 0 && adSample.length >= 2 * iHalfWindow
+				? (adSample.length - 2 * iHalfWindow) / iHalfWindow + 1
+				: 0;
+
+			if(useParallel(iWindows))
 			{
-				// Window the input.
-				for(int j = 0; j < this.iWindowLen; j++)
-				{
-					adWindowed[j] = adSample[iCount - iHalfWindow + j];
-					//windowed[j] = adSample[count - iHalfWindow + j] * hamming(j, this.windowLen);
-					//Debug.debug("window: " + windowed[j]);
-				}
+				// All the windows at once, then collected in the same order as below
+				double[] adAllCoeffs = new double[iWindows * this.iPoles];
 
-				Algorithms.Hamming.hamming(adWindowed);
-				Algorithms.LPC.doLPC(adWindowed, adLPCCoeffs, adLPCError, this.iPoles);
+				getForkJoinPool().invoke(new WindowTask(adSample, adWindow, adAllCoeffs, 0, iWindows));
 
-				if(MARF.getDumpSpectrogram() == true)
+				for(int w = 0; w < iWindows; w++)
 				{
-					oSpectrogram.addLPC(adLPCCoeffs, this.iPoles, iHalfWindow);
+					System.arraycopy(adAllCoeffs, w * this.iPoles, adLPCCoeffs, 0, this.iPoles);
+
+					if(MARF.getDumpSpectrogram() == true)
+					{
+						oSpectrogram.addLPC(adLPCCoeffs, this.iPoles, iHalfWindow);
+					}
+
+					for(int j = 0; j < this.iPoles; j++)
+					{
+						this.adFeatures[j] += adLPCCoeffs[j];
+					}
+
+					iWindowsNum++;
 				}
+			}
+			else
+			{
+				for(int w = 0; w < iWindows; w++)
+				{
+					computeWindow(adSample, w, adWindow, adWindowed, adLPCCoeffs, adLPCError, aadScratch);
 
-				// Collect features
- 				for(int j = 0; j < this.iPoles; j++)
- 				{
- 					this.adFeatures[j] += adLPCCoeffs[j];
- 					//Debug.debug("lpc_coeffs[" + j + "]"  + lpc_coeffs[j]);
- 				}
+					if(MARF.getDumpSpectrogram() == true)
+					{
+						oSpectrogram.addLPC(adLPCCoeffs, this.iPoles, iHalfWindow);
+					}
 
-				iWindowsNum++;
+					// Collect features
+					for(int j = 0; j < this.iPoles; j++)
+					{
+						this.adFeatures[j] += adLPCCoeffs[j];
+						//Debug.debug("lpc_coeffs[" + j + "]"  + lpc_coeffs[j]);
+					}
+
+					iWindowsNum++;
+				}
 			}
 
 			// Smoothing
@@ -190,6 +225,142 @@ extends FeatureExtraction
 		}
 	}
 
+	/**
+	 * Windows the input at the given window number and computes its LPC coefficients.
+	 * Windows are half-overlapping.
+	 *
+	 * @param padSample whole sample
+	 * @param piWindow window number
+	 * @param padWindow Hamming window coefficients of the window length
+	 * @param padWindowed scratch for the windowed input of the window length
+	 * @param padLPCCoeffs resulting coefficients
+	 * @param padLPCError scratch for the LPC error
+	 * @param paadScratch three scratch arrays of the number of poles for the LPC algorithm
+	 * @throws MathException if thrown by the LPC algorithm
+	 * @since 0.3.0.6
+	 */
+	private void computeWindow
+	(
+		final double[] padSample,
+		int piWindow,
+		final double[] padWindow,
+		double[] padWindowed,
+		double[] padLPCCoeffs,
+		double[] padLPCError,
+		double[][] paadScratch
+	)
+	throws MathException
+	{
+		int iStart = piWindow * (this.iWindowLen / 2);
+
+		// Window the input.
+		for(int j = 0; j < this.iWindowLen; j++)
+		{
+			padWindowed[j] = padSample[iStart + j] * padWindow[j];
+		}
+		Algorithms.LPC.doLPC(padWindowed, padLPCCoeffs, padLPCError, this.iPoles, paadScratch[0], paadScratch[1], paadScratch[2]);
+	}
+
+	/**
+	 * Computes the LPC coefficients of a range of windows, splitting it
+	 * in halves until it is small enough.
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private class WindowTask
+	extends RecursiveAction
+	{
+		/**
+		 * For serialization versioning.
+		 */
+		private static final long serialVersionUID = 4023718813924562811L;
+
+		/**
+		 * Number of windows below which the range is not split anymore.
+		 */
+		private static final int MIN_WINDOWS_PER_TASK = 32;
+
+		/**
+		 * Whole sample.
+		 */
+		private final double[] adSample;
+
+		/**
+		 * Hamming window coefficients.
+		 */
+		private final double[] adWindow;
+
+		/**
+		 * Coefficients of all the windows, one after another.
+		 */
+		private final double[] adAllCoeffs;
+
+		/**
+		 * First window of the range.
+		 */
+		private final int iFrom;
+
+		/**
+		 * One past the last window of the range.
+		 */
+		private final int iTo;
+
+		/**
+		 * Constructs the task.
+		 * @param padSample whole sample
+		 * @param padWindow Hamming window coefficients
+		 * @param padAllCoeffs coefficients of all the windows
+		 * @param piFrom first window of the range
+		 * @param piTo one past the last window of the range
+		 */
+		WindowTask(final double[] padSample, final double[] padWindow, double[] padAllCoeffs, int piFrom, int piTo)
+		{
+			this.adSample = padSample;
+			this.adWindow = padWindow;
+			this.adAllCoeffs = padAllCoeffs;
+			this.iFrom = piFrom;
+			this.iTo = piTo;
+		}
+
+		/**
+		 * Computes the range or forks its halves.
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute()
+		{
+			if(this.iTo - this.iFrom <= MIN_WINDOWS_PER_TASK)
+			{
+				double[] adWindowed  = new double[iWindowLen];
+				double[] adLPCCoeffs = new double[iPoles];
+				double[] adLPCError  = new double[iPoles];
+				double[][] aadScratch = new double[3][iPoles];
+
+				try
+				{
+					for(int w = this.iFrom; w < this.iTo; w++)
+					{
+						computeWindow(this.adSample, w, this.adWindow, adWindowed, adLPCCoeffs, adLPCError, aadScratch);
+						System.arraycopy(adLPCCoeffs, 0, this.adAllCoeffs, w * iPoles, iPoles);
+					}
+				}
+				catch(MathException e)
+				{
+					throw new MARFRuntimeException(e);
+				}
+			}
+			else
+			{
+				int iMiddle = (this.iFrom + this.iTo) >>> 1;
+
+				invokeAll
+				(
+					new WindowTask(this.adSample, this.adWindow, this.adAllCoeffs, this.iFrom, iMiddle),
+					new WindowTask(this.adSample, this.adWindow, this.adAllCoeffs, iMiddle, this.iTo)
+				);
+			}
+		}
+	}
+
 	/**
 	 * Retrieves the number of poles.
 	 * @return the number of poles
@@ -170,8 +170,7 @@ extends Filter
 				double dUpperBound = Math.PI;
 				double dStep = Math.PI / DEFAULT_STEP_SIZE;
 		*/
-				// Assumption is always that the incoming sample is a square matrix;
-				// Must also be a power of 2.
+				// Assumption is always that the incoming sample is a square matrix.
 				double dLowerBound = 0;
 				double dUpperBound = (2 * Math.PI) - (2 * Math.PI / padSample.length);
 				double dStep = (2 * Math.PI) / padSample.length;
@@ -152,12 +152,27 @@ extends Filter
 	{
 		try
 		{
+			int i;
+
 			int iResponseSize = this.adFreqResponse.length;
+			int iBins = iResponseSize / 2 + 1;
 
 			double[] adBuffer = new double[iResponseSize];
-			double[] adBufferImag = new double[iResponseSize];
-			double[] adOutputReal = new double[iResponseSize];
-			double[] adOutputImag = new double[iResponseSize];
+			double[] adSpectrumReal = new double[iBins];
+			double[] adSpectrumImag = new double[iBins];
+
+			/*
+			 * The filtered signal is the real part of the inverse transform, which
+			 * for a real input is the same as filtering with the conjugate-symmetric
+			 * part of the response; with that the real-input transforms can be used.
+			 */
+			double[] adResponse = new double[iBins];
+			double[] adWindow = Algorithms.Windows.getTable(Algorithms.Windows.SQRT_HAMMING, iResponseSize);
+
+			for(i = 0; i < iBins; i++)
+			{
+				adResponse[i] = 0.5 * (this.adFreqResponse[i] + this.adFreqResponse[(iResponseSize - i) % iResponseSize]);
+			}
 
 			if(padFiltered.length < padSample.length)
 			{
@@ -168,8 +183,6 @@ extends Filter
 				);
 			}
 
-			int i;
-
 			int iPosition = -iResponseSize / 2;
 
 			Debug.debug
@@ -185,25 +198,23 @@ extends Filter
 				{
 					if(((iPosition + i) < padSample.length) && ((iPosition + i) >= 0))
 					{
-						adBuffer[i] = padSample[iPosition + i] * Algorithms.Hamming.sqrtHamming(i, iResponseSize);
+						adBuffer[i] = padSample[iPosition + i] * adWindow[i];
 					}
 					else
 					{
 						adBuffer[i] = 0;
 					}
-
-					adBufferImag[i] = 0;
 				}
 
-				Algorithms.FFT.doFFT(adBuffer, adBufferImag, adOutputReal, adOutputImag, 1);
+				Algorithms.FFT.realFFT(adBuffer, adSpectrumReal, adSpectrumImag);
 
-				for(i = 0; i < iResponseSize; i++)
+				for(i = 0; i < iBins; i++)
 				{
-					adOutputReal[i] *= this.adFreqResponse[i];
-					adOutputImag[i] *= this.adFreqResponse[i];
+					adSpectrumReal[i] *= adResponse[i];
+					adSpectrumImag[i] *= adResponse[i];
 				}
 
-				Algorithms.FFT.doFFT(adOutputReal, adOutputImag, adBuffer, adBufferImag, -1);
+				Algorithms.FFT.inverseRealFFT(adSpectrumReal, adSpectrumImag, adBuffer);
 
 				// Copy & normalize
 				for(i = 0; (i < iResponseSize) && ((iPosition + i) < padSample.length); i++)
@@ -211,7 +222,7 @@ extends Filter
 					if((iPosition + i) >= 0)
 					{
 						padFiltered[iPosition + i] +=
-							adBuffer[i] * Algorithms.Hamming.sqrtHamming(i, iResponseSize) / iResponseSize;
+							adBuffer[i] * adWindow[i] / iResponseSize;
 					}
 				}
 
@@ -5,8 +5,6 @@ import marf.Preprocessing.IPreprocessing;
 import marf.Preprocessing.PreprocessingException;
 import marf.Storage.Sample;
 import marf.math.Algorithms;
-import marf.math.MathException;
-import marf.util.Arrays;
 import marf.util.Debug;
 import marf.util.NotImplementedException;
 
@@ -84,30 +82,13 @@ extends Filter
 			int J = 3;
 			int T = 35;
 			
-			double[][] adDWTCoeffs = Algorithms.Wavelet.dwt(padSample, J, Algorithms.Wavelet.af);
+			// In-place lifting DWT, thresholding of the details, and the inverse
+			System.arraycopy(padSample, 0, padFiltered, 0, padSample.length);
+
+			Algorithms.Wavelet.liftingDWT(padFiltered, padSample.length, J);
+			Algorithms.Wavelet.softThreshold(padFiltered, padSample.length, J, T);
+			Algorithms.Wavelet.liftingIDWT(padFiltered, padSample.length, J);
 
-			// Loop through scales and apply soft thresholding
-			for(int j = 0; j < J; j++)
-			{
-		    	adDWTCoeffs[j] = Algorithms.Wavelet.soft(adDWTCoeffs[j], T); 
-			}		
-			
-			double[] adFiltered = Algorithms.Wavelet.idwt(adDWTCoeffs, J, Algorithms.Wavelet.sf);
-			// -- end
-			
-			System.err.println("adFiltered=" + adFiltered + ",padFiltered="+padFiltered);
-			System.err.println("adFiltered.l=" + adFiltered.length + ",padFiltered.l="+padFiltered.length);
-			
-			//Arrays.copy(padFiltered, 0, adFiltered);
-			Arrays.copy
-			(
-				padFiltered,
-				0,
-				adFiltered,
-				0,
-				padFiltered.length <= adFiltered.length ? padFiltered.length : adFiltered.length
-			);
-				
 			Debug.debug(getClass(), "done");
 
 			return true;
@@ -117,11 +98,6 @@ extends Filter
 			e.printStackTrace(System.err);
 			throw new PreprocessingException("FFTFilter: frequency response hasn't been set.");
 		}
-		catch(MathException e)
-		{
-			e.printStackTrace(System.err);
-			throw new PreprocessingException("FFTFilter: " + e.getMessage());
-		}
 	}
 
 	/* (non-Javadoc)
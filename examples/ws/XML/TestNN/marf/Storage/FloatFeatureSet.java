@@ -0,0 +1,253 @@
+package marf.Storage;
+
+import java.util.Vector;
+
+import marf.util.Arrays;
+
+
+/**
+ * <p>Single-precision counterpart of <code>FeatureSet</code>.</p>
+ *
+ * <p>Keeps every feature vector of a subject as a <code>float[]</code>,
+ * which halves the memory (and the serialized size) of large training
+ * sets compared to <code>double[]</code>. The mean and median vectors are
+ * accumulated in double precision and handed out as <code>double[]</code>
+ * like with any other <code>ITrainingSample</code>, so the classifiers
+ * do not need to know which of the two is in use.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see FeatureSet
+ * @see TrainingSet#TRAINING_SET_FLOAT_FEATURE_SETS
+ */
+public class FloatFeatureSet
+extends Cluster
+{
+	/**
+	 * The feature vectors, narrowed to floats.
+	 */
+	protected Vector<float[]> oFeatureVectors = new Vector<float[]>();
+
+	/**
+	 * Cached vector's data is invalid, i.e. either was never
+	 * computed yet or a new feature vector came in since.
+	 */
+	private static final int CACHED_VECTOR_TYPE_INVALID = -1;
+
+	/**
+	 * The cached vector data represents a freshly computed <em>mean</em> vector.
+	 */
+	private static final int CACHED_VECTOR_TYPE_MEAN = 1;
+
+	/**
+	 * The cached vector data represents a freshly computed <em>median</em> vector.
+	 */
+	private static final int CACHED_VECTOR_TYPE_MEDIAN = 2;
+
+	/**
+	 * Type of the primary vector data member computed last.
+	 */
+	private int iLastTypeVectorComputed = CACHED_VECTOR_TYPE_INVALID;
+
+	/**
+	 * Length of the longest feature vector.
+	 */
+	private int iMaxColumns = 0;
+
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = 6158630729419365712L;
+
+	/**
+	 * Constructs an empty feature set.
+	 */
+	public FloatFeatureSet()
+	{
+	}
+
+	/**
+	 * Copy-constructor. The feature vectors themselves are shared.
+	 * @param poFeatureSet the FloatFeatureSet object to copy properties of
+	 */
+	@SuppressWarnings("unchecked")
+	public FloatFeatureSet(final FloatFeatureSet poFeatureSet)
+	{
+		super(poFeatureSet);
+
+		this.oFeatureVectors = (Vector<float[]>)poFeatureSet.oFeatureVectors.clone();
+		this.iMaxColumns = poFeatureSet.iMaxColumns;
+		this.iLastTypeVectorComputed = poFeatureSet.iLastTypeVectorComputed;
+	}
+
+	/**
+	 * Retrieves the feature vectors.
+	 * @return vector of single-precision feature vectors
+	 */
+	public Vector<float[]> getFeatureVectors()
+	{
+		// Invalidate the internal stuff as we cannot trust it's not altered outside
+		this.iLastTypeVectorComputed = CACHED_VECTOR_TYPE_INVALID;
+		return this.oFeatureVectors;
+	}
+
+	/**
+	 * Sizes of the feature vectors set.
+	 * @return number of feature vectors in the set
+	 */
+	public int size()
+	{
+		return this.oFeatureVectors.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see marf.Storage.TrainingSample#getMeanVector()
+	 */
+	public double[] getMeanVector()
+	{
+		if(this.iLastTypeVectorComputed != CACHED_VECTOR_TYPE_MEAN)
+		{
+			this.adDataVector = new double[this.iMaxColumns];
+
+			for(int i = 0; i < this.oFeatureVectors.size(); i++)
+			{
+				float[] afFeatureVector = this.oFeatureVectors.get(i);
+
+				for(int j = 0; j < afFeatureVector.length; j++)
+				{
+					this.adDataVector[j] += afFeatureVector[j];
+				}
+			}
+
+			for(int j = 0; j < this.adDataVector.length; j++)
+			{
+				this.adDataVector[j] /= size();
+			}
+
+			this.iLastTypeVectorComputed = CACHED_VECTOR_TYPE_MEAN;
+		}
+
+		return getDataVector();
+	}
+
+	/* (non-Javadoc)
+	 * @see marf.Storage.TrainingSample#getMedianVector()
+	 */
+	public double[] getMedianVector()
+	{
+		if(this.iLastTypeVectorComputed != CACHED_VECTOR_TYPE_MEDIAN)
+		{
+			this.adDataVector = new double[this.iMaxColumns];
+
+			// One column at a time; shorter vectors count as zeroes like in FeatureSet
+			double[] adColumn = new double[size()];
+
+			for(int j = 0; j < this.iMaxColumns; j++)
+			{
+				for(int i = 0; i < adColumn.length; i++)
+				{
+					float[] afFeatureVector = this.oFeatureVectors.get(i);
+					adColumn[i] = j < afFeatureVector.length ? afFeatureVector[j] : 0;
+				}
+
+				Arrays.sort(adColumn);
+				this.adDataVector[j] = adColumn[adColumn.length / 2];
+			}
+
+			this.iLastTypeVectorComputed = CACHED_VECTOR_TYPE_MEDIAN;
+		}
+
+		return getDataVector();
+	}
+
+	/* (non-Javadoc)
+	 * @see marf.Storage.Cluster#addFeatureVector(double[], java.lang.String, int)
+	 */
+	public boolean addFeatureVector(double[] padFeatureVector, String pstrFilename, int piSubjectID)
+	{
+		if(size() == 0)
+		{
+			this.iSubjectID = piSubjectID;
+		}
+		else
+		{
+			assert this.iSubjectID == piSubjectID;
+		}
+
+		if(addFilename(pstrFilename) == false)
+		{
+			return false;
+		}
+
+		if(this.iMaxColumns < padFeatureVector.length)
+		{
+			this.iMaxColumns = padFeatureVector.length;
+		}
+
+		float[] afFeatureVector = new float[padFeatureVector.length];
+
+		for(int j = 0; j < afFeatureVector.length; j++)
+		{
+			afFeatureVector[j] = (float)padFeatureVector[j];
+		}
+
+		this.oFeatureVectors.add(afFeatureVector);
+
+		// Invalidate any previously computed mean or median vector
+		this.iLastTypeVectorComputed = CACHED_VECTOR_TYPE_INVALID;
+
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see marf.Storage.Cluster#getMeanCount()
+	 */
+	public int getMeanCount()
+	{
+		return size();
+	}
+
+	/**
+	 * Implements Cloneable interface for the FloatFeatureSet object.
+	 * @see java.lang.Object#clone()
+	 */
+	public Object clone()
+	{
+		return new FloatFeatureSet(this);
+	}
+
+	/**
+	 * Provides string representation of the feature set in addition
+	 * to that of the parent Cluster.
+	 * @see marf.Storage.Cluster#toString()
+	 */
+	public synchronized String toString()
+	{
+		StringBuffer oBuffer = new StringBuffer(super.toString());
+
+		oBuffer
+			.append("Max Columns: ").append(this.iMaxColumns).append("\n")
+			.append("Last Type Vector Computed: ").append(this.iLastTypeVectorComputed).append("\n")
+			.append("Feature Vectors: ").append(this.oFeatureVectors).append("\n")
+			.append("FloatFeatureSet Source code revision: ").append(getMARFSourceCodeRevision()).append("\n");
+
+		return oBuffer.toString();
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -15,7 +15,10 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import marf.Storage.MARFAudioFileFormat;
 import marf.Storage.Sample;
 import marf.Storage.StorageException;
+import marf.math.MathException;
+import marf.math.PolyphaseResampler;
 import marf.util.ByteUtils;
+import marf.util.Debug;
 import marf.util.InvalidSampleFormatException;
 
 
@@ -33,6 +36,19 @@ import marf.util.InvalidSampleFormatException;
 public class WAVLoader
 extends AudioSampleLoader
 {
+	/*
+	 * ----------------
+	 * Data Members
+	 * ----------------
+	 */
+
+	/**
+	 * Whether streams at a sampling rate other than the required one
+	 * are resampled to it instead of being rejected. Default is <code>false</code>.
+	 * @since 0.3.0.6
+	 */
+	protected boolean bResampling = false;
+
 	/*
 	 * ----------------
 	 * Methods
@@ -142,6 +158,21 @@ extends AudioSampleLoader
 			this.oAudioInputStream = oNewInputStream;
 			updateSample();
 
+			// Bring the data to the required rate if the stream is at another one
+			float fFrameRate = oNewInputStream.getFormat().getFrameRate();
+
+			if(fFrameRate != this.fRequiredFrequency)
+			{
+				Debug.debug(getClass(), "resampling from " + fFrameRate + " Hz to " + this.fRequiredFrequency + " Hz");
+
+				this.oSample.setSampleArray
+				(
+					PolyphaseResampler
+						.getResampler(fFrameRate, this.fRequiredFrequency)
+						.resample(this.oSample.getSampleArray())
+				);
+			}
+
 			return this.oSample;
 		}
 
@@ -151,6 +182,11 @@ extends AudioSampleLoader
 			throw e;
 		}
 
+		catch(MathException e)
+		{
+			throw new StorageException("Cannot resample: " + e.getMessage());
+		}
+
 		// Wrap all the other exceptions here.
 		catch(Exception e)
 		{
@@ -294,10 +330,13 @@ extends AudioSampleLoader
 	/**
 	 * Validates audio file stream format for WAVE files.
 	 * Checks the format has the required bit size, number
-	 * of channels, and required sampling frequency.
+	 * of channels, and required sampling frequency. Any other
+	 * known sampling frequency is accepted as well if resampling
+	 * is turned on; the data are then resampled once loaded.
 	 * @param poFormat the audio format to validate
 	 * @throws UnsupportedAudioFileException if any of the three criteria are not met
 	 * @since 0.3.0.5
+	 * @see #setResampling(boolean)
 	 */
 	public void validateAudioFormat(final AudioFormat poFormat)
 	throws UnsupportedAudioFileException
@@ -320,7 +359,7 @@ extends AudioSampleLoader
 			);
 		}
 
-		if(poFormat.getFrameRate() != this.fRequiredFrequency)
+		if(poFormat.getFrameRate() != this.fRequiredFrequency && (this.bResampling == false || poFormat.getFrameRate() < 1))
 		{
 			throw new UnsupportedAudioFileException
 			(
@@ -330,6 +369,27 @@ extends AudioSampleLoader
 		}
 	}
 
+	/**
+	 * Tells whether the streams at other sampling rates are resampled.
+	 * @return <code>true</code> if they are
+	 * @since 0.3.0.6
+	 */
+	public boolean isResampling()
+	{
+		return this.bResampling;
+	}
+
+	/**
+	 * Allows resampling of streams at other sampling rates
+	 * to the required one instead of rejecting them. Off by default.
+	 * @param pbResampling <code>true</code> to resample
+	 * @since 0.3.0.6
+	 */
+	public void setResampling(boolean pbResampling)
+	{
+		this.bResampling = pbResampling;
+	}
+
 	/**
 	 * Returns source code revision information.
 	 * @return revision string
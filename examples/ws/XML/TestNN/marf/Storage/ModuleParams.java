@@ -40,6 +40,16 @@ implements Cloneable, Serializable
 	 */
 	protected Vector<Serializable> oClassificationParams    = new Vector<Serializable>();
 
+	/**
+	 * Format of the training data of new subjects for all the classifiers,
+	 * one of the <code>TrainingSet.TRAINING_SET_*</code> formats;
+	 * <code>null</code> leaves the classifiers' own default.
+	 * Kept apart from the classification parameters, whose order
+	 * every classifier defines for itself after the dump mode.
+	 * @since 0.3.0.6
+	 */
+	protected Integer oTrainingSetFormat = null;
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -97,6 +107,7 @@ implements Cloneable, Serializable
 		this.oPreprocessingParams = (Vector<Serializable>)poModuleParams.getPreprocessingParams().clone();
 		this.oFeatureExtractionParams = (Vector<Serializable>)poModuleParams.getFeatureExtractionParams().clone();
 		this.oClassificationParams = (Vector<Serializable>)poModuleParams.getClassificationParams().clone();
+		this.oTrainingSetFormat = poModuleParams.getTrainingSetFormat();
 	}
 
 	/**
@@ -317,6 +328,29 @@ implements Cloneable, Serializable
 		addParam(poParam, CLASSIFICATION);
 	}
 
+	/**
+	 * Retrieves the format of the training data of new subjects.
+	 * @return one of the <code>TrainingSet.TRAINING_SET_*</code> formats; <code>null</code> if not set
+	 * @since 0.3.0.6
+	 */
+	public synchronized final Integer getTrainingSetFormat()
+	{
+		return this.oTrainingSetFormat;
+	}
+
+	/**
+	 * Sets the format of the training data of new subjects for the classifiers
+	 * created from now on.
+	 * @param poTrainingSetFormat one of the <code>TrainingSet.TRAINING_SET_*</code> formats;
+	 * <code>null</code> for the classifiers' own default
+	 * @since 0.3.0.6
+	 * @see marf.Classification.Classification#setTrainingSetFormat(int)
+	 */
+	public synchronized final void setTrainingSetFormat(Integer poTrainingSetFormat)
+	{
+		this.oTrainingSetFormat = poTrainingSetFormat;
+	}
+
 	/**
 	 * Retrieves string version of all three types of parameters.  
 	 * @return String representation of this ModuleParams object 
@@ -332,6 +366,11 @@ implements Cloneable, Serializable
 			.append("Feature extraction params: ").append(this.oFeatureExtractionParams).append("\n")
 			.append("Classification params: ").append(this.oClassificationParams);
 
+		if(this.oTrainingSetFormat != null)
+		{
+			oBuffer.append("\n").append("Training set format: ").append(this.oTrainingSetFormat);
+		}
+
 		return oBuffer.toString();
 	}
 	
@@ -1,12 +1,12 @@
 package marf.Storage;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Vector;
 
-import marf.util.Arrays;
 import marf.util.Debug;
 import marf.util.SortComparator;
-import marf.util.comparators.ResultComparator;
+import marf.util.TopKHeap;
 
 
 /**
@@ -14,6 +14,15 @@ import marf.util.comparators.ResultComparator;
  * set - IDs and some stats. May be sorted.
  * </p>
  *
+ * <p>As of 0.3.0.6 the IDs and outcomes are kept in primitive arrays.
+ * The minimum and maximum results (and the ones next to them) are
+ * tracked as the results are added, so querying them sorts nothing;
+ * the closest few are selected with a bounded heap, and a full sort
+ * is only done when the sorted results are asked for, unless they were
+ * added in order. <code>Result</code> objects and their descriptions are
+ * created when requested. Ties keep the order the results were added in,
+ * as with the stable sort before.</p>
+ *
  * @author Serguei Mokhov
  * @version $Id: ResultSet.java,v 1.24 2010/09/27 23:56:03 mokhov Exp $
  * @since 0.3.0.2
@@ -27,12 +36,78 @@ implements Serializable, Cloneable
 	 */
 	public static final int UNSORTED = -1;
 
+	/**
+	 * Initial capacity of the result arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Subject IDs of the results, in the order added.
+	 * @since 0.3.0.6
+	 */
+	protected int[] aiIDs = new int[INITIAL_CAPACITY];
+
 	/**
 	 * Distances from other samples and other stats or
-	 * probabilities and likelihood (growable and shrinkable).
+	 * probabilities and likelihood, in the order added.
+	 * @since 0.3.0.6
+	 */
+	protected double[] adOutcomes = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Descriptions of the results given when added;
+	 * <code>null</code> for the ones to be generated.
+	 * @since 0.3.0.6
+	 */
+	protected String[] astrDescriptions = new String[INITIAL_CAPACITY];
+
+	/**
+	 * Result objects of the results created or given so far.
+	 * @since 0.3.0.6
+	 */
+	protected Result[] aoResults = new Result[INITIAL_CAPACITY];
+
+	/**
+	 * Number of results.
+	 * @since 0.3.0.6
+	 */
+	protected int iSize = 0;
+
+	/**
+	 * Positions of the results with the minimum and the next to minimum
+	 * outcomes, and with the maximum and the next to maximum ones; -1 if
+	 * there are not as many results.
+	 * @since 0.3.0.6
+	 */
+	protected int iMinimum = -1, iSecondMinimum = -1, iMaximum = -1, iSecondMaximum = -1;
+
+	/**
+	 * Whether the outcomes were added in the ascending
+	 * (respectively, descending) order so far.
+	 * @since 0.3.0.6
+	 */
+	protected boolean bAddedAscending = true, bAddedDescending = true;
+
+	/**
+	 * The result vector handed out or given, which the results are
+	 * reloaded from when it may have been changed outside.
+	 * @since 0.3.0.6
+	 * @see #getResultSetVector()
 	 */
 	protected Vector<Result> oResultSet = null;
 
+	/**
+	 * Whether the results were reloaded from the result vector handed out
+	 * since it was last handed out or changed; never for a given vector.
+	 */
+	private transient boolean bVectorSynced = false;
+
+	/**
+	 * Number of changes of the result vector handed out when
+	 * the results were last reloaded from it.
+	 */
+	private transient int iVectorModifications = 0;
+
 	/**
 	 * References to the objects in the oResultSet
 	 * in the sorted order.
@@ -56,6 +131,13 @@ implements Serializable, Cloneable
 	 */
 	protected int iSortMode = UNSORTED;
 
+	/**
+	 * The order <code>aoResultSetSorted</code> is in for the current
+	 * results; <code>UNSORTED</code> if it has to be sorted anew.
+	 * @since 0.3.0.6
+	 */
+	protected int iSortedMode = UNSORTED;
+
 	/**
 	 * For serialization versioning.
 	 * When adding new members or make other structural
@@ -63,15 +145,15 @@ implements Serializable, Cloneable
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.4
 	 */
-	private static final long serialVersionUID = -3133714664001380852L;
+	private static final long serialVersionUID = 4412730958806514672L;
 
 	/**
 	 * Default constructor, which is
-	 * equivalent to <code>ResultSet(new Vector())</code>.
+	 * equivalent to <code>ResultSet(new Vector())</code>
+	 * except that nothing is reloaded from a vector.
 	 */
 	public ResultSet()
 	{
-		this(new Vector<Result>());
 	}
 
 	/**
@@ -97,9 +179,29 @@ implements Serializable, Cloneable
 	@SuppressWarnings("unchecked")
 	public ResultSet(final ResultSet poResultSet)
 	{
-		this.oResultSet = (Vector<Result>)poResultSet.oResultSet.clone();
+		this.aiIDs = poResultSet.aiIDs.clone();
+		this.adOutcomes = poResultSet.adOutcomes.clone();
+		this.astrDescriptions = poResultSet.astrDescriptions.clone();
+		this.aoResults = poResultSet.aoResults.clone();
+		this.iSize = poResultSet.iSize;
+		this.iMinimum = poResultSet.iMinimum;
+		this.iSecondMinimum = poResultSet.iSecondMinimum;
+		this.iMaximum = poResultSet.iMaximum;
+		this.iSecondMaximum = poResultSet.iSecondMaximum;
+		this.bAddedAscending = poResultSet.bAddedAscending;
+		this.bAddedDescending = poResultSet.bAddedDescending;
 		this.iSortMode = poResultSet.iSortMode;
-		this.aoResultSetSorted = (Result[])poResultSet.aoResultSetSorted.clone();
+		this.iSortedMode = poResultSet.iSortedMode;
+
+		if(poResultSet.oResultSet != null)
+		{
+			this.oResultSet = (Vector<Result>)poResultSet.oResultSet.clone();
+		}
+
+		if(poResultSet.aoResultSetSorted != null)
+		{
+			this.aoResultSetSorted = poResultSet.aoResultSetSorted.clone();
+		}
 	}
 
 	/**
@@ -109,8 +211,7 @@ implements Serializable, Cloneable
 	 */
 	public final int getMininumID()
 	{
-		sort(SortComparator.ASCENDING);
-		return this.aoResultSetSorted[0].getID();
+		return getMinimumResult().getID();
 	}
 
 	/**
@@ -122,8 +223,7 @@ implements Serializable, Cloneable
 	 */
 	public final int getSecondMininumID()
 	{
-		sort(SortComparator.ASCENDING);
-		return this.aoResultSetSorted[1].getID();
+		return getSecondMinimumResult().getID();
 	}
 
 	/**
@@ -133,8 +233,7 @@ implements Serializable, Cloneable
 	 */
 	public final int getMaximumID()
 	{
-		sort(SortComparator.DESCENDING);
-		return this.aoResultSetSorted[0].getID();
+		return getMaximumResult().getID();
 	}
 
 	/**
@@ -146,8 +245,7 @@ implements Serializable, Cloneable
 	 */
 	public final int getSecondMaximumID()
 	{
-		sort(SortComparator.DESCENDING);
-		return this.aoResultSetSorted[1].getID();
+		return getSecondMaximumResult().getID();
 	}
 
 	/**
@@ -189,8 +287,7 @@ implements Serializable, Cloneable
 	 */
 	public final int getAverageID()
 	{
-		sort(SortComparator.ASCENDING);
-		return this.aoResultSetSorted[size() / 2].getID();
+		return getAverageResult().getID();
 	}
 
 	/**
@@ -201,7 +298,7 @@ implements Serializable, Cloneable
 	 */
 	public final int getRandomID()
 	{
-		return this.oResultSet.elementAt((int)(Math.random() * size())).getID();
+		return getRandomResult().getID();
 	}
 
 	/**
@@ -216,12 +313,65 @@ implements Serializable, Cloneable
 	 */
 	public final void sort(final int piMode)
 	{
-		if(this.iSortMode != piMode)
+		reload();
+
+		this.iSortMode = piMode;
+
+		if(this.iSortedMode == piMode)
+		{
+			return;
+		}
+
+		Result[] aoSorted = new Result[this.iSize];
+
+		if(piMode == SortComparator.ASCENDING && this.bAddedAscending || piMode == SortComparator.DESCENDING && this.bAddedDescending)
 		{
-			this.iSortMode = piMode;
-			this.aoResultSetSorted = this.oResultSet.toArray(new Result[0]);
-			Arrays.sort(this.aoResultSetSorted, new ResultComparator(this.iSortMode));
+			// Already in order
+			for(int i = 0; i < this.iSize; i++)
+			{
+				aoSorted[i] = getResult(i);
+			}
+		}
+		else if(this.iSize > 0)
+		{
+			TopKHeap oSorted = new TopKHeap(this.iSize);
+			select(oSorted, piMode);
+
+			for(int i = 0; i < this.iSize; i++)
+			{
+				aoSorted[i] = getResult(oSorted.getIndex(i));
+			}
 		}
+
+		this.aoResultSetSorted = aoSorted;
+		this.iSortedMode = piMode;
+	}
+
+	/**
+	 * Offers all the results to the heap, negating the outcomes
+	 * for the descending order, and sorts it.
+	 * @param poHeap empty heap
+	 * @param piMode <code>SortComparator.ASCENDING</code> or <code>SortComparator.DESCENDING</code>
+	 * @return number of results selected
+	 */
+	private int select(TopKHeap poHeap, final int piMode)
+	{
+		if(piMode == SortComparator.ASCENDING)
+		{
+			for(int i = 0; i < this.iSize; i++)
+			{
+				poHeap.offer(this.adOutcomes[i], i);
+			}
+		}
+		else
+		{
+			for(int i = 0; i < this.iSize; i++)
+			{
+				poHeap.offer(-this.adOutcomes[i], i);
+			}
+		}
+
+		return poHeap.sort();
 	}
 
 	/**
@@ -232,31 +382,26 @@ implements Serializable, Cloneable
 	 */
 	public final void addResult(int piID, double pdOutcome, String pstrDescription)
 	{
-		this.oResultSet.add(new Result(piID, pdOutcome, pstrDescription));
+		add(piID, pdOutcome, pstrDescription, null);
 
 		// Invalidate the sorted flag.
 		this.iSortMode = UNSORTED;
 	}
 
 	/**
-	 * Add result to the result set. Generates description based
-	 * on the two parameters.
+	 * Add result to the result set. The description is generated from
+	 * the two parameters when the result is requested.
 	 * @param piID subject ID recognized
 	 * @param pdOutcome outcome of the recognition distance or likelihood
 	 */
 	public final void addResult(int piID, double pdOutcome)
 	{
-		addResult
-		(
-			piID,
-			pdOutcome,
-			new StringBuffer("ID=").append(piID).append(", outcome=").append(pdOutcome).toString()
-		);
+		addResult(piID, pdOutcome, null);
 	}
 
 	/**
 	 * Add result to the result set based on already pre-constructed
-	 * object.
+	 * object. The object's ID and outcome are taken when it is added.
 	 * @param poResult Result object prepared outside
 	 * @throws IllegalArgumentException of the parameter is null
 	 */
@@ -267,84 +412,318 @@ implements Serializable, Cloneable
 			throw new IllegalArgumentException("Result parameter is null.");
 		}
 
-		this.oResultSet.add(poResult);
+		add(poResult.getID(), poResult.getOutcome(), poResult.getDescription(), poResult);
+	}
+
+	/**
+	 * Appends a result and updates the running minima and maxima.
+	 * @param piID subject ID
+	 * @param pdOutcome outcome
+	 * @param pstrDescription description; <code>null</code> to generate
+	 * @param poResult the result object, if there is one already
+	 */
+	private void add(final int piID, final double pdOutcome, final String pstrDescription, final Result poResult)
+	{
+		reload();
+
+		int i = this.iSize;
+
+		if(i == this.aiIDs.length)
+		{
+			int iCapacity = Math.max(INITIAL_CAPACITY, 2 * i);
+
+			this.aiIDs = Arrays.copyOf(this.aiIDs, iCapacity);
+			this.adOutcomes = Arrays.copyOf(this.adOutcomes, iCapacity);
+			this.astrDescriptions = Arrays.copyOf(this.astrDescriptions, iCapacity);
+			this.aoResults = Arrays.copyOf(this.aoResults, iCapacity);
+		}
+
+		this.aiIDs[i] = piID;
+		this.adOutcomes[i] = pdOutcome;
+		this.astrDescriptions[i] = pstrDescription;
+		this.aoResults[i] = poResult;
+		this.iSize++;
+
+		track(i);
+
+		this.iSortedMode = UNSORTED;
+
+		if(this.oResultSet != null)
+		{
+			this.oResultSet.add(getResult(i));
+			markVectorSynced();
+		}
+	}
+
+	/**
+	 * Updates the running minima and maxima and the order
+	 * flags with the result just appended.
+	 * @param piPosition position of the result
+	 */
+	private void track(final int piPosition)
+	{
+		double dOutcome = this.adOutcomes[piPosition];
+
+		if(piPosition > 0)
+		{
+			double dPrevious = this.adOutcomes[piPosition - 1];
+
+			// Not (x >= y) rather than x < y, so that NaNs clear the flags
+			this.bAddedAscending = this.bAddedAscending && dOutcome >= dPrevious;
+			this.bAddedDescending = this.bAddedDescending && dOutcome <= dPrevious;
+		}
+
+		// A later result only goes before the earlier ones with a strictly better outcome
+		if(this.iMinimum < 0 || dOutcome < this.adOutcomes[this.iMinimum])
+		{
+			this.iSecondMinimum = this.iMinimum;
+			this.iMinimum = piPosition;
+		}
+		else if(this.iSecondMinimum < 0 || dOutcome < this.adOutcomes[this.iSecondMinimum])
+		{
+			this.iSecondMinimum = piPosition;
+		}
+
+		if(this.iMaximum < 0 || dOutcome > this.adOutcomes[this.iMaximum])
+		{
+			this.iSecondMaximum = this.iMaximum;
+			this.iMaximum = piPosition;
+		}
+		else if(this.iSecondMaximum < 0 || dOutcome > this.adOutcomes[this.iSecondMaximum])
+		{
+			this.iSecondMaximum = piPosition;
+		}
+	}
+
+	/**
+	 * Retrieves the result at a position, creating its object if needed.
+	 * @param piPosition position in the order added
+	 * @return the result object
+	 */
+	private Result getResult(final int piPosition)
+	{
+		Result oResult = this.aoResults[piPosition];
+
+		if(oResult == null)
+		{
+			String strDescription = this.astrDescriptions[piPosition];
+
+			if(strDescription == null)
+			{
+				strDescription = new StringBuffer("ID=")
+					.append(this.aiIDs[piPosition])
+					.append(", outcome=").append(this.adOutcomes[piPosition])
+					.toString();
+			}
+
+			oResult = new Result(this.aiIDs[piPosition], this.adOutcomes[piPosition], strDescription);
+			this.aoResults[piPosition] = oResult;
+		}
+
+		return oResult;
+	}
+
+	/**
+	 * Retrieves the result at a tracked position.
+	 * @param piPosition the position; -1 if there is no such result
+	 * @param piRank rank of the result, for the exception
+	 * @return the result object
+	 * @throws ArrayIndexOutOfBoundsException if there is no such result
+	 */
+	private Result getTrackedResult(final int piPosition, final int piRank)
+	{
+		if(piPosition < 0)
+		{
+			throw new ArrayIndexOutOfBoundsException(piRank);
+		}
+
+		return getResult(piPosition);
+	}
+
+	/**
+	 * Brings the results in line with the result vector, if one was handed
+	 * out or given, since it may have been changed outside. The one handed
+	 * out is only read again if it was changed since it was last read, or
+	 * handed out again; the one given is read every time.
+	 */
+	private void reload()
+	{
+		if(this.oResultSet == null)
+		{
+			return;
+		}
+
+		if
+		(
+			this.bVectorSynced
+			&& this.oResultSet instanceof ResultVector
+			&& ((ResultVector)this.oResultSet).getModifications() == this.iVectorModifications
+		)
+		{
+			return;
+		}
+
+		Vector<Result> oResultSet = this.oResultSet;
+		int iCount = oResultSet.size();
+		int iCapacity = Math.max(INITIAL_CAPACITY, iCount);
+
+		if(this.aiIDs.length < iCapacity)
+		{
+			this.aiIDs = new int[iCapacity];
+			this.adOutcomes = new double[iCapacity];
+			this.astrDescriptions = new String[iCapacity];
+			this.aoResults = new Result[iCapacity];
+		}
+
+		boolean bChanged = iCount != this.iSize;
+
+		for(int i = 0; i < iCount; i++)
+		{
+			Result oResult = oResultSet.get(i);
+
+			if
+			(
+				oResult != this.aoResults[i]
+				|| oResult.getID() != this.aiIDs[i]
+				|| Double.doubleToLongBits(oResult.getOutcome()) != Double.doubleToLongBits(this.adOutcomes[i])
+			)
+			{
+				bChanged = true;
+			}
+
+			this.aiIDs[i] = oResult.getID();
+			this.adOutcomes[i] = oResult.getOutcome();
+			this.astrDescriptions[i] = oResult.getDescription();
+			this.aoResults[i] = oResult;
+		}
+
+		Arrays.fill(this.aoResults, iCount, this.aoResults.length, null);
+
+		if(bChanged)
+		{
+			this.iSize = iCount;
+			this.iMinimum = this.iSecondMinimum = this.iMaximum = this.iSecondMaximum = -1;
+			this.bAddedAscending = this.bAddedDescending = true;
+
+			for(int i = 0; i < iCount; i++)
+			{
+				track(i);
+			}
+
+			this.iSortedMode = UNSORTED;
+		}
+
+		markVectorSynced();
+	}
+
+	/**
+	 * Records that the results are in line with the result vector handed out.
+	 */
+	private void markVectorSynced()
+	{
+		if(this.oResultSet instanceof ResultVector)
+		{
+			this.bVectorSynced = true;
+			this.iVectorModifications = ((ResultVector)this.oResultSet).getModifications();
+		}
 	}
 
 	/**
 	 * Retrieves the result from the result set with the
 	 * minimum outcome value.
 	 * @return corresponding Result object
+	 * @throws ArrayIndexOutOfBoundsException if there are no results
 	 */
 	public Result getMinimumResult()
 	{
-		getMininumID();
-		return this.aoResultSetSorted[0];
+		reload();
+		this.iSortMode = SortComparator.ASCENDING;
+		return getTrackedResult(this.iMinimum, 0);
 	}
 
 	/**
 	 * Retrieves the result from the result set with the
 	 * second minimum outcome value.
 	 * @return corresponding Result object
+	 * @throws ArrayIndexOutOfBoundsException if there are fewer than two results
 	 * @since 0.3.0.6
 	 */
 	public Result getSecondMinimumResult()
 	{
-		getMininumID();
-		return this.aoResultSetSorted[1];
+		reload();
+		this.iSortMode = SortComparator.ASCENDING;
+		return getTrackedResult(this.iSecondMinimum, 1);
 	}
 
 	/**
 	 * Retrieves the result from the result set with the
 	 * average outcome value.
 	 * @return corresponding Result object
+	 * @throws ArrayIndexOutOfBoundsException if there are no results
 	 */
 	public Result getAverageResult()
 	{
-		getMininumID();
-		return this.aoResultSetSorted[this.oResultSet.size() / 2];
+		sort(SortComparator.ASCENDING);
+		return this.aoResultSetSorted[this.iSize / 2];
 	}
 
 	/**
 	 * Retrieves pseudo-random result object from the result set.
 	 * Used in base-line testing.
 	 * @return corresponding Result object
+	 * @throws ArrayIndexOutOfBoundsException if there are no results
 	 */
 	public Result getRandomResult()
 	{
-		return this.oResultSet.elementAt((int)(Math.random() * size()));
+		reload();
+
+		int i = (int)(Math.random() * this.iSize);
+
+		if(i >= this.iSize)
+		{
+			throw new ArrayIndexOutOfBoundsException(i);
+		}
+
+		return getResult(i);
 	}
 
 	/**
 	 * Retrieves the result from the result set with the
 	 * maximum outcome value.
 	 * @return corresponding Result object
+	 * @throws ArrayIndexOutOfBoundsException if there are no results
 	 */
 	public Result getMaximumResult()
 	{
-		sort(SortComparator.DESCENDING);
+		reload();
+		this.iSortMode = SortComparator.DESCENDING;
 
 		// Debug
 		if(Debug.isDebugOn())
 		{
-			for(int i = 0; i < aoResultSetSorted.length; i++)
+			Result[] aoSorted = getResultSetSorted();
+
+			for(int i = 0; i < aoSorted.length; i++)
 			{
-				Debug.debug("after.oResultSet=" + aoResultSetSorted[i]);
+				Debug.debug("after.oResultSet=" + aoSorted[i]);
 			}
 		}
 
-		return this.aoResultSetSorted[0];
+		return getTrackedResult(this.iMaximum, 0);
 	}
 
 	/**
 	 * Retrieves the result from the result set with the
 	 * second maximum outcome value.
 	 * @return corresponding Result object
+	 * @throws ArrayIndexOutOfBoundsException if there are fewer than two results
 	 * @since 0.3.0.6
 	 */
 	public Result getSecondMaximumResult()
 	{
-		getMaximumResult();
-		return this.aoResultSetSorted[1];
+		reload();
+		this.iSortMode = SortComparator.DESCENDING;
+		return getTrackedResult(this.iSecondMaximum, 1);
 	}
 
 	/**
@@ -378,12 +757,88 @@ implements Serializable, Cloneable
 		return null;
 	}
 
+	/**
+	 * Retrieves the results with the smallest outcomes, smallest first,
+	 * without sorting the rest.
+	 * @param piCount how many results to retrieve at most
+	 * @return new array of the results
+	 * @since 0.3.0.6
+	 */
+	public Result[] getMinimumResults(int piCount)
+	{
+		return getClosestResults(piCount, SortComparator.ASCENDING);
+	}
+
+	/**
+	 * Retrieves the results with the largest outcomes, largest first,
+	 * without sorting the rest.
+	 * @param piCount how many results to retrieve at most
+	 * @return new array of the results
+	 * @since 0.3.0.6
+	 */
+	public Result[] getMaximumResults(int piCount)
+	{
+		return getClosestResults(piCount, SortComparator.DESCENDING);
+	}
+
+	/**
+	 * Selects the first results in the order with a bounded heap.
+	 * @param piCount how many results to retrieve at most
+	 * @param piMode <code>SortComparator.ASCENDING</code> or <code>SortComparator.DESCENDING</code>
+	 * @return new array of the results
+	 */
+	private Result[] getClosestResults(final int piCount, final int piMode)
+	{
+		reload();
+
+		int iCount = Math.min(piCount, this.iSize);
+
+		if(iCount <= 0)
+		{
+			return new Result[0];
+		}
+
+		Result[] aoClosest = new Result[iCount];
+
+		if(this.iSortedMode == piMode)
+		{
+			System.arraycopy(this.aoResultSetSorted, 0, aoClosest, 0, iCount);
+			return aoClosest;
+		}
+
+		TopKHeap oClosest = new TopKHeap(iCount);
+		select(oClosest, piMode);
+
+		for(int i = 0; i < iCount; i++)
+		{
+			aoClosest[i] = getResult(oClosest.getIndex(i));
+		}
+
+		return aoClosest;
+	}
+
 	/**
 	 * Retrieves the underlying unsorted result collection.
+	 * The results are reloaded from it once it is changed, and once
+	 * after this call, as the results in it may be changed in place.
 	 * @return Vector of Results
 	 */
 	public Vector<Result> getResultSetVector()
 	{
+		reload();
+
+		if(this.oResultSet == null)
+		{
+			Vector<Result> oResultSet = new ResultVector(this.iSize);
+
+			for(int i = 0; i < this.iSize; i++)
+			{
+				oResultSet.add(getResult(i));
+			}
+
+			this.oResultSet = oResultSet;
+		}
+
 		/*
 		 * Be pessimistic about what can be done with the
 		 * returned result set vector reference outside of this.
@@ -392,6 +847,7 @@ implements Serializable, Cloneable
 		 * and force a resorting internally in the sort() method.
 		 */
 		this.iSortMode = UNSORTED;
+		this.bVectorSynced = false;
 
 		return this.oResultSet;
 	}
@@ -400,12 +856,17 @@ implements Serializable, Cloneable
 	 * Allows querying the current array of references to
 	 * the contained Result objects sorted (if sorting was performed).
 	 * The sorting is usually done when querying for minimum or
-	 * maximum results.
+	 * maximum results; as of 0.3.0.6 it is done here, when needed.
 	 * @return Returns the aoResultSetSorted.
 	 * @since 0.3.0.5
 	 */
 	public Result[] getResultSetSorted()
 	{
+		if(this.iSortMode != UNSORTED)
+		{
+			sort(this.iSortMode);
+		}
+
 		return this.aoResultSetSorted;
 	}
 
@@ -418,17 +879,22 @@ implements Serializable, Cloneable
 	{
 		this.iSortMode = UNSORTED;
 		this.oResultSet = poResultSet;
+		this.iSize = -1;
+		this.bVectorSynced = false;
+		reload();
 	}
 
 	/**
 	 * Allows setting the current array of sorted references to
 	 * the contained Result objects if sorted outside.
+	 * The array is taken as sorted in the current sort mode.
 	 * @param paoResultSetSorted the new collection of sorted references
 	 * @since 0.3.0.6
 	 */
 	public void setResultSetSorted(Result[] paoResultSetSorted)
 	{
 		this.aoResultSetSorted = paoResultSetSorted;
+		this.iSortedMode = this.iSortMode;
 	}
 
 	/**
@@ -467,6 +933,8 @@ implements Serializable, Cloneable
 	 */
 	public String toString()
 	{
+		reload();
+
 		StringBuffer oSortedBuffer = new StringBuffer();
 
 		if(this.aoResultSetSorted == null)
@@ -490,11 +958,25 @@ implements Serializable, Cloneable
 			oSortedBuffer.append(")");
 		}
 
+		StringBuffer oRawBuffer = new StringBuffer("[");
+
+		for(int i = 0; i < this.iSize; i++)
+		{
+			if(i != 0)
+			{
+				oRawBuffer.append(", ");
+			}
+
+			oRawBuffer.append(getResult(i));
+		}
+
+		oRawBuffer.append("]");
+
 		StringBuffer oBuffer = new StringBuffer();
 
 		oBuffer
 			.append("Raw ResultSet data:\n")
-			.append(this.oResultSet).append("\n\n")
+			.append(oRawBuffer).append("\n\n")
 			.append("Sorted data:\n").append(oSortedBuffer);
 
 		return oBuffer.toString();
@@ -506,7 +988,8 @@ implements Serializable, Cloneable
 	 */
 	public int size()
 	{
-		return this.oResultSet.size();
+		reload();
+		return this.iSize;
 	}
 
 	/**
@@ -519,6 +1002,61 @@ implements Serializable, Cloneable
 		return new ResultSet(this);
 	}
 
+	/**
+	 * Result vector handed out by <code>getResultSetVector()</code>, which
+	 * counts all its changes, replacing elements included, so that the
+	 * results are only reloaded from it when it was changed.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class ResultVector
+	extends Vector<Result>
+	{
+		/**
+		 * For serialization versioning.
+		 */
+		private static final long serialVersionUID = -1419207935036815290L;
+
+		/**
+		 * Constructs an empty vector.
+		 * @param piCapacity initial capacity
+		 */
+		ResultVector(final int piCapacity)
+		{
+			super(piCapacity);
+		}
+
+		/**
+		 * Retrieves the number of changes so far.
+		 * @return the count
+		 */
+		synchronized int getModifications()
+		{
+			return this.modCount;
+		}
+
+		/**
+		 * Counts the replacement as a change.
+		 * @see java.util.Vector#set(int, java.lang.Object)
+		 */
+		public synchronized Result set(int piIndex, Result poResult)
+		{
+			this.modCount++;
+			return super.set(piIndex, poResult);
+		}
+
+		/**
+		 * Counts the replacement as a change.
+		 * @see java.util.Vector#setElementAt(java.lang.Object, int)
+		 */
+		public synchronized void setElementAt(Result poResult, int piIndex)
+		{
+			this.modCount++;
+			super.setElementAt(poResult, piIndex);
+		}
+	}
+
 	/**
 	 * Returns source code revision information.
 	 * @return revision string
@@ -0,0 +1,259 @@
+package marf.Storage;
+
+import java.io.Serializable;
+import java.util.Vector;
+
+
+/**
+ * <p>Training samples' vectors (e.g. the mean vectors of the clusters)
+ * of the same length laid out row after row in a single array.</p>
+ *
+ * <p>Classifiers that compare an incoming feature vector against every
+ * subject walk this array front to back instead of chasing a
+ * <code>Vector</code> of samples and a separate array per subject, and
+ * do not recompute or re-fetch the stored vectors for every query.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see TrainingSet
+ */
+public class TrainingMatrix
+implements Serializable
+{
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = -2947106358127840163L;
+
+	/**
+	 * Row-major data: element <code>j</code> of row <code>i</code>
+	 * is at <code>i * iDimensions + j</code>.
+	 */
+	protected double[] adData;
+
+	/**
+	 * Subject ID of each row.
+	 */
+	protected int[] aiSubjectIDs;
+
+	/**
+	 * Number of rows.
+	 */
+	protected int iRows;
+
+	/**
+	 * Length of every row.
+	 */
+	protected int iDimensions;
+
+	/**
+	 * Euclidean lengths of the rows, computed on first use.
+	 */
+	private transient double[] adLengths = null;
+
+	/**
+	 * Constructs a matrix of zero rows.
+	 * @param piRows number of rows
+	 * @param piDimensions length of every row
+	 */
+	public TrainingMatrix(final int piRows, final int piDimensions)
+	{
+		this.iRows = piRows;
+		this.iDimensions = piDimensions;
+		this.adData = new double[piRows * piDimensions];
+		this.aiSubjectIDs = new int[piRows];
+	}
+
+	/**
+	 * Fills in a row.
+	 * @param piRow the row
+	 * @param piSubjectID subject the row belongs to
+	 * @param padVector the vector, exactly as long as the rows
+	 * @throws IllegalArgumentException if the vector is of a different length
+	 */
+	public void setRow(final int piRow, final int piSubjectID, final double[] padVector)
+	{
+		if(padVector.length != this.iDimensions)
+		{
+			throw new IllegalArgumentException
+			(
+				"Vector length (" + padVector.length + ") is not the same as of the matrix rows (" + this.iDimensions + ")."
+			);
+		}
+
+		System.arraycopy(padVector, 0, this.adData, piRow * this.iDimensions, this.iDimensions);
+		this.aiSubjectIDs[piRow] = piSubjectID;
+		this.adLengths = null;
+	}
+
+	/**
+	 * Retrieves the number of rows.
+	 * @return the count
+	 */
+	public final int getRows()
+	{
+		return this.iRows;
+	}
+
+	/**
+	 * Retrieves the length of the rows.
+	 * @return number of columns
+	 */
+	public final int getDimensions()
+	{
+		return this.iDimensions;
+	}
+
+	/**
+	 * Retrieves the underlying row-major array. Row <code>i</code>
+	 * starts at <code>getOffset(i)</code>.
+	 * @return the data array; not a copy
+	 */
+	public final double[] getData()
+	{
+		return this.adData;
+	}
+
+	/**
+	 * Retrieves the index of the first element of a row in the data array.
+	 * @param piRow the row
+	 * @return the offset
+	 */
+	public final int getOffset(final int piRow)
+	{
+		return piRow * this.iDimensions;
+	}
+
+	/**
+	 * Retrieves the subject ID of a row.
+	 * @param piRow the row
+	 * @return the ID
+	 */
+	public final int getSubjectID(final int piRow)
+	{
+		return this.aiSubjectIDs[piRow];
+	}
+
+	/**
+	 * Retrieves the subject IDs of all the rows.
+	 * @return the ID array; not a copy
+	 */
+	public final int[] getSubjectIDs()
+	{
+		return this.aiSubjectIDs;
+	}
+
+	/**
+	 * Retrieves the Euclidean lengths of the rows, e.g. for
+	 * the cosine similarity measure.
+	 * @return array of the lengths, one per row; not a copy
+	 */
+	public synchronized double[] getLengths()
+	{
+		if(this.adLengths == null)
+		{
+			double[] adLengths = new double[this.iRows];
+
+			for(int i = 0; i < this.iRows; i++)
+			{
+				double dSqSum = 0.0;
+
+				for(int j = i * this.iDimensions; j < (i + 1) * this.iDimensions; j++)
+				{
+					dSqSum += this.adData[j] * this.adData[j];
+				}
+
+				adLengths[i] = Math.sqrt(dSqSum);
+			}
+
+			this.adLengths = adLengths;
+		}
+
+		return this.adLengths;
+	}
+
+	/**
+	 * Computes a hash of the dimensions, subject IDs and data, e.g.
+	 * to tell whether something derived from the matrix and stored
+	 * separately still matches it.
+	 * @return the fingerprint
+	 */
+	public long getFingerprint()
+	{
+		long lHash = 31L * this.iRows + this.iDimensions;
+
+		for(int i = 0; i < this.iRows; i++)
+		{
+			lHash = 31L * lHash + this.aiSubjectIDs[i];
+		}
+
+		for(int i = 0; i < this.adData.length; i++)
+		{
+			lHash = 31L * lHash + Double.doubleToLongBits(this.adData[i]);
+		}
+
+		return lHash;
+	}
+
+	/**
+	 * Computes the fingerprint of the matrix the mean vectors of the
+	 * training samples would be laid out as, without laying them out.
+	 * @param poTrainingSamples the samples, e.g. the clusters of a training set;
+	 * their mean vectors are of the same length
+	 * @return the fingerprint, the same as of the matrix
+	 * @see #getFingerprint()
+	 */
+	public static long getFingerprint(final Vector<ITrainingSample> poTrainingSamples)
+	{
+		int iRows = poTrainingSamples.size();
+		double[] adFirst = iRows == 0 ? null : poTrainingSamples.get(0).getMeanVector();
+
+		long lHash = 31L * iRows + (adFirst == null ? 0 : adFirst.length);
+
+		for(int i = 0; i < iRows; i++)
+		{
+			lHash = 31L * lHash + poTrainingSamples.get(i).getSubjectID();
+		}
+
+		for(int i = 0; i < iRows; i++)
+		{
+			double[] adVector = poTrainingSamples.get(i).getMeanVector();
+
+			for(int j = 0; adVector != null && j < adVector.length; j++)
+			{
+				lHash = 31L * lHash + Double.doubleToLongBits(adVector[j]);
+			}
+		}
+
+		return lHash;
+	}
+
+	/**
+	 * Copies out a row.
+	 * @param piRow the row
+	 * @return new array with the row's elements
+	 */
+	public double[] getRow(final int piRow)
+	{
+		double[] adRow = new double[this.iDimensions];
+		System.arraycopy(this.adData, piRow * this.iDimensions, adRow, 0, this.iDimensions);
+		return adRow;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -38,6 +38,14 @@ extends StorageManager
 	public static final int TRAINING_SET_SAMPLES = 0; // TrainingSample
 	public static final int TRAINING_SET_CLUSTERS = 1; // Cluster
 	public static final int TRAINING_SET_FEATURE_SETS = 2; // FeatureSet
+
+	/**
+	 * Like <code>TRAINING_SET_FEATURE_SETS</code>, but keeps the feature
+	 * vectors in single precision, which halves their memory footprint.
+	 * @since 0.3.0.6
+	 * @see FloatFeatureSet
+	 */
+	public static final int TRAINING_SET_FLOAT_FEATURE_SETS = 3; // FloatFeatureSet
 //	public static final int TRAINING_SET_BOTH = 2; // FeatureSet + Cluster
 //	public static final int TRAINING_SET_PLAIN = 3; // TrainingSample
 
@@ -205,6 +213,10 @@ extends StorageManager
 					oTrainingSetData = new FeatureSet();
 					break;
 
+				case TRAINING_SET_FLOAT_FEATURE_SETS:
+					oTrainingSetData = new FloatFeatureSet();
+					break;
+
 				default:
 					assert false : "Unsupported format: " + this.iTrainingSetFormat;
 			}
@@ -31,13 +31,33 @@ extends StorageManager
 	 * <code>serialver</code> tool that comes with JDK.
 	 * @since 0.3.0.4
 	 */
-	private static final long serialVersionUID = -8219029755014757254L;
+	private static final long serialVersionUID = 2660680163284423986L;
 
 	/**
 	 * The data vector.
 	 */
 	protected Vector<double[]> oData = null;
 
+	/**
+	 * Frames of a short-time FFT, row-major, referenced as they were added.
+	 * They are the data to dump as long as nothing else is added; then they
+	 * are moved into the data vector and this is <code>null</code>.
+	 * @since 0.3.0.6
+	 */
+	protected double[] adFrames = null;
+
+	/**
+	 * Number of frames in <code>adFrames</code>.
+	 * @since 0.3.0.6
+	 */
+	protected int iFrames = 0;
+
+	/**
+	 * Number of values per frame in <code>adFrames</code>.
+	 * @since 0.3.0.6
+	 */
+	protected int iFrameBins = 0;
+
 	/**
 	 * Current minimum.
 	 */
@@ -79,6 +99,8 @@ extends StorageManager
 	 */
 	public final void addLPC(final double[] padLPCCoeffs, final int piNumCoeffs, final int piSize)
 	{
+		copyFrames();
+
 		double[] adToInsert = new double[piSize];
 
 		for(int i = 0; i < piSize; i++)
@@ -119,6 +141,8 @@ extends StorageManager
 	 */
 	public final void addFFT(final double[] padValues)
 	{
+		copyFrames();
+
 		double[] adToInsert = new double[padValues.length / 2];
 
 		if(this.oData.size() == 0)
@@ -144,6 +168,106 @@ extends StorageManager
 		this.oData.add(adToInsert);
 	}
 
+	/**
+	 * Adds all the frames of a short-time FFT to the data to dump.
+	 * Like with <code>addFFT(double[])</code>, only the lower half of every
+	 * frame's values is dumped. The frames buffer is referenced as is, without
+	 * copying, and thus must not be changed until the spectrogram is dumped.
+	 *
+	 * @param padFrames row-major frame magnitudes, <code>piFrames * piBins</code> long or longer
+	 * @param piFrames number of frames
+	 * @param piBins number of values per frame
+	 * @since 0.3.0.6
+	 * @see marf.FeatureExtraction.FFT.STFT
+	 */
+	public final void addFFT(final double[] padFrames, final int piFrames, final int piBins)
+	{
+		int iRetained = piBins / 2;
+
+		// Only the first batch of frames can be referenced
+		if(this.adFrames != null || this.oData.size() > 0)
+		{
+			for(int f = 0; f < piFrames; f++)
+			{
+				double[] adFrame = new double[piBins];
+				System.arraycopy(padFrames, f * piBins, adFrame, 0, piBins);
+				addFFT(adFrame);
+			}
+
+			return;
+		}
+
+		if(piFrames > 0)
+		{
+			this.dMin = this.dMax = padFrames[0];
+		}
+
+		for(int f = 0; f < piFrames; f++)
+		{
+			int iOffset = f * piBins;
+
+			for(int k = 0; k < iRetained; k++)
+			{
+				double dValue = padFrames[iOffset + k];
+
+				if(dValue > this.dMax)
+				{
+					this.dMax = dValue;
+				}
+
+				if(dValue < this.dMin)
+				{
+					this.dMin = dValue;
+				}
+			}
+		}
+
+		this.adFrames = padFrames;
+		this.iFrames = piFrames;
+		this.iFrameBins = piBins;
+	}
+
+	/**
+	 * Moves the referenced short-time FFT frames, if any, into the data
+	 * vector, so that more data can be appended after them.
+	 * @since 0.3.0.6
+	 */
+	private void copyFrames()
+	{
+		if(this.adFrames != null)
+		{
+			int iRetained = this.iFrameBins / 2;
+
+			for(int f = 0; f < this.iFrames; f++)
+			{
+				double[] adToInsert = new double[iRetained];
+				System.arraycopy(this.adFrames, f * this.iFrameBins, adToInsert, 0, iRetained);
+				this.oData.add(adToInsert);
+			}
+
+			this.adFrames = null;
+			this.iFrames = 0;
+			this.iFrameBins = 0;
+		}
+	}
+
+	/**
+	 * Retrieves a value to dump from either the data vector or the referenced frames.
+	 * @param piColumn frame index
+	 * @param piRow value index within the frame
+	 * @return the value
+	 * @since 0.3.0.6
+	 */
+	private double getValue(final int piColumn, final int piRow)
+	{
+		if(this.adFrames == null)
+		{
+			return this.oData.elementAt(piColumn)[piRow];
+		}
+
+		return this.adFrames[piColumn * this.iFrameBins + piRow];
+	}
+
 	/**
 	 * Dumps spectrogram.
 	 * @throws StorageException
@@ -154,7 +278,7 @@ extends StorageManager
 		try
 		{
 			Debug.debug("Dumping spectrogram " + MARF.getSampleFile() + "." + this.strMethod + ".ppm");
-			Debug.debug("Spectrogram.dump() - data size in vectors: " + this.oData.size());
+			Debug.debug("Spectrogram.dump() - data size in vectors: " + this.oData.size() + ", frames: " + this.iFrames);
 
 			FileOutputStream oFOS = null;
 			DataOutputStream oOutFile = null;
@@ -191,8 +315,8 @@ extends StorageManager
 			// Make max be at 75%
 			this.dMax *= 0.75;
 
-			int iWidth = this.oData.size();
-			int iLength = this.oData.elementAt(0).length;
+			int iWidth = this.adFrames == null ? this.oData.size() : this.iFrames;
+			int iLength = this.adFrames == null ? this.oData.elementAt(0).length : this.iFrameBins / 2;
 
 			oOutFile.writeBytes
 			(
@@ -206,23 +330,23 @@ extends StorageManager
 			{
 				for(int i = 0; i < iWidth; i++)
 				{
-					double[] adData = this.oData.elementAt(i);
-					
+					double dData = getValue(i, j);
+
 					for(int m = 0; m < 3; m++)
 					{
 						double dVal;
 
-						if(adData[j] > this.dMax)
+						if(dData > this.dMax)
 						{
 							dVal = this.dMax;
 						}
-						else if(adData[j] < this.dMin)
+						else if(dData < this.dMin)
 						{
 							dVal = this.dMin;
 						}
 						else
 						{
-							dVal = adData[j];
+							dVal = dData;
 						}
 
 						oOutFile.writeByte((int)(((this.dMax - dVal) / this.dMax) * 256));
@@ -234,7 +358,7 @@ extends StorageManager
 			(
 				"Done dumping spectrogram " +
 				MARF.getSampleFile() + "." + this.strMethod +
-				".ppm [" + (this.oData.size() * iLength * 3) + " bytes]"
+				".ppm [" + (iWidth * iLength * 3) + " bytes]"
 			);
 		}
 		catch(Exception e)
@@ -1,5 +1,9 @@
 package marf.math;
 
+import java.util.Hashtable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import marf.util.Arrays;
 
 /**
@@ -54,12 +58,7 @@ public final class Algorithms
 		 */
 		public static final void hamming(double[] padWindow)
 		{
-			for(int i = 0; i < padWindow.length; i++)
-			{
-				padWindow[i] *=
-					(0.54 - (0.46 * Math.cos((2 * Math.PI * i) /
-					(padWindow.length - 1))));
-			}
+			Windows.apply(padWindow, Windows.HAMMING);
 		}
 
 		/**
@@ -75,6 +74,175 @@ public final class Algorithms
 		}
 	}
 
+	/**
+	 * <p>Cache of precomputed window function tables keyed by the window
+	 * type and length. The values never change for a given type and length,
+	 * so computing them once spares a <code>Math.cos()</code> (and sometimes
+	 * a <code>Math.sqrt()</code>) per sample per window.</p>
+	 *
+	 * <p>The cached tables are shared among all the threads and never leave
+	 * this class: <code>getTable()</code> hands out a copy, and
+	 * <code>apply()</code> windows the data with the cached table directly.</p>
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	public static final class Windows
+	{
+		/**
+		 * Hamming window, <code>0.54 - 0.46 * cos(2 * pi * i / (N - 1))</code>.
+		 * @see Hamming#hamming(int, int)
+		 */
+		public static final int HAMMING = 0;
+
+		/**
+		 * Square root of Hamming window as used by the FFT filters,
+		 * <code>sqrt(1 - 0.85185 * cos((2 * i - 1) * pi / N))</code>.
+		 * @see Hamming#sqrtHamming(int, int)
+		 */
+		public static final int SQRT_HAMMING = 1;
+
+		/**
+		 * Hann window, <code>0.5 - 0.5 * cos(2 * pi * i / (N - 1))</code>.
+		 */
+		public static final int HANN = 2;
+
+		/**
+		 * Blackman window, <code>0.42 - 0.5 * cos(2 * pi * i / (N - 1)) + 0.08 * cos(4 * pi * i / (N - 1))</code>.
+		 */
+		public static final int BLACKMAN = 3;
+
+		/**
+		 * Tables computed so far keyed by <code>(type &lt;&lt; 32) | length</code>.
+		 */
+		private static final Hashtable<Long, double[]> soTables = new Hashtable<Long, double[]>();
+
+		/**
+		 * There shall no be instances.
+		 */
+		private Windows()
+		{
+		}
+
+		/**
+		 * Retrieves the window coefficients, computing them on first use.
+		 *
+		 * @param piType one of <code>HAMMING</code>, <code>SQRT_HAMMING</code>, <code>HANN</code>, or <code>BLACKMAN</code>
+		 * @param piLength window length
+		 * @return a copy of the coefficients the caller is free to modify
+		 * @throws IllegalArgumentException if the type is unknown or the length is negative
+		 */
+		public static final double[] getTable(final int piType, final int piLength)
+		{
+			return getSharedTable(piType, piLength).clone();
+		}
+
+		/**
+		 * Retrieves the cached table of window coefficients shared
+		 * among all the threads, computing it on first use.
+		 * @param piType window type
+		 * @param piLength window length
+		 * @return the coefficients; not a copy
+		 * @throws IllegalArgumentException if the type is unknown or the length is negative
+		 */
+		private static double[] getSharedTable(final int piType, final int piLength)
+		{
+			if(piLength < 0)
+			{
+				throw new IllegalArgumentException("Window length (" + piLength + ") is negative.");
+			}
+
+			Long oKey = Long.valueOf(((long)piType << 32) | piLength);
+			double[] adTable = soTables.get(oKey);
+
+			if(adTable == null)
+			{
+				// A concurrent duplicate computation is harmless; both are identical.
+				adTable = computeTable(piType, piLength);
+				soTables.put(oKey, adTable);
+			}
+
+			return adTable;
+		}
+
+		/**
+		 * Computes window coefficients.
+		 * @param piType window type
+		 * @param piLength window length
+		 * @return new coefficients array
+		 * @throws IllegalArgumentException if the type is unknown
+		 */
+		private static double[] computeTable(final int piType, final int piLength)
+		{
+			double[] adTable = new double[piLength];
+
+			for(int i = 0; i < piLength; i++)
+			{
+				switch(piType)
+				{
+					case HAMMING:
+						adTable[i] = 0.54 - (0.46 * Math.cos((2 * Math.PI * i) / (piLength - 1)));
+						break;
+
+					case SQRT_HAMMING:
+						adTable[i] = Hamming.sqrtHamming(i, piLength);
+						break;
+
+					case HANN:
+						adTable[i] = 0.5 - (0.5 * Math.cos((2 * Math.PI * i) / (piLength - 1)));
+						break;
+
+					case BLACKMAN:
+						adTable[i] =
+							0.42
+							- (0.5 * Math.cos((2 * Math.PI * i) / (piLength - 1)))
+							+ (0.08 * Math.cos((4 * Math.PI * i) / (piLength - 1)));
+						break;
+
+					default:
+						throw new IllegalArgumentException("Unknown window type: " + piType);
+				}
+			}
+
+			return adTable;
+		}
+
+		/**
+		 * Multiplies the data by the window coefficients element-wise, in place.
+		 * @param padData data to window; only the first <code>min(data, table)</code> elements are affected
+		 * @param padTable window coefficients
+		 */
+		public static final void apply(double[] padData, final double[] padTable)
+		{
+			int iLength = Math.min(padData.length, padTable.length);
+
+			for(int i = 0; i < iLength; i++)
+			{
+				padData[i] *= padTable[i];
+			}
+		}
+
+		/**
+		 * Multiplies the data by the coefficients of the window
+		 * as long as the data element-wise, in place.
+		 * @param padData data to window
+		 * @param piType one of <code>HAMMING</code>, <code>SQRT_HAMMING</code>, <code>HANN</code>, or <code>BLACKMAN</code>
+		 * @throws IllegalArgumentException if the type is unknown
+		 */
+		public static final void apply(double[] padData, final int piType)
+		{
+			apply(padData, getSharedTable(piType, padData.length));
+		}
+
+		/**
+		 * Drops all the cached tables.
+		 */
+		public static void clearCache()
+		{
+			soTables.clear();
+		}
+	}
+
 	/**
 	 * <p>A collection of FFT-related math.</p>
 	 * @author Stephen Sinclair
@@ -87,7 +255,8 @@ public final class Algorithms
 		/**
 		 * FFT algorithm, translated from "Numerical Recipes in C++" that
 		 * implements the Fast Fourier Transform, which performs a discrete Fourier transform
-		 * in O(n*log(n)).
+		 * in O(n*log(n)). Any input length is accepted; see <code>FFTPlan</code> for
+		 * how non-power-of-2 lengths are handled.
 		 *
 		 * @param padInputReal InputReal is real part of input array
 		 * @param padInputImag InputImag is imaginary part of input array
@@ -106,90 +275,30 @@ public final class Algorithms
 		)
 		throws MathException
 		{
-			// Ensure input length is a power of two
-			int iLength = padInputReal.length;
-
-			if((iLength < 1) | ((iLength & (iLength - 1)) != 0))
-			{
-				throw new MathException("Length of input (" + iLength + ") is not a power of 2.");
-			}
-
-			if((piDirection != 1) && (piDirection != -1))
-			{
-				throw new MathException("Bad direction specified. Should be 1 or -1.");
-			}
+			// Permutation and twiddle tables come precomputed with the plan
+			FFTPlan oPlan = getPlan(padInputReal.length, piDirection);
 
 			if(padOutputReal.length < padInputReal.length)
 			{
 				throw new MathException("Output length (" + padOutputReal.length + ") < Input length (" + padInputReal.length + ")");
 			}
 
-			// Determine max number of bits
-			int iMaxBits, n = iLength;
-
-			for(iMaxBits = 0; iMaxBits < 16; iMaxBits++)
-			{
-				if(n == 0) break;
-				n /= 2;
-			}
-
-			iMaxBits -= 1;
-
-			// Binary reversion & interlace result real/imaginary
-			int i, t, bit;
-
-			for(i = 0; i < iLength; i++)
-			{
-				t = 0;
-				n = i;
-
-				for(bit = 0; bit < iMaxBits; bit++)
-				{
-					t = (t * 2) | (n & 1);
-					n /= 2;
-				}
-
-				padOutputReal[t] = padInputReal[i];
-				padOutputImag[t] = padInputImag[i];
-			}
-
-			// put it all back together (Danielson-Lanczos butterfly)
-			int mmax = 2, istep, j, m;								// counters
-			double theta, wtemp, wpr, wr, wpi, wi, tempr, tempi;	// trigonometric recurrences
-
-			n = iLength * 2;
-
-			while(mmax < n)
-			{
-				istep = mmax * 2;
-				theta = (piDirection * 2 * Math.PI) / mmax;
-				wtemp = Math.sin(0.5 * theta);
-				wpr   = -2.0 * wtemp * wtemp;
-				wpi   = Math.sin(theta);
-				wr    = 1.0;
-				wi    = 0.0;
-
-				for(m = 0; m < mmax; m += 2)
-				{
-					for(i = m; i < n; i += istep)
-					{
-						j = i + mmax;
-						tempr = wr * padOutputReal[j / 2] - wi * padOutputImag[j / 2];
-						tempi = wr * padOutputImag[j / 2] + wi * padOutputReal[j / 2];
-
-						padOutputReal[j / 2] = padOutputReal[i / 2] - tempr;
-						padOutputImag[j / 2] = padOutputImag[i / 2] - tempi;
-
-						padOutputReal[i / 2] += tempr;
-						padOutputImag[i / 2] += tempi;
-					}
-
-					wr = (wtemp = wr) * wpr - wi * wpi + wr;
-					wi = wi * wpr + wtemp * wpi + wi;
-				}
+			oPlan.transform(padInputReal, padInputImag, padOutputReal, padOutputImag);
+		}
 
-				mmax = istep;
-			}
+		/**
+		 * Retrieves a cached FFT plan for repeated transforms of the same length and direction.
+		 * @param piLength transform length; must be at least 1
+		 * @param piDirection 1 for normal FFT, -1 for inverse FFT
+		 * @return the shared plan
+		 * @throws MathException if the length or direction are wrong
+		 * @see FFTPlan
+		 * @since 0.3.0.6
+		 */
+		public static final FFTPlan getPlan(int piLength, int piDirection)
+		throws MathException
+		{
+			return FFTPlan.getPlan(piLength, piDirection);
 		}
 
 /*		
@@ -204,14 +313,23 @@ public final class Algorithms
 		throws MathException
 */
 
+		/**
+		 * Number of matrix elements above which <code>doFFT2()</code> transforms
+		 * the lines in parallel on the common fork/join pool, 64x64.
+		 * @since 0.3.0.6
+		 */
+		public static final int FFT2_PARALLEL_THRESHOLD = 64 * 64;
+
 		/**
 		 * Performs 2D FFT; which is merely 1D FFT for every column, and then,
-		 * 1D FFT of every row of the result.
+		 * 1D FFT of every row of the result. Large matrices are transformed
+		 * in parallel on the common fork/join pool.
 		 * 
 		 * @param poInputMatrix
 		 * @param poOutputMatrix
 		 * @param piDirection
 		 * @throws MathException
+		 * @see #FFT2_PARALLEL_THRESHOLD
 		 * @since 0.3.0.6
 		 */
 		public static final void doFFT2
@@ -221,40 +339,291 @@ public final class Algorithms
 			int piDirection
 		)
 		throws MathException
+		{
+			doFFT2
+			(
+				poInputMatrix,
+				poOutputMatrix,
+				piDirection,
+				poInputMatrix.size() > FFT2_PARALLEL_THRESHOLD ? ForkJoinPool.commonPool() : null
+			);
+		}
+
+		/**
+		 * Performs 2D FFT as column transforms followed by row transforms.
+		 * The columns are first transposed into one flat buffer so that both
+		 * passes work on contiguous lines; the lines of each pass are
+		 * independent and are split among the pool's workers.
+		 * The output matrix may be the input one.
+		 *
+		 * @param poInputMatrix input matrix
+		 * @param poOutputMatrix output matrix of the same dimensions
+		 * @param piDirection 1 for normal FFT, -1 for inverse FFT
+		 * @param poPool pool to run the passes in; <code>null</code> means in the calling thread
+		 * @throws MathException if the direction is wrong
+		 * @since 0.3.0.6
+		 */
+		public static final void doFFT2
+		(
+			final ComplexMatrix poInputMatrix,
+			ComplexMatrix poOutputMatrix,
+			int piDirection,
+			ForkJoinPool poPool
+		)
+		throws MathException
 		{
 			assert
 				poInputMatrix.iCols == poOutputMatrix.iCols && poInputMatrix.iRows == poOutputMatrix.iRows
 				: "Matrix dimensions (" + poInputMatrix.iRows + "x" + poInputMatrix.iCols
 				+ ") vs (" + poOutputMatrix.iRows + "x" + poOutputMatrix.iCols + ") do not match.";
 
-			// Do 1D FFT for every column first
-			for(int i = 0; i < poInputMatrix.iCols; i++)
+			final int iRows = poInputMatrix.iRows;
+			final int iCols = poInputMatrix.iCols;
+
+			if(iRows == 0 || iCols == 0)
 			{
-				ComplexVector oInputColumn = poInputMatrix.getComplexColumn(i);
-				ComplexVector oOutputColumn = new ComplexVector(oInputColumn.size());
-				
-				doFFT(oInputColumn.adMatrix, oInputColumn.adImaginaryMatrix, oOutputColumn.adMatrix, oOutputColumn.adImaginaryMatrix, piDirection);
-				
-				poOutputMatrix.loadColumn(i, oOutputColumn);
+				return;
 			}
 
+			FFTPlan oColumnPlan = getPlan(iRows, piDirection);
+			FFTPlan oRowPlan = getPlan(iCols, piDirection);
+
+			// Columns of the input become rows of the buffer
+			double[] adReal = new double[iRows * iCols];
+			double[] adImag = new double[iRows * iCols];
+
+			transpose(poInputMatrix.adMatrix, adReal, iRows, iCols);
+			transpose(poInputMatrix.adImaginaryMatrix, adImag, iRows, iCols);
+
+			// Do 1D FFT for every column first
+			transformLines(oColumnPlan, adReal, adImag, iCols, poPool);
+
+			transpose(adReal, poOutputMatrix.adMatrix, iCols, iRows);
+			transpose(adImag, poOutputMatrix.adImaginaryMatrix, iCols, iRows);
+
 			// Then do 1D FFT of the result of the above
-			for(int i = 0; i < poInputMatrix.iRows; i++)
+			transformLines(oRowPlan, poOutputMatrix.adMatrix, poOutputMatrix.adImaginaryMatrix, iRows, poPool);
+		}
+
+		/**
+		 * Transforms in place every line of a flat row-major buffer.
+		 * @param poPlan plan of the line length
+		 * @param padReal real parts of all the lines
+		 * @param padImag imaginary parts of all the lines
+		 * @param piLines number of lines
+		 * @param poPool pool to use, or <code>null</code> for the calling thread
+		 */
+		private static void transformLines(final FFTPlan poPlan, double[] padReal, double[] padImag, int piLines, ForkJoinPool poPool)
+		{
+			if(poPool == null)
+			{
+				// Not through a task, which would fork into the common pool
+				transformLines(poPlan, padReal, padImag, 0, piLines);
+			}
+			else
+			{
+				poPool.invoke(new LineTask(poPlan, padReal, padImag, 0, piLines));
+			}
+		}
+
+		/**
+		 * Transforms in place a range of lines of a flat row-major buffer
+		 * in the calling thread.
+		 * @param poPlan plan of the line length
+		 * @param padReal real parts of all the lines
+		 * @param padImag imaginary parts of all the lines
+		 * @param piFrom first line of the range
+		 * @param piTo one past the last line of the range
+		 */
+		private static void transformLines(final FFTPlan poPlan, double[] padReal, double[] padImag, int piFrom, int piTo)
+		{
+			final int iLength = poPlan.getLength();
+
+			double[] adLineReal = new double[iLength];
+			double[] adLineImag = new double[iLength];
+
+			for(int i = piFrom; i < piTo; i++)
+			{
+				int iOffset = i * iLength;
+
+				System.arraycopy(padReal, iOffset, adLineReal, 0, iLength);
+				System.arraycopy(padImag, iOffset, adLineImag, 0, iLength);
+
+				poPlan.transform(adLineReal, adLineImag, adLineReal, adLineImag);
+
+				System.arraycopy(adLineReal, 0, padReal, iOffset, iLength);
+				System.arraycopy(adLineImag, 0, padImag, iOffset, iLength);
+			}
+		}
+
+		/**
+		 * Cache-blocked transposition of a row-major matrix.
+		 * @param padSource source, <code>piRows x piCols</code>
+		 * @param padTarget target, <code>piCols x piRows</code>; must not be the source
+		 * @param piRows rows of the source
+		 * @param piCols columns of the source
+		 */
+		private static void transpose(final double[] padSource, double[] padTarget, int piRows, int piCols)
+		{
+			final int iBlock = 32;
+
+			for(int ii = 0; ii < piRows; ii += iBlock)
+			{
+				int iRowEnd = Math.min(ii + iBlock, piRows);
+
+				for(int jj = 0; jj < piCols; jj += iBlock)
+				{
+					int iColEnd = Math.min(jj + iBlock, piCols);
+
+					for(int i = ii; i < iRowEnd; i++)
+					{
+						for(int j = jj; j < iColEnd; j++)
+						{
+							padTarget[j * piRows + i] = padSource[i * piCols + j];
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Transforms a range of contiguous lines of a flat buffer, splitting
+		 * the range in halves while it holds more than
+		 * <code>FFT2_PARALLEL_THRESHOLD</code> elements.
+		 *
+		 * @author Serguei Mokhov
+		 * @since 0.3.0.6
+		 */
+		private static final class LineTask
+		extends RecursiveAction
+		{
+			/**
+			 * For serialization versioning.
+			 */
+			private static final long serialVersionUID = 6263185010738049127L;
+
+			/**
+			 * Plan of the line length.
+			 */
+			private final FFTPlan oPlan;
+
+			/**
+			 * Real parts of all the lines.
+			 */
+			private final double[] adReal;
+
+			/**
+			 * Imaginary parts of all the lines.
+			 */
+			private final double[] adImag;
+
+			/**
+			 * First line of the range.
+			 */
+			private final int iFrom;
+
+			/**
+			 * One past the last line of the range.
+			 */
+			private final int iTo;
+
+			/**
+			 * Constructs the task for the given lines.
+			 * @param poPlan plan of the line length
+			 * @param padReal real parts of all the lines
+			 * @param padImag imaginary parts of all the lines
+			 * @param piFrom first line of the range
+			 * @param piTo one past the last line of the range
+			 */
+			LineTask(final FFTPlan poPlan, double[] padReal, double[] padImag, int piFrom, int piTo)
+			{
+				this.oPlan = poPlan;
+				this.adReal = padReal;
+				this.adImag = padImag;
+				this.iFrom = piFrom;
+				this.iTo = piTo;
+			}
+
+			/**
+			 * Transforms the lines directly or forks two halves.
+			 * @see java.util.concurrent.RecursiveAction#compute()
+			 */
+			protected void compute()
+			{
+				final int iLength = this.oPlan.getLength();
+				final int iLines = this.iTo - this.iFrom;
+
+				if(iLines > 1 && iLines * iLength > FFT2_PARALLEL_THRESHOLD)
+				{
+					int iMiddle = this.iFrom + iLines / 2;
+
+					invokeAll
+					(
+						new LineTask(this.oPlan, this.adReal, this.adImag, this.iFrom, iMiddle),
+						new LineTask(this.oPlan, this.adReal, this.adImag, iMiddle, this.iTo)
+					);
+
+					return;
+				}
+
+				transformLines(this.oPlan, this.adReal, this.adImag, this.iFrom, this.iTo);
+			}
+		}
+
+		/**
+		 * Performs FFT of a purely real input (e.g. an audio sample) through
+		 * the half-length complex packing; see <code>RealFFTPlan</code>.
+		 *
+		 * @param padInput real input of size N &gt; 0
+		 * @param padOutputReal real part of bins 0..N/2; must be at least (N/2 + 1) long
+		 * @param padOutputImag imaginary part of bins 0..N/2; must be at least (N/2 + 1) long
+		 * @throws MathException if the sizes are wrong
+		 * @see RealFFTPlan#forward(double[], double[], double[])
+		 * @since 0.3.0.6
+		 */
+		public static final void realFFT(final double[] padInput, double[] padOutputReal, double[] padOutputImag)
+		throws MathException
+		{
+			RealFFTPlan oPlan = RealFFTPlan.getPlan(padInput.length);
+
+			if(padOutputReal.length < oPlan.getBins() || padOutputImag.length < oPlan.getBins())
 			{
-				ComplexVector oInputRow = poOutputMatrix.getComplexRow(i);
-				ComplexVector oOutputRow = new ComplexVector(oInputRow.size());
+				throw new MathException("Output length (" + padOutputReal.length + ") < number of bins (" + oPlan.getBins() + ")");
+			}
+
+			oPlan.forward(padInput, padOutputReal, padOutputImag);
+		}
 
-				doFFT(oInputRow.adMatrix, oInputRow.adImaginaryMatrix, oOutputRow.adMatrix, oOutputRow.adImaginaryMatrix, piDirection);
+		/**
+		 * Performs inverse (unscaled) FFT of a conjugate-symmetric spectrum
+		 * produced by <code>realFFT()</code> back into a real signal.
+		 * <b>NOTE:</b> the spectrum arrays are overwritten.
+		 *
+		 * @param padInputReal real part of bins 0..N/2
+		 * @param padInputImag imaginary part of bins 0..N/2
+		 * @param padOutput real output of size N
+		 * @throws MathException if the sizes are wrong
+		 * @see RealFFTPlan#inverse(double[], double[], double[])
+		 * @since 0.3.0.6
+		 */
+		public static final void inverseRealFFT(double[] padInputReal, double[] padInputImag, double[] padOutput)
+		throws MathException
+		{
+			RealFFTPlan oPlan = RealFFTPlan.getPlan(padOutput.length);
 
-				poOutputMatrix.loadRow(i, oOutputRow);
+			if(padInputReal.length < oPlan.getBins() || padInputImag.length < oPlan.getBins())
+			{
+				throw new MathException("Input length (" + padInputReal.length + ") < number of bins (" + oPlan.getBins() + ")");
 			}
+
+			oPlan.inverse(padInputReal, padInputImag, padOutput);
 		}
 
 		/**
 		 * Performs a normal FFT, taking a real input (e.g. an audio sample) and returns
 		 * the frequency analysis in terms of "magnitude" and "phase angle".
 		 *
-		 * @param padSample must be an array of size (2^k)
+		 * @param padSample an array of any size N &gt; 0; powers of 2 and 2-3-5-smooth sizes are the fastest
 		 * @param padMagnitude must be half the size of "sample"
 		 * @param padPhaseAngle must be half the size of "sample"; may be null
 		 * @throws MathException
@@ -262,12 +631,34 @@ public final class Algorithms
 		public static final void normalFFT(final double[] padSample, double[] padMagnitude, double[] padPhaseAngle)
 		throws MathException
 		{
-			double[] adSampleImag = new double[padSample.length];
-			double[] adOutputReal = new double[padSample.length];
-			double[] adOutputImag = new double[padSample.length];
+			int iBins = padSample.length / 2 + 1;
 
-			doFFT(padSample, adSampleImag, adOutputReal, adOutputImag, 1);
+			normalFFT(padSample, padMagnitude, padPhaseAngle, new double[iBins], new double[iBins]);
+		}
 
+		/**
+		 * Performs a normal FFT, taking a real input (e.g. an audio sample) and returns
+		 * the frequency analysis in terms of "magnitude" and "phase angle", using
+		 * caller-supplied spectrum buffers to avoid allocation on repeated calls.
+		 *
+		 * @param padSample an array of any size N &gt; 0; powers of 2 and 2-3-5-smooth sizes are the fastest
+		 * @param padMagnitude must be half the size of "sample"
+		 * @param padPhaseAngle must be half the size of "sample"; may be null
+		 * @param padSpectrumReal scratch for the real part of the spectrum, at least (N/2 + 1) long
+		 * @param padSpectrumImag scratch for the imaginary part of the spectrum, at least (N/2 + 1) long
+		 * @throws MathException
+		 * @since 0.3.0.6
+		 */
+		public static final void normalFFT
+		(
+			final double[] padSample,
+			double[] padMagnitude,
+			double[] padPhaseAngle,
+			double[] padSpectrumReal,
+			double[] padSpectrumImag
+		)
+		throws MathException
+		{
 			// convert complex output to magnitude and phase angle
 			int iLen = padMagnitude.length;
 
@@ -276,14 +667,21 @@ public final class Algorithms
 				iLen = padSample.length / 2;
 			}
 
+			if(iLen == 0)
+			{
+				return;
+			}
+
+			realFFT(padSample, padSpectrumReal, padSpectrumImag);
+
 			for(int i = 0; i < iLen; i++)
 			{
-				padMagnitude[i] = Math.sqrt(adOutputReal[i] * adOutputReal[i] + adOutputImag[i] * adOutputImag[i]);
+				padMagnitude[i] = Math.sqrt(padSpectrumReal[i] * padSpectrumReal[i] + padSpectrumImag[i] * padSpectrumImag[i]);
 
 				if(padPhaseAngle != null)
 				{
 					// Bug ID 3432300 fix (phase angle was always assumed in the atan(y / x) range).
-					padPhaseAngle[i] = Math.atan2(adOutputImag[i], adOutputReal[i]);
+					padPhaseAngle[i] = Math.atan2(padSpectrumImag[i], padSpectrumReal[i]);
 				}
 			}
 		}
@@ -292,7 +690,7 @@ public final class Algorithms
 		 * Performs a normal FFT, taking a real input (e.g. an audio sample) and returns
 		 * the frequency analysis in terms of "magnitude".
 		 *
-		 * @param padSample must be an array of size (2^k)
+		 * @param padSample an array of any size N &gt; 0; powers of 2 and 2-3-5-smooth sizes are the fastest
 		 * @param padMagnitude must be half the size of "sample"
 		 * @throws MathException
 		 */
@@ -320,6 +718,7 @@ public final class Algorithms
 		 * @param padError output LPC error
 		 * @param piPoles number of poles
 		 * @throws MathException
+		 * @see #doLPC(double[], double[], double[], int, double[], double[], double[])
 		 */
 		public static final void doLPC(final double[] padInput, double[] padOutput, double[] padError, int piPoles)
 		throws MathException
@@ -329,6 +728,43 @@ public final class Algorithms
 				throw new MathException("Number of poles should be > 0; supplied: " + piPoles);
 			}
 
+			doLPC(padInput, padOutput, padError, piPoles, new double[piPoles], new double[piPoles], new double[piPoles]);
+		}
+
+		/**
+		 * Does the LPC algorithm with caller-supplied scratch buffers, so that
+		 * nothing is allocated when it is done for every window of a sample.
+		 * The autocorrelation vector is computed once, O(N*p), and the Levinson-Durbin
+		 * recursion then runs on two rolling rows of coefficients, O(p^2).
+		 * <b>NOTE:</b> input is assumed to be windowed, ie: input.length = N.
+		 *
+		 * @param padInput windowed part of incoming sample
+		 * @param padOutput resulting LPC coefficients
+		 * @param padError output LPC error
+		 * @param piPoles number of poles
+		 * @param padAutoCorrelation scratch for the autocorrelation, at least p long
+		 * @param padRowA scratch for the coefficients, at least p long
+		 * @param padRowB scratch for the coefficients, at least p long
+		 * @throws MathException if the number of poles or the array sizes are wrong
+		 * @since 0.3.0.6
+		 */
+		public static final void doLPC
+		(
+			final double[] padInput,
+			double[] padOutput,
+			double[] padError,
+			int piPoles,
+			double[] padAutoCorrelation,
+			double[] padRowA,
+			double[] padRowB
+		)
+		throws MathException
+		{
+			if(piPoles <= 0)
+			{
+				throw new MathException("Number of poles should be > 0; supplied: " + piPoles);
+			}
+
 			if(padOutput.length != piPoles)
 			{
 				throw new MathException("Output array should be of length p (" + piPoles + ")!");
@@ -339,47 +775,63 @@ public final class Algorithms
 				throw new MathException("Error array should be of length p (" + piPoles + ")!");
 			}
 
-			double[]   k = new double[piPoles];
-			double[][] A = new double[piPoles][piPoles];
-
-			padError[0] = applyAutoCorrelation(padInput, 0);
+			if(padAutoCorrelation.length < piPoles || padRowA.length < piPoles || padRowB.length < piPoles)
+			{
+				throw new MathException("Scratch arrays should be at least of length p (" + piPoles + ")!");
+			}
 
-			A[0][0] = k[0] = 0.0;
+			for(int i = 0; i < piPoles; i++)
+			{
+				padAutoCorrelation[i] = applyAutoCorrelation(padInput, i);
+			}
+
+			// Rows m - 1 and m of the former p x p matrix A; entries past m must stay 0
+			double[] adPrevious = padRowA;
+			double[] adCurrent = padRowB;
+
+			Arrays.fill(adPrevious, 0, piPoles, 0.0);
+			Arrays.fill(adCurrent, 0, piPoles, 0.0);
+
+			padError[0] = padAutoCorrelation[0];
 
 			for(int m = 1; m < piPoles; m++)
 			{
 				// calculate k[m]
-				double dTmp = applyAutoCorrelation(padInput, m);
+				double dTmp = padAutoCorrelation[m];
 
 				for(int i = 1; i < m; i++)
 				{
-					dTmp -= A[m - 1][i] * applyAutoCorrelation(padInput, m - i);
+					dTmp -= adPrevious[i] * padAutoCorrelation[m - i];
 				}
 
-				k[m] = dTmp / padError[m - 1];
+				double k = dTmp / padError[m - 1];
 
 				// update A[m][*]
 				for(int i = 0; i < m; i++)
 				{
-					A[m][i] = A[m - 1][i] - k[m] * A[m - 1][m - i];
+					adCurrent[i] = adPrevious[i] - k * adPrevious[m - i];
 				}
 
-				A[m][m] = k[m];
+				adCurrent[m] = k;
 
 				// update error[m]
-				padError[m] = (1 - (k[m] * k[m])) * padError[m - 1];
+				padError[m] = (1 - (k * k)) * padError[m - 1];
+
+				double[] adSwap = adPrevious;
+				adPrevious = adCurrent;
+				adCurrent = adSwap;
 			}
 
 			// [SM]: kludge?
 			for(int i = 0; i < piPoles; i++)
 			{
-				if(Double.isNaN(A[piPoles - 1][i]))
+				if(Double.isNaN(adPrevious[i]))
 				{
 					padOutput[i] = 0.0;
 				}
 				else
 				{
-					padOutput[i] = A[piPoles - 1][i];
+					padOutput[i] = adPrevious[i];
 				}
 			}
 		}
@@ -684,6 +1136,285 @@ public final class Algorithms
 			return y;
 		}
 		
+		/**
+		 * The free angle of the lattice factorization of the Farras filters.
+		 *
+		 * The eight nonzero taps of the Farras lowpass filter are
+		 * <code>-a, a, b, b, a, -a, c, c</code>. Of a four-stage lattice
+		 * with the angles of <code>FARRAS_ANGLES</code>, the first and the
+		 * last tap of the lowpass filter come out in the ratio of
+		 * <code>1 : tan(phi)</code>, so <code>phi = atan(c / a)</code>,
+		 * about 0.1263401275710; the middle taps then follow.
+		 * @since 0.3.0.6
+		 */
+		private static final double FARRAS_PHI = Math.atan(0.01122679215254 / 0.08838834764832);
+
+		/**
+		 * Rotation angles of the four lattice stages that realize exactly
+		 * (to the precision of the taps) the Farras <code>af</code>/<code>sf</code>
+		 * filter bank. They add up to <code>-3pi/4</code>, which puts the zero
+		 * of the lowpass filter at <code>pi</code>.
+		 * @since 0.3.0.6
+		 */
+		private static final double[] FARRAS_ANGLES =
+		{
+			-Math.PI / 4,
+			-Math.PI / 2 - FARRAS_PHI,
+			0,
+			FARRAS_PHI
+		};
+
+		/**
+		 * Predict/update lifting coefficients of the stages: a rotation by
+		 * <code>t</code> is the three lifting steps <code>a += p * b</code>,
+		 * <code>b -= s * a</code>, <code>a += p * b</code> with
+		 * <code>p = tan(t/2)</code> and <code>s = sin(t)</code>.
+		 */
+		private static final double[] FARRAS_LIFT_P = new double[FARRAS_ANGLES.length];
+
+		/**
+		 * @see #FARRAS_LIFT_P
+		 */
+		private static final double[] FARRAS_LIFT_S = new double[FARRAS_ANGLES.length];
+
+		static
+		{
+			for(int i = 0; i < FARRAS_ANGLES.length; i++)
+			{
+				FARRAS_LIFT_P[i] = Math.tan(FARRAS_ANGLES[i] / 2);
+				FARRAS_LIFT_S[i] = Math.sin(FARRAS_ANGLES[i]);
+			}
+		}
+
+		/**
+		 * Multi-level periodic DWT with the Farras filters, done in place by lifting.
+		 *
+		 * <p>Each level works on the approximation samples left by the previous
+		 * one, which sit at a stride of <code>2^level</code>: the even ones of
+		 * them become the lowpass (approximation) and the odd ones the highpass
+		 * (detail) coefficients of the level, equal to those of the Farras
+		 * analysis filter bank <code>af</code> with periodic extension as
+		 * computed by afb.m, <code>lo[k] = sum(af[0][m] * x[(2k + 5 - m) mod N])</code>.
+		 * (<code>afb()</code> here advances the signal by <code>af.length / 2</code>,
+		 * 1, instead of half the filter length, 5, so it differs.)
+		 * No memory is allocated. An odd trailing sample of
+		 * a level is carried over to the next level unchanged, so any length
+		 * can be transformed; levels with fewer than two samples are skipped.</p>
+		 *
+		 * @param padData the signal; replaced by the coefficients
+		 * @param piLength number of samples of the signal to use
+		 * @param piLevels number of levels
+		 * @see #liftingIDWT(double[], int, int)
+		 * @see #getDetailCount(int, int)
+		 * @since 0.3.0.6
+		 */
+		public static final void liftingDWT(double[] padData, int piLength, int piLevels)
+		{
+			int iCount = piLength;
+
+			for(int j = 0, iStride = 1; j < piLevels && iCount >= 2; j++, iStride <<= 1)
+			{
+				final int iPairs = iCount / 2;
+
+				for(int i = 0; i < FARRAS_ANGLES.length; i++)
+				{
+					if(i > 0)
+					{
+						// z^-1 of the lattice on the odd channel
+						rotate(padData, iStride, iStride * 2, iPairs, -1);
+					}
+
+					lift(padData, iStride, iPairs, FARRAS_LIFT_P[i], FARRAS_LIFT_S[i]);
+				}
+
+				// Align the channels with afb(): lo[k] = -a[k + 1], hi[k] = b[k + 2]
+				rotate(padData, 0, iStride * 2, iPairs, 1);
+				negate(padData, 0, iStride * 2, iPairs);
+				rotate(padData, iStride, iStride * 2, iPairs, 2);
+
+				iCount = (iCount + 1) / 2;
+			}
+		}
+
+		/**
+		 * Inverse of <code>liftingDWT()</code>, in place.
+		 * @param padData the coefficients as laid out by <code>liftingDWT()</code>; replaced by the signal
+		 * @param piLength number of samples of the signal
+		 * @param piLevels number of levels; must be the same as of the forward transform
+		 * @see #liftingDWT(double[], int, int)
+		 * @since 0.3.0.6
+		 */
+		public static final void liftingIDWT(double[] padData, int piLength, int piLevels)
+		{
+			for(int j = Math.min(piLevels, getLevels(piLength)) - 1; j >= 0; j--)
+			{
+				final int iStride = 1 << j;
+				final int iPairs = getApproximationCount(piLength, j) / 2;
+
+				rotate(padData, iStride, iStride * 2, iPairs, -2);
+				negate(padData, 0, iStride * 2, iPairs);
+				rotate(padData, 0, iStride * 2, iPairs, -1);
+
+				for(int i = FARRAS_ANGLES.length - 1; i >= 0; i--)
+				{
+					lift(padData, iStride, iPairs, -FARRAS_LIFT_P[i], -FARRAS_LIFT_S[i]);
+
+					if(i > 0)
+					{
+						rotate(padData, iStride, iStride * 2, iPairs, 1);
+					}
+				}
+			}
+		}
+
+		/**
+		 * In-place soft thresholding of the detail coefficients
+		 * of all the levels of <code>liftingDWT()</code>;
+		 * the approximation is left intact. Same rule as <code>soft()</code>.
+		 * @param padData coefficients as laid out by <code>liftingDWT()</code>
+		 * @param piLength number of samples of the signal
+		 * @param piLevels number of levels of the transform
+		 * @param pdThreshold the threshold
+		 * @see #soft(double[], int)
+		 * @since 0.3.0.6
+		 */
+		public static final void softThreshold(double[] padData, int piLength, int piLevels, double pdThreshold)
+		{
+			int iLevels = Math.min(piLevels, getLevels(piLength));
+
+			for(int j = 0; j < iLevels; j++)
+			{
+				final int iStride = 1 << j;
+				final int iDetails = getDetailCount(piLength, j);
+
+				for(int k = 0, i = iStride; k < iDetails; k++, i += 2 * iStride)
+				{
+					double dValue = Math.max(Math.abs(padData[i]) - pdThreshold, 0);
+					padData[i] = (dValue / (dValue + pdThreshold)) * padData[i];
+				}
+			}
+		}
+
+		/**
+		 * Number of detail coefficients of a level of <code>liftingDWT()</code>;
+		 * they are at indices <code>2^level * (2k + 1)</code>.
+		 * @param piLength number of samples of the signal
+		 * @param piLevel level, starting from 0
+		 * @return the count
+		 * @since 0.3.0.6
+		 */
+		public static final int getDetailCount(int piLength, int piLevel)
+		{
+			return getApproximationCount(piLength, piLevel) / 2;
+		}
+
+		/**
+		 * Number of approximation samples a level of <code>liftingDWT()</code> starts with.
+		 * @param piLength number of samples of the signal
+		 * @param piLevel level, starting from 0
+		 * @return the count
+		 */
+		private static int getApproximationCount(int piLength, int piLevel)
+		{
+			int iCount = piLength;
+
+			for(int j = 0; j < piLevel; j++)
+			{
+				iCount = (iCount + 1) / 2;
+			}
+
+			return iCount;
+		}
+
+		/**
+		 * Number of levels <code>liftingDWT()</code> can actually do for a length.
+		 * @param piLength number of samples of the signal
+		 * @return the count
+		 */
+		private static int getLevels(int piLength)
+		{
+			int iLevels = 0;
+
+			for(int iCount = piLength; iCount >= 2; iCount = (iCount + 1) / 2)
+			{
+				iLevels++;
+			}
+
+			return iLevels;
+		}
+
+		/**
+		 * One lattice rotation of all the (even, odd) pairs of a level
+		 * as three lifting steps.
+		 * @param padData the data
+		 * @param piStride distance between the even and odd element of a pair
+		 * @param piPairs number of pairs
+		 * @param pdP predict/update coefficient, <code>tan(t/2)</code>
+		 * @param pdS update coefficient, <code>sin(t)</code>
+		 */
+		private static void lift(double[] padData, int piStride, int piPairs, double pdP, double pdS)
+		{
+			if(pdP == 0 && pdS == 0)
+			{
+				return;
+			}
+
+			for(int k = 0, i = 0; k < piPairs; k++, i += 2 * piStride)
+			{
+				double dA = padData[i];
+				double dB = padData[i + piStride];
+
+				dA += pdP * dB;
+				dB -= pdS * dA;
+				dA += pdP * dB;
+
+				padData[i] = dA;
+				padData[i + piStride] = dB;
+			}
+		}
+
+		/**
+		 * Circular shift of a strided sequence, in place:
+		 * <code>x[k] = x[k + piShift]</code>, indices modulo the count.
+		 * @param padData the data
+		 * @param piFirst index of the first element
+		 * @param piStride distance between the elements
+		 * @param piCount number of elements
+		 * @param piShift positive to advance, negative to delay
+		 */
+		private static void rotate(double[] padData, int piFirst, int piStride, int piCount, int piShift)
+		{
+			int iShift = ((piShift % piCount) + piCount) % piCount;
+
+			for(int n = 0; n < iShift; n++)
+			{
+				double dFirst = padData[piFirst];
+				int iLast = piFirst + (piCount - 1) * piStride;
+
+				for(int i = piFirst; i < iLast; i += piStride)
+				{
+					padData[i] = padData[i + piStride];
+				}
+
+				padData[iLast] = dFirst;
+			}
+		}
+
+		/**
+		 * Negates a strided sequence in place.
+		 * @param padData the data
+		 * @param piFirst index of the first element
+		 * @param piStride distance between the elements
+		 * @param piCount number of elements
+		 */
+		private static void negate(double[] padData, int piFirst, int piStride, int piCount)
+		{
+			for(int k = 0, i = piFirst; k < piCount; k++, i += piStride)
+			{
+				padData[i] = -padData[i];
+			}
+		}
+
 		// http://code.google.com/p/upfirdn/source/browse/upfirdn/Resampler.h
 		public static final class Resampler
 		{
@@ -876,64 +1607,28 @@ public final class Algorithms
 			}
 		}
 		
+		/**
+		 * Upsamples by <code>upRate</code>, applies the FIR filter, and downsamples
+		 * by <code>downRate</code>, flushing the filter at the end.
+		 * Done by <code>PolyphaseResampler</code>, which does not pad the input.
+		 * @param upRate upsampling factor
+		 * @param downRate downsampling factor
+		 * @param input the signal
+		 * @param filter the filter taps
+		 * @return the filtered signal
+		 * @throws MathException if the factors are not positive or the filter is empty
+		 * @see PolyphaseResampler#upfirdn(double[])
+		 */
 		public static double[] upfirdn
 		(
 			int upRate,
 			int downRate, 
 			double[] input,
-//			int inLength,
 			double[] filter
-//			int filterLength
 	    )
 		throws MathException
 		{
-			// Create the Resampler
-			//Resampler<S1, S2, C> theResampler(upRate, downRate, filter, filterLength);
-			//Resampler theResampler = new Resampler(upRate, downRate, filter, filterLength);
-			Resampler theResampler = new Resampler(upRate, downRate, filter);
-			
-			// pad input by length of one polyphase of filter to flush all values out
-			int padding = theResampler.coefsPerPhase() - 1;
-			double[] inputPadded = new double[input.length + padding];
-			
-			//for(int i = 0; i < input.length + padding; i++)
-			for(int i = 0; i < inputPadded.length; i++)
-			{
-				if(i < input.length)
-				{
-					inputPadded[i] = input[i];
-				}
-				else
-				{
-					inputPadded[i] = 0;
-				}
-			}
-
-			// calc size of output
-			//int resultsCount = theResampler.neededOutCount(input.length + padding); 
-			int resultsCount = theResampler.neededOutCount(inputPadded.length); 
-
-			// results.resize(resultsCount);
-			double[] results = new double[resultsCount];
-	
-			// run filtering
-			int numSamplesComputed = theResampler.apply
-			(
-				inputPadded, 
-				//input.length + padding,
-				results
-				//resultsCount
-			);
-			
-			if(numSamplesComputed != resultsCount)
-			{
-				System.err.println("upfirdn: numSamplesComputed != resultsCount: " + numSamplesComputed + " != " + resultsCount);
-			}
-			
-		    //delete[] inputPadded;
-		    inputPadded = null;
-		    
-		    return results;
+			return new PolyphaseResampler(upRate, downRate, filter).upfirdn(input);
 		}
 
 //		public static double[] upfirdn(int upRate, int downRate, double[] input, double[] filter)
@@ -950,6 +1645,388 @@ public final class Algorithms
 
 	} // Wavelet
 
+	/**
+	 * <p>A collection of vector distance kernels used by the distance classifiers.</p>
+	 *
+	 * <p>Each kernel is a plain counted loop over the two arrays with nothing
+	 * in it but the arithmetic, in one place for all the classifiers. The
+	 * incubating Vector API is not used, as it has to be added with
+	 * <code>--add-modules</code> both when compiling and when running. The
+	 * summation order is the one of the original classifier loops, so the
+	 * results are the same.</p>
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	public static final class Distances
+	{
+		/**
+		 * There shall no be instances.
+		 */
+		private Distances()
+		{
+		}
+
+		/**
+		 * Number of elements between the checks of a partial sum
+		 * against the bound in the bounded kernels.
+		 */
+		private static final int BOUND_CHECK_INTERVAL = 16;
+
+		/**
+		 * Computes <code>sum((a[i] - b[i])^2)</code>, the squared Euclidean distance.
+		 * @param padA first vector
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the sum
+		 */
+		public static final double squaredEuclidean(final double[] padA, final double[] padB, final int piLength)
+		{
+			return squaredEuclidean(padA, 0, padB, piLength);
+		}
+
+		/**
+		 * Computes the squared Euclidean distance from a vector stored within a larger
+		 * array, e.g. a row of a <code>TrainingMatrix</code>.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the sum
+		 */
+		public static final double squaredEuclidean(final double[] padA, final int piOffsetA, final double[] padB, final int piLength)
+		{
+			double dSum = 0;
+
+			for(int i = 0; i < piLength; i++)
+			{
+				double dDiff = padA[piOffsetA + i] - padB[i];
+				dSum += dDiff * dDiff;
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Computes the squared Euclidean distance from a vector stored within
+		 * a larger array, stopping early once the partial sum is greater than
+		 * the bound. The terms are added in the same order as by the unbounded
+		 * version, so a sum within the bound is exactly the same.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdBound largest sum of interest
+		 * @return the sum if it is not greater than the bound; otherwise a partial sum greater than the bound
+		 */
+		public static final double squaredEuclidean(final double[] padA, final int piOffsetA, final double[] padB, final int piLength, final double pdBound)
+		{
+			double dSum = 0;
+
+			for(int iBlock = 0; iBlock < piLength; iBlock += BOUND_CHECK_INTERVAL)
+			{
+				int iEnd = Math.min(iBlock + BOUND_CHECK_INTERVAL, piLength);
+
+				for(int i = iBlock; i < iEnd; i++)
+				{
+					double dDiff = padA[piOffsetA + i] - padB[i];
+					dSum += dDiff * dDiff;
+				}
+
+				if(dSum > pdBound)
+				{
+					return dSum;
+				}
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Computes <code>sum(|a[i] - b[i]|)</code>, the city block distance.
+		 * @param padA first vector
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the sum
+		 */
+		public static final double cityBlock(final double[] padA, final double[] padB, final int piLength)
+		{
+			return cityBlock(padA, 0, padB, piLength);
+		}
+
+		/**
+		 * Computes the city block distance from a vector stored within a larger array.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the sum
+		 */
+		public static final double cityBlock(final double[] padA, final int piOffsetA, final double[] padB, final int piLength)
+		{
+			double dSum = 0;
+
+			for(int i = 0; i < piLength; i++)
+			{
+				dSum += Math.abs(padA[piOffsetA + i] - padB[i]);
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Computes the city block distance from a vector stored within a larger
+		 * array, stopping early once the partial sum is greater than the bound.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdBound largest sum of interest
+		 * @return the sum if it is not greater than the bound; otherwise a partial sum greater than the bound
+		 * @see #squaredEuclidean(double[], int, double[], int, double)
+		 */
+		public static final double cityBlock(final double[] padA, final int piOffsetA, final double[] padB, final int piLength, final double pdBound)
+		{
+			double dSum = 0;
+
+			for(int iBlock = 0; iBlock < piLength; iBlock += BOUND_CHECK_INTERVAL)
+			{
+				int iEnd = Math.min(iBlock + BOUND_CHECK_INTERVAL, piLength);
+
+				for(int i = iBlock; i < iEnd; i++)
+				{
+					dSum += Math.abs(padA[piOffsetA + i] - padB[i]);
+				}
+
+				if(dSum > pdBound)
+				{
+					return dSum;
+				}
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Computes <code>sum(|a[i] - b[i]|^r)</code>, the Minkowski distance
+		 * raised to the power of <code>r</code>. The factors of 1 and 2
+		 * go through <code>cityBlock()</code> and <code>squaredEuclidean()</code>
+		 * without calling <code>Math.pow()</code> for every element.
+		 * @param padA first vector
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdR the Minkowski factor
+		 * @return the sum
+		 */
+		public static final double minkowskiSum(final double[] padA, final double[] padB, final int piLength, final double pdR)
+		{
+			return minkowskiSum(padA, 0, padB, piLength, pdR);
+		}
+
+		/**
+		 * Computes the Minkowski sum from a vector stored within a larger array.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdR the Minkowski factor
+		 * @return the sum
+		 * @see #minkowskiSum(double[], double[], int, double)
+		 */
+		public static final double minkowskiSum(final double[] padA, final int piOffsetA, final double[] padB, final int piLength, final double pdR)
+		{
+			if(pdR == 1)
+			{
+				return cityBlock(padA, piOffsetA, padB, piLength);
+			}
+
+			if(pdR == 2)
+			{
+				return squaredEuclidean(padA, piOffsetA, padB, piLength);
+			}
+
+			double dSum = 0;
+
+			for(int i = 0; i < piLength; i++)
+			{
+				dSum += Math.pow(Math.abs(padA[piOffsetA + i] - padB[i]), pdR);
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Computes the Minkowski sum from a vector stored within a larger array,
+		 * stopping early once the partial sum is greater than the bound.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdR the Minkowski factor
+		 * @param pdBound largest sum of interest
+		 * @return the sum if it is not greater than the bound; otherwise a partial sum greater than the bound
+		 * @see #squaredEuclidean(double[], int, double[], int, double)
+		 */
+		public static final double minkowskiSum(final double[] padA, final int piOffsetA, final double[] padB, final int piLength, final double pdR, final double pdBound)
+		{
+			if(pdR == 1)
+			{
+				return cityBlock(padA, piOffsetA, padB, piLength, pdBound);
+			}
+
+			if(pdR == 2)
+			{
+				return squaredEuclidean(padA, piOffsetA, padB, piLength, pdBound);
+			}
+
+			double dSum = 0;
+
+			for(int iBlock = 0; iBlock < piLength; iBlock += BOUND_CHECK_INTERVAL)
+			{
+				int iEnd = Math.min(iBlock + BOUND_CHECK_INTERVAL, piLength);
+
+				for(int i = iBlock; i < iEnd; i++)
+				{
+					dSum += Math.pow(Math.abs(padA[piOffsetA + i] - padB[i]), pdR);
+				}
+
+				if(dSum > pdBound)
+				{
+					return dSum;
+				}
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Computes <code>sum(a[i] * b[i])</code>, the dot product, of a
+		 * vector stored within a larger array and another vector.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the sum
+		 */
+		public static final double dotProduct(final double[] padA, final int piOffsetA, final double[] padB, final int piLength)
+		{
+			double dSum = 0;
+
+			for(int i = 0; i < piLength; i++)
+			{
+				dSum += padA[piOffsetA + i] * padB[i];
+			}
+
+			return dSum;
+		}
+
+		/**
+		 * Counts elements that are not exactly equal.
+		 * @param padA first vector
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the count
+		 */
+		public static final int countUnequal(final double[] padA, final double[] padB, final int piLength)
+		{
+			return countUnequal(padA, 0, padB, piLength);
+		}
+
+		/**
+		 * Counts unequal elements against a vector stored within a larger array.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @return the count
+		 */
+		public static final int countUnequal(final double[] padA, final int piOffsetA, final double[] padB, final int piLength)
+		{
+			int iCount = 0;
+
+			for(int i = 0; i < piLength; i++)
+			{
+				if(padA[piOffsetA + i] != padB[i])
+				{
+					iCount++;
+				}
+			}
+
+			return iCount;
+		}
+
+		/**
+		 * Counts elements that differ by more than the allowed error.
+		 * @param padA first vector
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdAllowedError largest difference still considered equal
+		 * @return the count
+		 */
+		public static final int countDifferent(final double[] padA, final double[] padB, final int piLength, final double pdAllowedError)
+		{
+			return countDifferent(padA, 0, padB, piLength, pdAllowedError);
+		}
+
+		/**
+		 * Counts elements that differ by more than the allowed error
+		 * against a vector stored within a larger array.
+		 * @param padA array holding the first vector
+		 * @param piOffsetA index of the first vector's first element in <code>padA</code>
+		 * @param padB second vector, at least <code>piLength</code> long
+		 * @param piLength number of elements to use
+		 * @param pdAllowedError largest difference still considered equal
+		 * @return the count
+		 */
+		public static final int countDifferent(final double[] padA, final int piOffsetA, final double[] padB, final int piLength, final double pdAllowedError)
+		{
+			int iCount = 0;
+
+			for(int i = 0; i < piLength; i++)
+			{
+				if(Math.abs(padA[piOffsetA + i] - padB[i]) > pdAllowedError)
+				{
+					iCount++;
+				}
+			}
+
+			return iCount;
+		}
+
+		/**
+		 * Counts the differing bits of two bit-packed codes.
+		 * @param palA first code
+		 * @param palB second code, at least <code>piWords</code> long
+		 * @param piWords number of words to use
+		 * @return the count
+		 */
+		public static final int countDifferentBits(final long[] palA, final long[] palB, final int piWords)
+		{
+			return countDifferentBits(palA, 0, palB, piWords);
+		}
+
+		/**
+		 * Counts the differing bits against a bit-packed code
+		 * stored within a larger array, a popcount of their XOR.
+		 * @param palA array holding the first code
+		 * @param piOffsetA index of the first code's first word in <code>palA</code>
+		 * @param palB second code, at least <code>piWords</code> long
+		 * @param piWords number of words to use
+		 * @return the count
+		 */
+		public static final int countDifferentBits(final long[] palA, final int piOffsetA, final long[] palB, final int piWords)
+		{
+			int iCount = 0;
+
+			for(int i = 0; i < piWords; i++)
+			{
+				iCount += Long.bitCount(palA[piOffsetA + i] ^ palB[i]);
+			}
+
+			return iCount;
+		}
+	} // Distances
+
 	/**
 	 * Returns source code revision information.
 	 * @return revision string
@@ -0,0 +1,286 @@
+package marf.math;
+
+import java.io.Serializable;
+
+
+/**
+ * <p>Cholesky decomposition of a symmetric positive-definite matrix,
+ * <code>A = L * L'</code>, with <code>L</code> lower-triangular.</p>
+ *
+ * <p>This is what covariance matrices need: it costs about half of an
+ * LU decomposition, needs no pivoting, and gives Mahalanobis-type
+ * quadratic forms <code>x' * A^-1 * x</code> as the squared norm of
+ * a single triangular solve <code>L * y = x</code>.</p>
+ *
+ * <p>Only the lower triangle of the matrix is read; the upper
+ * one is assumed to mirror it.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see LUDecomposition
+ */
+public class CholeskyDecomposition
+implements Serializable
+{
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = -3340625148916371874L;
+
+	/**
+	 * Dimension of the decomposed matrix.
+	 */
+	private final int iN;
+
+	/**
+	 * The <code>L</code> factor, row-major; zeroes above the diagonal.
+	 */
+	private final double[] adL;
+
+	/**
+	 * Factors the given matrix. The matrix itself is not modified.
+	 * @param poMatrix symmetric positive-definite matrix to decompose
+	 * @throws MathException if the matrix is not square or not positive-definite
+	 */
+	public CholeskyDecomposition(final Matrix poMatrix)
+	throws MathException
+	{
+		if(poMatrix.getRows() != poMatrix.getCols())
+		{
+			throw new MathException
+			(
+				"Matrix (" + poMatrix.getRows() + "," + poMatrix.getCols() + ") is not square."
+			);
+		}
+
+		final int n = poMatrix.getRows();
+		final double[] adA = poMatrix.getMatrixArray();
+
+		this.iN = n;
+		this.adL = new double[n * n];
+
+		for(int i = 0; i < n; i++)
+		{
+			int iRow = i * n;
+
+			for(int j = 0; j <= i; j++)
+			{
+				int iColRow = j * n;
+				double dSum = adA[iRow + j];
+
+				for(int k = 0; k < j; k++)
+				{
+					dSum -= this.adL[iRow + k] * this.adL[iColRow + k];
+				}
+
+				if(i == j)
+				{
+					if(dSum <= 0.0 || Double.isNaN(dSum))
+					{
+						throw new MathException
+						(
+							"Matrix is not positive-definite (pivot " + i + " is " + dSum + ")."
+						);
+					}
+
+					this.adL[iRow + i] = Math.sqrt(dSum);
+				}
+				else
+				{
+					this.adL[iRow + j] = dSum / this.adL[iColRow + j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the determinant of the decomposed matrix,
+	 * the squared product of the diagonal of <code>L</code>.
+	 * @return the determinant
+	 */
+	public double getDeterminant()
+	{
+		double dDet = 1.0;
+
+		for(int i = 0; i < this.iN; i++)
+		{
+			double dDiagonal = this.adL[i * this.iN + i];
+			dDet *= dDiagonal * dDiagonal;
+		}
+
+		return dDet;
+	}
+
+	/**
+	 * Computes the natural logarithm of the determinant, which
+	 * unlike the determinant itself does not overflow or underflow
+	 * for large dimensions.
+	 * @return <code>ln(det(A))</code>
+	 */
+	public double getLogDeterminant()
+	{
+		double dLogDet = 0.0;
+
+		for(int i = 0; i < this.iN; i++)
+		{
+			dLogDet += Math.log(this.adL[i * this.iN + i]);
+		}
+
+		return 2.0 * dLogDet;
+	}
+
+	/**
+	 * Solves <code>L * y = b</code> by forward substitution.
+	 * @param padB right-hand side, <code>n</code> long
+	 * @param padY solution, <code>n</code> long; may be the same array as <code>padB</code>
+	 * @return <code>padY</code>
+	 */
+	public double[] solveLower(final double[] padB, double[] padY)
+	{
+		for(int i = 0; i < this.iN; i++)
+		{
+			int iRow = i * this.iN;
+			double dSum = padB[i];
+
+			for(int k = 0; k < i; k++)
+			{
+				dSum -= this.adL[iRow + k] * padY[k];
+			}
+
+			padY[i] = dSum / this.adL[iRow + i];
+		}
+
+		return padY;
+	}
+
+	/**
+	 * Solves <code>L' * x = y</code> by back substitution.
+	 * @param padY right-hand side, <code>n</code> long
+	 * @param padX solution, <code>n</code> long; may be the same array as <code>padY</code>
+	 * @return <code>padX</code>
+	 */
+	public double[] solveUpper(final double[] padY, double[] padX)
+	{
+		for(int i = this.iN - 1; i >= 0; i--)
+		{
+			double dSum = padY[i];
+
+			for(int k = i + 1; k < this.iN; k++)
+			{
+				dSum -= this.adL[k * this.iN + i] * padX[k];
+			}
+
+			padX[i] = dSum / this.adL[i * this.iN + i];
+		}
+
+		return padX;
+	}
+
+	/**
+	 * Solves <code>A * x = b</code>.
+	 * @param padB right-hand side, <code>n</code> long
+	 * @param padX solution, <code>n</code> long; may be the same array as <code>padB</code>
+	 * @return <code>padX</code>
+	 */
+	public double[] solve(final double[] padB, double[] padX)
+	{
+		return solveUpper(solveLower(padB, padX), padX);
+	}
+
+	/**
+	 * Solves <code>A * x = b</code> into a new array.
+	 * @param padB right-hand side, <code>n</code> long
+	 * @return solution
+	 */
+	public double[] solve(final double[] padB)
+	{
+		return solve(padB, new double[this.iN]);
+	}
+
+	/**
+	 * Computes the quadratic form <code>x' * A^-1 * x</code>, e.g.
+	 * the squared Mahalanobis distance when <code>A</code> is a covariance
+	 * matrix and <code>x</code> a difference of two vectors.
+	 * @param padX the vector <code>x</code>, <code>n</code> long
+	 * @param padScratch scratch space, <code>n</code> long; may be <code>padX</code> if it can be overwritten
+	 * @return the value of the form
+	 */
+	public double getInverseQuadraticForm(final double[] padX, double[] padScratch)
+	{
+		solveLower(padX, padScratch);
+
+		double dSum = 0.0;
+
+		for(int i = 0; i < this.iN; i++)
+		{
+			dSum += padScratch[i] * padScratch[i];
+		}
+
+		return dSum;
+	}
+
+	/**
+	 * Retrieves a copy of the <code>L</code> factor.
+	 * @return new lower-triangular matrix
+	 */
+	public Matrix getL()
+	{
+		Matrix oL = new Matrix(this.iN, this.iN);
+		System.arraycopy(this.adL, 0, oL.getMatrixArray(), 0, this.adL.length);
+		return oL;
+	}
+
+	/**
+	 * Computes the inverse of the decomposed matrix.
+	 * @return a new inverse matrix
+	 */
+	public Matrix getInverse()
+	{
+		final int n = this.iN;
+
+		Matrix oInverse = new Matrix(n, n);
+		double[] adInverse = oInverse.getMatrixArray();
+		double[] adColumn = new double[n];
+		double[] adSolution = new double[n];
+
+		for(int j = 0; j < n; j++)
+		{
+			adColumn[j] = 1.0;
+			solve(adColumn, adSolution);
+			adColumn[j] = 0.0;
+
+			for(int i = 0; i < n; i++)
+			{
+				adInverse[i * n + j] = adSolution[i];
+			}
+		}
+
+		return oInverse;
+	}
+
+	/**
+	 * Retrieves the dimension of the decomposed matrix.
+	 * @return <code>n</code>
+	 */
+	public int getDimension()
+	{
+		return this.iN;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -183,31 +183,104 @@ extends Matrix
 	{
 		for(int i = 0; i < this.adMatrix.length; i++)
 		{
-			ComplexNumber oNumber = getComplexNumber(i);
-			oNumber.add(poNum);
-			setComplexNumber(i, oNumber);
+			this.adMatrix[i] += poNum.dReal;
+			this.adImaginaryMatrix[i] += poNum.dImaginary;
 		}
-		
+
+		return this;
+	}
+
+	/**
+	 * Overrides the parent to add the real and imaginary parts element by
+	 * element; a real operand has a zero imaginary part.
+	 * @see marf.math.Matrix#applyAdd(marf.math.Matrix, marf.math.Matrix)
+	 */
+	protected Matrix applyAdd(final Matrix poLHSMatrix, final Matrix poRHSMatrix)
+	{
+		double[] adLHSImaginary = getImaginaryMatrixArray(poLHSMatrix);
+		double[] adRHSImaginary = getImaginaryMatrixArray(poRHSMatrix);
+
+		for(int i = 0; i < this.adMatrix.length; i++)
+		{
+			this.adMatrix[i] = poLHSMatrix.adMatrix[i] + poRHSMatrix.adMatrix[i];
+			this.adImaginaryMatrix[i] =
+				(adLHSImaginary == null ? 0.0 : adLHSImaginary[i]) +
+				(adRHSImaginary == null ? 0.0 : adRHSImaginary[i]);
+		}
+
 		return this;
 	}
 
 	/**
 	 * Overrides the parent to apply complex number addition.
+	 * @deprecated <code>add()</code> applies <code>applyAdd(Matrix, Matrix)</code>
+	 * to all the elements at once; override that one.
 	 * @see marf.math.Matrix#applyAdd(marf.math.Matrix, marf.math.Matrix, int, int)
 	 */
+	@Deprecated
 	protected Matrix applyAdd(final Matrix poLHSMatrix, final Matrix poRHSMatrix, int i, int j)
 	{
 		// Convert if necessary real matrices into complex prior
 		// application of addition
 		ComplexMatrix oLHSMatrix = getComplexMatrix(poLHSMatrix);
 		ComplexMatrix oRHSMatrix = getComplexMatrix(poRHSMatrix);
-		
-		//poTargetMatrix.setElement(i, j, poLHSMatrix.getElement(i, j) + poRHSMatrix.getElement(i, j));
+
 		setComplexElement(i, j, oLHSMatrix.getComplexElement(i, j).add(oRHSMatrix.getComplexElement(i, j)));
-		
+
 		return this;
 	}
-	
+
+	/**
+	 * Overrides the parent to subtract the real and imaginary parts element by
+	 * element; a real operand has a zero imaginary part.
+	 * @see marf.math.Matrix#applyMinus(marf.math.Matrix, marf.math.Matrix)
+	 */
+	protected Matrix applyMinus(final Matrix poLHSMatrix, final Matrix poRHSMatrix)
+	{
+		double[] adLHSImaginary = getImaginaryMatrixArray(poLHSMatrix);
+		double[] adRHSImaginary = getImaginaryMatrixArray(poRHSMatrix);
+
+		for(int i = 0; i < this.adMatrix.length; i++)
+		{
+			this.adMatrix[i] = poLHSMatrix.adMatrix[i] - poRHSMatrix.adMatrix[i];
+			this.adImaginaryMatrix[i] =
+				(adLHSImaginary == null ? 0.0 : adLHSImaginary[i]) -
+				(adRHSImaginary == null ? 0.0 : adRHSImaginary[i]);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Overrides the parent to apply complex number subtraction.
+	 * @deprecated <code>minus()</code> applies <code>applyMinus(Matrix, Matrix)</code>
+	 * to all the elements at once; override that one.
+	 * @see marf.math.Matrix#applyMinus(marf.math.Matrix, marf.math.Matrix, int, int)
+	 */
+	@Deprecated
+	protected Matrix applyMinus(final Matrix poLHSMatrix, final Matrix poRHSMatrix, int i, int j)
+	{
+		// Convert if necessary real matrices into complex prior
+		// application of subtraction
+		ComplexMatrix oLHSMatrix = getComplexMatrix(poLHSMatrix);
+		ComplexMatrix oRHSMatrix = getComplexMatrix(poRHSMatrix);
+
+		setComplexElement(i, j, oLHSMatrix.getComplexElement(i, j).subtract(oRHSMatrix.getComplexElement(i, j)));
+
+		return this;
+	}
+
+	/**
+	 * Retrieves the imaginary data of a matrix, real or complex.
+	 * @param poMatrix real or complex matrix
+	 * @return the imaginary array, or <code>null</code> for a real matrix
+	 * @since 0.3.0.6
+	 */
+	protected static double[] getImaginaryMatrixArray(final Matrix poMatrix)
+	{
+		return poMatrix instanceof ComplexMatrix ? ((ComplexMatrix)poMatrix).adImaginaryMatrix : null;
+	}
+
 	/**
 	 * A convenience wrapper of <code>Matrix.add()</code>.
 	 * @param poLHSMatrix
@@ -360,16 +433,7 @@ extends Matrix
 	public static ComplexMatrix add(final ComplexMatrix poLHSMatrix, final ComplexNumber pdNum)
 	{
 		ComplexMatrix oMatrix = new ComplexMatrix(poLHSMatrix);
-
-		for(int i = 0; i < poLHSMatrix.adMatrix.length; i++)
-		{
-			//oMatrix.adMatrix[i] += pdNum;
-			ComplexNumber oNumber = new ComplexNumber(oMatrix.adMatrix[i], oMatrix.adImaginaryMatrix[i]);
-			oNumber.add(pdNum);
-			oMatrix.setComplexNumber(i, pdNum);
-		}
-		
-		return oMatrix; 
+		return oMatrix.add(pdNum);
 	}
 
 	/**
@@ -413,23 +477,6 @@ extends Matrix
 		return this;
 	}
 
-	/**
-	 * Overrides the parent to apply complex number addition.
-	 * @see marf.math.Matrix#applyAdd(marf.math.Matrix, marf.math.Matrix, int, int)
-	 */
-	protected Matrix applyMinus(final Matrix poLHSMatrix, final Matrix poRHSMatrix, int i, int j)
-	{
-		// Convert if necessary real matrices into complex prior
-		// application of addition
-		ComplexMatrix oLHSMatrix = getComplexMatrix(poLHSMatrix);
-		ComplexMatrix oRHSMatrix = getComplexMatrix(poRHSMatrix);
-		
-		//poTargetMatrix.setElement(i, j, poLHSMatrix.getElement(i, j) + poRHSMatrix.getElement(i, j));
-		setComplexElement(i, j, oLHSMatrix.getComplexElement(i, j).subtract(oRHSMatrix.getComplexElement(i, j)));
-		
-		return this;
-	}
-
 	/* (non-Javadoc)
 	 * @see marf.math.Matrix#applyMultiply(marf.math.Matrix, marf.math.Matrix, int, int)
 	 */
@@ -456,31 +503,54 @@ extends Matrix
 	 */
 	protected Matrix applyMultiply(final Matrix poLHSMatrix, final Matrix poRHSMatrix)
 	{
-		//System.out.println("<< Complex ("+poLHSMatrix.iRows+"x"+poLHSMatrix.iCols+") * ("+poRHSMatrix.iRows+"x"+poRHSMatrix.iCols+") apply *      >>: " + new Date());
 		ComplexMatrix oLHSMatrix = getComplexMatrix(poLHSMatrix);
 		ComplexMatrix oRHSMatrix = getComplexMatrix(poRHSMatrix);
 
-		for(int i = 0; i < iRows; i++)
-		{
-			for(int j = 0; j < iCols; j++)
-			{
-				//double dRowColSum = 0;
-				ComplexNumber oRowColSum = new ComplexNumber();
+		multiply
+		(
+			oLHSMatrix.adMatrix, oLHSMatrix.adImaginaryMatrix,
+			oRHSMatrix.adMatrix, oRHSMatrix.adImaginaryMatrix,
+			this.adMatrix, this.adImaginaryMatrix,
+			this.iRows, oLHSMatrix.iCols, this.iCols
+		);
 
-				for(int k = 0; k < oLHSMatrix.iCols; k++)
-				{
-//					oRowColSum.add(oLHSMatrix.getComplexElement(i, k).multiply(oRHSMatrix.getComplexElement(k, j)));
-					oRowColSum.add(ComplexNumber.multiply(oLHSMatrix.getComplexElement(i, k), oRHSMatrix.getComplexElement(k, j)));
-				}
+		return this;
+	}
 
-				setComplexElement(i, j, oRowColSum);
-			}
-		}
+	/**
+	 * M = M1 * M2, reusing the storage of M.
+	 * @param poResultMatrix M
+	 * @param poLHSMatrix M1
+	 * @param poRHSMatrix M2
+	 * @return M
+	 * @see Matrix#multiplyInto(Matrix, Matrix, Matrix)
+	 * @since 0.3.0.6
+	 */
+	public static ComplexMatrix multiplyInto(ComplexMatrix poResultMatrix, final Matrix poLHSMatrix, final Matrix poRHSMatrix)
+	{
+		return (ComplexMatrix)Matrix.multiplyInto(poResultMatrix, poLHSMatrix, poRHSMatrix);
+	}
 
-//		System.gc();
+	/* (non-Javadoc)
+	 * @see marf.math.Matrix#allocate(int, int)
+	 */
+	protected void allocate(final int piRows, final int piCols)
+	{
+		super.allocate(piRows, piCols);
 
-		//System.out.println("<< Complex ("+poLHSMatrix.iRows+"x"+poLHSMatrix.iCols+") * ("+poRHSMatrix.iRows+"x"+poRHSMatrix.iCols+") apply * done >>: " + new Date());
-		return this;
+		if(this.adImaginaryMatrix == null || this.adImaginaryMatrix.length != piRows * piCols)
+		{
+			this.adImaginaryMatrix = new double[piRows * piCols];
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see marf.math.Matrix#setStorage(marf.math.Matrix)
+	 */
+	protected void setStorage(final Matrix poMatrix)
+	{
+		super.setStorage(poMatrix);
+		System.arraycopy(((ComplexMatrix)poMatrix).adImaginaryMatrix, 0, this.adImaginaryMatrix, 0, this.adImaginaryMatrix.length);
 	}
 
 	/**
@@ -515,11 +585,10 @@ extends Matrix
 	{
 		for(int i = 0; i < this.adMatrix.length; i++)
 		{
-			ComplexNumber oNumber = getComplexNumber(i);
-			oNumber.subtract(poNum);
-			setComplexNumber(i, oNumber);
+			this.adMatrix[i] -= poNum.dReal;
+			this.adImaginaryMatrix[i] -= poNum.dImaginary;
 		}
-		
+
 		return this;
 	}
 
@@ -530,13 +599,18 @@ extends Matrix
 	 */
 	public ComplexMatrix multiply(final ComplexNumber poNum)
 	{
+		final double dReal = poNum.dReal;
+		final double dImaginary = poNum.dImaginary;
+
 		for(int i = 0; i < this.adMatrix.length; i++)
 		{
-			ComplexNumber oNumber = getComplexNumber(i);
-			oNumber.multiply(poNum);
-			setComplexNumber(i, oNumber);
+			double dElementReal = this.adMatrix[i];
+			double dElementImaginary = this.adImaginaryMatrix[i];
+
+			this.adMatrix[i] = dElementReal * dReal - dElementImaginary * dImaginary;
+			this.adImaginaryMatrix[i] = dElementImaginary * dReal + dElementReal * dImaginary;
 		}
-		
+
 		return this;
 	}
 
@@ -547,13 +621,19 @@ extends Matrix
 	 */
 	public ComplexMatrix divide(final ComplexNumber poNum)
 	{
+		final double dReal = poNum.dReal;
+		final double dImaginary = poNum.dImaginary;
+		final double dNorm = dReal * dReal + dImaginary * dImaginary;
+
 		for(int i = 0; i < this.adMatrix.length; i++)
 		{
-			ComplexNumber oNumber = getComplexNumber(i);
-			oNumber.divide(poNum);
-			setComplexNumber(i, oNumber);
+			double dElementReal = this.adMatrix[i];
+			double dElementImaginary = this.adImaginaryMatrix[i];
+
+			this.adMatrix[i] = (dElementReal * dReal + dElementImaginary * dImaginary) / dNorm;
+			this.adImaginaryMatrix[i] = (dElementImaginary * dReal - dElementReal * dImaginary) / dNorm;
 		}
-		
+
 		return this;
 	}
 
@@ -864,8 +944,7 @@ extends Matrix
 	 */
 	public boolean inverse()
 	{
-		// TODO Auto-generated method stub
-		return super.inverse();
+		return inverseByRowReduction();
 	}
 
 	/**
@@ -884,9 +963,22 @@ extends Matrix
 	 */
 	public void loadColumn(int piColNum, ComplexVector poVector)
 	{
-		for(int i = 0; i < this.iRows; i++)
+		loadColumn(piColNum, poVector.adMatrix, poVector.adImaginaryMatrix);
+	}
+
+	/**
+	 * Loads a column from separate real and imaginary arrays.
+	 * @param piColNum index of the column to load
+	 * @param padReal real parts, at least as long as the column
+	 * @param padImaginary imaginary parts, at least as long as the column
+	 * @since 0.3.0.6
+	 */
+	public void loadColumn(final int piColNum, final double[] padReal, final double[] padImaginary)
+	{
+		for(int i = 0, iOffset = piColNum; i < this.iRows; i++, iOffset += this.iCols)
 		{
-			setComplexElement(i, piColNum, poVector.getComplexElement(i));
+			this.adMatrix[iOffset] = padReal[i];
+			this.adImaginaryMatrix[iOffset] = padImaginary[i];
 		}
 	}
 
@@ -897,13 +989,25 @@ extends Matrix
 	public ComplexVector getComplexColumn(final int piColNum)
 	{
 		ComplexVector oVector = new ComplexVector(this.iRows);
-		
-		for(int i = 0; i < this.iRows; i++)
+		getComplexColumn(piColNum, oVector.adMatrix, oVector.adImaginaryMatrix);
+		return oVector;
+	}
+
+	/**
+	 * Copies a column into the given real and imaginary arrays,
+	 * so a caller going over all the columns can reuse them.
+	 * @param piColNum index of the column to copy
+	 * @param padReal destination of the real parts, at least as long as the column
+	 * @param padImaginary destination of the imaginary parts, at least as long as the column
+	 * @since 0.3.0.6
+	 */
+	public void getComplexColumn(final int piColNum, double[] padReal, double[] padImaginary)
+	{
+		for(int i = 0, iOffset = piColNum; i < this.iRows; i++, iOffset += this.iCols)
 		{
-			oVector.setComplexNumber(i, getComplexElement(i, piColNum));
+			padReal[i] = this.adMatrix[iOffset];
+			padImaginary[i] = this.adImaginaryMatrix[iOffset];
 		}
-		
-		return oVector;
 	}
 
 	/**
@@ -925,11 +1029,37 @@ extends Matrix
 	public ComplexVector getComplexRow(final int piRowNum)
 	{
 		ComplexVector oVector = new ComplexVector(this.iCols);
-		Arrays.copy(oVector.adMatrix, 0, this.adMatrix, piRowNum * this.iCols, this.iCols); 
-		Arrays.copy(oVector.adImaginaryMatrix, 0, this.adImaginaryMatrix, piRowNum * this.iCols, this.iCols); 
+		getComplexRow(piRowNum, oVector.adMatrix, oVector.adImaginaryMatrix);
 		return oVector;
 	}
 
+	/**
+	 * Copies a row into the given real and imaginary arrays,
+	 * so a caller going over all the rows can reuse them.
+	 * @param piRowNum index of the row to copy
+	 * @param padReal destination of the real parts, at least as long as the row
+	 * @param padImaginary destination of the imaginary parts, at least as long as the row
+	 * @since 0.3.0.6
+	 */
+	public void getComplexRow(final int piRowNum, double[] padReal, double[] padImaginary)
+	{
+		System.arraycopy(this.adMatrix, piRowNum * this.iCols, padReal, 0, this.iCols);
+		System.arraycopy(this.adImaginaryMatrix, piRowNum * this.iCols, padImaginary, 0, this.iCols);
+	}
+
+	/**
+	 * Loads a row from separate real and imaginary arrays.
+	 * @param piRowNum index of the row to load
+	 * @param padReal real parts, at least as long as the row
+	 * @param padImaginary imaginary parts, at least as long as the row
+	 * @since 0.3.0.6
+	 */
+	public void loadRow(final int piRowNum, final double[] padReal, final double[] padImaginary)
+	{
+		System.arraycopy(padReal, 0, this.adMatrix, piRowNum * this.iCols, this.iCols);
+		System.arraycopy(padImaginary, 0, this.adImaginaryMatrix, piRowNum * this.iCols, this.iCols);
+	}
+
 	/**
 	 * @see marf.math.Matrix#makeIdentity()
 	 */
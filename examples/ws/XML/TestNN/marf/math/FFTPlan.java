@@ -0,0 +1,776 @@
+package marf.math;
+
+import java.util.Hashtable;
+
+
+/**
+ * <p>Precomputed FFT "plan" for a given transform length and direction.</p>
+ *
+ * <p>A plan holds the permutation table and the exact twiddle factor
+ * tables for its length, so that none of that setup is redone on every
+ * transform as <code>Algorithms.FFT.doFFT()</code> used to. Plans are
+ * immutable once built and are shared process-wide through
+ * <code>getPlan()</code>, which makes them safe to use from multiple
+ * threads at once as long as each thread supplies its own output buffers.</p>
+ *
+ * <p>Any length of at least 1 is supported:</p>
+ * <ul>
+ *   <li>powers of 2 use the radix-2 Danielson-Lanczos butterflies;</li>
+ *   <li>lengths whose only prime factors are 2, 3 and 5 (e.g. 48000) use
+ *       a mixed-radix (4, 2, 3, 5) decimation-in-time engine;</li>
+ *   <li>any other length (e.g. a prime) falls back to Bluestein's algorithm,
+ *       which re-expresses the transform as a convolution done with
+ *       power-of-2 transforms of at least twice the length.</li>
+ * </ul>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see Algorithms.FFT
+ */
+public final class FFTPlan
+{
+	/**
+	 * Radix-2 algorithm for power-of-2 lengths.
+	 */
+	private static final int RADIX_2 = 0;
+
+	/**
+	 * Mixed-radix algorithm for 2-3-5-smooth lengths.
+	 */
+	private static final int MIXED_RADIX = 1;
+
+	/**
+	 * Bluestein's algorithm for all the other lengths.
+	 */
+	private static final int BLUESTEIN = 2;
+
+	/**
+	 * Plans built so far keyed by <code>length * direction</code>;
+	 * forward plans thus have positive keys and inverse plans negative.
+	 */
+	private static final Hashtable<Integer, FFTPlan> soPlans = new Hashtable<Integer, FFTPlan>();
+
+	/**
+	 * Transform length.
+	 */
+	private final int iLength;
+
+	/**
+	 * Transform direction; 1 for forward and -1 for inverse.
+	 */
+	private final int iDirection;
+
+	/**
+	 * One of <code>RADIX_2</code>, <code>MIXED_RADIX</code>, or <code>BLUESTEIN</code>.
+	 */
+	private final int iAlgorithm;
+
+	/**
+	 * Input index <code>i</code> goes to position <code>aiPermutation[i]</code>
+	 * before the butterflies; the bit (or digit) reversal.
+	 */
+	private int[] aiPermutation = null;
+
+	/**
+	 * Smallest index of every cycle of a non-involutory permutation
+	 * to do it in place without any scratch space.
+	 */
+	private int[] aiCycleStarts = null;
+
+	/**
+	 * Radices of the butterfly stages, in the order they are applied.
+	 */
+	private int[] aiFactors = null;
+
+	/**
+	 * <code>cos(2 * pi * k / N)</code>; <code>k</code> in <code>[0, N/2)</code>
+	 * for radix-2 and in <code>[0, N)</code> for mixed-radix plans.
+	 */
+	private double[] adCos = null;
+
+	/**
+	 * <code>direction * sin(2 * pi * k / N)</code>, same range as <code>adCos</code>.
+	 */
+	private double[] adSin = null;
+
+	/**
+	 * Bluestein's chirp <code>exp(i * direction * pi * k^2 / N)</code>, real part.
+	 */
+	private double[] adChirpReal = null;
+
+	/**
+	 * Bluestein's chirp, imaginary part.
+	 */
+	private double[] adChirpImag = null;
+
+	/**
+	 * Forward transform of the conjugate chirp convolution kernel, real part.
+	 */
+	private double[] adKernelReal = null;
+
+	/**
+	 * Forward transform of the conjugate chirp convolution kernel, imaginary part.
+	 */
+	private double[] adKernelImag = null;
+
+	/**
+	 * Power-of-2 forward plan for Bluestein's convolution.
+	 */
+	private FFTPlan oConvolutionForward = null;
+
+	/**
+	 * Power-of-2 inverse plan for Bluestein's convolution.
+	 */
+	private FFTPlan oConvolutionInverse = null;
+
+	/**
+	 * Builds the tables for the given length and direction.
+	 * @param piLength transform length
+	 * @param piDirection 1 for forward FFT, -1 for inverse FFT
+	 * @throws MathException if Bluestein's convolution plans cannot be built
+	 */
+	private FFTPlan(final int piLength, final int piDirection)
+	throws MathException
+	{
+		this.iLength = piLength;
+		this.iDirection = piDirection;
+
+		if((piLength & (piLength - 1)) == 0)
+		{
+			this.iAlgorithm = RADIX_2;
+			initRadix2();
+		}
+		else if(isSmooth(piLength))
+		{
+			this.iAlgorithm = MIXED_RADIX;
+			initMixedRadix();
+		}
+		else
+		{
+			this.iAlgorithm = BLUESTEIN;
+			initBluestein();
+		}
+	}
+
+	/**
+	 * Tells whether the number has no prime factors other than 2, 3 and 5.
+	 * @param piNumber the number to check, &gt; 0
+	 * @return <code>true</code> if it is 2-3-5-smooth
+	 */
+	private static boolean isSmooth(int piNumber)
+	{
+		final int[] aiPrimes = {2, 3, 5};
+
+		for(int i = 0; i < aiPrimes.length; i++)
+		{
+			while(piNumber % aiPrimes[i] == 0)
+			{
+				piNumber /= aiPrimes[i];
+			}
+		}
+
+		return piNumber == 1;
+	}
+
+	/**
+	 * Bit-reversal table and half-length twiddles.
+	 */
+	private void initRadix2()
+	{
+		int iBits = Integer.numberOfTrailingZeros(this.iLength);
+
+		this.aiPermutation = new int[this.iLength];
+
+		for(int i = 0; i < this.iLength; i++)
+		{
+			this.aiPermutation[i] = iBits == 0 ? 0 : Integer.reverse(i) >>> (32 - iBits);
+		}
+
+		initTwiddles(this.iLength / 2);
+	}
+
+	/**
+	 * Factorization, digit-reversal table with its cycles, and full-length twiddles.
+	 */
+	private void initMixedRadix()
+	{
+		final int n = this.iLength;
+
+		// Radix-4 stages first, then the rest
+		int[] aiFactors = new int[32];
+		int iFactors = 0;
+		int iRemainder = n;
+
+		final int[] aiRadices = {4, 2, 3, 5};
+
+		for(int i = 0; i < aiRadices.length; i++)
+		{
+			while(iRemainder % aiRadices[i] == 0)
+			{
+				aiFactors[iFactors++] = aiRadices[i];
+				iRemainder /= aiRadices[i];
+			}
+		}
+
+		this.aiFactors = new int[iFactors];
+		System.arraycopy(aiFactors, 0, this.aiFactors, 0, iFactors);
+
+		/*
+		 * The last stage combines sub-transforms of the elements with the same
+		 * index modulo its radix, stored one after another; and so on recursively
+		 * for the earlier stages.
+		 */
+		this.aiPermutation = new int[n];
+
+		for(int i = 0; i < n; i++)
+		{
+			int iPosition = 0;
+			int iSize = n;
+			int iIndex = i;
+
+			for(int s = iFactors - 1; s >= 0; s--)
+			{
+				int r = this.aiFactors[s];
+				iSize /= r;
+				iPosition += (iIndex % r) * iSize;
+				iIndex /= r;
+			}
+
+			this.aiPermutation[i] = iPosition;
+		}
+
+		// Record the cycle leaders for the in-place permutation
+		boolean[] abVisited = new boolean[n];
+		int[] aiStarts = new int[n];
+		int iCycles = 0;
+
+		for(int i = 0; i < n; i++)
+		{
+			if(abVisited[i] == false)
+			{
+				if(this.aiPermutation[i] != i)
+				{
+					aiStarts[iCycles++] = i;
+				}
+
+				for(int j = i; abVisited[j] == false; j = this.aiPermutation[j])
+				{
+					abVisited[j] = true;
+				}
+			}
+		}
+
+		this.aiCycleStarts = new int[iCycles];
+		System.arraycopy(aiStarts, 0, this.aiCycleStarts, 0, iCycles);
+
+		initTwiddles(n);
+	}
+
+	/**
+	 * Chirp and transformed convolution kernel.
+	 * @throws MathException if the convolution plans cannot be built
+	 */
+	private void initBluestein()
+	throws MathException
+	{
+		final int n = this.iLength;
+
+		int m = Integer.highestOneBit(2 * n - 1);
+
+		if(m < 2 * n - 1)
+		{
+			m <<= 1;
+		}
+
+		this.oConvolutionForward = getPlan(m, 1);
+		this.oConvolutionInverse = getPlan(m, -1);
+
+		this.adChirpReal = new double[n];
+		this.adChirpImag = new double[n];
+
+		for(int k = 0; k < n; k++)
+		{
+			// k^2 mod 2N keeps the angle small and exact
+			long lSquare = ((long)k * k) % (2L * n);
+			double dTheta = (Math.PI * lSquare) / n;
+
+			this.adChirpReal[k] = Math.cos(dTheta);
+			this.adChirpImag[k] = this.iDirection * Math.sin(dTheta);
+		}
+
+		// Conjugate chirp at indices -(N-1)..(N-1), wrapped around
+		this.adKernelReal = new double[m];
+		this.adKernelImag = new double[m];
+
+		this.adKernelReal[0] = this.adChirpReal[0];
+		this.adKernelImag[0] = -this.adChirpImag[0];
+
+		for(int k = 1; k < n; k++)
+		{
+			this.adKernelReal[k] = this.adKernelReal[m - k] = this.adChirpReal[k];
+			this.adKernelImag[k] = this.adKernelImag[m - k] = -this.adChirpImag[k];
+		}
+
+		this.oConvolutionForward.transform(this.adKernelReal, this.adKernelImag, this.adKernelReal, this.adKernelImag);
+	}
+
+	/**
+	 * Exact twiddle tables.
+	 * @param piCount number of table entries
+	 */
+	private void initTwiddles(final int piCount)
+	{
+		this.adCos = new double[piCount];
+		this.adSin = new double[piCount];
+
+		for(int k = 0; k < piCount; k++)
+		{
+			double dTheta = (2 * Math.PI * k) / this.iLength;
+
+			this.adCos[k] = Math.cos(dTheta);
+			this.adSin[k] = this.iDirection * Math.sin(dTheta);
+		}
+	}
+
+	/**
+	 * Retrieves a shared plan for the given length and direction,
+	 * building and caching it on first use.
+	 *
+	 * @param piLength transform length; must be at least 1
+	 * @param piDirection 1 for forward FFT, -1 for inverse FFT
+	 * @return the plan
+	 * @throws MathException if the length or direction are wrong
+	 */
+	public static FFTPlan getPlan(final int piLength, final int piDirection)
+	throws MathException
+	{
+		if(piLength < 1)
+		{
+			throw new MathException("Length of input (" + piLength + ") is less than 1.");
+		}
+
+		if((piDirection != 1) && (piDirection != -1))
+		{
+			throw new MathException("Bad direction specified. Should be 1 or -1.");
+		}
+
+		Integer oKey = Integer.valueOf(piLength * piDirection);
+		FFTPlan oPlan = soPlans.get(oKey);
+
+		if(oPlan == null)
+		{
+			// A concurrent duplicate build is harmless; both plans are identical.
+			oPlan = new FFTPlan(piLength, piDirection);
+			soPlans.put(oKey, oPlan);
+		}
+
+		return oPlan;
+	}
+
+	/**
+	 * Drops all the cached plans, e.g. to release memory after
+	 * a run with unusually large transforms.
+	 */
+	public static void clearCache()
+	{
+		soPlans.clear();
+	}
+
+	/**
+	 * Performs the transform. The input arrays are not modified unless
+	 * they are the same arrays as the output ones, in which case the
+	 * transform is done in place. Bluestein plans allocate their
+	 * convolution buffers per call.
+	 *
+	 * @param padInputReal real part of the input, at least the plan's length long
+	 * @param padInputImag imaginary part of the input, at least the plan's length long
+	 * @param padOutputReal real part of the output, at least the plan's length long
+	 * @param padOutputImag imaginary part of the output, at least the plan's length long
+	 */
+	public void transform
+	(
+		final double[] padInputReal,
+		final double[] padInputImag,
+		double[] padOutputReal,
+		double[] padOutputImag
+	)
+	{
+		switch(this.iAlgorithm)
+		{
+			case RADIX_2:
+			{
+				permute(padInputReal, padInputImag, padOutputReal, padOutputImag);
+				butterflies(padOutputReal, padOutputImag);
+				break;
+			}
+
+			case MIXED_RADIX:
+			{
+				permute(padInputReal, padInputImag, padOutputReal, padOutputImag);
+				mixedRadixButterflies(padOutputReal, padOutputImag);
+				break;
+			}
+
+			default:
+			{
+				bluestein(padInputReal, padInputImag, padOutputReal, padOutputImag);
+			}
+		}
+	}
+
+	/**
+	 * Bit or digit reversal, in place or out of place.
+	 * @param padInputReal real part of the input
+	 * @param padInputImag imaginary part of the input
+	 * @param padOutputReal real part of the output
+	 * @param padOutputImag imaginary part of the output
+	 */
+	private void permute
+	(
+		final double[] padInputReal,
+		final double[] padInputImag,
+		double[] padOutputReal,
+		double[] padOutputImag
+	)
+	{
+		final int n = this.iLength;
+		final int[] aiPerm = this.aiPermutation;
+
+		if(padInputReal != padOutputReal || padInputImag != padOutputImag)
+		{
+			for(int i = 0; i < n; i++)
+			{
+				padOutputReal[aiPerm[i]] = padInputReal[i];
+				padOutputImag[aiPerm[i]] = padInputImag[i];
+			}
+		}
+		else if(this.aiCycleStarts == null)
+		{
+			// Bit reversal is its own inverse; swap pairs
+			for(int i = 0; i < n; i++)
+			{
+				int t = aiPerm[i];
+
+				if(t > i)
+				{
+					double dTmp = padOutputReal[i];
+					padOutputReal[i] = padOutputReal[t];
+					padOutputReal[t] = dTmp;
+
+					dTmp = padOutputImag[i];
+					padOutputImag[i] = padOutputImag[t];
+					padOutputImag[t] = dTmp;
+				}
+			}
+		}
+		else
+		{
+			// Rotate every cycle of the digit reversal
+			for(int c = 0; c < this.aiCycleStarts.length; c++)
+			{
+				int iStart = this.aiCycleStarts[c];
+				double dCarryReal = padOutputReal[iStart];
+				double dCarryImag = padOutputImag[iStart];
+
+				int j = aiPerm[iStart];
+
+				while(true)
+				{
+					double dTmp = padOutputReal[j];
+					padOutputReal[j] = dCarryReal;
+					dCarryReal = dTmp;
+
+					dTmp = padOutputImag[j];
+					padOutputImag[j] = dCarryImag;
+					dCarryImag = dTmp;
+
+					if(j == iStart)
+					{
+						break;
+					}
+
+					j = aiPerm[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Danielson-Lanczos butterflies over already permuted data, in place.
+	 * @param padReal real part
+	 * @param padImag imaginary part
+	 */
+	private void butterflies(double[] padReal, double[] padImag)
+	{
+		final int n = this.iLength;
+		final double[] adC = this.adCos;
+		final double[] adS = this.adSin;
+
+		for(int iHalfSpan = 1; iHalfSpan < n; iHalfSpan <<= 1)
+		{
+			int iSpan = iHalfSpan << 1;
+			int iStride = n / iSpan;
+
+			for(int k = 0; k < iHalfSpan; k++)
+			{
+				double wr = adC[k * iStride];
+				double wi = adS[k * iStride];
+
+				for(int i = k; i < n; i += iSpan)
+				{
+					int j = i + iHalfSpan;
+
+					double tempr = wr * padReal[j] - wi * padImag[j];
+					double tempi = wr * padImag[j] + wi * padReal[j];
+
+					padReal[j] = padReal[i] - tempr;
+					padImag[j] = padImag[i] - tempi;
+
+					padReal[i] += tempr;
+					padImag[i] += tempi;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mixed-radix decimation-in-time stages over digit-reversed data, in place.
+	 * Every stage of radix <code>r</code> combines <code>r</code> consecutive
+	 * sub-transforms of length <code>L</code> into one of length <code>r * L</code>.
+	 *
+	 * @param padReal real part
+	 * @param padImag imaginary part
+	 */
+	private void mixedRadixButterflies(double[] padReal, double[] padImag)
+	{
+		final int n = this.iLength;
+		final double[] adC = this.adCos;
+		final double[] adS = this.adSin;
+		final double dDir = this.iDirection;
+
+		// exp(i * dir * 2 * pi / 3) and exp(i * dir * 2 * pi / 5), exp(i * dir * 4 * pi / 5)
+		final double dSin3 = dDir * Math.sqrt(3.0) / 2;
+		final double dCos51 = Math.cos(2 * Math.PI / 5);
+		final double dCos52 = Math.cos(4 * Math.PI / 5);
+		final double dSin51 = dDir * Math.sin(2 * Math.PI / 5);
+		final double dSin52 = dDir * Math.sin(4 * Math.PI / 5);
+
+		double[] adTr = new double[5];
+		double[] adTi = new double[5];
+
+		int iSubLength = 1;
+
+		for(int s = 0; s < this.aiFactors.length; s++)
+		{
+			final int r = this.aiFactors[s];
+			final int iSpan = iSubLength * r;
+			final int iStride = n / iSpan;
+
+			for(int k = 0; k < iSubLength; k++)
+			{
+				for(int iBase = k; iBase < n; iBase += iSpan)
+				{
+					// Twiddle the inputs of this butterfly
+					adTr[0] = padReal[iBase];
+					adTi[0] = padImag[iBase];
+
+					for(int p = 1; p < r; p++)
+					{
+						int iTwiddle = p * k * iStride;
+						int iIndex = iBase + p * iSubLength;
+
+						double wr = adC[iTwiddle];
+						double wi = adS[iTwiddle];
+
+						adTr[p] = wr * padReal[iIndex] - wi * padImag[iIndex];
+						adTi[p] = wr * padImag[iIndex] + wi * padReal[iIndex];
+					}
+
+					int i0 = iBase;
+					int i1 = i0 + iSubLength;
+
+					switch(r)
+					{
+						case 2:
+						{
+							padReal[i0] = adTr[0] + adTr[1];
+							padImag[i0] = adTi[0] + adTi[1];
+							padReal[i1] = adTr[0] - adTr[1];
+							padImag[i1] = adTi[0] - adTi[1];
+							break;
+						}
+
+						case 3:
+						{
+							int i2 = i1 + iSubLength;
+
+							double dSumR = adTr[1] + adTr[2];
+							double dSumI = adTi[1] + adTi[2];
+							double dMidR = adTr[0] - 0.5 * dSumR;
+							double dMidI = adTi[0] - 0.5 * dSumI;
+							double dRotR = -dSin3 * (adTi[1] - adTi[2]);
+							double dRotI =  dSin3 * (adTr[1] - adTr[2]);
+
+							padReal[i0] = adTr[0] + dSumR;
+							padImag[i0] = adTi[0] + dSumI;
+							padReal[i1] = dMidR + dRotR;
+							padImag[i1] = dMidI + dRotI;
+							padReal[i2] = dMidR - dRotR;
+							padImag[i2] = dMidI - dRotI;
+							break;
+						}
+
+						case 4:
+						{
+							int i2 = i1 + iSubLength;
+							int i3 = i2 + iSubLength;
+
+							double dAr = adTr[0] + adTr[2];
+							double dAi = adTi[0] + adTi[2];
+							double dBr = adTr[0] - adTr[2];
+							double dBi = adTi[0] - adTi[2];
+							double dCr = adTr[1] + adTr[3];
+							double dCi = adTi[1] + adTi[3];
+
+							// i * dir * (t1 - t3)
+							double dDr = -dDir * (adTi[1] - adTi[3]);
+							double dDi =  dDir * (adTr[1] - adTr[3]);
+
+							padReal[i0] = dAr + dCr;
+							padImag[i0] = dAi + dCi;
+							padReal[i1] = dBr + dDr;
+							padImag[i1] = dBi + dDi;
+							padReal[i2] = dAr - dCr;
+							padImag[i2] = dAi - dCi;
+							padReal[i3] = dBr - dDr;
+							padImag[i3] = dBi - dDi;
+							break;
+						}
+
+						default:
+						{
+							int i2 = i1 + iSubLength;
+							int i3 = i2 + iSubLength;
+							int i4 = i3 + iSubLength;
+
+							double dS14r = adTr[1] + adTr[4];
+							double dS14i = adTi[1] + adTi[4];
+							double dS23r = adTr[2] + adTr[3];
+							double dS23i = adTi[2] + adTi[3];
+							double dD14r = adTr[1] - adTr[4];
+							double dD14i = adTi[1] - adTi[4];
+							double dD23r = adTr[2] - adTr[3];
+							double dD23i = adTi[2] - adTi[3];
+
+							double dM1r = adTr[0] + dCos51 * dS14r + dCos52 * dS23r;
+							double dM1i = adTi[0] + dCos51 * dS14i + dCos52 * dS23i;
+							double dM2r = adTr[0] + dCos52 * dS14r + dCos51 * dS23r;
+							double dM2i = adTi[0] + dCos52 * dS14i + dCos51 * dS23i;
+
+							// Multiplied by i afterwards
+							double dN1r = dSin51 * dD14r + dSin52 * dD23r;
+							double dN1i = dSin51 * dD14i + dSin52 * dD23i;
+							double dN2r = dSin52 * dD14r - dSin51 * dD23r;
+							double dN2i = dSin52 * dD14i - dSin51 * dD23i;
+
+							padReal[i0] = adTr[0] + dS14r + dS23r;
+							padImag[i0] = adTi[0] + dS14i + dS23i;
+							padReal[i1] = dM1r - dN1i;
+							padImag[i1] = dM1i + dN1r;
+							padReal[i4] = dM1r + dN1i;
+							padImag[i4] = dM1i - dN1r;
+							padReal[i2] = dM2r - dN2i;
+							padImag[i2] = dM2i + dN2r;
+							padReal[i3] = dM2r + dN2i;
+							padImag[i3] = dM2i - dN2r;
+						}
+					}
+				}
+			}
+
+			iSubLength = iSpan;
+		}
+	}
+
+	/**
+	 * Bluestein's chirp-z transform: <code>X[k] = c[k] * sum(x[n] * c[n] * conj(c[k - n]))</code>,
+	 * with the sum done as a power-of-2 circular convolution.
+	 *
+	 * @param padInputReal real part of the input
+	 * @param padInputImag imaginary part of the input
+	 * @param padOutputReal real part of the output
+	 * @param padOutputImag imaginary part of the output
+	 */
+	private void bluestein
+	(
+		final double[] padInputReal,
+		final double[] padInputImag,
+		double[] padOutputReal,
+		double[] padOutputImag
+	)
+	{
+		final int n = this.iLength;
+		final int m = this.adKernelReal.length;
+
+		double[] adReal = new double[m];
+		double[] adImag = new double[m];
+
+		for(int k = 0; k < n; k++)
+		{
+			adReal[k] = padInputReal[k] * this.adChirpReal[k] - padInputImag[k] * this.adChirpImag[k];
+			adImag[k] = padInputReal[k] * this.adChirpImag[k] + padInputImag[k] * this.adChirpReal[k];
+		}
+
+		this.oConvolutionForward.transform(adReal, adImag, adReal, adImag);
+
+		for(int k = 0; k < m; k++)
+		{
+			double dReal = adReal[k] * this.adKernelReal[k] - adImag[k] * this.adKernelImag[k];
+			adImag[k] = adReal[k] * this.adKernelImag[k] + adImag[k] * this.adKernelReal[k];
+			adReal[k] = dReal;
+		}
+
+		this.oConvolutionInverse.transform(adReal, adImag, adReal, adImag);
+
+		for(int k = 0; k < n; k++)
+		{
+			double dReal = adReal[k] / m;
+			double dImag = adImag[k] / m;
+
+			padOutputReal[k] = dReal * this.adChirpReal[k] - dImag * this.adChirpImag[k];
+			padOutputImag[k] = dReal * this.adChirpImag[k] + dImag * this.adChirpReal[k];
+		}
+	}
+
+	/**
+	 * Retrieves the transform length of this plan.
+	 * @return the length
+	 */
+	public int getLength()
+	{
+		return this.iLength;
+	}
+
+	/**
+	 * Retrieves the direction of this plan.
+	 * @return 1 for forward, -1 for inverse
+	 */
+	public int getDirection()
+	{
+		return this.iDirection;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -0,0 +1,377 @@
+package marf.math;
+
+import java.io.Serializable;
+
+
+/**
+ * <p>LU decomposition with partial (row) pivoting of a square matrix,
+ * <code>P * A = L * U</code>.</p>
+ *
+ * <p>The factorization costs <code>O(n^3)</code> once; after that the
+ * determinant is <code>O(n)</code>, each solve is <code>O(n^2)</code>, and
+ * the inverse is <code>n</code> solves. The factors are kept packed in one
+ * row-major array: <code>U</code> on and above the diagonal and the unit
+ * lower-triangular <code>L</code> below it.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see CholeskyDecomposition
+ */
+public class LUDecomposition
+implements Serializable
+{
+	/**
+	 * For serialization versioning.
+	 * When adding new members or make other structural
+	 * changes regenerate this number with the
+	 * <code>serialver</code> tool that comes with JDK.
+	 */
+	private static final long serialVersionUID = 2587440950914381379L;
+
+	/**
+	 * Dimension of the decomposed matrix.
+	 */
+	private final int iN;
+
+	/**
+	 * Packed <code>L</code> and <code>U</code> factors, row-major.
+	 */
+	private final double[] adLU;
+
+	/**
+	 * Row permutation; row <code>i</code> of <code>L * U</code>
+	 * is row <code>aiPivot[i]</code> of the original matrix.
+	 */
+	private final int[] aiPivot;
+
+	/**
+	 * Sign of the permutation, +1 or -1.
+	 */
+	private final int iPivotSign;
+
+	/**
+	 * Whether a zero pivot was encountered.
+	 */
+	private final boolean bSingular;
+
+	/**
+	 * Factors the given matrix. The matrix itself is not modified.
+	 * @param poMatrix square matrix to decompose
+	 * @throws MathException if the matrix is not square
+	 */
+	public LUDecomposition(final Matrix poMatrix)
+	throws MathException
+	{
+		if(poMatrix.getRows() != poMatrix.getCols())
+		{
+			throw new MathException
+			(
+				"Matrix (" + poMatrix.getRows() + "," + poMatrix.getCols() + ") is not square."
+			);
+		}
+
+		final int n = poMatrix.getRows();
+
+		this.iN = n;
+		this.adLU = poMatrix.getMatrixArray().clone();
+		this.aiPivot = new int[n];
+
+		for(int i = 0; i < n; i++)
+		{
+			this.aiPivot[i] = i;
+		}
+
+		int iSign = 1;
+		boolean bSingular = false;
+
+		for(int k = 0; k < n; k++)
+		{
+			// Pick the largest pivot in the column
+			int iMaxRow = k;
+			double dMax = Math.abs(this.adLU[k * n + k]);
+
+			for(int i = k + 1; i < n; i++)
+			{
+				double dValue = Math.abs(this.adLU[i * n + k]);
+
+				if(dValue > dMax)
+				{
+					dMax = dValue;
+					iMaxRow = i;
+				}
+			}
+
+			if(iMaxRow != k)
+			{
+				swapRows(k, iMaxRow);
+
+				int iTemp = this.aiPivot[k];
+				this.aiPivot[k] = this.aiPivot[iMaxRow];
+				this.aiPivot[iMaxRow] = iTemp;
+
+				iSign = -iSign;
+			}
+
+			double dPivot = this.adLU[k * n + k];
+
+			if(dPivot == 0.0)
+			{
+				bSingular = true;
+				continue;
+			}
+
+			// Eliminate below the pivot; the update is a row operation
+			for(int i = k + 1; i < n; i++)
+			{
+				int iRow = i * n;
+				double dFactor = this.adLU[iRow + k] / dPivot;
+
+				this.adLU[iRow + k] = dFactor;
+
+				if(dFactor != 0.0)
+				{
+					int iPivotRow = k * n;
+
+					for(int j = k + 1; j < n; j++)
+					{
+						this.adLU[iRow + j] -= dFactor * this.adLU[iPivotRow + j];
+					}
+				}
+			}
+		}
+
+		this.iPivotSign = iSign;
+		this.bSingular = bSingular;
+	}
+
+	/**
+	 * Swaps two rows of the packed factors.
+	 * @param piRow1 first row
+	 * @param piRow2 second row
+	 */
+	private void swapRows(final int piRow1, final int piRow2)
+	{
+		int iOffset1 = piRow1 * this.iN;
+		int iOffset2 = piRow2 * this.iN;
+
+		for(int j = 0; j < this.iN; j++)
+		{
+			double dTemp = this.adLU[iOffset1 + j];
+			this.adLU[iOffset1 + j] = this.adLU[iOffset2 + j];
+			this.adLU[iOffset2 + j] = dTemp;
+		}
+	}
+
+	/**
+	 * Tells whether the decomposed matrix is singular.
+	 * @return <code>true</code> if it has no inverse
+	 */
+	public boolean isSingular()
+	{
+		return this.bSingular;
+	}
+
+	/**
+	 * Computes the determinant of the decomposed matrix
+	 * as the signed product of the diagonal of <code>U</code>.
+	 * @return the determinant; 0 for a singular or 0x0 matrix
+	 */
+	public double getDeterminant()
+	{
+		if(this.iN == 0)
+		{
+			return 0.0;
+		}
+
+		double dDet = this.iPivotSign;
+
+		for(int i = 0; i < this.iN; i++)
+		{
+			dDet *= this.adLU[i * this.iN + i];
+		}
+
+		return dDet;
+	}
+
+	/**
+	 * Solves <code>A * x = b</code>.
+	 * @param padB right-hand side, <code>n</code> long
+	 * @param padX solution, <code>n</code> long; may be the same array as <code>padB</code>
+	 * @return <code>padX</code>
+	 * @throws MathException if the matrix is singular
+	 */
+	public double[] solve(final double[] padB, double[] padX)
+	throws MathException
+	{
+		checkNonSingular();
+
+		final int n = this.iN;
+
+		permute(padX == padB ? padB.clone() : padB, padX);
+
+		// Forward substitution with unit L
+		for(int i = 1; i < n; i++)
+		{
+			int iRow = i * n;
+			double dSum = padX[i];
+
+			for(int j = 0; j < i; j++)
+			{
+				dSum -= this.adLU[iRow + j] * padX[j];
+			}
+
+			padX[i] = dSum;
+		}
+
+		// Back substitution with U
+		for(int i = n - 1; i >= 0; i--)
+		{
+			int iRow = i * n;
+			double dSum = padX[i];
+
+			for(int j = i + 1; j < n; j++)
+			{
+				dSum -= this.adLU[iRow + j] * padX[j];
+			}
+
+			padX[i] = dSum / this.adLU[iRow + i];
+		}
+
+		return padX;
+	}
+
+	/**
+	 * Solves <code>A * x = b</code> into a new array.
+	 * @param padB right-hand side, <code>n</code> long
+	 * @return solution
+	 * @throws MathException if the matrix is singular
+	 */
+	public double[] solve(final double[] padB)
+	throws MathException
+	{
+		return solve(padB, new double[this.iN]);
+	}
+
+	/**
+	 * Solves <code>A * X = B</code> column by column.
+	 * @param poB right-hand side matrix with <code>n</code> rows
+	 * @return solution matrix of the same dimensions as <code>B</code>
+	 * @throws MathException if the matrix is singular or the dimensions do not agree
+	 */
+	public Matrix solve(final Matrix poB)
+	throws MathException
+	{
+		if(poB.getRows() != this.iN)
+		{
+			throw new MathException
+			(
+				"Row count of the right-hand side (" + poB.getRows() + ") does not match " + this.iN + "."
+			);
+		}
+
+		final int iCols = poB.getCols();
+
+		Matrix oX = new Matrix(this.iN, iCols);
+		double[] adB = poB.getMatrixArray();
+		double[] adX = oX.getMatrixArray();
+		double[] adColumn = new double[this.iN];
+		double[] adSolution = new double[this.iN];
+
+		for(int j = 0; j < iCols; j++)
+		{
+			for(int i = 0; i < this.iN; i++)
+			{
+				adColumn[i] = adB[i * iCols + j];
+			}
+
+			solve(adColumn, adSolution);
+
+			for(int i = 0; i < this.iN; i++)
+			{
+				adX[i * iCols + j] = adSolution[i];
+			}
+		}
+
+		return oX;
+	}
+
+	/**
+	 * Computes the inverse of the decomposed matrix.
+	 * @return a new inverse matrix
+	 * @throws MathException if the matrix is singular
+	 */
+	public Matrix getInverse()
+	throws MathException
+	{
+		checkNonSingular();
+
+		final int n = this.iN;
+
+		Matrix oInverse = new Matrix(n, n);
+		double[] adInverse = oInverse.getMatrixArray();
+		double[] adColumn = new double[n];
+		double[] adSolution = new double[n];
+
+		for(int j = 0; j < n; j++)
+		{
+			adColumn[j] = 1.0;
+			solve(adColumn, adSolution);
+			adColumn[j] = 0.0;
+
+			for(int i = 0; i < n; i++)
+			{
+				adInverse[i * n + j] = adSolution[i];
+			}
+		}
+
+		return oInverse;
+	}
+
+	/**
+	 * Applies the row permutation: <code>x[i] = b[pivot[i]]</code>.
+	 * @param padSource values to permute; must not be <code>padX</code>
+	 * @param padX destination
+	 */
+	private void permute(final double[] padSource, double[] padX)
+	{
+		for(int i = 0; i < this.iN; i++)
+		{
+			padX[i] = padSource[this.aiPivot[i]];
+		}
+	}
+
+	/**
+	 * @throws MathException if the matrix is singular
+	 */
+	private void checkNonSingular()
+	throws MathException
+	{
+		if(this.bSingular)
+		{
+			throw new MathException("Matrix is singular.");
+		}
+	}
+
+	/**
+	 * Retrieves the dimension of the decomposed matrix.
+	 * @return <code>n</code>
+	 */
+	public int getDimension()
+	{
+		return this.iN;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
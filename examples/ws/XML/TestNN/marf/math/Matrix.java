@@ -1,6 +1,8 @@
 package marf.math;
 
 import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import marf.util.Arrays;
 import marf.util.Debug;
@@ -48,6 +50,21 @@ implements Cloneable, Serializable
 	 */
 	public static final double DEFAULT_ERROR_DELTA = 0.000000000000001;
 
+	/**
+	 * Number of multiply-adds (<code>rows * inner * columns</code>) of a product
+	 * above which rows of the result are computed in parallel, 64x64x64.
+	 * @since 0.3.0.6
+	 */
+	public static final int PARALLEL_MULTIPLY_THRESHOLD = 64 * 64 * 64;
+
+	/**
+	 * Size of the square tiles of the inner and column dimensions
+	 * processed at once by the multiplication kernel, to keep the
+	 * accessed part of the right-hand side in cache.
+	 * @since 0.3.0.6
+	 */
+	protected static final int MULTIPLY_BLOCK_SIZE = 64;
+
 	// Matrix Dimensions
 
 	/**
@@ -452,19 +469,17 @@ implements Cloneable, Serializable
 						getElement(1, 0) * getElement(0, 1);
 				}
 
-				// General case
+				// General case: product of the pivots of the LU decomposition
 				default:
 				{
-					int i = 0;
-
-					for(int j = 0; j < this.iCols; j++)
+					try
 					{
-						Matrix oCastratedMatrix = new Matrix(this);
-
-						oCastratedMatrix.cutRow(i);
-						oCastratedMatrix.cutColumn(j);
-
-						dDet += Math.pow(-1, i + 1 + j + 1) * getElement(i, j) * oCastratedMatrix.getDeterminant();
+						dDet = new LUDecomposition(this).getDeterminant();
+					}
+					catch(MathException e)
+					{
+						// Cannot happen, the matrix is square
+						Debug.debug(e);
 					}
 				}
 			} // switch
@@ -1219,6 +1234,41 @@ implements Cloneable, Serializable
 			return false;
 		}
 
+		try
+		{
+			LUDecomposition oLU = new LUDecomposition(this);
+
+			if(oLU.isSingular())
+			{
+				Debug.debug("Matrix.inverse() - Matrix is singular!\n");
+				return false;
+			}
+
+			System.arraycopy(oLU.getInverse().adMatrix, 0, this.adMatrix, 0, this.adMatrix.length);
+		}
+		catch(MathException e)
+		{
+			Debug.debug(e);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Matrix inversion by row-reducing the matrix extended by the identity.
+	 * Used by the matrices whose elements are not plain doubles.
+	 * @return <code>true</code> if matrix was possible to invert, <code>false</code> otherwise
+	 * @since 0.3.0.6
+	 */
+	protected boolean inverseByRowReduction()
+	{
+		if(this.iRows != this.iCols)
+		{
+			Debug.debug("Matrix.inverse() - Matrix (" + this.iRows + "," + this.iCols + ") is not inversible!\n");
+			return false;
+		}
+
 		Matrix oI = getNewMatrix();
 
 		if(!oI.makeIdentity())
@@ -1408,25 +1458,42 @@ implements Cloneable, Serializable
 			return oMatrix;
 		}
 
-		for(int i = 0; i < poLHSMatrix.getRows(); i++)
+		oMatrix.applyAdd(poLHSMatrix, poRHSMatrix);
+
+		return oMatrix;
+	}
+
+	/**
+	 * Applies the addition to all the elements at once, M = M1 + M2,
+	 * where M is this matrix of the same dimensions. This is what
+	 * <code>add()</code> calls; designed to be overridden for complex
+	 * or otherwise matrices.
+	 * @param poLHSMatrix M1
+	 * @param poRHSMatrix M2
+	 * @return this
+	 * @since 0.3.0.6
+	 */
+	protected Matrix applyAdd(final Matrix poLHSMatrix, final Matrix poRHSMatrix)
+	{
+		for(int i = 0; i < this.adMatrix.length; i++)
 		{
-			for(int j = 0; j < poLHSMatrix.getCols(); j++)
-			{
-				oMatrix.applyAdd(poLHSMatrix, poRHSMatrix, i, j);
-			}
+			this.adMatrix[i] = poLHSMatrix.adMatrix[i] + poRHSMatrix.adMatrix[i];
 		}
 
-		return oMatrix;
+		return this;
 	}
 
 	/**
 	 * Actually applies the addition of operation to two elements of a
-	 * matrix. Designed to be overridden for complex or otherwise matrices.
+	 * matrix.
 	 * @param poLHSMatrix
 	 * @param poRHSMatrix
 	 * @param i
 	 * @param j
+	 * @deprecated <code>add()</code> applies <code>applyAdd(Matrix, Matrix)</code>
+	 * to all the elements at once; override that one.
 	 */
+	@Deprecated
 	protected Matrix applyAdd(final Matrix poLHSMatrix, final Matrix poRHSMatrix, int i, int j)
 	{
 		setElement(i, j, poLHSMatrix.getElement(i, j) + poRHSMatrix.getElement(i, j));
@@ -1480,20 +1547,34 @@ implements Cloneable, Serializable
 		//Matrix oMatrix = getMatrixCopy(poLHSMatrix);
 		Matrix oMatrix = (Matrix)poLHSMatrix.clone();
 
-		if(poLHSMatrix.iCols != poRHSMatrix.iCols || poRHSMatrix.iRows != poRHSMatrix.iRows)
+		if(poLHSMatrix.iCols != poRHSMatrix.iCols || poLHSMatrix.iRows != poRHSMatrix.iRows)
 		{
 			return oMatrix;
 		}
 
-		for(int i = 0; i < poLHSMatrix.iRows; i++)
+		oMatrix.applyMinus(poLHSMatrix, poRHSMatrix);
+
+		return oMatrix;
+	}
+
+	/**
+	 * Applies the subtraction to all the elements at once, M = M1 - M2,
+	 * where M is this matrix of the same dimensions. This is what
+	 * <code>minus()</code> calls; designed to be overridden for complex
+	 * or otherwise matrices.
+	 * @param poLHSMatrix M1
+	 * @param poRHSMatrix M2
+	 * @return this
+	 * @since 0.3.0.6
+	 */
+	protected Matrix applyMinus(final Matrix poLHSMatrix, final Matrix poRHSMatrix)
+	{
+		for(int i = 0; i < this.adMatrix.length; i++)
 		{
-			for(int j = 0; j < poLHSMatrix.iCols; j++)
-			{
-				oMatrix.applyMinus(poLHSMatrix, poRHSMatrix, i, j);
-			}
+			this.adMatrix[i] = poLHSMatrix.adMatrix[i] - poRHSMatrix.adMatrix[i];
 		}
 
-		return oMatrix;
+		return this;
 	}
 
 	/**
@@ -1501,7 +1582,10 @@ implements Cloneable, Serializable
 	 * @param poRHSMatrix
 	 * @param i
 	 * @param j
+	 * @deprecated <code>minus()</code> applies <code>applyMinus(Matrix, Matrix)</code>
+	 * to all the elements at once; override that one.
 	 */
+	@Deprecated
 	protected Matrix applyMinus(final Matrix poLHSMatrix, final Matrix poRHSMatrix, int i, int j)
 	{
 		setElement(i, j, poLHSMatrix.getElement(i, j) - poRHSMatrix.getElement(i, j));
@@ -1619,24 +1703,216 @@ implements Cloneable, Serializable
 		return oMatrix;
 	}
 
+	/**
+	 * M = M1 * M2, where M is this matrix of the proper dimensions.
+	 * Works directly on the row-major storage of all three matrices
+	 * and runs in parallel for large products.
+	 * @param poLHSMatrix M1
+	 * @param poRHSMatrix M2
+	 * @return this
+	 * @see #multiply(double[], double[], double[], double[], double[], double[], int, int, int)
+	 */
 	protected Matrix applyMultiply(final Matrix poLHSMatrix, final Matrix poRHSMatrix)
 	{
-		for(int i = 0; i < iRows; i++)
+		multiply
+		(
+			poLHSMatrix.adMatrix, null,
+			poRHSMatrix.adMatrix, null,
+			this.adMatrix, null,
+			this.iRows, poLHSMatrix.iCols, this.iCols
+		);
+
+		return this;
+	}
+
+	/**
+	 * M = M1 * M2, reusing the storage of M whenever it is of the right size,
+	 * so repeated products of the same shape allocate nothing. M may be one of
+	 * the operands, in which case a temporary product is made.
+	 * @param poResultMatrix M; becomes 0x0 if the columns of M1 != rows of M2
+	 * @param poLHSMatrix M1
+	 * @param poRHSMatrix M2
+	 * @return M
+	 * @since 0.3.0.6
+	 */
+	public static Matrix multiplyInto(Matrix poResultMatrix, final Matrix poLHSMatrix, final Matrix poRHSMatrix)
+	{
+		if(poLHSMatrix.iCols != poRHSMatrix.iRows)
+		{
+			poResultMatrix.allocate(0, 0);
+			return poResultMatrix;
+		}
+
+		if(poResultMatrix == poLHSMatrix || poResultMatrix == poRHSMatrix)
+		{
+			Matrix oProduct = poResultMatrix.getNewMatrix(poLHSMatrix.iRows, poRHSMatrix.iCols);
+			oProduct.applyMultiply(poLHSMatrix, poRHSMatrix);
+			poResultMatrix.allocate(oProduct.iRows, oProduct.iCols);
+			poResultMatrix.setStorage(oProduct);
+			return poResultMatrix;
+		}
+
+		poResultMatrix.allocate(poLHSMatrix.iRows, poRHSMatrix.iCols);
+		poResultMatrix.applyMultiply(poLHSMatrix, poRHSMatrix);
+
+		return poResultMatrix;
+	}
+
+	/**
+	 * M = this * M1, reusing the storage of M.
+	 * @param poResultMatrix M
+	 * @param poMatrix M1
+	 * @return M
+	 * @see #multiplyInto(Matrix, Matrix, Matrix)
+	 * @since 0.3.0.6
+	 */
+	public Matrix multiplyInto(Matrix poResultMatrix, final Matrix poMatrix)
+	{
+		return multiplyInto(poResultMatrix, this, poMatrix);
+	}
+
+	/**
+	 * Sets the dimensions of the matrix, keeping its storage array(s) when they
+	 * already have the required size. The contents are undefined afterwards.
+	 * @param piRows new number of rows
+	 * @param piCols new number of columns
+	 * @since 0.3.0.6
+	 */
+	protected void allocate(final int piRows, final int piCols)
+	{
+		if(this.adMatrix == null || this.adMatrix.length != piRows * piCols)
 		{
-			for(int j = 0; j < iCols; j++)
+			this.adMatrix = new double[piRows * piCols];
+		}
+
+		this.iRows = piRows;
+		this.iCols = piCols;
+	}
+
+	/**
+	 * Copies the storage of a matrix of the same dimensions into this one.
+	 * @param poMatrix the source
+	 * @since 0.3.0.6
+	 */
+	protected void setStorage(final Matrix poMatrix)
+	{
+		System.arraycopy(poMatrix.adMatrix, 0, this.adMatrix, 0, this.adMatrix.length);
+	}
+
+	/**
+	 * C = A * B over row-major storage, real or complex. Imaginary parts are
+	 * <code>null</code> for real matrices; either all or none of them must be given.
+	 * The product is computed in parallel on the common fork/join pool when
+	 * it exceeds <code>PARALLEL_MULTIPLY_THRESHOLD</code> multiply-adds.
+	 *
+	 * @param padLHSReal real part of A
+	 * @param padLHSImag imaginary part of A, or <code>null</code>
+	 * @param padRHSReal real part of B
+	 * @param padRHSImag imaginary part of B, or <code>null</code>
+	 * @param padResultReal real part of C; must not be one of the operands
+	 * @param padResultImag imaginary part of C, or <code>null</code>
+	 * @param piRows rows of A and C
+	 * @param piInner columns of A and rows of B
+	 * @param piCols columns of B and C
+	 * @since 0.3.0.6
+	 */
+	protected static void multiply
+	(
+		final double[] padLHSReal, final double[] padLHSImag,
+		final double[] padRHSReal, final double[] padRHSImag,
+		double[] padResultReal, double[] padResultImag,
+		final int piRows, final int piInner, final int piCols
+	)
+	{
+		MultiplyTask oTask = new MultiplyTask
+		(
+			padLHSReal, padLHSImag,
+			padRHSReal, padRHSImag,
+			padResultReal, padResultImag,
+			piInner, piCols,
+			0, piRows
+		);
+
+		if((long)piRows * piInner * piCols > PARALLEL_MULTIPLY_THRESHOLD && piRows > 1)
+		{
+			ForkJoinPool.commonPool().invoke(oTask);
+		}
+		else
+		{
+			oTask.compute();
+		}
+	}
+
+	/**
+	 * Computes rows <code>[piFrom, piTo)</code> of C = A * B.
+	 * The inner and column dimensions are walked in tiles of
+	 * <code>MULTIPLY_BLOCK_SIZE</code>, and within a tile each element
+	 * of A is multiplied by a contiguous run of a row of B, so B is
+	 * read sequentially and stays in cache across the rows of A.
+	 * Every element of C still accumulates its terms in increasing
+	 * order of the inner index, the same as the naive triple loop.
+	 *
+	 * @see #multiply(double[], double[], double[], double[], double[], double[], int, int, int)
+	 * @since 0.3.0.6
+	 */
+	private static void multiplyRows
+	(
+		final double[] padLHSReal, final double[] padLHSImag,
+		final double[] padRHSReal, final double[] padRHSImag,
+		double[] padResultReal, double[] padResultImag,
+		final int piInner, final int piCols,
+		final int piFrom, final int piTo
+	)
+	{
+		Arrays.fill(padResultReal, piFrom * piCols, piTo * piCols, 0.0);
+
+		if(padResultImag != null)
+		{
+			Arrays.fill(padResultImag, piFrom * piCols, piTo * piCols, 0.0);
+		}
+
+		for(int kk = 0; kk < piInner; kk += MULTIPLY_BLOCK_SIZE)
+		{
+			int iInnerEnd = Math.min(kk + MULTIPLY_BLOCK_SIZE, piInner);
+
+			for(int jj = 0; jj < piCols; jj += MULTIPLY_BLOCK_SIZE)
 			{
-				double dRowColSum = 0;
-		
-				for(int k = 0; k < poLHSMatrix.iCols; k++)
+				int iColEnd = Math.min(jj + MULTIPLY_BLOCK_SIZE, piCols);
+
+				for(int i = piFrom; i < piTo; i++)
 				{
-					dRowColSum += poLHSMatrix.getElement(i, k) * poRHSMatrix.getElement(k, j);
+					int iLHSRow = i * piInner;
+					int iResultRow = i * piCols;
+
+					for(int k = kk; k < iInnerEnd; k++)
+					{
+						int iRHSRow = k * piCols - iResultRow;
+						double dReal = padLHSReal[iLHSRow + k];
+
+						if(padResultImag == null)
+						{
+							for(int j = iResultRow + jj; j < iResultRow + iColEnd; j++)
+							{
+								padResultReal[j] += dReal * padRHSReal[iRHSRow + j];
+							}
+						}
+						else
+						{
+							double dImag = padLHSImag[iLHSRow + k];
+
+							for(int j = iResultRow + jj; j < iResultRow + iColEnd; j++)
+							{
+								double dRHSReal = padRHSReal[iRHSRow + j];
+								double dRHSImag = padRHSImag[iRHSRow + j];
+
+								padResultReal[j] += dReal * dRHSReal - dImag * dRHSImag;
+								padResultImag[j] += dImag * dRHSReal + dReal * dRHSImag;
+							}
+						}
+					}
 				}
-		
-				setElement(i, j, dRowColSum);
 			}
 		}
-		
-		return this;
 	}
 
 	/**
@@ -2215,6 +2491,138 @@ implements Cloneable, Serializable
 		return "$Revision: 1.47 $";
 	}
 
+
+	/**
+	 * Computes a range of rows of a matrix product, splitting
+	 * the range in halves until it is small enough.
+	 *
+	 * @author Serguei Mokhov
+	 * @since 0.3.0.6
+	 */
+	private static final class MultiplyTask
+	extends RecursiveAction
+	{
+		/**
+		 * For serialization versioning.
+		 */
+		private static final long serialVersionUID = 4130529411867284093L;
+
+		/**
+		 * Real part of the left-hand side.
+		 */
+		private final double[] adLHSReal;
+
+		/**
+		 * Imaginary part of the left-hand side, <code>null</code> if real.
+		 */
+		private final double[] adLHSImag;
+
+		/**
+		 * Real part of the right-hand side.
+		 */
+		private final double[] adRHSReal;
+
+		/**
+		 * Imaginary part of the right-hand side, <code>null</code> if real.
+		 */
+		private final double[] adRHSImag;
+
+		/**
+		 * Real part of the result.
+		 */
+		private final double[] adResultReal;
+
+		/**
+		 * Imaginary part of the result, <code>null</code> if real.
+		 */
+		private final double[] adResultImag;
+
+		/**
+		 * Columns of the left-hand side and rows of the right-hand side.
+		 */
+		private final int iInner;
+
+		/**
+		 * Columns of the right-hand side and the result.
+		 */
+		private final int iCols;
+
+		/**
+		 * First row of the range.
+		 */
+		private final int iFrom;
+
+		/**
+		 * One past the last row of the range.
+		 */
+		private final int iTo;
+
+		/**
+		 * Constructs the task for the given operands and rows.
+		 */
+		MultiplyTask
+		(
+			final double[] padLHSReal, final double[] padLHSImag,
+			final double[] padRHSReal, final double[] padRHSImag,
+			double[] padResultReal, double[] padResultImag,
+			final int piInner, final int piCols,
+			final int piFrom, final int piTo
+		)
+		{
+			this.adLHSReal = padLHSReal;
+			this.adLHSImag = padLHSImag;
+			this.adRHSReal = padRHSReal;
+			this.adRHSImag = padRHSImag;
+			this.adResultReal = padResultReal;
+			this.adResultImag = padResultImag;
+			this.iInner = piInner;
+			this.iCols = piCols;
+			this.iFrom = piFrom;
+			this.iTo = piTo;
+		}
+
+		/**
+		 * Computes the rows directly or forks two halves.
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute()
+		{
+			int iRows = this.iTo - this.iFrom;
+
+			if(iRows < 2 || (long)iRows * this.iInner * this.iCols <= PARALLEL_MULTIPLY_THRESHOLD)
+			{
+				multiplyRows
+				(
+					this.adLHSReal, this.adLHSImag,
+					this.adRHSReal, this.adRHSImag,
+					this.adResultReal, this.adResultImag,
+					this.iInner, this.iCols,
+					this.iFrom, this.iTo
+				);
+
+				return;
+			}
+
+			int iMiddle = this.iFrom + iRows / 2;
+
+			invokeAll
+			(
+				new MultiplyTask
+				(
+					this.adLHSReal, this.adLHSImag, this.adRHSReal, this.adRHSImag,
+					this.adResultReal, this.adResultImag, this.iInner, this.iCols,
+					this.iFrom, iMiddle
+				),
+				new MultiplyTask
+				(
+					this.adLHSReal, this.adLHSImag, this.adRHSReal, this.adRHSImag,
+					this.adResultReal, this.adResultImag, this.iInner, this.iCols,
+					iMiddle, this.iTo
+				)
+			);
+		}
+	}
+
 	/**
 	 * Indicates the direction in which a matrix to be extended.
 	 * Might emerge to generic integer Enum in marf.util eventually.
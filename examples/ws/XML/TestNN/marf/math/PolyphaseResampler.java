@@ -0,0 +1,366 @@
+package marf.math;
+
+import java.util.Hashtable;
+
+
+/**
+ * <p>Polyphase rational resampler and <code>upfirdn</code> engine.</p>
+ *
+ * <p>Upsampling by <code>L</code>, FIR filtering with <code>h</code> and
+ * downsampling by <code>M</code> is done without ever forming the upsampled
+ * signal: output <code>m</code> is at upsampled time <code>t = m * M + D</code>
+ * and only the taps <code>h[t mod L + j * L]</code> land on actual input
+ * samples <code>x[t / L - j]</code>, so each output costs about
+ * <code>length(h) / L</code> multiplies and the outputs that would be
+ * thrown away are never computed. Samples beyond either end of the input
+ * are treated as zeroes without copying the input into a padded buffer.</p>
+ *
+ * <p>Resamplers between two sampling rates (e.g. 44100 or 48000 Hz down to
+ * 8000 Hz) come with a windowed-sinc anti-aliasing/anti-imaging lowpass,
+ * are immutable, and are shared through <code>getResampler()</code>.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see Algorithms.Wavelet#upfirdn(int, int, double[], double[])
+ */
+public final class PolyphaseResampler
+{
+	/**
+	 * Number of zero crossings of the sinc kept on each side of
+	 * the designed lowpass filter.
+	 */
+	public static final int DEFAULT_ZERO_CROSSINGS = 16;
+
+	/**
+	 * Fraction of the lower Nyquist frequency the designed lowpass
+	 * filter passes; the rest is its transition band.
+	 */
+	public static final double DEFAULT_PASSBAND = 0.9;
+
+	/**
+	 * Resamplers built so far keyed by <code>"L/M"</code>.
+	 */
+	private static final Hashtable<String, PolyphaseResampler> soResamplers = new Hashtable<String, PolyphaseResampler>();
+
+	/**
+	 * Upsampling factor <code>L</code>.
+	 */
+	private final int iUpRate;
+
+	/**
+	 * Downsampling factor <code>M</code>.
+	 */
+	private final int iDownRate;
+
+	/**
+	 * Length of the original filter.
+	 */
+	private final int iFilterLength;
+
+	/**
+	 * Taps per phase, <code>ceil(length(h) / L)</code>.
+	 */
+	private final int iTapsPerPhase;
+
+	/**
+	 * Filter split into phases: tap <code>j</code> of phase <code>p</code>
+	 * is <code>h[p + j * L]</code>, at <code>p * iTapsPerPhase + j</code>;
+	 * zero past the end of <code>h</code>.
+	 */
+	private final double[] adPhases;
+
+	/**
+	 * Upsampled time of output 0; the group delay of a designed filter.
+	 */
+	private final int iDelay;
+
+	/**
+	 * Builds a resampler with an arbitrary filter, as <code>upfirdn</code> does.
+	 * @param piUpRate upsampling factor, at least 1
+	 * @param piDownRate downsampling factor, at least 1
+	 * @param padFilter FIR filter taps at the upsampled rate; not kept
+	 * @throws MathException if the factors are not positive or the filter is empty
+	 */
+	public PolyphaseResampler(final int piUpRate, final int piDownRate, final double[] padFilter)
+	throws MathException
+	{
+		this(piUpRate, piDownRate, padFilter, 0);
+	}
+
+	/**
+	 * Builds a resampler.
+	 * @param piUpRate upsampling factor, at least 1
+	 * @param piDownRate downsampling factor, at least 1
+	 * @param padFilter FIR filter taps at the upsampled rate; not kept
+	 * @param piDelay upsampled time of output 0, non-negative
+	 * @throws MathException if the factors are not positive or the filter is empty
+	 */
+	private PolyphaseResampler(final int piUpRate, final int piDownRate, final double[] padFilter, final int piDelay)
+	throws MathException
+	{
+		if(piUpRate < 1 || piDownRate < 1)
+		{
+			throw new MathException("Resampling factors (" + piUpRate + "/" + piDownRate + ") must be positive.");
+		}
+
+		if(padFilter.length == 0)
+		{
+			throw new MathException("Resampling filter is empty.");
+		}
+
+		this.iUpRate = piUpRate;
+		this.iDownRate = piDownRate;
+		this.iFilterLength = padFilter.length;
+		this.iTapsPerPhase = (padFilter.length + piUpRate - 1) / piUpRate;
+		this.iDelay = piDelay;
+		this.adPhases = new double[piUpRate * this.iTapsPerPhase];
+
+		for(int k = 0; k < padFilter.length; k++)
+		{
+			this.adPhases[(k % piUpRate) * this.iTapsPerPhase + k / piUpRate] = padFilter[k];
+		}
+	}
+
+	/**
+	 * Retrieves a shared resampler from one sampling rate to another,
+	 * building and caching it on first use. The rates are rounded to whole
+	 * Hertz and their ratio is reduced, so e.g. 44100 to 8000 Hz is
+	 * <code>L = 80</code>, <code>M = 441</code>.
+	 *
+	 * @param pfFromRate sampling rate of the input, in Hz
+	 * @param pfToRate sampling rate of the output, in Hz
+	 * @return the resampler
+	 * @throws MathException if either of the rates is less than 1 Hz
+	 */
+	public static PolyphaseResampler getResampler(final float pfFromRate, final float pfToRate)
+	throws MathException
+	{
+		int iFrom = Math.round(pfFromRate);
+		int iTo = Math.round(pfToRate);
+
+		if(iFrom < 1 || iTo < 1)
+		{
+			throw new MathException("Cannot resample from " + pfFromRate + " Hz to " + pfToRate + " Hz.");
+		}
+
+		int iGCD = gcd(iFrom, iTo);
+		int iUp = iTo / iGCD;
+		int iDown = iFrom / iGCD;
+
+		String strKey = iUp + "/" + iDown;
+		PolyphaseResampler oResampler = soResamplers.get(strKey);
+
+		if(oResampler == null)
+		{
+			double[] adFilter = designLowpass(iUp, iDown, DEFAULT_ZERO_CROSSINGS, DEFAULT_PASSBAND);
+			oResampler = new PolyphaseResampler(iUp, iDown, adFilter, (adFilter.length - 1) / 2);
+			soResamplers.put(strKey, oResampler);
+		}
+
+		return oResampler;
+	}
+
+	/**
+	 * Drops all the cached resamplers.
+	 */
+	public static void clearCache()
+	{
+		soResamplers.clear();
+	}
+
+	/**
+	 * Designs a Blackman-windowed sinc lowpass filter for resampling by
+	 * <code>L/M</code>, with a gain of <code>L</code> to make up for the
+	 * zeroes of the upsampling.
+	 *
+	 * @param piUpRate upsampling factor <code>L</code>
+	 * @param piDownRate downsampling factor <code>M</code>
+	 * @param piZeroCrossings zero crossings of the sinc on each side
+	 * @param pdPassband passed fraction of the lower of the two Nyquist frequencies
+	 * @return odd-length symmetric filter taps
+	 */
+	public static double[] designLowpass(final int piUpRate, final int piDownRate, final int piZeroCrossings, final double pdPassband)
+	{
+		int iFactor = Math.max(piUpRate, piDownRate);
+		int iHalf = piZeroCrossings * iFactor;
+
+		// Cutoff in cycles per upsampled sample
+		double dCutoff = pdPassband / (2.0 * iFactor);
+		double[] adWindow = Algorithms.Windows.getTable(Algorithms.Windows.BLACKMAN, 2 * iHalf + 1);
+		double[] adFilter = new double[2 * iHalf + 1];
+
+		for(int k = 0; k < adFilter.length; k++)
+		{
+			int n = k - iHalf;
+
+			double dSinc = n == 0
+				? 2.0 * dCutoff
+				: Math.sin(2.0 * Math.PI * dCutoff * n) / (Math.PI * n);
+
+			adFilter[k] = piUpRate * dSinc * adWindow[k];
+		}
+
+		return adFilter;
+	}
+
+	/**
+	 * Computes output samples <code>piFirst..piFirst + piCount - 1</code>:
+	 * <code>y[m] = sum(h[k] * xup[m * M + D - k])</code>, where <code>xup</code>
+	 * is the input upsampled by <code>L</code> with zeroes and is zero
+	 * outside of the input.
+	 *
+	 * @param padInput input samples
+	 * @param piInputLength number of input samples to use
+	 * @param piFirst index of the first output sample
+	 * @param padOutput output samples, at least <code>piOffset + piCount</code> long
+	 * @param piOffset where to put the first output sample
+	 * @param piCount number of output samples to compute
+	 */
+	public void apply(final double[] padInput, final int piInputLength, final long piFirst, double[] padOutput, final int piOffset, final int piCount)
+	{
+		filter(padInput, piInputLength, piFirst * this.iDownRate + this.iDelay, padOutput, piOffset, piCount);
+	}
+
+	/**
+	 * Computes output samples at upsampled times <code>plTime</code>,
+	 * <code>plTime + M</code>, and so on.
+	 *
+	 * @param padInput input samples
+	 * @param piInputLength number of input samples to use
+	 * @param plTime upsampled time of the first output sample
+	 * @param padOutput output samples, at least <code>piOffset + piCount</code> long
+	 * @param piOffset where to put the first output sample
+	 * @param piCount number of output samples to compute
+	 */
+	private void filter(final double[] padInput, final int piInputLength, final long plTime, double[] padOutput, final int piOffset, final int piCount)
+	{
+		final int iTaps = this.iTapsPerPhase;
+		final double[] adPhases = this.adPhases;
+
+		long lTime = plTime;
+
+		for(int m = 0; m < piCount; m++, lTime += this.iDownRate)
+		{
+			int iPhase = (int)(lTime % this.iUpRate);
+			long lNewest = lTime / this.iUpRate;
+
+			// Only the taps that land on samples within the input
+			int jFirst = (int)Math.max(0, lNewest - (piInputLength - 1));
+			int jLast = (int)Math.min(iTaps - 1, lNewest);
+
+			int iTap = iPhase * iTaps + jFirst;
+			int i = (int)(lNewest - jFirst);
+
+			double dAcc = 0.0;
+
+			for(int j = jFirst; j <= jLast; j++)
+			{
+				dAcc += adPhases[iTap++] * padInput[i--];
+			}
+
+			padOutput[piOffset + m] = dAcc;
+		}
+	}
+
+	/**
+	 * Computes the full <code>upfirdn</code> output of the input, i.e.
+	 * from upsampled time 0, whatever the group delay of a designed filter,
+	 * until the filter has been flushed out: <code>ceil(((N - 1) * L + K * L) / M)</code>
+	 * samples, with <code>K</code> taps per phase.
+	 * @param padInput input samples
+	 * @return new array of filtered samples
+	 */
+	public double[] upfirdn(final double[] padInput)
+	{
+		long lUpsampled = (long)(padInput.length + this.iTapsPerPhase - 1) * this.iUpRate;
+		int iCount = (int)((lUpsampled + this.iDownRate - 1) / this.iDownRate);
+
+		double[] adOutput = new double[iCount];
+		filter(padInput, padInput.length, 0, adOutput, 0, iCount);
+
+		return adOutput;
+	}
+
+	/**
+	 * Resamples the input: <code>ceil(N * L / M)</code> output samples
+	 * aligned with the input, i.e. with the group delay of the filter
+	 * compensated for.
+	 * @param padInput input samples
+	 * @return new array of resampled samples
+	 */
+	public double[] resample(final double[] padInput)
+	{
+		double[] adOutput = new double[getResampledLength(padInput.length)];
+		apply(padInput, padInput.length, 0, adOutput, 0, adOutput.length);
+		return adOutput;
+	}
+
+	/**
+	 * Computes the number of samples <code>resample()</code> produces.
+	 * @param piInputLength number of input samples
+	 * @return <code>ceil(N * L / M)</code>
+	 */
+	public int getResampledLength(final int piInputLength)
+	{
+		return (int)(((long)piInputLength * this.iUpRate + this.iDownRate - 1) / this.iDownRate);
+	}
+
+	/**
+	 * Greatest common divisor.
+	 * @param piA first number, positive
+	 * @param piB second number, positive
+	 * @return the divisor
+	 */
+	private static int gcd(int piA, int piB)
+	{
+		while(piB != 0)
+		{
+			int iTemp = piA % piB;
+			piA = piB;
+			piB = iTemp;
+		}
+
+		return piA;
+	}
+
+	/**
+	 * Retrieves the upsampling factor.
+	 * @return <code>L</code>
+	 */
+	public int getUpRate()
+	{
+		return this.iUpRate;
+	}
+
+	/**
+	 * Retrieves the downsampling factor.
+	 * @return <code>M</code>
+	 */
+	public int getDownRate()
+	{
+		return this.iDownRate;
+	}
+
+	/**
+	 * Retrieves the length of the filter.
+	 * @return number of taps at the upsampled rate
+	 */
+	public int getFilterLength()
+	{
+		return this.iFilterLength;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -0,0 +1,337 @@
+package marf.math;
+
+import java.util.Hashtable;
+
+
+/**
+ * <p>Precomputed plan for FFTs of purely real signals, such as audio samples.</p>
+ *
+ * <p>A real signal of length <code>N</code> is packed into a complex signal
+ * of length <code>N/2</code> (even samples as the real part, odd samples as
+ * the imaginary part), transformed with a half-length <code>FFTPlan</code>,
+ * and then "untangled" into the <code>N/2 + 1</code> non-redundant bins of the
+ * full spectrum. The inverse does the same steps backwards. This costs roughly
+ * half the operations and half the memory of a complex transform with a zeroed
+ * imaginary part, and needs no extra arrays beyond the spectrum itself.
+ * Odd lengths, which cannot be packed, fall back to a full-length complex
+ * transform with temporary buffers.</p>
+ *
+ * <p>The sign conventions and scaling are the same as those of
+ * <code>Algorithms.FFT.doFFT()</code>: the forward transform is direction 1
+ * and the inverse is unscaled, i.e. a forward-inverse round trip multiplies
+ * the signal by <code>N</code>.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ * @see FFTPlan
+ */
+public final class RealFFTPlan
+{
+	/**
+	 * Plans built so far keyed by the real signal length.
+	 */
+	private static final Hashtable<Integer, RealFFTPlan> soPlans = new Hashtable<Integer, RealFFTPlan>();
+
+	/**
+	 * Real signal length <code>N</code>.
+	 */
+	private final int iLength;
+
+	/**
+	 * Half-length (full-length for odd lengths) forward complex plan.
+	 */
+	private final FFTPlan oForward;
+
+	/**
+	 * Half-length (full-length for odd lengths) inverse complex plan.
+	 */
+	private final FFTPlan oInverse;
+
+	/**
+	 * Whether the length is odd and the packing cannot be used.
+	 */
+	private final boolean bOdd;
+
+	/**
+	 * <code>cos(2 * pi * k / N)</code> for <code>k</code> in <code>[0, N/4]</code>.
+	 */
+	private final double[] adCos;
+
+	/**
+	 * <code>sin(2 * pi * k / N)</code> for <code>k</code> in <code>[0, N/4]</code>.
+	 */
+	private final double[] adSin;
+
+	/**
+	 * Builds the plan.
+	 * @param piLength real signal length; at least 1
+	 * @throws MathException if the underlying complex plans cannot be built
+	 */
+	private RealFFTPlan(final int piLength)
+	throws MathException
+	{
+		int iHalf = piLength / 2;
+
+		this.iLength = piLength;
+		this.bOdd = (piLength % 2) != 0;
+		this.oForward = FFTPlan.getPlan(this.bOdd ? piLength : iHalf, 1);
+		this.oInverse = FFTPlan.getPlan(this.bOdd ? piLength : iHalf, -1);
+
+		this.adCos = new double[iHalf / 2 + 1];
+		this.adSin = new double[iHalf / 2 + 1];
+
+		for(int k = 0; k < this.adCos.length; k++)
+		{
+			double dTheta = (2 * Math.PI * k) / piLength;
+
+			this.adCos[k] = Math.cos(dTheta);
+			this.adSin[k] = Math.sin(dTheta);
+		}
+	}
+
+	/**
+	 * Retrieves a shared plan for the given real signal length,
+	 * building and caching it on first use.
+	 *
+	 * @param piLength real signal length; must be at least 1
+	 * @return the plan
+	 * @throws MathException if the length is wrong
+	 */
+	public static RealFFTPlan getPlan(final int piLength)
+	throws MathException
+	{
+		if(piLength < 1)
+		{
+			throw new MathException("Length of real input (" + piLength + ") is less than 1.");
+		}
+
+		Integer oKey = Integer.valueOf(piLength);
+		RealFFTPlan oPlan = soPlans.get(oKey);
+
+		if(oPlan == null)
+		{
+			oPlan = new RealFFTPlan(piLength);
+			soPlans.put(oKey, oPlan);
+		}
+
+		return oPlan;
+	}
+
+	/**
+	 * Drops all the cached plans.
+	 */
+	public static void clearCache()
+	{
+		soPlans.clear();
+	}
+
+	/**
+	 * Forward transform of a real signal. Only bins <code>0..N/2</code> are
+	 * produced; the rest of the spectrum is their complex conjugate mirror.
+	 *
+	 * @param padInput real signal, at least <code>N</code> long
+	 * @param padOutputReal real part of bins <code>0..N/2</code>, at least <code>N/2 + 1</code> long
+	 * @param padOutputImag imaginary part of bins <code>0..N/2</code>, at least <code>N/2 + 1</code> long
+	 */
+	public void forward(final double[] padInput, double[] padOutputReal, double[] padOutputImag)
+	{
+		final int iHalf = this.iLength / 2;
+
+		if(this.bOdd)
+		{
+			forwardOdd(padInput, padOutputReal, padOutputImag);
+			return;
+		}
+
+		// Pack even samples as real and odd as imaginary parts
+		for(int i = 0; i < iHalf; i++)
+		{
+			padOutputReal[i] = padInput[2 * i];
+			padOutputImag[i] = padInput[2 * i + 1];
+		}
+
+		this.oForward.transform(padOutputReal, padOutputImag, padOutputReal, padOutputImag);
+
+		// Untangle the spectra of the even and odd halves, k paired with N/2 - k
+		double dZ0r = padOutputReal[0];
+		double dZ0i = padOutputImag[0];
+
+		padOutputReal[0] = dZ0r + dZ0i;
+		padOutputImag[0] = 0;
+		padOutputReal[iHalf] = dZ0r - dZ0i;
+		padOutputImag[iHalf] = 0;
+
+		for(int k = 1; k <= iHalf / 2; k++)
+		{
+			int j = iHalf - k;
+
+			double dZkr = padOutputReal[k];
+			double dZki = padOutputImag[k];
+			double dZjr = padOutputReal[j];
+			double dZji = padOutputImag[j];
+
+			double dEvenR = 0.5 * (dZkr + dZjr);
+			double dEvenI = 0.5 * (dZki - dZji);
+			double dOddR  = 0.5 * (dZki + dZji);
+			double dOddI  = -0.5 * (dZkr - dZjr);
+
+			double dTr = this.adCos[k] * dOddR - this.adSin[k] * dOddI;
+			double dTi = this.adCos[k] * dOddI + this.adSin[k] * dOddR;
+
+			padOutputReal[k] = dEvenR + dTr;
+			padOutputImag[k] = dEvenI + dTi;
+
+			if(j != k)
+			{
+				padOutputReal[j] = dEvenR - dTr;
+				padOutputImag[j] = dTi - dEvenI;
+			}
+		}
+	}
+
+	/**
+	 * Inverse transform of a conjugate-symmetric spectrum back into a real signal.
+	 * The imaginary parts of bins <code>0</code> and <code>N/2</code> are ignored.
+	 * The transform is unscaled.
+	 *
+	 * <b>NOTE:</b> the spectrum arrays are used as scratch space and are overwritten.
+	 *
+	 * @param padInputReal real part of bins <code>0..N/2</code>
+	 * @param padInputImag imaginary part of bins <code>0..N/2</code>
+	 * @param padOutput resulting real signal, at least <code>N</code> long
+	 */
+	public void inverse(double[] padInputReal, double[] padInputImag, double[] padOutput)
+	{
+		final int iHalf = this.iLength / 2;
+
+		if(this.bOdd)
+		{
+			inverseOdd(padInputReal, padInputImag, padOutput);
+			return;
+		}
+
+		// Re-tangle into the half-length spectrum of the packed signal
+		double dX0r = padInputReal[0];
+		double dXhr = padInputReal[iHalf];
+
+		padInputReal[0] = dX0r + dXhr;
+		padInputImag[0] = dX0r - dXhr;
+
+		for(int k = 1; k <= iHalf / 2; k++)
+		{
+			int j = iHalf - k;
+
+			double dXkr = padInputReal[k];
+			double dXki = padInputImag[k];
+			double dXjr = padInputReal[j];
+			double dXji = padInputImag[j];
+
+			double dEvenR = dXkr + dXjr;
+			double dEvenI = dXki - dXji;
+			double dTr    = dXkr - dXjr;
+			double dTi    = dXki + dXji;
+
+			double dOddR = dTr * this.adCos[k] + dTi * this.adSin[k];
+			double dOddI = dTi * this.adCos[k] - dTr * this.adSin[k];
+
+			padInputReal[k] = dEvenR - dOddI;
+			padInputImag[k] = dEvenI + dOddR;
+
+			if(j != k)
+			{
+				padInputReal[j] = dEvenR + dOddI;
+				padInputImag[j] = dOddR - dEvenI;
+			}
+		}
+
+		this.oInverse.transform(padInputReal, padInputImag, padInputReal, padInputImag);
+
+		// Unpack
+		for(int i = 0; i < iHalf; i++)
+		{
+			padOutput[2 * i]     = padInputReal[i];
+			padOutput[2 * i + 1] = padInputImag[i];
+		}
+	}
+
+	/**
+	 * Forward transform of an odd-length signal through a full complex transform.
+	 * @param padInput real signal
+	 * @param padOutputReal real part of bins <code>0..(N-1)/2</code>
+	 * @param padOutputImag imaginary part of bins <code>0..(N-1)/2</code>
+	 */
+	private void forwardOdd(final double[] padInput, double[] padOutputReal, double[] padOutputImag)
+	{
+		final int n = this.iLength;
+
+		double[] adReal = new double[n];
+		double[] adImag = new double[n];
+
+		System.arraycopy(padInput, 0, adReal, 0, n);
+
+		this.oForward.transform(adReal, adImag, adReal, adImag);
+
+		System.arraycopy(adReal, 0, padOutputReal, 0, getBins());
+		System.arraycopy(adImag, 0, padOutputImag, 0, getBins());
+	}
+
+	/**
+	 * Inverse transform of an odd-length signal through a full complex transform.
+	 * @param padInputReal real part of bins <code>0..(N-1)/2</code>
+	 * @param padInputImag imaginary part of bins <code>0..(N-1)/2</code>
+	 * @param padOutput resulting real signal
+	 */
+	private void inverseOdd(final double[] padInputReal, final double[] padInputImag, double[] padOutput)
+	{
+		final int n = this.iLength;
+
+		double[] adReal = new double[n];
+		double[] adImag = new double[n];
+
+		adReal[0] = padInputReal[0];
+
+		// Rebuild the mirrored half of the spectrum
+		for(int k = 1; k < getBins(); k++)
+		{
+			adReal[k] = adReal[n - k] = padInputReal[k];
+			adImag[k] = padInputImag[k];
+			adImag[n - k] = -padInputImag[k];
+		}
+
+		this.oInverse.transform(adReal, adImag, adReal, adImag);
+
+		System.arraycopy(adReal, 0, padOutput, 0, n);
+	}
+
+	/**
+	 * Retrieves the real signal length of this plan.
+	 * @return the length
+	 */
+	public int getLength()
+	{
+		return this.iLength;
+	}
+
+	/**
+	 * Retrieves the number of non-redundant spectrum bins, <code>N/2 + 1</code>.
+	 * @return the number of bins
+	 */
+	public int getBins()
+	{
+		return this.iLength / 2 + 1;
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF
@@ -0,0 +1,257 @@
+package marf.util;
+
+
+/**
+ * <p>Bounded heap keeping the <code>k</code> smallest values seen,
+ * each with an integer index (e.g. a row of a model), in primitive
+ * arrays.</p>
+ *
+ * <p>Offering a value is <code>O(log k)</code> and allocates nothing, so
+ * a scan over <code>n</code> candidates for the best <code>k</code> costs
+ * <code>O(n log k)</code> instead of creating and sorting <code>n</code>
+ * result objects. Equal values are ordered by their indices, which makes
+ * the outcome the same as of a stable sort of the candidates taken in
+ * index order. For the largest values, offer negated ones.</p>
+ *
+ * $Id$
+ *
+ * @author Serguei Mokhov
+ * @version $Revision$
+ * @since 0.3.0.6
+ */
+public class TopKHeap
+{
+	/**
+	 * Kept values; a max-heap until <code>sort()</code> is called.
+	 */
+	protected double[] adValues;
+
+	/**
+	 * Indices of the kept values.
+	 */
+	protected int[] aiIndices;
+
+	/**
+	 * Number of kept values.
+	 */
+	protected int iSize = 0;
+
+	/**
+	 * Constructs an empty heap.
+	 * @param piCapacity <code>k</code>, at least 1
+	 * @throws IllegalArgumentException if the capacity is less than 1
+	 */
+	public TopKHeap(final int piCapacity)
+	{
+		if(piCapacity < 1)
+		{
+			throw new IllegalArgumentException("Heap capacity (" + piCapacity + ") must be at least 1.");
+		}
+
+		this.adValues = new double[piCapacity];
+		this.aiIndices = new int[piCapacity];
+	}
+
+	/**
+	 * Empties the heap for reuse.
+	 */
+	public void clear()
+	{
+		this.iSize = 0;
+	}
+
+	/**
+	 * Offers a candidate.
+	 * @param pdValue the value, e.g. a distance
+	 * @param piIndex the index the value belongs to
+	 * @return <code>true</code> if the candidate is kept (for now)
+	 */
+	public boolean offer(final double pdValue, final int piIndex)
+	{
+		if(this.iSize < this.adValues.length)
+		{
+			// Sift up from the new leaf
+			int i = this.iSize++;
+
+			while(i > 0)
+			{
+				int iParent = (i - 1) >>> 1;
+
+				if(isGreater(pdValue, piIndex, this.adValues[iParent], this.aiIndices[iParent]) == false)
+				{
+					break;
+				}
+
+				this.adValues[i] = this.adValues[iParent];
+				this.aiIndices[i] = this.aiIndices[iParent];
+				i = iParent;
+			}
+
+			this.adValues[i] = pdValue;
+			this.aiIndices[i] = piIndex;
+
+			return true;
+		}
+
+		if(isGreater(pdValue, piIndex, this.adValues[0], this.aiIndices[0]) || pdValue == this.adValues[0] && piIndex == this.aiIndices[0])
+		{
+			return false;
+		}
+
+		// Replace the current worst and sift it down
+		siftDown(pdValue, piIndex, this.iSize);
+
+		return true;
+	}
+
+	/**
+	 * Offers all the values kept by another heap, e.g. to
+	 * merge partial results of several scans.
+	 * @param poHeap the other heap; not sorted yet, or sorted
+	 */
+	public void offerAll(final TopKHeap poHeap)
+	{
+		for(int i = 0; i < poHeap.iSize; i++)
+		{
+			offer(poHeap.adValues[i], poHeap.aiIndices[i]);
+		}
+	}
+
+	/**
+	 * Retrieves the largest kept value, which a new candidate has
+	 * to beat once the heap is full.
+	 * @return the value; <code>Double.POSITIVE_INFINITY</code> while the heap is not full
+	 */
+	public double getBound()
+	{
+		return this.iSize < this.adValues.length ? Double.POSITIVE_INFINITY : this.adValues[0];
+	}
+
+	/**
+	 * Sorts the kept values in the ascending order (ties by index) in
+	 * place, after which they are accessible by <code>getValue()</code> and
+	 * <code>getIndex()</code>. The heap has to be cleared before it can take
+	 * new candidates again.
+	 * @return number of kept values
+	 */
+	public int sort()
+	{
+		for(int iEnd = this.iSize - 1; iEnd > 0; iEnd--)
+		{
+			double dValue = this.adValues[iEnd];
+			int iIndex = this.aiIndices[iEnd];
+
+			this.adValues[iEnd] = this.adValues[0];
+			this.aiIndices[iEnd] = this.aiIndices[0];
+
+			siftDown(dValue, iIndex, iEnd);
+		}
+
+		return this.iSize;
+	}
+
+	/**
+	 * Retrieves a kept value.
+	 * @param piPosition position, in the sorted order after <code>sort()</code>
+	 * @return the value
+	 */
+	public final double getValue(final int piPosition)
+	{
+		return this.adValues[piPosition];
+	}
+
+	/**
+	 * Retrieves the index of a kept value.
+	 * @param piPosition position, in the sorted order after <code>sort()</code>
+	 * @return the index
+	 */
+	public final int getIndex(final int piPosition)
+	{
+		return this.aiIndices[piPosition];
+	}
+
+	/**
+	 * Retrieves the number of kept values.
+	 * @return the count
+	 */
+	public final int size()
+	{
+		return this.iSize;
+	}
+
+	/**
+	 * Retrieves <code>k</code>.
+	 * @return the capacity
+	 */
+	public final int getCapacity()
+	{
+		return this.adValues.length;
+	}
+
+	/**
+	 * Puts a value at the root of the first <code>piSize</code> elements
+	 * of the heap and sifts it down to its place.
+	 * @param pdValue the value
+	 * @param piIndex its index
+	 * @param piSize number of elements of the heap
+	 */
+	private void siftDown(final double pdValue, final int piIndex, final int piSize)
+	{
+		int i = 0;
+
+		while(true)
+		{
+			int iChild = 2 * i + 1;
+
+			if(iChild >= piSize)
+			{
+				break;
+			}
+
+			if
+			(
+				iChild + 1 < piSize
+				&& isGreater(this.adValues[iChild + 1], this.aiIndices[iChild + 1], this.adValues[iChild], this.aiIndices[iChild])
+			)
+			{
+				iChild++;
+			}
+
+			if(isGreater(this.adValues[iChild], this.aiIndices[iChild], pdValue, piIndex) == false)
+			{
+				break;
+			}
+
+			this.adValues[i] = this.adValues[iChild];
+			this.aiIndices[i] = this.aiIndices[iChild];
+			i = iChild;
+		}
+
+		this.adValues[i] = pdValue;
+		this.aiIndices[i] = piIndex;
+	}
+
+	/**
+	 * Orders the (value, index) pairs.
+	 * @param pdValue1 first value
+	 * @param piIndex1 first index
+	 * @param pdValue2 second value
+	 * @param piIndex2 second index
+	 * @return <code>true</code> if the first pair goes after the second
+	 */
+	private static boolean isGreater(final double pdValue1, final int piIndex1, final double pdValue2, final int piIndex2)
+	{
+		return pdValue1 > pdValue2 || (pdValue1 == pdValue2 && piIndex1 > piIndex2);
+	}
+
+	/**
+	 * Returns source code revision information.
+	 * @return revision string
+	 */
+	public static String getMARFSourceCodeRevision()
+	{
+		return "$Revision$";
+	}
+}
+
+// EOF